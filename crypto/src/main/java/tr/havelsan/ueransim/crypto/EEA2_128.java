@@ -38,6 +38,15 @@ import javax.crypto.spec.SecretKeySpec;
 
 public class EEA2_128 {
 
+    // Each thread keeps its own instance, see Mac
+    private static final ThreadLocal<Cipher> aesCtr = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/CTR/NoPadding");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    });
+
     public static BitString encrypt(Octet4 count, Bit5 bearer, Bit direction, BitString message, OctetString key) {
         byte[] res = cipher(Cipher.ENCRYPT_MODE, key.toByteArray(), computeIV(count, bearer, direction), message.toByteArray());
         return BitString.from(res, message.bitLength());
@@ -50,7 +59,7 @@ public class EEA2_128 {
 
     private static byte[] cipher(int mode, byte[] key, byte[] iv, byte[] msg) {
         try {
-            var cipher = Cipher.getInstance("AES/CTR/NoPadding");
+            var cipher = aesCtr.get();
             cipher.init(mode, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
             return cipher.doFinal(msg);
         } catch (Exception e) {
@@ -31,15 +31,24 @@ import tr.havelsan.ueransim.utils.octets.OctetString;
 import javax.crypto.spec.SecretKeySpec;
 
 public class Mac {
+    private static final String HMAC_SHA_256 = "HmacSHA256";
+
+    // Looking up a provider is costly and synchronized, so each thread keeps its own instance.
+    private static final ThreadLocal<javax.crypto.Mac> hmacSha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return javax.crypto.Mac.getInstance(HMAC_SHA_256);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    });
 
     /**
      * Calculates the HMAC-SHA-256 with given parameters
      */
     public static OctetString hmacSha256(OctetString key, OctetString input) {
         try {
-            final String algorithm = "HmacSHA256";
-            javax.crypto.Mac mac = javax.crypto.Mac.getInstance(algorithm);
-            mac.init(new SecretKeySpec(key.toByteArray(), algorithm));
+            javax.crypto.Mac mac = hmacSha256.get();
+            mac.init(new SecretKeySpec(key.toByteArray(), HMAC_SHA_256));
             return new OctetString(mac.doFinal(input.toByteArray()));
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -48,10 +48,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Ngap {
     private static final boolean TRACE = false;
-    private static Context context;
+    private static final ReentrantLock CONTEXT_LOCK = new ReentrantLock();
+    private static volatile Context context;
+
+    // Set for threads which should not share the codec context, see bindThreadContext()
+    private static final ThreadLocal<Context> threadContext = new ThreadLocal<>();
 
     static {
         try {
@@ -63,10 +68,43 @@ public class Ngap {
         RuntimeConfiguration.initialize();
     }
 
-    private synchronized static Context getContext() {
+    /**
+     * Makes the calling thread use a codec context of its own instead of the one shared by the process, e.g. the
+     * thread of a UE shard. The context is loaded here, so the thread should be long-lived.
+     */
+    public static void bindThreadContext() {
+        if (threadContext.get() == null) {
+            threadContext.set(loadContext());
+        }
+    }
+
+    public static void unbindThreadContext() {
+        threadContext.remove();
+    }
+
+    // Called for every encoding and decoding, so it does not lock once the context is loaded. A lock is used instead
+    // of a monitor so that virtual threads waiting for the first load do not pin their carrier threads.
+    private static Context getContext() {
+        var context = threadContext.get();
         if (context != null)
             return context;
 
+        context = Ngap.context;
+        if (context != null)
+            return context;
+
+        CONTEXT_LOCK.lock();
+        try {
+            if (Ngap.context == null) {
+                Ngap.context = loadContext();
+            }
+            return Ngap.context;
+        } finally {
+            CONTEXT_LOCK.unlock();
+        }
+    }
+
+    private static Context loadContext() {
         IAbstractSyntax asn;
 
         var context = new Context();
@@ -90,7 +128,7 @@ public class Ngap {
 
         context.setIndentationShift(2);
 
-        return Ngap.context = context;
+        return context;
     }
 
     public static byte[] perEncode(Value value) {
@@ -58,6 +58,10 @@ public class NgapBuilder {
         this.procedureCriticality = criticality;
     }
 
+    public NgapProcedure getProcedure() {
+        return procedure;
+    }
+
     public NgapBuilder addProtocolIE(Value value, NgapCriticality criticality, Integer ieId) {
         this.protocolIEs.add(new ProtocolIE(value, criticality, ieId));
         return this;
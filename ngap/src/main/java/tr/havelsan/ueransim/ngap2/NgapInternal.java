@@ -42,6 +42,7 @@ import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.UnsuccessfulOutcome;
 import tr.havelsan.ueransim.utils.Logging;
 import tr.havelsan.ueransim.utils.Tag;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,6 +50,21 @@ import static tr.havelsan.ueransim.core.Constants.NGAP_PDU_CONTENTS;
 
 public class NgapInternal {
 
+    private static final ClassValue<ProtocolIeAccess> PROTOCOL_IE_ACCESS = new ClassValue<>() {
+        @Override
+        protected ProtocolIeAccess computeValue(Class<?> procedureClass) {
+            try {
+                var protocolIEsClassName = procedureClass.getName() + "$ProtocolIEs";
+                var sequenceClassName = protocolIEsClassName + "$SEQUENCE";
+                return new ProtocolIeAccess(procedureClass.getField("protocolIEs"),
+                        Class.forName(protocolIEsClassName).getField("valueList"),
+                        Class.forName(sequenceClassName).getField("value"));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
     public static int findProcedureCode(NgapProcedure procedure) {
         String procedureName = procedure.name();
 
@@ -149,8 +165,45 @@ public class NgapInternal {
     }
 
     public static <T extends Value> List<T> extractProtocolIe(Value procedureContent, Class<T> ieType) {
+        var list = new ArrayList<T>();
+        for (var ie : extractProtocolIes(procedureContent)) {
+            if (ieType.isAssignableFrom(ie.getClass())) {
+                list.add((T) ie);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the last IE of the given type, or null. Unlike {@link #extractProtocolIe}, no list is created and the
+     * reflective accessors are resolved once per message type, so this is cheap enough for routing every message.
+     */
+    public static <T extends Value> T findProtocolIe(Value procedureContent, Class<T> ieType) {
+        if (procedureContent == null) return null;
+        try {
+            var access = PROTOCOL_IE_ACCESS.get(procedureContent.getClass());
+            var protocolIEs = access.protocolIEs.get(procedureContent);
+            if (protocolIEs == null) return null;
+
+            var valueList = (ArrayList) access.valueList.get(protocolIEs);
+            for (int i = valueList.size() - 1; i >= 0; i--) {
+                var protocolIe = valueList.get(i);
+                if (protocolIe == null) continue;
+                var openTypeValue = (OpenTypeValue) access.value.get(protocolIe);
+                var ie = openTypeValue.getDecodedValue();
+                if (ie != null && ieType.isAssignableFrom(ie.getClass())) {
+                    return (T) ie;
+                }
+            }
+            return null;
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static List<Value> extractProtocolIes(Value procedureContent) {
         try {
-            var list = new ArrayList<T>();
+            var list = new ArrayList<Value>();
             if (procedureContent != null) {
                 var procedureClassName = procedureContent.getClass().getName();
                 var protocolIEsClassName = procedureClassName + "$ProtocolIEs";
@@ -171,9 +224,7 @@ public class NgapInternal {
                             var ie = openTypeValue.getDecodedValue();
 
                             if (ie != null) {
-                                if (ieType.isAssignableFrom(ie.getClass())) {
-                                    list.add((T) ie);
-                                }
+                                list.add((Value) ie);
                             }
                         }
                     }
@@ -227,4 +278,16 @@ public class NgapInternal {
 
         return NasDecoder.nasPdu(protocolIes.get(0).getValue());
     }
+
+    private static class ProtocolIeAccess {
+        final Field protocolIEs;
+        final Field valueList;
+        final Field value;
+
+        ProtocolIeAccess(Field protocolIEs, Field valueList, Field value) {
+            this.protocolIEs = protocolIEs;
+            this.valueList = valueList;
+            this.value = value;
+        }
+    }
 }
@@ -197,4 +197,41 @@ public enum NgapProcedure {
                 throw new RuntimeException();
         }
     }
+
+    /**
+     * Returns false for the procedures which are not associated with any UE, according to 38.413 section 8.
+     */
+    public boolean isUeAssociated() {
+        switch (this) {
+            case AMFConfigurationUpdate:
+            case AMFConfigurationUpdateAcknowledge:
+            case AMFConfigurationUpdateFailure:
+            case AMFStatusIndication:
+            case DownlinkNonUEAssociatedNRPPaTransport:
+            case DownlinkRANConfigurationTransfer:
+            case NGReset:
+            case NGResetAcknowledge:
+            case NGSetupFailure:
+            case NGSetupRequest:
+            case NGSetupResponse:
+            case OverloadStart:
+            case OverloadStop:
+            case Paging:
+            case PrivateMessage:
+            case PWSCancelRequest:
+            case PWSCancelResponse:
+            case PWSFailureIndication:
+            case PWSRestartIndication:
+            case RANConfigurationUpdate:
+            case RANConfigurationUpdateAcknowledge:
+            case RANConfigurationUpdateFailure:
+            case UplinkNonUEAssociatedNRPPaTransport:
+            case UplinkRANConfigurationTransfer:
+            case WriteReplaceWarningRequest:
+            case WriteReplaceWarningResponse:
+                return false;
+            default:
+                return true;
+        }
+    }
 }
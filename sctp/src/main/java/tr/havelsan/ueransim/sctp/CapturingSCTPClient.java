@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+import com.sun.nio.sctp.SctpChannel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decorates a client so that every sent and received message is also written to a {@link PcapWriter}. Capturing
+ * never blocks, messages sent as arrays are captured without copying. The writer is closed together with the client.
+ */
+public class CapturingSCTPClient implements ISCTPClient {
+    private final ISCTPClient client;
+    private final PcapWriter writer;
+
+    public CapturingSCTPClient(ISCTPClient client, PcapWriter writer) {
+        this.client = client;
+        this.writer = writer;
+    }
+
+    public PcapWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public void start() throws Exception {
+        client.start();
+    }
+
+    @Override
+    public void send(int streamNumber, byte[] data) {
+        writer.write(true, streamNumber, data);
+        client.send(streamNumber, data);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(int streamNumber, ByteBuffer data) {
+        writer.write(true, streamNumber, copyOf(data));
+        return client.sendAsync(streamNumber, data);
+    }
+
+    @Override
+    public boolean isWritable() {
+        return client.isWritable();
+    }
+
+    @Override
+    public void setWritabilityListener(IWritabilityListener listener) {
+        client.setWritabilityListener(listener);
+    }
+
+    @Override
+    public void receiverLoop(ISCTPHandler handler) throws Exception {
+        client.receiverLoop(new ISCTPHandler() {
+            @Override
+            public void handleSCTPMessage(byte[] receivedBytes, MessageInfo messageInfo, SctpChannel channel) throws Exception {
+                writer.write(false, streamOf(messageInfo), receivedBytes);
+                handler.handleSCTPMessage(receivedBytes, messageInfo, channel);
+            }
+
+            @Override
+            public void handleSCTPMessage(ByteBuffer receivedBuffer, MessageInfo messageInfo, SctpChannel channel) throws Exception {
+                // The buffer is reused by the client after this call returns.
+                writer.write(false, streamOf(messageInfo), copyOf(receivedBuffer));
+                handler.handleSCTPMessage(receivedBuffer, messageInfo, channel);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        writer.close();
+    }
+
+    @Override
+    public void abortReceiver() {
+        client.abortReceiver();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return client.isOpen();
+    }
+
+    @Override
+    public int getOutboundStreams() {
+        return client.getOutboundStreams();
+    }
+
+    @Override
+    public StreamCounters getStreamCounters() {
+        return client.getStreamCounters();
+    }
+
+    private static int streamOf(MessageInfo messageInfo) {
+        return messageInfo != null ? messageInfo.streamNumber() : SctpStreams.NON_UE_STREAM;
+    }
+
+    private static byte[] copyOf(ByteBuffer buffer) {
+        var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
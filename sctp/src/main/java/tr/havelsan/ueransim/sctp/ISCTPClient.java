@@ -26,11 +26,40 @@
 
 package tr.havelsan.ueransim.sctp;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
 public interface ISCTPClient {
     void start() throws Exception;
 
     void send(int streamNumber, byte[] data);
 
+    /**
+     * Sends the message without blocking the caller if the client supports it. The returned future completes when
+     * the message is handed to the association. The buffer must not be modified until then.
+     */
+    default CompletableFuture<Void> sendAsync(int streamNumber, ByteBuffer data) {
+        try {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            send(streamNumber, bytes);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Returns false while the queued outgoing messages or bytes are above their high watermark. Load generators
+     * should slow down until it turns true again.
+     */
+    default boolean isWritable() {
+        return true;
+    }
+
+    default void setWritabilityListener(IWritabilityListener listener) {
+    }
+
     void receiverLoop(ISCTPHandler handler) throws Exception;
 
     void close();
@@ -38,4 +67,11 @@ public interface ISCTPClient {
     void abortReceiver();
 
     boolean isOpen();
+
+    /**
+     * Returns the number of outbound streams negotiated for the association.
+     */
+    int getOutboundStreams();
+
+    StreamCounters getStreamCounters();
 }
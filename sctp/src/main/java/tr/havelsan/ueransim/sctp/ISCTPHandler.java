@@ -29,6 +29,19 @@ package tr.havelsan.ueransim.sctp;
 import com.sun.nio.sctp.MessageInfo;
 import com.sun.nio.sctp.SctpChannel;
 
+import java.nio.ByteBuffer;
+
 public interface ISCTPHandler {
     void handleSCTPMessage(byte[] receivedBytes, MessageInfo messageInfo, SctpChannel channel) throws Exception;
+
+    /**
+     * Called by the clients which receive into a reusable buffer. The given buffer is only valid until this method
+     * returns, its content must be copied if it is needed afterwards. By default, the content is copied into an array
+     * and passed to {@link #handleSCTPMessage(byte[], MessageInfo, SctpChannel)}.
+     */
+    default void handleSCTPMessage(ByteBuffer receivedBuffer, MessageInfo messageInfo, SctpChannel channel) throws Exception {
+        byte[] receivedBytes = new byte[receivedBuffer.remaining()];
+        receivedBuffer.get(receivedBytes);
+        handleSCTPMessage(receivedBytes, messageInfo, channel);
+    }
 }
@@ -0,0 +1,376 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process association between two {@link ISCTPClient} endpoints. Messages are passed through lock-free ring
+ * buffers without copying, so the ownership of a sent buffer passes to the receiving side; the sender must not
+ * modify it afterwards. Closing either endpoint shuts down the whole association.
+ * <p>
+ * If an {@link IEventScheduler} is given, e.g. a virtual clock, the messages are not polled by the receiving thread
+ * but handed to the receiver's handler by tasks of the scheduler, which also applies the delay. The receiving thread
+ * then only waits until its receiver is aborted.
+ */
+public class LoopbackTransport {
+    public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+
+    private static final long SEND_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int streamCount;
+    private final long oneWayDelayNanos;
+    private final Endpoint client;
+    private final Endpoint server;
+    private final IEventScheduler scheduler;
+
+    private volatile boolean open;
+
+    public LoopbackTransport(int protocolId, int streamCount, int queueCapacity, long oneWayDelayNanos) {
+        this(protocolId, streamCount, queueCapacity, oneWayDelayNanos, null);
+    }
+
+    /**
+     * @param scheduler delivers the messages after the delay, or null if they are polled by the receiving threads
+     */
+    public LoopbackTransport(int protocolId, int streamCount, int queueCapacity, long oneWayDelayNanos,
+                             IEventScheduler scheduler) {
+        if (streamCount < 1) throw new IllegalArgumentException("streamCount must be positive");
+        if (oneWayDelayNanos < 0) throw new IllegalArgumentException("oneWayDelayNanos must not be negative");
+
+        this.streamCount = streamCount;
+        this.oneWayDelayNanos = oneWayDelayNanos;
+        this.scheduler = scheduler;
+        this.open = true;
+
+        var infos = new MessageInfo[streamCount];
+        for (int i = 0; i < streamCount; i++) {
+            infos[i] = MessageInfo.createOutgoing(null, i);
+            infos[i].payloadProtocolID(protocolId);
+        }
+
+        this.client = new Endpoint(infos, queueCapacity);
+        this.server = new Endpoint(infos, queueCapacity);
+        this.client.peer = server;
+        this.server.peer = client;
+    }
+
+    public LoopbackTransport(int protocolId, int streamCount) {
+        this(protocolId, streamCount, DEFAULT_QUEUE_CAPACITY, 0);
+    }
+
+    /**
+     * Returns the endpoint to be used by the simulator.
+     */
+    public Endpoint getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the endpoint of the in-process peer, e.g. a mocked AMF.
+     */
+    public Endpoint getServer() {
+        return server;
+    }
+
+    public long getOneWayDelayNanos() {
+        return oneWayDelayNanos;
+    }
+
+    private void shutdown() {
+        open = false;
+        client.unparkReceivers();
+        server.unparkReceivers();
+    }
+
+    private static class Frame {
+        final MessageInfo info;
+        final byte[] array;
+        final ByteBuffer buffer;
+        final long deliverAt;
+
+        Frame(MessageInfo info, byte[] array, ByteBuffer buffer, long deliverAt) {
+            this.info = info;
+            this.array = array;
+            this.buffer = buffer;
+            this.deliverAt = deliverAt;
+        }
+    }
+
+    public class Endpoint implements ISCTPClient {
+        private final MessageInfo[] infos;
+        private final RingQueue<Frame> inbound;
+        private final Queue<Thread> parkedReceivers;
+        private final StreamCounters streamCounters;
+
+        private Endpoint peer;
+        private volatile boolean started;
+        private volatile boolean receiving;
+
+        // Only used with a scheduler, guarded by the endpoint
+        private ISCTPHandler handler;
+        private Exception handlerFailure;
+
+        private Endpoint(MessageInfo[] infos, int queueCapacity) {
+            this.infos = infos;
+            this.inbound = new RingQueue<>(queueCapacity);
+            this.parkedReceivers = new ConcurrentLinkedQueue<>();
+            this.streamCounters = new StreamCounters(streamCount, streamCount);
+        }
+
+        @Override
+        public void start() {
+            if (!open) throw new RuntimeException("association is closed");
+            started = true;
+        }
+
+        @Override
+        public void send(int streamNumber, byte[] data) {
+            var frame = newFrame(streamNumber, data, null);
+            if (scheduler != null) {
+                scheduleDelivery(frame);
+                return;
+            }
+            while (!peer.inbound.offer(frame)) {
+                if (!open) throw new RuntimeException("association is closed");
+                LockSupport.parkNanos(this, SEND_RETRY_NANOS);
+            }
+            onSent(streamNumber);
+        }
+
+        /**
+         * Never blocks and never copies, the buffer itself is handed to the peer. The returned future fails with
+         * {@link RejectedExecutionException} if the peer's queue is full.
+         */
+        @Override
+        public CompletableFuture<Void> sendAsync(int streamNumber, ByteBuffer data) {
+            Frame frame;
+            try {
+                if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0
+                        && data.remaining() == data.array().length) {
+                    frame = newFrame(streamNumber, data.array(), null);
+                } else {
+                    frame = newFrame(streamNumber, null, data.slice());
+                }
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            if (scheduler != null) {
+                scheduleDelivery(frame);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (!peer.inbound.offer(frame)) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("peer queue is full"));
+            }
+            onSent(streamNumber);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public boolean isWritable() {
+            return peer.inbound.size() < peer.inbound.capacity();
+        }
+
+        @Override
+        public void receiverLoop(ISCTPHandler handler) throws Exception {
+            if (scheduler != null) {
+                awaitScheduledReceiver(handler);
+                return;
+            }
+            receiving = true;
+
+            var thread = Thread.currentThread();
+            while (receiving && open) {
+                var frame = inbound.poll();
+                if (frame == null) {
+                    parkedReceivers.add(thread);
+                    if (inbound.isEmpty() && receiving && open) {
+                        LockSupport.park(this);
+                    }
+                    parkedReceivers.remove(thread);
+                    continue;
+                }
+                if (!awaitDelivery(frame, thread)) {
+                    break;
+                }
+                streamCounters.onReceived(frame.info.streamNumber());
+                if (frame.array != null) {
+                    handler.handleSCTPMessage(frame.array, frame.info, null);
+                } else {
+                    handler.handleSCTPMessage(frame.buffer, frame.info, null);
+                }
+            }
+        }
+
+        /**
+         * Waits until the frame is due. Since every frame is delayed by the same amount, frames become due in the
+         * order they are polled.
+         */
+        private boolean awaitDelivery(Frame frame, Thread thread) {
+            if (oneWayDelayNanos == 0) return true;
+
+            parkedReceivers.add(thread);
+            try {
+                long remaining;
+                while ((remaining = frame.deliverAt - System.nanoTime()) > 0) {
+                    if (!receiving || !open) return false;
+                    LockSupport.parkNanos(this, remaining);
+                }
+                return true;
+            } finally {
+                parkedReceivers.remove(thread);
+            }
+        }
+
+        /**
+         * Makes the handler available to the delivery tasks, and waits until the receiver is aborted. Messages which
+         * arrived before are delivered first. Fails with the exception thrown by the handler, if any.
+         */
+        private void awaitScheduledReceiver(ISCTPHandler handler) throws Exception {
+            synchronized (this) {
+                if (this.handler != null) throw new RuntimeException("a receiver is already running");
+                this.handler = handler;
+                this.handlerFailure = null;
+                receiving = true;
+
+                Frame frame;
+                while ((frame = inbound.poll()) != null) {
+                    var f = frame;
+                    scheduler.schedule(0, () -> deliver(f));
+                }
+            }
+
+            var thread = Thread.currentThread();
+            try {
+                while (receiving && open) {
+                    parkedReceivers.add(thread);
+                    if (receiving && open) {
+                        LockSupport.park(this);
+                    }
+                    parkedReceivers.remove(thread);
+                }
+            } finally {
+                synchronized (this) {
+                    this.handler = null;
+                }
+            }
+
+            Exception failure;
+            synchronized (this) {
+                failure = handlerFailure;
+            }
+            if (failure != null) throw failure;
+        }
+
+        private void scheduleDelivery(Frame frame) {
+            onSent(frame.info.streamNumber());
+            scheduler.schedule(oneWayDelayNanos, () -> peer.deliver(frame));
+        }
+
+        // Runs as a task of the scheduler. Messages arriving while no receiver is running are kept for the next one.
+        private void deliver(Frame frame) {
+            ISCTPHandler h;
+            synchronized (this) {
+                h = receiving && open ? handler : null;
+                if (h == null) {
+                    if (open && !inbound.offer(frame)) {
+                        throw new RuntimeException("loopback queue is full");
+                    }
+                    return;
+                }
+            }
+
+            streamCounters.onReceived(frame.info.streamNumber());
+            try {
+                if (frame.array != null) {
+                    h.handleSCTPMessage(frame.array, frame.info, null);
+                } else {
+                    h.handleSCTPMessage(frame.buffer, frame.info, null);
+                }
+            } catch (Exception e) {
+                synchronized (this) {
+                    handlerFailure = e;
+                }
+                abortReceiver();
+            }
+        }
+
+        @Override
+        public void close() {
+            shutdown();
+        }
+
+        @Override
+        public void abortReceiver() {
+            receiving = false;
+            unparkReceivers();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return started && open;
+        }
+
+        @Override
+        public int getOutboundStreams() {
+            return streamCount;
+        }
+
+        @Override
+        public StreamCounters getStreamCounters() {
+            return streamCounters;
+        }
+
+        private Frame newFrame(int streamNumber, byte[] array, ByteBuffer buffer) {
+            if (!open) throw new RuntimeException("association is closed");
+            if (streamNumber < 0 || streamNumber >= streamCount) {
+                throw new IllegalArgumentException("invalid stream number: " + streamNumber);
+            }
+            long deliverAt = oneWayDelayNanos == 0 || scheduler != null ? 0 : System.nanoTime() + oneWayDelayNanos;
+            return new Frame(infos[streamNumber], array, buffer, deliverAt);
+        }
+
+        private void onSent(int streamNumber) {
+            streamCounters.onSent(streamNumber);
+            peer.unparkReceivers();
+        }
+
+        private void unparkReceivers() {
+            for (var thread : parkedReceivers) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
@@ -26,19 +26,25 @@
 
 package tr.havelsan.ueransim.sctp;
 
-import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class MockedSCTPClient implements ISCTPClient {
-    private final Queue<Byte[]> queue;
+    // Put into the queue to wake up a blocked receiver loop, never handed to the handler.
+    private static final byte[] WAKEUP = new byte[0];
+
+    private final BlockingQueue<byte[]> queue;
     private final IMockedRemote mockedRemote;
+    private final StreamCounters streamCounters;
 
-    private boolean receiving;
-    private boolean isOpen;
+    private volatile boolean receiving;
+    private volatile boolean isOpen;
 
     public MockedSCTPClient(IMockedRemote mockedRemote) {
-        this.queue = new ArrayDeque<>();
+        this.queue = new LinkedBlockingQueue<>();
         this.mockedRemote = mockedRemote;
+        this.streamCounters = new StreamCounters(SctpStreams.DEFAULT_STREAM_COUNT, SctpStreams.DEFAULT_STREAM_COUNT);
 
         this.receiving = false;
         this.isOpen = false;
@@ -51,6 +57,7 @@ public class MockedSCTPClient implements ISCTPClient {
 
     @Override
     public void send(int streamNumber, byte[] data) {
+        streamCounters.onSent(streamNumber);
         mockedRemote.onMessage(data, queue);
     }
 
@@ -59,27 +66,23 @@ public class MockedSCTPClient implements ISCTPClient {
         receiving = true;
 
         while (receiving && isOpen) {
-            while (true) {
-                var entry = queue.poll();
-                if (entry == null) break;
-
-                byte[] response = new byte[entry.length];
-                for (int i = 0; i < response.length; i++) {
-                    response[i] = entry[i];
-                }
-                handler.handleSCTPMessage(response, null, null);
-            }
+            var entry = queue.take();
+            if (entry == WAKEUP) continue;
+
+            handler.handleSCTPMessage(entry, null, null);
         }
     }
 
     @Override
     public void close() {
         isOpen = false;
+        queue.offer(WAKEUP);
     }
 
     @Override
     public void abortReceiver() {
         receiving = false;
+        queue.offer(WAKEUP);
     }
 
     @Override
@@ -87,7 +90,20 @@ public class MockedSCTPClient implements ISCTPClient {
         return isOpen;
     }
 
+    @Override
+    public int getOutboundStreams() {
+        return SctpStreams.DEFAULT_STREAM_COUNT;
+    }
+
+    @Override
+    public StreamCounters getStreamCounters() {
+        return streamCounters;
+    }
+
     public interface IMockedRemote {
-        void onMessage(byte[] data, Queue<Byte[]> queue);
+        /**
+         * Called on the sender's thread. Responses added to the queue are received by the receiver loop.
+         */
+        void onMessage(byte[] data, Queue<byte[]> queue);
     }
 }
@@ -0,0 +1,418 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+import com.sun.nio.sctp.SctpChannel;
+import com.sun.nio.sctp.SctpStandardSocketOptions;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SCTP client which performs all socket I/O on a dedicated thread using a selector. Received messages are handed to
+ * the receiver loops through a bounded queue, and messages can be sent from any thread through an outbound queue.
+ * Any number of threads can run {@link #receiverLoop(ISCTPHandler)} at the same time.
+ * <p>
+ * The I/O thread drains every queued message on each wakeup, and senders only wake it up if it is not already going
+ * to drain the queue. The queued messages and bytes are tracked by an {@link OutboundQueue}, see
+ * {@link #isWritable()}.
+ */
+public class NioSCTPClient implements ISCTPClient {
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    public static final long DEFAULT_LOW_WATERMARK = 1024 * 1024;
+    public static final long DEFAULT_HIGH_WATERMARK = 4 * 1024 * 1024;
+    private static final int MIN_RECEIVER_BUFFER_SIZE = 65536;
+    private static final long SEND_RETRY_NANOS = 50_000;
+
+    private final String host;
+    private final int port;
+    private final int protocolId;
+    private final int streamCount;
+
+    private final RingQueue<Incoming> inbound;
+    private final OutboundQueue<Outgoing> outbound;
+    private final Queue<Thread> parkedReceivers;
+    private final AtomicBoolean wakeupPending;
+
+    private SctpChannel channel;
+    private Selector selector;
+    private SelectionKey selectionKey;
+    private Thread ioThread;
+    private AssociationHandler associationHandler;
+    private int outboundStreams;
+    private StreamCounters streamCounters;
+
+    private volatile boolean open;
+    private volatile boolean receiving;
+    private volatile boolean readSuspended;
+    private volatile Exception failure;
+
+    // Only accessed by the I/O thread
+    private ByteBuffer receiveBuffer;
+    private ByteBuffer reassemblyBuffer;
+    private MessageInfo outgoingInfo;
+    private Outgoing pendingOutgoing;
+
+    public NioSCTPClient(String host, int port, int protocolId) {
+        this(host, port, protocolId, SctpStreams.DEFAULT_STREAM_COUNT, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public NioSCTPClient(String host, int port, int protocolId, int streamCount, int queueCapacity) {
+        this.host = host;
+        this.port = port;
+        this.protocolId = protocolId;
+        this.streamCount = streamCount;
+        this.inbound = new RingQueue<>(queueCapacity);
+        this.outbound = new OutboundQueue<>(queueCapacity, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+        this.parkedReceivers = new ConcurrentLinkedQueue<>();
+        this.wakeupPending = new AtomicBoolean();
+    }
+
+    public void setWatermarks(long lowWatermark, long highWatermark) {
+        outbound.setWatermarks(lowWatermark, highWatermark);
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (this.channel != null) throw new RuntimeException("start was already called");
+        var serverAddress = new InetSocketAddress(host, port);
+        this.channel = SctpChannel.open();
+        this.channel.setOption(SctpStandardSocketOptions.SCTP_INIT_MAXSTREAMS, SctpStandardSocketOptions.InitMaxStreams.create(streamCount, streamCount));
+        this.channel.connect(serverAddress);
+
+        var association = channel.association();
+        this.outboundStreams = association.maxOutboundStreams();
+        this.streamCounters = new StreamCounters(outboundStreams, association.maxInboundStreams());
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.selectionKey = channel.register(selector, SelectionKey.OP_READ);
+        this.associationHandler = new AssociationHandler();
+
+        int bufferSize = Math.max(channel.getOption(SctpStandardSocketOptions.SO_RCVBUF), MIN_RECEIVER_BUFFER_SIZE);
+        this.receiveBuffer = ByteBuffer.allocateDirect(bufferSize);
+        this.outgoingInfo = MessageInfo.createOutgoing(null, 0);
+        this.outgoingInfo.payloadProtocolID(protocolId);
+
+        this.open = true;
+        this.receiving = true;
+        this.ioThread = new Thread(this::ioLoop, "sctp-io-" + host + ":" + port);
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    @Override
+    public void send(int streamNumber, byte[] data) {
+        if (!open) throw new RuntimeException("channel is closed");
+        var outgoing = new Outgoing(streamNumber, ByteBuffer.wrap(data), null);
+        while (!outbound.offer(outgoing, data.length)) {
+            if (!open) throw new RuntimeException("channel is closed");
+            requestWakeup();
+            LockSupport.parkNanos(this, SEND_RETRY_NANOS);
+        }
+        requestWakeup();
+    }
+
+    /**
+     * Never blocks. The returned future fails with {@link RejectedExecutionException} if the outbound queue is full.
+     * The client turns unwritable before that, once either the queued messages or the queued bytes reach their high
+     * watermark, see {@link OutboundQueue}.
+     */
+    @Override
+    public CompletableFuture<Void> sendAsync(int streamNumber, ByteBuffer data) {
+        var future = new CompletableFuture<Void>();
+        if (!open) {
+            future.completeExceptionally(new IOException("channel is closed"));
+            return future;
+        }
+        int length = data.remaining();
+        if (!outbound.offer(new Outgoing(streamNumber, data, future), length)) {
+            future.completeExceptionally(new RejectedExecutionException("outbound queue is full"));
+            requestWakeup();
+            return future;
+        }
+        requestWakeup();
+        return future;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return outbound.isWritable();
+    }
+
+    @Override
+    public void setWritabilityListener(IWritabilityListener listener) {
+        outbound.setListener(listener);
+    }
+
+    public long getQueuedBytes() {
+        return outbound.getQueuedBytes();
+    }
+
+    @Override
+    public void receiverLoop(ISCTPHandler handler) throws Exception {
+        receiving = true;
+
+        var thread = Thread.currentThread();
+        while (receiving && open) {
+            var incoming = inbound.poll();
+            if (incoming == null) {
+                parkedReceivers.add(thread);
+                if (inbound.isEmpty() && receiving && open) {
+                    LockSupport.park(this);
+                }
+                parkedReceivers.remove(thread);
+                continue;
+            }
+            if (readSuspended) {
+                requestWakeup();
+            }
+            streamCounters.onReceived(incoming.info.streamNumber());
+            handler.handleSCTPMessage(incoming.data, incoming.info, channel);
+        }
+
+        var failure = this.failure;
+        if (failure != null) throw failure;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        if (selector != null) selector.wakeup();
+        unparkReceivers();
+    }
+
+    @Override
+    public void abortReceiver() {
+        receiving = false;
+        unparkReceivers();
+    }
+
+    @Override
+    public int getOutboundStreams() {
+        return outboundStreams;
+    }
+
+    @Override
+    public StreamCounters getStreamCounters() {
+        return streamCounters;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && channel.isOpen();
+    }
+
+    //======================================================================================================
+    //                                           I/O THREAD
+    //======================================================================================================
+
+    private void ioLoop() {
+        try {
+            while (open) {
+                selector.select();
+                wakeupPending.set(false);
+                if (!open) break;
+
+                if (selectionKey.isValid() && selectionKey.isReadable()) {
+                    readMessages();
+                }
+                selector.selectedKeys().clear();
+
+                writeMessages();
+
+                if (readSuspended && inbound.size() < inbound.capacity()) {
+                    readSuspended = false;
+                }
+                if (selectionKey.isValid()) {
+                    int ops = 0;
+                    if (!readSuspended) ops |= SelectionKey.OP_READ;
+                    if (pendingOutgoing != null) ops |= SelectionKey.OP_WRITE;
+                    selectionKey.interestOps(ops);
+                }
+            }
+            // Flush whatever is left on local close, the association may already be gone though.
+            try {
+                writeMessages();
+            } catch (IOException ignored) {
+            }
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            open = false;
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            failPendingSends();
+            unparkReceivers();
+        }
+    }
+
+    private void readMessages() throws IOException {
+        boolean received = false;
+        while (true) {
+            if (inbound.size() >= inbound.capacity()) {
+                readSuspended = true;
+                break;
+            }
+
+            receiveBuffer.clear();
+            var messageInfo = channel.receive(receiveBuffer, System.out, associationHandler);
+            if (messageInfo == null) break;
+            if (messageInfo.bytes() == -1) {
+                open = false;
+                break;
+            }
+            receiveBuffer.flip();
+
+            if (!messageInfo.isComplete()) {
+                appendPartial(receiveBuffer);
+                continue;
+            }
+
+            byte[] data;
+            if (reassemblyBuffer != null && reassemblyBuffer.position() > 0) {
+                appendPartial(receiveBuffer);
+                reassemblyBuffer.flip();
+                data = new byte[reassemblyBuffer.remaining()];
+                reassemblyBuffer.get(data);
+                reassemblyBuffer.clear();
+            } else {
+                data = new byte[receiveBuffer.remaining()];
+                receiveBuffer.get(data);
+            }
+
+            // Cannot fail, this thread is the only producer and the capacity is checked above.
+            inbound.offer(new Incoming(data, messageInfo));
+            received = true;
+        }
+        if (received) {
+            unparkReceivers();
+        }
+    }
+
+    private void appendPartial(ByteBuffer part) {
+        if (reassemblyBuffer == null) {
+            reassemblyBuffer = ByteBuffer.allocate(Math.max(part.capacity(), part.remaining()) * 2);
+        } else if (reassemblyBuffer.remaining() < part.remaining()) {
+            var grown = ByteBuffer.allocate((reassemblyBuffer.position() + part.remaining()) * 2);
+            reassemblyBuffer.flip();
+            grown.put(reassemblyBuffer);
+            reassemblyBuffer = grown;
+        }
+        reassemblyBuffer.put(part);
+    }
+
+    private void writeMessages() throws IOException {
+        while (true) {
+            var outgoing = pendingOutgoing != null ? pendingOutgoing : outbound.poll();
+            if (outgoing == null) {
+                pendingOutgoing = null;
+                return;
+            }
+            int length = outgoing.data.remaining();
+            outgoingInfo.streamNumber(outgoing.streamNumber);
+            try {
+                if (channel.send(outgoing.data, outgoingInfo) == 0) {
+                    // Socket send buffer is full, wait for OP_WRITE.
+                    pendingOutgoing = outgoing;
+                    return;
+                }
+            } catch (IOException e) {
+                pendingOutgoing = null;
+                outbound.onDequeued(length);
+                if (outgoing.future != null) outgoing.future.completeExceptionally(e);
+                throw e;
+            }
+            pendingOutgoing = null;
+            streamCounters.onSent(outgoing.streamNumber);
+            outbound.onDequeued(length);
+            if (outgoing.future != null) outgoing.future.complete(null);
+        }
+    }
+
+    private void failPendingSends() {
+        var exception = failure != null ? failure : new IOException("channel is closed");
+        var outgoing = pendingOutgoing;
+        pendingOutgoing = null;
+        while (outgoing != null) {
+            outbound.onDequeued(outgoing.data.remaining());
+            if (outgoing.future != null) outgoing.future.completeExceptionally(exception);
+            outgoing = outbound.poll();
+        }
+    }
+
+    //======================================================================================================
+    //                                             OTHERS
+    //======================================================================================================
+
+    private void requestWakeup() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            var selector = this.selector;
+            if (selector != null) selector.wakeup();
+        }
+    }
+
+    private void unparkReceivers() {
+        for (var thread : parkedReceivers) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static class Incoming {
+        final byte[] data;
+        final MessageInfo info;
+
+        Incoming(byte[] data, MessageInfo info) {
+            this.data = data;
+            this.info = info;
+        }
+    }
+
+    private static class Outgoing {
+        final int streamNumber;
+        final ByteBuffer data;
+        final CompletableFuture<Void> future;
+
+        Outgoing(int streamNumber, ByteBuffer data, CompletableFuture<Void> future) {
+            this.streamNumber = streamNumber;
+            this.data = data;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound message queue of a client, which tracks the queued messages and bytes against high and low
+ * watermarks. It turns unwritable when either of them reaches its high watermark, and writable again when both are
+ * at or below their low watermarks.
+ * <p>
+ * The message watermarks are derived from the capacity, so the queue turns unwritable before an offer can be
+ * rejected. A message is counted from {@link #offer(Object, int)} until {@link #onDequeued(int)} is called for it,
+ * i.e. until it is written or failed, not until it is polled.
+ */
+public class OutboundQueue<T> {
+    private final RingQueue<T> ring;
+    private final int highMessages;
+    private final int lowMessages;
+    private final AtomicInteger queuedMessages;
+    private final AtomicLong queuedBytes;
+    private final AtomicBoolean writable;
+
+    private volatile long lowWatermark;
+    private volatile long highWatermark;
+    private volatile IWritabilityListener listener;
+
+    public OutboundQueue(int capacity, long lowWatermark, long highWatermark) {
+        this.ring = new RingQueue<>(capacity);
+        this.highMessages = ring.capacity() - ring.capacity() / 4;
+        this.lowMessages = ring.capacity() / 4;
+        this.queuedMessages = new AtomicInteger();
+        this.queuedBytes = new AtomicLong();
+        this.writable = new AtomicBoolean(true);
+        setWatermarks(lowWatermark, highWatermark);
+    }
+
+    public void setWatermarks(long lowWatermark, long highWatermark) {
+        if (lowWatermark < 0 || lowWatermark >= highWatermark) throw new IllegalArgumentException();
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+    }
+
+    public void setListener(IWritabilityListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns false if the queue is full.
+     */
+    public boolean offer(T item, int length) {
+        // Counted before offering, so that the queue is already unwritable if the offer is rejected.
+        onQueued(1, length);
+        if (ring.offer(item)) {
+            return true;
+        }
+        onDequeued(1, length);
+        return false;
+    }
+
+    /**
+     * Returns null if the queue is empty. {@link #onDequeued(int)} must be called once the message is written or
+     * failed.
+     */
+    public T poll() {
+        return ring.poll();
+    }
+
+    public void onDequeued(int length) {
+        onDequeued(1, length);
+    }
+
+    public boolean isWritable() {
+        return writable.get();
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    public int getQueuedMessages() {
+        return queuedMessages.get();
+    }
+
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    private void onQueued(int messages, long length) {
+        int queued = queuedMessages.addAndGet(messages);
+        if ((queuedBytes.addAndGet(length) >= highWatermark || queued >= highMessages)
+                && writable.compareAndSet(true, false)) {
+            notifyWritability(false);
+            // The messages may have been dequeued in the meantime.
+            onDequeued(0, 0);
+        }
+    }
+
+    private void onDequeued(int messages, long length) {
+        int queued = queuedMessages.addAndGet(-messages);
+        if (queuedBytes.addAndGet(-length) <= lowWatermark && queued <= lowMessages
+                && writable.compareAndSet(false, true)) {
+            notifyWritability(true);
+            onQueued(0, 0);
+        }
+    }
+
+    private void notifyWritability(boolean writable) {
+        var listener = this.listener;
+        if (listener != null) {
+            listener.onWritabilityChanged(writable);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Reads SCTP DATA chunks from pcap files, e.g. the ones written by {@link PcapWriter}. IPv4 packets with raw IP,
+ * Ethernet and Linux cooked link layers are supported. Fragmented user messages and the pcapng format are not
+ * supported, such chunks are skipped and counted.
+ */
+public class PcapReader {
+    private static final int LINKTYPE_ETHERNET = 1;
+    private static final int LINKTYPE_RAW = 101;
+    private static final int LINKTYPE_LINUX_SLL = 113;
+    private static final int LINKTYPE_IPV4 = 228;
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int IPPROTO_SCTP = 132;
+    private static final int CHUNK_DATA = 0;
+
+    private final ByteBuffer file;
+    private final boolean nanoResolution;
+    private final int linkType;
+    private long skippedCount;
+
+    public PcapReader(String path) throws IOException {
+        this(Files.readAllBytes(Paths.get(path)));
+    }
+
+    public PcapReader(byte[] content) throws IOException {
+        this.file = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+        if (content.length < 24) throw new IOException("not a pcap file");
+
+        int magic = file.getInt(0);
+        if (magic == 0xD4C3B2A1 || magic == 0x4D3CB2A1) {
+            file.order(ByteOrder.BIG_ENDIAN);
+            magic = Integer.reverseBytes(magic);
+        }
+        if (magic == 0xA1B2C3D4) {
+            nanoResolution = false;
+        } else if (magic == 0xA1B23C4D) {
+            nanoResolution = true;
+        } else {
+            throw new IOException("not a pcap file, pcapng is not supported");
+        }
+        this.linkType = file.getInt(20);
+        if (linkType != LINKTYPE_ETHERNET && linkType != LINKTYPE_RAW && linkType != LINKTYPE_LINUX_SLL
+                && linkType != LINKTYPE_IPV4) {
+            throw new IOException("unsupported link type: " + linkType);
+        }
+    }
+
+    /**
+     * Calls the handler for every complete DATA chunk in the file, in order.
+     */
+    public void read(IMessageHandler handler) throws IOException {
+        file.position(24);
+        while (file.remaining() >= 16) {
+            long seconds = file.getInt() & 0xFFFFFFFFL;
+            long fraction = file.getInt() & 0xFFFFFFFFL;
+            int capturedLength = file.getInt();
+            file.getInt();
+            if (capturedLength < 0 || capturedLength > file.remaining()) {
+                throw new IOException("truncated pcap file");
+            }
+            long timestampMicros = seconds * 1_000_000 + (nanoResolution ? fraction / 1000 : fraction);
+
+            var packet = file.slice();
+            packet.limit(capturedLength);
+            packet.order(ByteOrder.BIG_ENDIAN);
+            file.position(file.position() + capturedLength);
+
+            readPacket(packet, timestampMicros, handler);
+        }
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    private void readPacket(ByteBuffer packet, long timestampMicros, IMessageHandler handler) throws IOException {
+        int ipStart;
+        switch (linkType) {
+            case LINKTYPE_ETHERNET:
+                if (packet.limit() < 14 || (packet.getShort(12) & 0xFFFF) != ETHERTYPE_IPV4) return;
+                ipStart = 14;
+                break;
+            case LINKTYPE_LINUX_SLL:
+                if (packet.limit() < 16 || (packet.getShort(14) & 0xFFFF) != ETHERTYPE_IPV4) return;
+                ipStart = 16;
+                break;
+            default:
+                ipStart = 0;
+                break;
+        }
+
+        if (packet.limit() < ipStart + 20 || (packet.get(ipStart) & 0xF0) != 0x40) return;
+        if ((packet.get(ipStart + 9) & 0xFF) != IPPROTO_SCTP) return;
+        int ipHeaderLength = (packet.get(ipStart) & 0x0F) * 4;
+        int ipEnd = Math.min(packet.limit(), ipStart + (packet.getShort(ipStart + 2) & 0xFFFF));
+
+        var source = new byte[4];
+        packet.position(ipStart + 12);
+        packet.get(source);
+
+        int chunk = ipStart + ipHeaderLength + 12;
+        while (chunk + 4 <= ipEnd) {
+            int type = packet.get(chunk) & 0xFF;
+            int flags = packet.get(chunk + 1) & 0xFF;
+            int length = packet.getShort(chunk + 2) & 0xFFFF;
+            if (length < 4 || chunk + length > ipEnd) break;
+
+            if (type == CHUNK_DATA && length >= 16) {
+                if ((flags & 0x03) != 0x03) {
+                    skippedCount++;
+                } else {
+                    int streamNumber = packet.getShort(chunk + 8) & 0xFFFF;
+                    int protocolId = packet.getInt(chunk + 12);
+                    var data = new byte[length - 16];
+                    packet.position(chunk + 16);
+                    packet.get(data);
+                    handler.onMessage(timestampMicros, source, streamNumber, protocolId, data);
+                }
+            }
+            chunk += (length + 3) & ~3;
+        }
+    }
+
+    public interface IMessageHandler {
+        void onMessage(long timestampMicros, byte[] sourceAddress, int streamNumber, int protocolId, byte[] data) throws IOException;
+    }
+}
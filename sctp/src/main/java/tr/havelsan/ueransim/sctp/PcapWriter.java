@@ -0,0 +1,366 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes SCTP messages into pcap files as synthetic IPv4/SCTP packets, each holding a single DATA chunk, so that
+ * they can be decoded by Wireshark. Messages are queued without blocking and written by a dedicated thread; if the
+ * queue is full the message is dropped and counted, see {@link #getDroppedCount()}.
+ * <p>
+ * A new file is started whenever the current one would exceed the rotation size. The first file has the given
+ * name, the following ones have an index inserted before the extension, e.g. {@code ngap.1.pcap}.
+ */
+public class PcapWriter implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    public static final long DEFAULT_ROTATION_SIZE = 100L * 1024 * 1024;
+
+    private static final int LINKTYPE_IPV4 = 228;
+    private static final int SNAPLEN = 65535;
+    private static final int MAX_STREAM_COUNT = 65536;
+    private static final int GLOBAL_HEADER_SIZE = 24;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int IPV4_HEADER_SIZE = 20;
+    private static final int SCTP_HEADER_SIZE = 12;
+    private static final int DATA_CHUNK_HEADER_SIZE = 16;
+    private static final int PACKET_OVERHEAD = IPV4_HEADER_SIZE + SCTP_HEADER_SIZE + DATA_CHUNK_HEADER_SIZE;
+    private static final int MAX_PAYLOAD_SIZE = SNAPLEN - PACKET_OVERHEAD - 3;
+    private static final int OUTPUT_BUFFER_SIZE = 1024 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path path;
+    private final long rotationSize;
+    private final Endpoint local;
+    private final Endpoint remote;
+    private final int protocolId;
+    private final RingQueue<Record> queue;
+    private final AtomicLong droppedCount;
+    private final AtomicLong writtenCount;
+    private final long epochMicrosBase;
+    private final long nanoTimeBase;
+    private final Thread writerThread;
+
+    private volatile boolean open;
+    private volatile IOException failure;
+
+    // Only accessed by the writer thread
+    private final ByteBuffer output;
+    private final CRC32C crc;
+    private final Direction uplink;
+    private final Direction downlink;
+    private FileChannel file;
+    private long fileSize;
+    private int fileIndex;
+
+    /**
+     * @param local  IPv4 address and SCTP port used as the source of sent messages
+     * @param remote IPv4 address and SCTP port used as the source of received messages
+     */
+    public PcapWriter(String path, long rotationSize, int queueCapacity, Endpoint local, Endpoint remote, int protocolId) throws IOException {
+        if (rotationSize < GLOBAL_HEADER_SIZE + RECORD_HEADER_SIZE + SNAPLEN) {
+            throw new IllegalArgumentException("rotation size is too small: " + rotationSize);
+        }
+        this.path = Paths.get(path);
+        this.rotationSize = rotationSize;
+        this.local = local;
+        this.remote = remote;
+        this.protocolId = protocolId;
+        this.queue = new RingQueue<>(queueCapacity);
+        this.droppedCount = new AtomicLong();
+        this.writtenCount = new AtomicLong();
+        this.epochMicrosBase = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.nanoTimeBase = System.nanoTime();
+
+        this.output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        this.crc = new CRC32C();
+        this.uplink = new Direction(local, remote);
+        this.downlink = new Direction(remote, local);
+
+        openFile();
+
+        this.open = true;
+        this.writerThread = new Thread(this::writerLoop, "pcap-writer-" + this.path.getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues a message without blocking. The array must not be modified afterwards.
+     *
+     * @param outgoing true if the message is sent from the local endpoint to the remote one
+     */
+    public void write(boolean outgoing, int streamNumber, byte[] data) {
+        if (!open || !queue.offer(new Record(System.nanoTime(), outgoing, streamNumber, data))) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Returns the I/O error which stopped the writer, if any.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Writes the already queued messages and closes the file.
+     */
+    @Override
+    public void close() {
+        if (!open) return;
+        open = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //======================================================================================================
+    //                                          WRITER THREAD
+    //======================================================================================================
+
+    private void writerLoop() {
+        try {
+            while (true) {
+                var record = queue.poll();
+                if (record == null) {
+                    flushOutput();
+                    if (!open && queue.isEmpty()) break;
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                writeRecord(record);
+            }
+        } catch (IOException e) {
+            failure = e;
+            open = false;
+        } finally {
+            try {
+                flushOutput();
+            } catch (IOException ignored) {
+            }
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void writeRecord(Record record) throws IOException {
+        var direction = record.outgoing ? uplink : downlink;
+        int payloadLength = Math.min(record.data.length, MAX_PAYLOAD_SIZE);
+        int padding = (4 - payloadLength % 4) % 4;
+        int packetLength = PACKET_OVERHEAD + payloadLength + padding;
+        int recordLength = RECORD_HEADER_SIZE + packetLength;
+
+        if (fileSize + recordLength > rotationSize) {
+            flushOutput();
+            file.close();
+            fileIndex++;
+            openFile();
+        }
+        if (output.remaining() < recordLength) {
+            flushOutput();
+        }
+
+        long micros = epochMicrosBase + (record.nanoTime - nanoTimeBase) / 1000;
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        output.putInt((int) (micros / 1_000_000));
+        output.putInt((int) (micros % 1_000_000));
+        output.putInt(packetLength);
+        output.putInt(packetLength);
+        output.order(ByteOrder.BIG_ENDIAN);
+
+        // IPv4 header
+        int ipStart = output.position();
+        output.put((byte) 0x45);
+        output.put((byte) 0);
+        output.putShort((short) packetLength);
+        output.putShort((short) direction.nextIpId());
+        output.putShort((short) 0x4000); // Don't fragment
+        output.put((byte) 64);
+        output.put((byte) 132); // SCTP
+        output.putShort((short) 0);
+        output.put(direction.source.address);
+        output.put(direction.destination.address);
+        output.putShort(ipStart + 10, (short) ipChecksum(ipStart));
+
+        // SCTP common header
+        int sctpStart = output.position();
+        output.putShort((short) direction.source.port);
+        output.putShort((short) direction.destination.port);
+        output.putInt(direction.verificationTag);
+        output.putInt(0);
+
+        // DATA chunk, unfragmented
+        output.put((byte) 0);
+        output.put((byte) 0x03);
+        output.putShort((short) (DATA_CHUNK_HEADER_SIZE + payloadLength));
+        output.putInt(direction.nextTsn());
+        output.putShort((short) record.streamNumber);
+        output.putShort((short) direction.nextStreamSequence(record.streamNumber));
+        output.putInt(protocolId);
+        output.put(record.data, 0, payloadLength);
+        for (int i = 0; i < padding; i++) {
+            output.put((byte) 0);
+        }
+
+        // CRC32C is stored in little endian order, unlike the rest of the packet
+        var packet = output.duplicate();
+        packet.position(sctpStart);
+        packet.limit(output.position());
+        crc.reset();
+        crc.update(packet);
+        output.putInt(sctpStart + 8, Integer.reverseBytes((int) crc.getValue()));
+
+        fileSize += recordLength;
+        writtenCount.incrementAndGet();
+    }
+
+    private int ipChecksum(int start) {
+        int sum = 0;
+        for (int i = 0; i < IPV4_HEADER_SIZE; i += 2) {
+            sum += output.getShort(start + i) & 0xFFFF;
+        }
+        while ((sum >> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >> 16);
+        }
+        return ~sum & 0xFFFF;
+    }
+
+    private void openFile() throws IOException {
+        var filePath = path;
+        if (fileIndex > 0) {
+            var name = path.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            name = dot > 0
+                    ? name.substring(0, dot) + "." + fileIndex + name.substring(dot)
+                    : name + "." + fileIndex;
+            filePath = path.resolveSibling(name);
+        }
+        file = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        output.putInt(0xA1B2C3D4);
+        output.putShort((short) 2);
+        output.putShort((short) 4);
+        output.putInt(0);
+        output.putInt(0);
+        output.putInt(SNAPLEN);
+        output.putInt(LINKTYPE_IPV4);
+        output.order(ByteOrder.BIG_ENDIAN);
+        fileSize = GLOBAL_HEADER_SIZE;
+    }
+
+    private void flushOutput() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            file.write(output);
+        }
+        output.clear();
+    }
+
+    //======================================================================================================
+    //                                             OTHERS
+    //======================================================================================================
+
+    public static class Endpoint {
+        final byte[] address;
+        final int port;
+
+        public Endpoint(byte[] ipv4Address, int port) {
+            if (ipv4Address.length != 4) throw new IllegalArgumentException("IPv4 address expected");
+            this.address = ipv4Address.clone();
+            this.port = port;
+        }
+    }
+
+    private static class Direction {
+        final Endpoint source;
+        final Endpoint destination;
+        final int verificationTag;
+        final short[] streamSequences;
+        int tsn;
+        int ipId;
+
+        Direction(Endpoint source, Endpoint destination) {
+            this.source = source;
+            this.destination = destination;
+            // Arbitrary, only needs to be stable for the direction
+            this.verificationTag = (destination.port << 16) ^ source.port ^ 0x5EED0000;
+            this.streamSequences = new short[MAX_STREAM_COUNT];
+        }
+
+        int nextTsn() {
+            return tsn++;
+        }
+
+        int nextIpId() {
+            return ipId++;
+        }
+
+        int nextStreamSequence(int streamNumber) {
+            return streamSequences[streamNumber & 0xFFFF]++;
+        }
+    }
+
+    private static class Record {
+        final long nanoTime;
+        final boolean outgoing;
+        final int streamNumber;
+        final byte[] data;
+
+        Record(long nanoTime, boolean outgoing, int streamNumber, byte[] data) {
+            this.nanoTime = nanoTime;
+            this.outgoing = outgoing;
+            this.streamNumber = streamNumber;
+            this.data = data;
+        }
+    }
+}
@@ -28,40 +28,93 @@ package tr.havelsan.ueransim.sctp;
 
 import com.sun.nio.sctp.MessageInfo;
 import com.sun.nio.sctp.SctpChannel;
+import com.sun.nio.sctp.SctpStandardSocketOptions;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 public class SCTPClient implements ISCTPClient {
-    private static final int RECEIVER_BUFFER_SIZE = 1073741824;
+    private static final int MIN_RECEIVER_BUFFER_SIZE = 65536;
 
     private final String host;
     private final int port;
     private final int protocolId;
+    private final int streamCount;
+    private final int requestedBufferSize;
 
     private SctpChannel channel;
+    private int outboundStreams;
+    private StreamCounters streamCounters;
     private AssociationHandler associationHandler;
     private boolean receiving;
 
+    // Allocated once per association and reused for every received message.
+    private ByteBuffer receiveBuffer;
+    // Only used if a message does not fit into receiveBuffer and is delivered partially.
+    private ByteBuffer reassemblyBuffer;
+    // Read-only views handed to the handler, created once per buffer and positioned on each message.
+    private ByteBuffer receiveView;
+    private ByteBuffer reassemblyView;
+
     public SCTPClient(String host, int port, int protocolId) {
+        this(host, port, protocolId, SctpStreams.DEFAULT_STREAM_COUNT, 0);
+    }
+
+    /**
+     * @param streamCount       number of inbound and outbound streams requested on association setup
+     * @param receiveBufferSize size of the direct receive buffer, or 0 to use the socket receive buffer size
+     */
+    public SCTPClient(String host, int port, int protocolId, int streamCount, int receiveBufferSize) {
         this.host = host;
         this.port = port;
         this.protocolId = protocolId;
+        this.streamCount = streamCount;
+        this.requestedBufferSize = receiveBufferSize;
     }
 
     @Override
     public void start() throws Exception {
         if (this.channel != null) throw new RuntimeException("start was already called");
         var serverAddress = new InetSocketAddress(host, port);
-        this.channel = SctpChannel.open(serverAddress, 0, 0);
+        this.channel = SctpChannel.open();
+        this.channel.setOption(SctpStandardSocketOptions.SCTP_INIT_MAXSTREAMS, SctpStandardSocketOptions.InitMaxStreams.create(streamCount, streamCount));
+        this.channel.connect(serverAddress);
+
+        var association = channel.association();
+        this.outboundStreams = association.maxOutboundStreams();
+        this.streamCounters = new StreamCounters(outboundStreams, association.maxInboundStreams());
         this.associationHandler = new AssociationHandler();
+        this.receiveBuffer = ByteBuffer.allocateDirect(findReceiveBufferSize());
+        this.receiveView = receiveBuffer.asReadOnlyBuffer();
         this.receiving = true;
     }
 
+    private int findReceiveBufferSize() throws IOException {
+        if (requestedBufferSize > 0) {
+            return requestedBufferSize;
+        }
+        int size = channel.getOption(SctpStandardSocketOptions.SO_RCVBUF);
+        return Math.max(size, MIN_RECEIVER_BUFFER_SIZE);
+    }
+
     @Override
     public void send(int streamNumber, byte[] data) {
-        ByteBuffer outgoingBuffer = ByteBuffer.wrap(data);
+        send(streamNumber, ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(int streamNumber, ByteBuffer data) {
+        try {
+            send(streamNumber, data);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void send(int streamNumber, ByteBuffer outgoingBuffer) {
         MessageInfo outgoingMessage = MessageInfo.createOutgoing(null, streamNumber);
         outgoingMessage.payloadProtocolID(protocolId);
         try {
@@ -69,6 +122,7 @@ public class SCTPClient implements ISCTPClient {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        streamCounters.onSent(streamNumber);
     }
 
     @Override
@@ -77,16 +131,60 @@ public class SCTPClient implements ISCTPClient {
 
         MessageInfo messageInfo;
         while (receiving && channel.isOpen()) {
-            ByteBuffer incomingBuffer = ByteBuffer.allocate(RECEIVER_BUFFER_SIZE);
-            messageInfo = channel.receive(incomingBuffer, System.out, associationHandler);
+            receiveBuffer.clear();
+            messageInfo = channel.receive(receiveBuffer, System.out, associationHandler);
             if (messageInfo == null || messageInfo.bytes() == -1) break;
+            receiveBuffer.flip();
+
+            if (!messageInfo.isComplete()) {
+                appendPartial(receiveBuffer);
+                continue;
+            }
 
-            byte[] receivedBytes = new byte[messageInfo.bytes()];
-            for (int i = 0; i < receivedBytes.length; i++) {
-                receivedBytes[i] = incomingBuffer.get(i);
+            ByteBuffer message = receiveBuffer;
+            if (reassemblyBuffer != null && reassemblyBuffer.position() > 0) {
+                appendPartial(receiveBuffer);
+                reassemblyBuffer.flip();
+                message = reassemblyBuffer;
             }
-            handler.handleSCTPMessage(receivedBytes, messageInfo, channel);
+
+            streamCounters.onReceived(messageInfo.streamNumber());
+            handler.handleSCTPMessage(viewOf(message), messageInfo, channel);
+
+            if (message == reassemblyBuffer) {
+                reassemblyBuffer.clear();
+            }
+        }
+    }
+
+    // The handler may have moved the view, so both its position and its limit are set again
+    private ByteBuffer viewOf(ByteBuffer message) {
+        ByteBuffer view;
+        if (message == receiveBuffer) {
+            view = receiveView;
+        } else {
+            if (reassemblyView == null) {
+                reassemblyView = reassemblyBuffer.asReadOnlyBuffer();
+            }
+            view = reassemblyView;
+        }
+        view.clear();
+        view.limit(message.limit());
+        view.position(message.position());
+        return view;
+    }
+
+    private void appendPartial(ByteBuffer part) {
+        if (reassemblyBuffer == null) {
+            reassemblyBuffer = ByteBuffer.allocate(Math.max(part.capacity(), part.remaining()) * 2);
+        } else if (reassemblyBuffer.remaining() < part.remaining()) {
+            var grown = ByteBuffer.allocate((reassemblyBuffer.position() + part.remaining()) * 2);
+            reassemblyBuffer.flip();
+            grown.put(reassemblyBuffer);
+            reassemblyBuffer = grown;
+            reassemblyView = null;
         }
+        reassemblyBuffer.put(part);
     }
 
     @Override
@@ -103,6 +201,16 @@ public class SCTPClient implements ISCTPClient {
         receiving = false;
     }
 
+    @Override
+    public int getOutboundStreams() {
+        return outboundStreams;
+    }
+
+    @Override
+    public StreamCounters getStreamCounters() {
+        return streamCounters;
+    }
+
     @Override
     public boolean isOpen() {
         return channel.isOpen();
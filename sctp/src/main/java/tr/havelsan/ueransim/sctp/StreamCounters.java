@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-stream message counters of an association.
+ */
+public class StreamCounters {
+    private final AtomicLongArray sent;
+    private final AtomicLongArray received;
+
+    public StreamCounters(int outboundStreams, int inboundStreams) {
+        this.sent = new AtomicLongArray(Math.max(1, outboundStreams));
+        this.received = new AtomicLongArray(Math.max(1, inboundStreams));
+    }
+
+    public void onSent(int streamNumber) {
+        if (streamNumber >= 0 && streamNumber < sent.length()) {
+            sent.incrementAndGet(streamNumber);
+        }
+    }
+
+    public void onReceived(int streamNumber) {
+        if (streamNumber >= 0 && streamNumber < received.length()) {
+            received.incrementAndGet(streamNumber);
+        }
+    }
+
+    public long getSent(int streamNumber) {
+        return sent.get(streamNumber);
+    }
+
+    public long getReceived(int streamNumber) {
+        return received.get(streamNumber);
+    }
+
+    public int getOutboundStreams() {
+        return sent.length();
+    }
+
+    public int getInboundStreams() {
+        return received.length();
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        int count = Math.max(sent.length(), received.length());
+        for (int i = 0; i < count; i++) {
+            long s = i < sent.length() ? sent.get(i) : 0;
+            long r = i < received.length() ? received.get(i) : 0;
+            if (s == 0 && r == 0) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(i).append(": sent=").append(s).append(" received=").append(r);
+        }
+        return "StreamCounters{" + sb + "}";
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Client which carries SCTP messages over a TCP connection using {@link TcpFraming}, for hosts where kernel SCTP is
+ * not available. The threading model is the same as {@link NioSCTPClient}: all socket I/O is performed on a
+ * dedicated thread, and queued messages are written with gathering writes of up to {@link #MAX_BATCH} messages. The
+ * outbound queue and its backpressure are the same {@link OutboundQueue} as well.
+ * <p>
+ * There is no stream negotiation, the configured stream count is used as is. The {@link MessageInfo} given to the
+ * handlers only carries the stream number and the payload protocol identifier, and the channel is always null.
+ */
+public class TcpFramedClient implements ISCTPClient {
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    public static final int MAX_BATCH = 64;
+    private static final int RECEIVE_BUFFER_SIZE = 65536;
+    private static final long SEND_RETRY_NANOS = 50_000;
+
+    private final String host;
+    private final int port;
+    private final int protocolId;
+    private final int streamCount;
+
+    private final RingQueue<Incoming> inbound;
+    private final OutboundQueue<Outgoing> outbound;
+    private final Queue<Thread> parkedReceivers;
+    private final AtomicBoolean wakeupPending;
+    private final StreamCounters streamCounters;
+    private final MessageInfo[] incomingInfos;
+
+    private SocketChannel channel;
+    private Selector selector;
+    private SelectionKey selectionKey;
+    private Thread ioThread;
+
+    private volatile boolean open;
+    private volatile boolean receiving;
+    private volatile boolean readSuspended;
+    private volatile Exception failure;
+
+    // Only accessed by the I/O thread
+    private ByteBuffer receiveBuffer;
+    private final ByteBuffer[] batch;
+    private final Outgoing[] batchMessages;
+    private int batchSize;
+    private int batchDone;
+
+    public TcpFramedClient(String host, int port, int protocolId) {
+        this(host, port, protocolId, SctpStreams.DEFAULT_STREAM_COUNT, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public TcpFramedClient(String host, int port, int protocolId, int streamCount, int queueCapacity) {
+        if (streamCount < 1 || streamCount > TcpFraming.MAX_STREAM_COUNT) {
+            throw new IllegalArgumentException("invalid stream count: " + streamCount);
+        }
+        this.host = host;
+        this.port = port;
+        this.protocolId = protocolId;
+        this.streamCount = streamCount;
+        this.inbound = new RingQueue<>(queueCapacity);
+        this.outbound = new OutboundQueue<>(queueCapacity, NioSCTPClient.DEFAULT_LOW_WATERMARK,
+                NioSCTPClient.DEFAULT_HIGH_WATERMARK);
+        this.parkedReceivers = new ConcurrentLinkedQueue<>();
+        this.wakeupPending = new AtomicBoolean();
+        this.streamCounters = new StreamCounters(streamCount, streamCount);
+
+        this.incomingInfos = new MessageInfo[streamCount];
+        for (int i = 0; i < streamCount; i++) {
+            incomingInfos[i] = MessageInfo.createOutgoing(null, i);
+            incomingInfos[i].payloadProtocolID(protocolId);
+        }
+
+        this.batch = new ByteBuffer[MAX_BATCH * 2];
+        this.batchMessages = new Outgoing[MAX_BATCH];
+        for (int i = 0; i < MAX_BATCH; i++) {
+            batch[i * 2] = ByteBuffer.allocate(TcpFraming.HEADER_SIZE);
+        }
+    }
+
+    public void setWatermarks(long lowWatermark, long highWatermark) {
+        outbound.setWatermarks(lowWatermark, highWatermark);
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (this.channel != null) throw new RuntimeException("start was already called");
+        this.channel = SocketChannel.open();
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.channel.connect(new InetSocketAddress(host, port));
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.selectionKey = channel.register(selector, SelectionKey.OP_READ);
+        this.receiveBuffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+
+        this.open = true;
+        this.receiving = true;
+        this.ioThread = new Thread(this::ioLoop, "tcp-io-" + host + ":" + port);
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    @Override
+    public void send(int streamNumber, byte[] data) {
+        if (!open) throw new RuntimeException("channel is closed");
+        checkStream(streamNumber);
+        var outgoing = new Outgoing(streamNumber, ByteBuffer.wrap(data), null);
+        while (!outbound.offer(outgoing, data.length)) {
+            if (!open) throw new RuntimeException("channel is closed");
+            requestWakeup();
+            LockSupport.parkNanos(this, SEND_RETRY_NANOS);
+        }
+        requestWakeup();
+    }
+
+    /**
+     * Never blocks. The returned future fails with {@link RejectedExecutionException} if the outbound queue is full.
+     * The client turns unwritable before that, see {@link OutboundQueue}.
+     */
+    @Override
+    public CompletableFuture<Void> sendAsync(int streamNumber, ByteBuffer data) {
+        var future = new CompletableFuture<Void>();
+        if (!open) {
+            future.completeExceptionally(new IOException("channel is closed"));
+            return future;
+        }
+        try {
+            checkStream(streamNumber);
+        } catch (IllegalArgumentException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        int length = data.remaining();
+        if (!outbound.offer(new Outgoing(streamNumber, data, future), length)) {
+            future.completeExceptionally(new RejectedExecutionException("outbound queue is full"));
+            requestWakeup();
+            return future;
+        }
+        requestWakeup();
+        return future;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return outbound.isWritable();
+    }
+
+    @Override
+    public void setWritabilityListener(IWritabilityListener listener) {
+        outbound.setListener(listener);
+    }
+
+    public long getQueuedBytes() {
+        return outbound.getQueuedBytes();
+    }
+
+    @Override
+    public void receiverLoop(ISCTPHandler handler) throws Exception {
+        receiving = true;
+
+        var thread = Thread.currentThread();
+        while (receiving && open) {
+            var incoming = inbound.poll();
+            if (incoming == null) {
+                parkedReceivers.add(thread);
+                if (inbound.isEmpty() && receiving && open) {
+                    LockSupport.park(this);
+                }
+                parkedReceivers.remove(thread);
+                continue;
+            }
+            if (readSuspended) {
+                requestWakeup();
+            }
+            streamCounters.onReceived(incoming.info.streamNumber());
+            handler.handleSCTPMessage(incoming.data, incoming.info, null);
+        }
+
+        var failure = this.failure;
+        if (failure != null) throw failure;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        if (selector != null) selector.wakeup();
+        unparkReceivers();
+    }
+
+    @Override
+    public void abortReceiver() {
+        receiving = false;
+        unparkReceivers();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && channel.isOpen();
+    }
+
+    @Override
+    public int getOutboundStreams() {
+        return streamCount;
+    }
+
+    @Override
+    public StreamCounters getStreamCounters() {
+        return streamCounters;
+    }
+
+    //======================================================================================================
+    //                                           I/O THREAD
+    //======================================================================================================
+
+    private void ioLoop() {
+        try {
+            while (open) {
+                selector.select();
+                wakeupPending.set(false);
+                if (!open) break;
+
+                if (selectionKey.isValid() && selectionKey.isReadable()) {
+                    readMessages();
+                }
+                selector.selectedKeys().clear();
+
+                boolean blocked = writeMessages();
+
+                if (readSuspended && inbound.size() < inbound.capacity()) {
+                    readSuspended = false;
+                    // Frames may have been left in the buffer when reading was suspended.
+                    readMessages();
+                }
+                if (selectionKey.isValid()) {
+                    int ops = 0;
+                    if (!readSuspended) ops |= SelectionKey.OP_READ;
+                    if (blocked) ops |= SelectionKey.OP_WRITE;
+                    selectionKey.interestOps(ops);
+                }
+            }
+            // Flush whatever is left on local close, the connection may already be gone though.
+            try {
+                writeMessages();
+            } catch (IOException ignored) {
+            }
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            open = false;
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            failPendingSends();
+            unparkReceivers();
+        }
+    }
+
+    private void readMessages() throws IOException {
+        boolean received = false;
+        while (!readSuspended) {
+            int read = channel.read(receiveBuffer);
+
+            receiveBuffer.flip();
+            int before = inbound.size();
+            receiveBuffer = TcpFraming.decode(receiveBuffer, this::onFrame);
+            received |= inbound.size() != before;
+
+            if (read == -1) {
+                open = false;
+                break;
+            }
+            if (read == 0) break;
+        }
+        if (received) {
+            unparkReceivers();
+        }
+    }
+
+    private boolean onFrame(int streamNumber, int protocolId, byte[] data) {
+        MessageInfo info;
+        if (streamNumber < streamCount && protocolId == this.protocolId) {
+            info = incomingInfos[streamNumber];
+        } else {
+            info = MessageInfo.createOutgoing(null, streamNumber);
+            info.payloadProtocolID(protocolId);
+        }
+        // Cannot fail, this thread is the only producer and the capacity is checked below.
+        inbound.offer(new Incoming(data, info));
+        if (inbound.size() >= inbound.capacity()) {
+            readSuspended = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the socket send buffer is full and OP_WRITE must be awaited.
+     */
+    private boolean writeMessages() throws IOException {
+        while (true) {
+            if (batchDone == batchSize) {
+                fillBatch();
+                if (batchSize == 0) return false;
+            }
+
+            try {
+                channel.write(batch, batchDone * 2, (batchSize - batchDone) * 2);
+            } catch (IOException e) {
+                for (int i = batchDone; i < batchSize; i++) {
+                    var outgoing = batchMessages[i];
+                    batchMessages[i] = null;
+                    outbound.onDequeued(outgoing.length);
+                    if (outgoing.future != null) outgoing.future.completeExceptionally(e);
+                }
+                batchDone = batchSize = 0;
+                throw e;
+            }
+
+            while (batchDone < batchSize && !batch[batchDone * 2 + 1].hasRemaining()) {
+                var outgoing = batchMessages[batchDone];
+                batchMessages[batchDone] = null;
+                batch[batchDone * 2 + 1] = null;
+                batchDone++;
+                streamCounters.onSent(outgoing.streamNumber);
+                outbound.onDequeued(outgoing.length);
+                if (outgoing.future != null) outgoing.future.complete(null);
+            }
+            if (batchDone < batchSize) {
+                // Socket send buffer is full.
+                return true;
+            }
+        }
+    }
+
+    private void fillBatch() {
+        batchDone = 0;
+        batchSize = 0;
+        while (batchSize < MAX_BATCH) {
+            var outgoing = outbound.poll();
+            if (outgoing == null) break;
+
+            var header = batch[batchSize * 2];
+            header.clear();
+            TcpFraming.writeHeader(header, outgoing.length, outgoing.streamNumber, protocolId);
+            header.flip();
+            batch[batchSize * 2 + 1] = outgoing.data;
+            batchMessages[batchSize] = outgoing;
+            batchSize++;
+        }
+    }
+
+    private void failPendingSends() {
+        var exception = failure != null ? failure : new IOException("channel is closed");
+        for (int i = batchDone; i < batchSize; i++) {
+            var outgoing = batchMessages[i];
+            batchMessages[i] = null;
+            outbound.onDequeued(outgoing.length);
+            if (outgoing.future != null) outgoing.future.completeExceptionally(exception);
+        }
+        batchDone = batchSize = 0;
+
+        Outgoing outgoing;
+        while ((outgoing = outbound.poll()) != null) {
+            outbound.onDequeued(outgoing.length);
+            if (outgoing.future != null) outgoing.future.completeExceptionally(exception);
+        }
+    }
+
+    //======================================================================================================
+    //                                             OTHERS
+    //======================================================================================================
+
+    private void checkStream(int streamNumber) {
+        if (streamNumber < 0 || streamNumber >= streamCount) {
+            throw new IllegalArgumentException("invalid stream number: " + streamNumber);
+        }
+    }
+
+    private void requestWakeup() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            var selector = this.selector;
+            if (selector != null) selector.wakeup();
+        }
+    }
+
+    private void unparkReceivers() {
+        for (var thread : parkedReceivers) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static class Incoming {
+        final byte[] data;
+        final MessageInfo info;
+
+        Incoming(byte[] data, MessageInfo info) {
+            this.data = data;
+            this.info = info;
+        }
+    }
+
+    private static class Outgoing {
+        final int streamNumber;
+        final int length;
+        final ByteBuffer data;
+        final CompletableFuture<Void> future;
+
+        Outgoing(int streamNumber, ByteBuffer data, CompletableFuture<Void> future) {
+            this.streamNumber = streamNumber;
+            this.length = data.remaining();
+            this.data = data;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Server side of {@link TcpFramedClient}, to be used as a stand-in for the AMF endpoint by local emulators and tests.
+ * All connections are served by a single thread, on which the handler is called. Messages can be sent from any
+ * thread.
+ */
+public class TcpFramedServer {
+    private static final int RECEIVE_BUFFER_SIZE = 65536;
+    private static final int MAX_WRITE_BATCH = 128;
+
+    private final String host;
+    private final int port;
+    private final IServerHandler handler;
+    private final Queue<Connection> flushRequests;
+
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Thread serverThread;
+
+    private volatile boolean open;
+
+    public TcpFramedServer(String host, int port, IServerHandler handler) {
+        this.host = host;
+        this.port = port;
+        this.handler = handler;
+        this.flushRequests = new ConcurrentLinkedQueue<>();
+    }
+
+    public void start() throws IOException {
+        if (this.serverChannel != null) throw new RuntimeException("start was already called");
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(host, port));
+        this.serverChannel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.open = true;
+        this.serverThread = new Thread(this::serverLoop, "tcp-server-" + host + ":" + getLocalPort());
+        this.serverThread.setDaemon(true);
+        this.serverThread.start();
+    }
+
+    /**
+     * Returns the bound port, which is useful if the server was created with port 0.
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void close() {
+        open = false;
+        if (selector != null) selector.wakeup();
+    }
+
+    private void serverLoop() {
+        try {
+            while (open) {
+                selector.select();
+                if (!open) break;
+
+                for (var key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    var connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) connection.read();
+                        if (key.isValid() && key.isWritable()) connection.flush();
+                    } catch (Exception e) {
+                        connection.closeNow();
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                Connection connection;
+                while ((connection = flushRequests.poll()) != null) {
+                    try {
+                        connection.flush();
+                    } catch (IOException e) {
+                        connection.closeNow();
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+        } finally {
+            open = false;
+            for (var key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).closeNow();
+                }
+            }
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            var connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            handler.onConnected(connection);
+        }
+    }
+
+    public class Connection {
+        private final SocketChannel channel;
+        private final SocketAddress remoteAddress;
+        private final Queue<ByteBuffer> outbound;
+        private SelectionKey key;
+        private volatile boolean closeRequested;
+
+        // Only accessed by the server thread
+        private ByteBuffer receiveBuffer;
+        private final ByteBuffer[] writeBatch;
+        private int writeBatchSize;
+        private int writeBatchDone;
+        private boolean closed;
+
+        private Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remoteAddress = channel.getRemoteAddress();
+            this.outbound = new ConcurrentLinkedQueue<>();
+            this.receiveBuffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+            this.writeBatch = new ByteBuffer[MAX_WRITE_BATCH];
+        }
+
+        public SocketAddress getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * The array must not be modified after this call.
+         */
+        public void send(int streamNumber, int protocolId, byte[] data) {
+            if (streamNumber < 0 || streamNumber >= TcpFraming.MAX_STREAM_COUNT) {
+                throw new IllegalArgumentException("invalid stream number: " + streamNumber);
+            }
+            var header = ByteBuffer.allocate(TcpFraming.HEADER_SIZE);
+            TcpFraming.writeHeader(header, data.length, streamNumber, protocolId);
+            header.flip();
+
+            // Header and payload are added together, so that frames of different senders are not interleaved.
+            synchronized (outbound) {
+                outbound.add(header);
+                outbound.add(ByteBuffer.wrap(data));
+            }
+            flushRequests.add(this);
+            if (Thread.currentThread() != serverThread) {
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Closes the connection after the already queued messages are written.
+         */
+        public void close() {
+            closeRequested = true;
+            flushRequests.add(this);
+            selector.wakeup();
+        }
+
+        private void read() throws Exception {
+            while (true) {
+                int read = channel.read(receiveBuffer);
+                receiveBuffer.flip();
+                receiveBuffer = TcpFraming.decode(receiveBuffer, (streamNumber, protocolId, data) -> {
+                    try {
+                        handler.onMessage(this, streamNumber, protocolId, data);
+                    } catch (IOException | RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    return true;
+                });
+                if (read == -1) {
+                    closeNow();
+                    return;
+                }
+                if (read == 0) return;
+            }
+        }
+
+        private void flush() throws IOException {
+            if (closed) return;
+            while (true) {
+                if (writeBatchDone == writeBatchSize) {
+                    writeBatchDone = writeBatchSize = 0;
+                    ByteBuffer buffer;
+                    while (writeBatchSize < MAX_WRITE_BATCH && (buffer = outbound.poll()) != null) {
+                        writeBatch[writeBatchSize++] = buffer;
+                    }
+                    if (writeBatchSize == 0) {
+                        if (closeRequested) {
+                            closeNow();
+                            return;
+                        }
+                        key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+                }
+
+                channel.write(writeBatch, writeBatchDone, writeBatchSize - writeBatchDone);
+                while (writeBatchDone < writeBatchSize && !writeBatch[writeBatchDone].hasRemaining()) {
+                    writeBatch[writeBatchDone++] = null;
+                }
+                if (writeBatchDone < writeBatchSize) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        }
+
+        private void closeNow() {
+            if (closed) return;
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            handler.onDisconnected(this);
+        }
+    }
+
+    public interface IServerHandler {
+        default void onConnected(Connection connection) {
+        }
+
+        /**
+         * Called on the server thread.
+         */
+        void onMessage(Connection connection, int streamNumber, int protocolId, byte[] data) throws Exception;
+
+        default void onDisconnected(Connection connection) {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.sctp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Framing used to carry SCTP messages over a TCP connection. Every message is preceded by a 12-byte header:
+ * <pre>
+ *   0       4       6       8         12
+ *   +-------+-------+-------+---------+
+ *   | length| stream| flags |  PPID   |  payload (length bytes)
+ *   +-------+-------+-------+---------+
+ * </pre>
+ * All fields are unsigned and in network byte order. The length does not include the header, and flags are
+ * reserved and must be zero.
+ */
+public final class TcpFraming {
+    public static final int HEADER_SIZE = 12;
+    public static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+    public static final int MAX_STREAM_COUNT = 65536;
+
+    private TcpFraming() {
+    }
+
+    public static void writeHeader(ByteBuffer header, int length, int streamNumber, int protocolId) {
+        header.putInt(length);
+        header.putShort((short) streamNumber);
+        header.putShort((short) 0);
+        header.putInt(protocolId);
+    }
+
+    /**
+     * Decodes all complete frames in the given buffer, which must be in read mode. The buffer is compacted
+     * afterwards, so that it is in write mode and contains only the incomplete part of the next frame. If the buffer
+     * is too small for the next frame, a larger one containing the same bytes is returned instead.
+     *
+     * @return the buffer to read into next
+     */
+    public static ByteBuffer decode(ByteBuffer buffer, IFrameConsumer consumer) throws IOException {
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+                throw new IOException("invalid frame length: " + (length & 0xFFFFFFFFL));
+            }
+            if (buffer.remaining() < HEADER_SIZE + length) {
+                if (buffer.capacity() < HEADER_SIZE + length) {
+                    var grown = ByteBuffer.allocate(HEADER_SIZE + length);
+                    grown.put(buffer);
+                    return grown;
+                }
+                break;
+            }
+            int streamNumber = buffer.getShort(start + 4) & 0xFFFF;
+            int protocolId = buffer.getInt(start + 8);
+
+            byte[] data = new byte[length];
+            buffer.position(start + HEADER_SIZE);
+            buffer.get(data);
+            if (!consumer.onFrame(streamNumber, protocolId, data)) {
+                break;
+            }
+        }
+        buffer.compact();
+        return buffer;
+    }
+
+    public interface IFrameConsumer {
+        /**
+         * Returns false to stop decoding, the remaining frames are kept in the buffer.
+         */
+        boolean onFrame(int streamNumber, int protocolId, byte[] data) throws IOException;
+    }
+}
@@ -0,0 +1,165 @@
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+import com.sun.nio.sctp.SctpChannel;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Test_LoopbackTransport {
+
+    @Test
+    public void testEchoWithoutCopy() throws Exception {
+        var transport = new LoopbackTransport(60, 4);
+        var client = transport.getClient();
+        var server = transport.getServer();
+        client.start();
+        server.start();
+
+        var serverThread = new Thread(() -> {
+            try {
+                server.receiverLoop((receivedBytes, messageInfo, channel) ->
+                        server.send(messageInfo.streamNumber(), receivedBytes));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serverThread.start();
+
+        var sent = new byte[]{1, 2, 3};
+        var received = new AtomicReference<byte[]>();
+        var stream = new AtomicReference<Integer>();
+        var latch = new CountDownLatch(1);
+
+        var clientThread = new Thread(() -> {
+            try {
+                client.receiverLoop((receivedBytes, messageInfo, channel) -> {
+                    received.set(receivedBytes);
+                    stream.set(messageInfo.streamNumber());
+                    latch.countDown();
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        clientThread.start();
+
+        client.send(3, sent);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertSame(sent, received.get());
+        Assert.assertEquals(3, (int) stream.get());
+        Assert.assertEquals(1, client.getStreamCounters().getSent(3));
+        Assert.assertEquals(1, server.getStreamCounters().getReceived(3));
+
+        client.close();
+        clientThread.join(5000);
+        serverThread.join(5000);
+        Assert.assertFalse(clientThread.isAlive());
+        Assert.assertFalse(serverThread.isAlive());
+        Assert.assertFalse(server.isOpen());
+    }
+
+    @Test
+    public void testOneWayDelay() throws Exception {
+        long delay = TimeUnit.MILLISECONDS.toNanos(50);
+        var transport = new LoopbackTransport(60, 1, 16, delay);
+        var client = transport.getClient();
+        var server = transport.getServer();
+        client.start();
+        server.start();
+
+        var receivedAt = new long[1];
+        var serverThread = new Thread(() -> {
+            try {
+                server.receiverLoop(new ISCTPHandler() {
+                    @Override
+                    public void handleSCTPMessage(byte[] receivedBytes, MessageInfo messageInfo, SctpChannel channel) {
+                        throw new IllegalStateException("buffer was expected");
+                    }
+
+                    @Override
+                    public void handleSCTPMessage(ByteBuffer receivedBuffer, MessageInfo messageInfo, SctpChannel channel) {
+                        receivedAt[0] = System.nanoTime();
+                        server.abortReceiver();
+                    }
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serverThread.start();
+
+        long sentAt = System.nanoTime();
+        var future = client.sendAsync(0, ByteBuffer.allocateDirect(8));
+        Assert.assertTrue(future.isDone());
+
+        serverThread.join(5000);
+        Assert.assertFalse(serverThread.isAlive());
+        Assert.assertTrue(receivedAt[0] - sentAt >= delay);
+    }
+
+    @Test
+    public void testScheduledDelivery() throws Exception {
+        var delays = new CopyOnWriteArrayList<Long>();
+        var tasks = new CopyOnWriteArrayList<Runnable>();
+        IEventScheduler scheduler = (delayNanos, task) -> {
+            delays.add(delayNanos);
+            tasks.add(task);
+        };
+
+        var transport = new LoopbackTransport(60, 2, 16, 1000, scheduler);
+        var client = transport.getClient();
+        var server = transport.getServer();
+        client.start();
+        server.start();
+
+        // Sent before the receiver runs, so it is kept until then.
+        client.send(1, new byte[]{1});
+        Assert.assertEquals(1, tasks.size());
+        Assert.assertEquals(1000, (long) delays.get(0));
+        tasks.get(0).run();
+
+        var received = new ArrayList<byte[]>();
+        var serverThread = new Thread(() -> {
+            try {
+                server.receiverLoop((receivedBytes, messageInfo, channel) -> received.add(receivedBytes));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serverThread.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (tasks.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(2, tasks.size());
+        Assert.assertEquals(0, (long) delays.get(1));
+        Assert.assertTrue(received.isEmpty());
+
+        // Messages are only handed over by the scheduler's tasks, on the thread running them.
+        client.send(0, new byte[]{2});
+        tasks.get(1).run();
+        tasks.get(2).run();
+        Assert.assertEquals(2, received.size());
+        Assert.assertEquals(1, received.get(0)[0]);
+        Assert.assertEquals(2, received.get(1)[0]);
+        Assert.assertEquals(1, server.getStreamCounters().getReceived(1));
+
+        server.abortReceiver();
+        serverThread.join(5000);
+        Assert.assertFalse(serverThread.isAlive());
+    }
+
+    @Test
+    public void testInvalidStream() {
+        var transport = new LoopbackTransport(60, 2);
+        Assert.assertTrue(transport.getClient().sendAsync(2, ByteBuffer.allocate(1)).isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,68 @@
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.SctpChannel;
+import com.sun.nio.sctp.SctpServerChannel;
+import org.junit.Assert;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skipped if the host does not support SCTP.
+ */
+public class Test_NioSCTPClient {
+
+    @Test
+    public void testUnwritableBeforeRejection() throws Exception {
+        SctpServerChannel server;
+        try {
+            server = SctpServerChannel.open();
+        } catch (UnsupportedOperationException e) {
+            Assumptions.assumeTrue(false, "SCTP is not supported on this host");
+            return;
+        }
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        int port = ((InetSocketAddress) server.getAllLocalAddresses().iterator().next()).getPort();
+
+        // The peer never reads, so the socket buffers and then the outbound queue fill up.
+        var client = new NioSCTPClient("127.0.0.1", port, 60, 1, 64);
+        var changes = new CopyOnWriteArrayList<Boolean>();
+        client.setWritabilityListener(changes::add);
+        client.start();
+        SctpChannel peer = server.accept();
+
+        CompletableFuture<Void> rejected = null;
+        boolean writableAtRejection = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            boolean writable = client.isWritable();
+            var future = client.sendAsync(0, ByteBuffer.allocate(1024));
+            if (future.isCompletedExceptionally()) {
+                rejected = future;
+                writableAtRejection = writable;
+                break;
+            }
+        }
+
+        Assert.assertNotNull(rejected);
+        Assert.assertFalse(writableAtRejection);
+        Assert.assertFalse(changes.isEmpty());
+        Assert.assertFalse(changes.get(0));
+        try {
+            rejected.join();
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        client.close();
+        peer.close();
+        server.close();
+    }
+}
@@ -0,0 +1,83 @@
+package tr.havelsan.ueransim.sctp;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+public class Test_OutboundQueue {
+
+    @Test
+    public void testUnwritableBeforeRejection() {
+        // The byte watermarks are never reached, only the message count can make the queue unwritable.
+        var queue = new OutboundQueue<Integer>(8, 1 << 20, 1 << 30);
+        var changes = new ArrayList<Boolean>();
+        queue.setListener(changes::add);
+
+        int offered = 0;
+        while (queue.offer(offered, 100)) {
+            offered++;
+            if (offered < 6) {
+                Assert.assertTrue(queue.isWritable());
+            }
+        }
+        Assert.assertEquals(8, offered);
+        Assert.assertFalse(queue.isWritable());
+        Assert.assertEquals(1, changes.size());
+        Assert.assertFalse(changes.get(0));
+
+        // A rejected offer is not counted.
+        Assert.assertEquals(8, queue.getQueuedMessages());
+        Assert.assertEquals(800, queue.getQueuedBytes());
+
+        // Polling alone does not count, the messages are queued until they are written.
+        for (int i = 0; i < 8; i++) {
+            Assert.assertEquals(i, (int) queue.poll());
+        }
+        Assert.assertFalse(queue.isWritable());
+        for (int i = 0; i < 5; i++) {
+            queue.onDequeued(100);
+            Assert.assertFalse(queue.isWritable());
+        }
+        queue.onDequeued(100);
+        Assert.assertTrue(queue.isWritable());
+        Assert.assertEquals(2, queue.getQueuedMessages());
+        Assert.assertEquals(2, changes.size());
+        Assert.assertTrue(changes.get(1));
+    }
+
+    @Test
+    public void testByteWatermarks() {
+        var queue = new OutboundQueue<Integer>(1024, 100, 1000);
+        var changes = new ArrayList<Boolean>();
+        queue.setListener(changes::add);
+
+        for (int i = 0; i < 9; i++) {
+            Assert.assertTrue(queue.offer(i, 100));
+            Assert.assertTrue(queue.isWritable());
+        }
+        Assert.assertTrue(queue.offer(9, 100));
+        Assert.assertFalse(queue.isWritable());
+
+        for (int i = 0; i < 8; i++) {
+            queue.poll();
+            queue.onDequeued(100);
+            Assert.assertFalse(queue.isWritable());
+        }
+        queue.poll();
+        queue.onDequeued(100);
+        Assert.assertTrue(queue.isWritable());
+        Assert.assertEquals(100, queue.getQueuedBytes());
+        Assert.assertEquals(2, changes.size());
+    }
+
+    @Test
+    public void testInvalidWatermarks() {
+        var queue = new OutboundQueue<Integer>(8, 1, 2);
+        try {
+            queue.setWatermarks(2, 2);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package tr.havelsan.ueransim.sctp;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+public class Test_PcapWriter {
+
+    @Test
+    public void testPacketsAndRotation() throws Exception {
+        var dir = Files.createTempDirectory("pcap");
+        var local = new PcapWriter.Endpoint(new byte[]{127, 0, 0, 1}, 38412);
+        var remote = new PcapWriter.Endpoint(new byte[]{127, 0, 0, 2}, 38412);
+        var writer = new PcapWriter(dir.resolve("ngap.pcap").toString(), 70_000, 16, local, remote, 60);
+
+        writer.write(true, 3, new byte[]{1, 2, 3, 4, 5});
+        writer.write(false, 0, new byte[40_000]);
+        writer.write(true, 3, new byte[40_000]);
+        writer.close();
+
+        Assert.assertEquals(3, writer.getWrittenCount());
+        Assert.assertEquals(0, writer.getDroppedCount());
+        Assert.assertNull(writer.getFailure());
+
+        var first = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("ngap.pcap"))).order(ByteOrder.LITTLE_ENDIAN);
+        var second = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("ngap.1.pcap"))).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(0xA1B2C3D4, first.getInt(0));
+        Assert.assertEquals(228, first.getInt(20));
+        Assert.assertEquals(0xA1B2C3D4, second.getInt(0));
+
+        // First record: 20 byte IPv4, 12 byte SCTP, 16 byte DATA chunk header and 5 bytes of payload padded to 8.
+        int packetLength = first.getInt(24 + 8);
+        Assert.assertEquals(56, packetLength);
+        var packet = ByteBuffer.wrap(first.array(), 40, packetLength).slice();
+        Assert.assertEquals(132, packet.get(9) & 0xFF);
+        Assert.assertEquals(127, packet.get(12));
+        Assert.assertEquals(2, packet.get(19));
+        Assert.assertEquals(0, packet.get(32));
+        Assert.assertEquals(21, packet.getShort(34));
+        Assert.assertEquals(3, packet.getShort(40));
+        Assert.assertEquals(60, packet.getInt(44));
+        Assert.assertEquals(5, packet.get(52));
+
+        var sctp = new byte[packetLength - 20];
+        packet.position(20);
+        packet.get(sctp);
+        int checksum = ByteBuffer.wrap(sctp, 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        sctp[8] = sctp[9] = sctp[10] = sctp[11] = 0;
+        var crc = new CRC32C();
+        crc.update(sctp);
+        Assert.assertEquals((int) crc.getValue(), checksum);
+
+        // Two records fit in the first file, the third one is rotated.
+        Assert.assertEquals(24 + 16 + 56 + 16 + 40_048, first.capacity());
+        Assert.assertEquals(24 + 16 + 40_048, second.capacity());
+    }
+
+    @Test
+    public void testReadBack() throws Exception {
+        var file = Files.createTempFile("ngap", ".pcap");
+        var local = new PcapWriter.Endpoint(new byte[]{127, 0, 0, 1}, 38412);
+        var remote = new PcapWriter.Endpoint(new byte[]{127, 0, 0, 2}, 38412);
+        var writer = new PcapWriter(file.toString(), PcapWriter.DEFAULT_ROTATION_SIZE, 16, local, remote, 60);
+        writer.write(true, 1, new byte[]{1, 2, 3});
+        writer.write(false, 2, new byte[]{4, 5, 6, 7});
+        writer.close();
+
+        var sources = new ArrayList<Byte>();
+        var streams = new ArrayList<Integer>();
+        var messages = new ArrayList<byte[]>();
+        var reader = new PcapReader(file.toString());
+        reader.read((timestampMicros, sourceAddress, streamNumber, protocolId, data) -> {
+            Assert.assertEquals(60, protocolId);
+            sources.add(sourceAddress[3]);
+            streams.add(streamNumber);
+            messages.add(data);
+        });
+
+        Assert.assertEquals(2, messages.size());
+        Assert.assertEquals(Arrays.asList((byte) 1, (byte) 2), sources);
+        Assert.assertEquals(Arrays.asList(1, 2), streams);
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, messages.get(0));
+        Assert.assertArrayEquals(new byte[]{4, 5, 6, 7}, messages.get(1));
+        Assert.assertEquals(0, reader.getSkippedCount());
+    }
+}
@@ -0,0 +1,64 @@
+package tr.havelsan.ueransim.sctp;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Test_RingQueue {
+
+    @Test
+    public void testCapacity() {
+        var queue = new RingQueue<Integer>(5);
+        Assert.assertEquals(8, queue.capacity());
+        for (int i = 0; i < 8; i++) {
+            Assert.assertTrue(queue.offer(i));
+        }
+        Assert.assertFalse(queue.offer(8));
+        Assert.assertEquals(8, queue.size());
+        for (int i = 0; i < 8; i++) {
+            Assert.assertEquals(i, (int) queue.poll());
+        }
+        Assert.assertNull(queue.poll());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 200000;
+
+        var queue = new RingQueue<Long>(1024);
+        var sum = new AtomicLong();
+        var count = new AtomicLong();
+
+        var threads = new Thread[producers + consumers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    while (!queue.offer(i)) Thread.onSpinWait();
+                }
+            });
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads[producers + c] = new Thread(() -> {
+                while (count.get() < (long) producers * perProducer) {
+                    var item = queue.poll();
+                    if (item == null) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    sum.addAndGet(item);
+                    count.incrementAndGet();
+                }
+            });
+        }
+        for (var thread : threads) thread.start();
+        for (var thread : threads) thread.join();
+
+        long expected = (long) producers * perProducer * (perProducer + 1) / 2;
+        Assert.assertEquals(expected, sum.get());
+        Assert.assertTrue(queue.isEmpty());
+    }
+}
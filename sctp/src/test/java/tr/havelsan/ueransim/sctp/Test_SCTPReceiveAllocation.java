@@ -0,0 +1,117 @@
+package tr.havelsan.ueransim.sctp;
+
+import com.sun.nio.sctp.MessageInfo;
+import com.sun.nio.sctp.SctpChannel;
+import com.sun.nio.sctp.SctpServerChannel;
+import org.junit.Assert;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Micro benchmark for the receive path of {@link SCTPClient}. Prints the number of bytes allocated by the receiver
+ * thread per received message. Skipped if the host does not support SCTP.
+ */
+public class Test_SCTPReceiveAllocation {
+
+    private static final int WARMUP_COUNT = 20000;
+    private static final int MEASURE_COUNT = 100000;
+    private static final int MESSAGE_SIZE = 256;
+
+    @Test
+    public void testBufferHandler() throws Exception {
+        double perMessage = measure(new ISCTPHandler() {
+            long checksum;
+
+            @Override
+            public void handleSCTPMessage(byte[] receivedBytes, MessageInfo messageInfo, SctpChannel channel) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void handleSCTPMessage(ByteBuffer receivedBuffer, MessageInfo messageInfo, SctpChannel channel) {
+                checksum += receivedBuffer.get(receivedBuffer.limit() - 1);
+            }
+        });
+        System.out.printf("SCTPClient ByteBuffer handler: %.1f bytes allocated per message%n", perMessage);
+        Assert.assertTrue(perMessage < MESSAGE_SIZE);
+    }
+
+    @Test
+    public void testArrayHandler() throws Exception {
+        double perMessage = measure((receivedBytes, messageInfo, channel) -> {
+            if (receivedBytes.length != MESSAGE_SIZE) throw new IllegalStateException();
+        });
+        System.out.printf("SCTPClient byte[] handler: %.1f bytes allocated per message%n", perMessage);
+        Assert.assertTrue(perMessage < 4 * MESSAGE_SIZE);
+    }
+
+    private static double measure(ISCTPHandler handler) throws Exception {
+        SctpServerChannel server;
+        try {
+            server = SctpServerChannel.open();
+        } catch (UnsupportedOperationException e) {
+            Assumptions.assumeTrue(false, "SCTP is not supported on this host");
+            return 0;
+        }
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        int port = ((InetSocketAddress) server.getAllLocalAddresses().iterator().next()).getPort();
+
+        var sender = new Thread(() -> {
+            try (var channel = server.accept()) {
+                var buffer = ByteBuffer.allocateDirect(MESSAGE_SIZE);
+                var info = MessageInfo.createOutgoing(null, 0);
+                info.payloadProtocolID(60);
+                for (int i = 0; i < WARMUP_COUNT + MEASURE_COUNT + 1; i++) {
+                    buffer.clear();
+                    channel.send(buffer, info);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var client = new SCTPClient("127.0.0.1", port, 60);
+        client.start();
+        sender.start();
+
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long[] allocated = new long[2];
+
+        client.receiverLoop(new ISCTPHandler() {
+            int count;
+
+            @Override
+            public void handleSCTPMessage(byte[] receivedBytes, MessageInfo messageInfo, SctpChannel channel) throws Exception {
+                handler.handleSCTPMessage(receivedBytes, messageInfo, channel);
+                onMessage();
+            }
+
+            @Override
+            public void handleSCTPMessage(ByteBuffer receivedBuffer, MessageInfo messageInfo, SctpChannel channel) throws Exception {
+                handler.handleSCTPMessage(receivedBuffer, messageInfo, channel);
+                onMessage();
+            }
+
+            private void onMessage() {
+                count++;
+                if (count == WARMUP_COUNT) {
+                    allocated[0] = threadBean.getThreadAllocatedBytes(threadId);
+                } else if (count == WARMUP_COUNT + MEASURE_COUNT) {
+                    allocated[1] = threadBean.getThreadAllocatedBytes(threadId);
+                    client.abortReceiver();
+                }
+            }
+        });
+
+        client.close();
+        sender.join();
+        server.close();
+
+        return (double) (allocated[1] - allocated[0]) / MEASURE_COUNT;
+    }
+}
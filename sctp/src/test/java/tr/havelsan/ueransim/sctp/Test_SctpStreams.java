@@ -0,0 +1,33 @@
+package tr.havelsan.ueransim.sctp;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class Test_SctpStreams {
+
+    @Test
+    public void testSingleStream() {
+        Assert.assertEquals(SctpStreams.NON_UE_STREAM, SctpStreams.forUe(1000, 1));
+        Assert.assertEquals(SctpStreams.NON_UE_STREAM, SctpStreams.forUe(1000, 0));
+    }
+
+    @Test
+    public void testDistribution() {
+        final int streams = 16;
+        final int ueCount = 160000;
+
+        var counts = new int[streams];
+        for (long id = 0; id < ueCount; id++) {
+            int stream = SctpStreams.forUe(id, streams);
+            Assert.assertTrue(stream >= 1 && stream < streams);
+            Assert.assertEquals(stream, SctpStreams.forUe(id, streams));
+            counts[stream]++;
+        }
+
+        Assert.assertEquals(0, counts[SctpStreams.NON_UE_STREAM]);
+        int expected = ueCount / (streams - 1);
+        for (int i = 1; i < streams; i++) {
+            Assert.assertTrue(Math.abs(counts[i] - expected) < expected / 10);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package tr.havelsan.ueransim.sctp;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Test_TcpFramedClient {
+
+    @Test
+    public void testDecodePartialAndLargeFrames() throws Exception {
+        var small = new byte[]{1, 2, 3};
+        var large = new byte[100];
+        var wire = ByteBuffer.allocate(2 * TcpFraming.HEADER_SIZE + small.length + large.length);
+        TcpFraming.writeHeader(wire, small.length, 5, 60);
+        wire.put(small);
+        TcpFraming.writeHeader(wire, large.length, 65535, 60);
+        wire.put(large);
+        wire.flip();
+
+        var frames = new ArrayList<byte[]>();
+        var streams = new ArrayList<Integer>();
+        TcpFraming.IFrameConsumer consumer = (streamNumber, protocolId, data) -> {
+            Assert.assertEquals(60, protocolId);
+            streams.add(streamNumber);
+            frames.add(data);
+            return true;
+        };
+
+        // Feed the bytes one at a time into a buffer which is too small for the second frame.
+        var buffer = ByteBuffer.allocate(32);
+        while (wire.hasRemaining()) {
+            buffer.put(wire.get());
+            buffer.flip();
+            buffer = TcpFraming.decode(buffer, consumer);
+        }
+
+        Assert.assertEquals(2, frames.size());
+        Assert.assertArrayEquals(small, frames.get(0));
+        Assert.assertArrayEquals(large, frames.get(1));
+        Assert.assertEquals(5, (int) streams.get(0));
+        Assert.assertEquals(65535, (int) streams.get(1));
+        Assert.assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testEcho() throws Exception {
+        final int count = 10000;
+
+        var server = new TcpFramedServer("127.0.0.1", 0, (connection, streamNumber, protocolId, data) ->
+                connection.send(streamNumber, protocolId, data));
+        server.start();
+
+        var client = new TcpFramedClient("127.0.0.1", server.getLocalPort(), 60, 4, 1024);
+        client.start();
+
+        var latch = new CountDownLatch(count);
+        var sum = new AtomicLong();
+        var receiver = new Thread(() -> {
+            try {
+                client.receiverLoop((receivedBytes, messageInfo, channel) -> {
+                    Assert.assertEquals(60, messageInfo.payloadProtocolID());
+                    Assert.assertEquals(receivedBytes[0] % 4, messageInfo.streamNumber());
+                    sum.addAndGet(ByteBuffer.wrap(receivedBytes).getInt(1));
+                    latch.countDown();
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        receiver.start();
+
+        for (int i = 0; i < count; i++) {
+            var data = ByteBuffer.allocate(5);
+            data.put((byte) (i % 4));
+            data.putInt(i);
+            if (i % 2 == 0) {
+                client.send(i % 4, data.array());
+            } else {
+                data.flip();
+                while (client.sendAsync(i % 4, data).isCompletedExceptionally()) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals((long) count * (count - 1) / 2, sum.get());
+        Assert.assertEquals(count / 4, client.getStreamCounters().getReceived(1));
+
+        client.close();
+        receiver.join(5000);
+        Assert.assertFalse(receiver.isAlive());
+        server.close();
+    }
+
+    @Test
+    public void testUnwritableBeforeRejection() throws Exception {
+        var server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+
+        // The peer never reads, so the socket buffers and then the outbound queue fill up.
+        var client = new TcpFramedClient("127.0.0.1", port, 60, 1, 64);
+        var changes = new CopyOnWriteArrayList<Boolean>();
+        client.setWritabilityListener(changes::add);
+        client.start();
+        var peer = server.accept();
+
+        CompletableFuture<Void> rejected = null;
+        boolean writableAtRejection = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            boolean writable = client.isWritable();
+            var future = client.sendAsync(0, ByteBuffer.allocate(1024));
+            if (future.isCompletedExceptionally()) {
+                rejected = future;
+                writableAtRejection = writable;
+                break;
+            }
+        }
+
+        Assert.assertNotNull(rejected);
+        Assert.assertFalse(writableAtRejection);
+        Assert.assertFalse(changes.isEmpty());
+        Assert.assertFalse(changes.get(0));
+        try {
+            rejected.join();
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        client.close();
+        peer.close();
+        server.close();
+    }
+}
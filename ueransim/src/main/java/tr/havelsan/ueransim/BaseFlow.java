@@ -29,21 +29,65 @@ package tr.havelsan.ueransim;
 import com.sun.nio.sctp.MessageInfo;
 import com.sun.nio.sctp.SctpChannel;
 import tr.havelsan.ueransim.api.Messaging;
+import tr.havelsan.ueransim.core.EventLoop;
 import tr.havelsan.ueransim.core.IMessageListener;
+import tr.havelsan.ueransim.core.NasTimer;
 import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.core.UeTransport;
 import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.concurrent.TimeUnit;
 
 public abstract class BaseFlow implements IMessageListener {
     protected final SimulationContext ctx;
     private boolean started;
+    private boolean finished;
     private State currentState;
 
+    // Only set in event driven mode
+    private EventLoop eventLoop;
+    private IFinishListener onFinished;
+
+    // Registered on the UE, so that the flow receives the messages which are routed to it, see UeDispatcher
+    private final IMessageListener procedure = new IMessageListener() {
+        @Override
+        public void onReceive(IncomingMessage incomingMessage) {
+            accept(incomingMessage);
+            BaseFlow.this.onReceive(incomingMessage);
+        }
+
+        @Override
+        public void onSent(OutgoingMessage outgoingMessage) {
+            BaseFlow.this.onSent(outgoingMessage);
+        }
+
+        @Override
+        public void onTimerExpiry(NasTimer timer) {
+            BaseFlow.this.onTimerExpiry(timer);
+        }
+
+        @Override
+        public int getPduSessionId() {
+            return BaseFlow.this.getPduSessionId();
+        }
+
+        @Override
+        public int getProcedureTransactionId() {
+            return BaseFlow.this.getProcedureTransactionId();
+        }
+    };
+
     //======================================================================================================
     //                                          CONSTRUCTORS
     //======================================================================================================
 
     public BaseFlow(SimulationContext simContext) {
         this.ctx = simContext;
+        // The UE becomes active with its first flow, a parked UE is loaded back from its store
+        simContext.ensureUeData();
+        simContext.unpark();
     }
 
     //======================================================================================================
@@ -55,37 +99,61 @@ public abstract class BaseFlow implements IMessageListener {
         Messaging.send(ctx, sendingMessage);
     }
 
+    // Only depends on the UE, it is kept as the handler of the UE while any of its flows is running.
     private void receive(NGAP_PDU ngapPdu) {
         var incomingMessage = Messaging.handleIncomingMessage(ctx, ngapPdu);
         FlowLogging.logReceivedMessage(incomingMessage);
+        ctx.dispatchMessageReceive(incomingMessage);
+    }
+
+    private void accept(IncomingMessage incomingMessage) {
         try {
             this.currentState = this.currentState.accept(incomingMessage);
         } catch (FlowFailedException exception) {
             this.currentState = flowFailed(exception.getMessage());
+        } catch (Exception exception) {
+            this.currentState = flowFailed(exception.toString());
         }
-        ctx.dispatchMessageReceive(incomingMessage);
     }
 
     //======================================================================================================
     //                                            GENERAL
     //======================================================================================================
 
+    /**
+     * Runs the flow on the calling thread, which receives the messages of the UE until the flow completes or fails.
+     * <p>
+     * Only one flow may run on a UE in this mode, since the thread of the first flow to finish would otherwise keep
+     * receiving for the others. Flows which overlap on a UE must be event driven, see
+     * {@link #start(EventLoop, IFinishListener)}.
+     */
     public final void start() throws Exception {
         if (started) throw new RuntimeException("already started");
+        if (ctx.hasListeners())
+            throw new RuntimeException("another flow is running on the UE, overlapping flows must be event driven");
         this.started = true;
 
-        ctx.registerListener(this);
-
-        boolean mainStepFailed = false;
+        ctx.registerListener(procedure);
         try {
-            this.currentState = main(null);
-        } catch (FlowFailedException exception) {
-            this.currentState = flowFailed(exception.getMessage());
-            mainStepFailed = true;
-        }
+            boolean mainStepFailed = false;
+            try {
+                this.currentState = main(null);
+            } catch (FlowFailedException exception) {
+                this.currentState = flowFailed(exception.getMessage());
+                mainStepFailed = true;
+            }
 
-        if (!mainStepFailed) {
-            this.ctx.sctpClient.receiverLoop(this::receiveSctpData);
+            if (!mainStepFailed) {
+                if (ctx.sctpClient instanceof UeTransport) {
+                    // Messages are already decoded by the gNB
+                    ((UeTransport) ctx.sctpClient).pduLoop(this::receive);
+                } else {
+                    this.ctx.sctpClient.receiverLoop(this::receiveSctpData);
+                }
+            }
+        } finally {
+            // The flow may also end with an exception or because the connection is closed, the UE is free afterwards
+            ctx.unregisterListener(procedure);
         }
     }
 
@@ -93,6 +161,98 @@ public abstract class BaseFlow implements IMessageListener {
         receive(Ngap.perDecode(NGAP_PDU.class, receivedBytes));
     }
 
+    /**
+     * Starts the flow in event driven mode and returns immediately. The states of the flow are run on the event loop
+     * when a message is received for the UE, a scheduled event expires or an event is posted, so no thread is
+     * blocked while the flow waits. The callback is run on the event loop after the flow completes or fails, it is
+     * told which of the two happened.
+     * <p>
+     * The UE must belong to a gNB, see {@link tr.havelsan.ueransim.core.GnbContext#createUe}. Several flows may run
+     * on the same UE at the same time if they are started on the same event loop, the messages of the UE are routed
+     * among them by the {@link tr.havelsan.ueransim.core.UeDispatcher}. They may not overlap with a blocking flow,
+     * see {@link #start()}.
+     */
+    public final void start(EventLoop eventLoop, IFinishListener onFinished) {
+        if (started) throw new RuntimeException("already started");
+        if (!(ctx.sctpClient instanceof UeTransport))
+            throw new RuntimeException("event driven flows require a UE of a gNB");
+        // A blocking flow is running if the UE has listeners but its messages are not handed to an event loop
+        if (ctx.hasListeners() && !((UeTransport) ctx.sctpClient).isAttached())
+            throw new RuntimeException("a blocking flow is running on the UE");
+        this.started = true;
+        this.eventLoop = eventLoop;
+        this.onFinished = onFinished;
+
+        eventLoop.execute(() -> {
+            // Attached first, so that the UE is never seen with listeners and without an event loop
+            var transport = (UeTransport) ctx.sctpClient;
+            if (!transport.isAttached()) {
+                transport.attach(eventLoop, this::receive);
+            }
+            ctx.registerListener(procedure);
+
+            try {
+                this.currentState = main(null);
+            } catch (FlowFailedException exception) {
+                this.currentState = flowFailed(exception.getMessage());
+            } catch (Exception exception) {
+                this.currentState = flowFailed(exception.toString());
+            }
+        });
+    }
+
+    /**
+     * Starts the flow in event driven mode, the callback is run whether the flow completes or fails.
+     */
+    public final void start(EventLoop eventLoop, Runnable onFinished) {
+        start(eventLoop, completed -> onFinished.run());
+    }
+
+    /**
+     * Delivers the event, e.g. a user command, to the current state on the event loop. The state reads it with
+     * {@link IncomingMessage#getEvent(Class)}.
+     */
+    public final void post(Object event) {
+        if (eventLoop == null) throw new RuntimeException("events are only supported in event driven mode");
+        eventLoop.execute(() -> fire(event));
+    }
+
+    /**
+     * Delivers the event to the current state after the given delay, unless the returned timer is cancelled.
+     */
+    protected final EventLoop.Timer postDelayed(Object event, long delayMillis) {
+        if (eventLoop == null) throw new RuntimeException("events are only supported in event driven mode");
+        return eventLoop.schedule(TimeUnit.MILLISECONDS.toNanos(delayMillis), () -> fire(event));
+    }
+
+    /**
+     * In event driven mode, the expired timer is delivered to the current state as an event. Blocking flows are not
+     * interrupted, the expiry is only logged.
+     */
+    @Override
+    public void onTimerExpiry(NasTimer timer) {
+        if (eventLoop != null) {
+            post(timer);
+        } else {
+            Logging.debug(Tag.FLOWS, "%s expired while %s is running", timer, getClass().getSimpleName());
+        }
+    }
+
+    private void fire(Object event) {
+        if (finished) return;
+        try {
+            this.currentState = this.currentState.accept(new IncomingMessage(event));
+        } catch (FlowFailedException exception) {
+            this.currentState = flowFailed(exception.getMessage());
+        } catch (Exception exception) {
+            this.currentState = flowFailed(exception.toString());
+        }
+    }
+
+    public final boolean isFinished() {
+        return finished;
+    }
+
     //======================================================================================================
     //                                             STATES
     //======================================================================================================
@@ -103,17 +263,33 @@ public abstract class BaseFlow implements IMessageListener {
 
     public final State flowComplete() {
         FlowLogging.logFlowComplete(this);
-        return abortFlow();
+        return finish(true);
     }
 
     public final State flowFailed(String errorMessage) {
         FlowLogging.logFlowFailed(this, errorMessage);
-        return abortFlow();
+        return finish(false);
     }
 
+    /**
+     * Ends the flow without logging, it does not count as completed.
+     */
     public final State abortFlow() {
-        ctx.unregisterListener();
-        ctx.sctpClient.abortReceiver();
+        return finish(false);
+    }
+
+    private State finish(boolean completed) {
+        ctx.unregisterListener(procedure);
+        if (!ctx.hasListeners()) {
+            ctx.sctpClient.abortReceiver();
+        }
+        if (!finished) {
+            finished = true;
+            // Run after the current state returns, so that the callback may start the next flow of the UE.
+            if (onFinished != null) {
+                eventLoop.execute(() -> onFinished.onFinished(completed));
+            }
+        }
         return this::sinkState;
     }
 
@@ -132,6 +308,11 @@ public abstract class BaseFlow implements IMessageListener {
         State accept(IncomingMessage message);
     }
 
+    @FunctionalInterface
+    public interface IFinishListener {
+        void onFinished(boolean completed);
+    }
+
     protected static class FlowFailedException extends RuntimeException {
         public FlowFailedException() {
         }
@@ -76,6 +76,11 @@ public class FlowLogging {
     }
 
     public static void logUnhandledMessage(IncomingMessage message, Class<?>... expectedType) {
+        if (message.ngapMessage == null) {
+            var event = message.event != null ? message.event.getClass().getSimpleName() : "null";
+            Logging.debug(Tag.FLOWS, "Unhandled event: %s", event);
+            return;
+        }
         var incomingMessage = message.ngapMessage.getClass().getSimpleName();
         if (message.nasMessage != null) {
             incomingMessage += "/" + message.nasMessage.getClass().getSimpleName();
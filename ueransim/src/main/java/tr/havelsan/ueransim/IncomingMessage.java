@@ -35,11 +35,33 @@ public class IncomingMessage {
     public final NGAP_PDU ngapPdu;
     public final SequenceValue ngapMessage;
     public final NasMessage nasMessage;
+    public final Object event;
 
     public IncomingMessage(NGAP_PDU ngapPdu, SequenceValue ngapMessage, NasMessage nasMessage) {
         this.ngapPdu = ngapPdu;
         this.ngapMessage = ngapMessage;
         this.nasMessage = nasMessage;
+        this.event = null;
+    }
+
+    /**
+     * A timer expiry or a command delivered to an event driven flow, see {@link BaseFlow#post(Object)}.
+     */
+    public IncomingMessage(Object event) {
+        this.ngapPdu = null;
+        this.ngapMessage = null;
+        this.nasMessage = null;
+        this.event = event;
+    }
+
+    public <T> T getEvent(Class<T> eventType) {
+        if (event == null) {
+            return null;
+        }
+        if (eventType.isAssignableFrom(event.getClass())) {
+            return (T) event;
+        }
+        return null;
     }
 
     public <T extends NasMessage> T getNasMessage(Class<T> messageType) {
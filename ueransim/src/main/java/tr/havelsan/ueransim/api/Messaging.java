@@ -38,16 +38,26 @@ import tr.havelsan.ueransim.ngap.ngap_pdu_contents.InitialContextSetupRequest;
 import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
 import tr.havelsan.ueransim.ngap2.NgapCriticality;
 import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.ngap2.NgapProcedure;
+import tr.havelsan.ueransim.sctp.SctpStreams;
 
 public class Messaging {
 
     public static void send(SimulationContext ctx, SendingMessage sendingMessage) {
         var outgoing = Messaging.handleOutgoingMessage(ctx, sendingMessage);
-        ctx.sctpClient.send(ctx.streamNumber, Ngap.perEncode(outgoing.ngapPdu));
+        int streamNumber = selectStream(ctx, sendingMessage.ngapBuilder.getProcedure());
+        ctx.sctpClient.send(streamNumber, Ngap.perEncode(outgoing.ngapPdu));
         FlowLogging.logSentMessage(outgoing);
         ctx.dispatchMessageSent(outgoing);
     }
 
+    private static int selectStream(SimulationContext ctx, NgapProcedure procedure) {
+        if (!procedure.isUeAssociated()) {
+            return SctpStreams.NON_UE_STREAM;
+        }
+        return SctpStreams.forUe(ctx.ranUeNgapId, ctx.sctpClient.getOutboundStreams());
+    }
+
     public static IncomingMessage handleIncomingMessage(SimulationContext ctx, NGAP_PDU ngapPdu) {
         var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
         var nasMessage = NgapInternal.extractNasMessage(ngapPdu);
@@ -56,10 +66,9 @@ public class Messaging {
 
         // check for AMF-UE-NGAP-ID
         {
-            var ieAmfUeNgapId = NgapInternal.extractProtocolIe(ngapMessage, AMF_UE_NGAP_ID.class);
-            if (ieAmfUeNgapId.size() > 0) {
-                var ie = ieAmfUeNgapId.get(ieAmfUeNgapId.size() - 1);
-                ctx.amfUeNgapId = ie.value;
+            var ieAmfUeNgapId = NgapInternal.findProtocolIe(ngapMessage, AMF_UE_NGAP_ID.class);
+            if (ieAmfUeNgapId != null) {
+                ctx.amfUeNgapId = ieAmfUeNgapId.value;
             }
         }
 
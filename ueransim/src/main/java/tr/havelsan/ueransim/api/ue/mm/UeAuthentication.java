@@ -75,14 +75,14 @@ public class UeAuthentication {
         int receivedKdf;
 
         Runnable ueRejectionTimers = () -> {
-            ctx.ueTimers.t3520.start();
+            ctx.ueTimers.t3520().start();
 
-            ctx.ueTimers.t3510.stop();
-            ctx.ueTimers.t3517.stop();
-            ctx.ueTimers.t3521.stop();
+            ctx.ueTimers.t3510().stop();
+            ctx.ueTimers.t3517().stop();
+            ctx.ueTimers.t3521().stop();
         };
 
-        ctx.ueTimers.t3520.stop();
+        ctx.ueTimers.t3520().stop();
 
         // Read EAP-AKA' request
         {
@@ -351,10 +351,14 @@ public class UeAuthentication {
     }
 
     private static Map<MilenageResult, OctetString> calculateMilenage(UeData ueData, OctetString rand) {
+        // OPc is calculated once per UE, unless it is already given by the subscriber range of the UE
+        if (ueData.opc == null) {
+            ueData.opc = UeKeyManagement.calculateOpc(ueData.key, ueData.op);
+        }
+
         var factory = BigIntegerBufferFactory.getInstance();
         var cipher = Ciphers.createRijndaelCipher(ueData.key.toByteArray());
-        byte[] opc = threegpp.milenage.Milenage.calculateOPc(ueData.op.toByteArray(), cipher, factory);
-        var milenage = new threegpp.milenage.Milenage<>(opc, cipher, factory);
+        var milenage = new threegpp.milenage.Milenage<>(ueData.opc.toByteArray(), cipher, factory);
         try {
             var calc = milenage.calculateAll(rand.toByteArray(), ueData.sqn.toByteArray(), ueData.amf.toByteArray(), Executors.newCachedThreadPool());
             var res = new HashMap<MilenageResult, OctetString>();
@@ -73,7 +73,7 @@ public class UeIdentity {
 
     public static IESuciMobileIdentity getOrGenerateSuci(SimulationContext ctx) {
         Logging.funcIn("Get or Generate SUCI");
-        if (ctx.ueTimers.t3519.isRunning()) {
+        if (ctx.ueTimers.t3519().isRunning()) {
             Logging.debug(Tag.PROC, "T3519 is running, returning stored SUCI.");
             Logging.funcOut();
             return ctx.ueData.storedSuci;
@@ -82,7 +82,7 @@ public class UeIdentity {
         ctx.ueData.storedSuci = generateSuci(ctx.ueData.supi);
         Logging.debug(Tag.PROC, "T3519 is not running, new SUCI generated.");
 
-        ctx.ueTimers.t3519.start();
+        ctx.ueTimers.t3519().start();
 
         Logging.funcOut();
         return ctx.ueData.storedSuci;
@@ -26,6 +26,9 @@
 
 package tr.havelsan.ueransim.api.ue.mm;
 
+import threegpp.milenage.Milenage;
+import threegpp.milenage.biginteger.BigIntegerBufferFactory;
+import threegpp.milenage.cipher.Ciphers;
 import tr.havelsan.ueransim.core.NasSecurityContext;
 import tr.havelsan.ueransim.crypto.KDF;
 import tr.havelsan.ueransim.crypto.Mac;
@@ -69,6 +72,14 @@ public class UeKeyManagement {
         securityContext.keys.kNasInt = kdfInt.substring(16, 16);
     }
 
+    /**
+     * Calculates OPc from K and OP as specified in 3GPP TS 35.206
+     */
+    public static OctetString calculateOpc(OctetString key, OctetString op) {
+        var cipher = Ciphers.createRijndaelCipher(key.toByteArray());
+        return new OctetString(Milenage.calculateOPc(op.toByteArray(), cipher, BigIntegerBufferFactory.getInstance()));
+    }
+
     /**
      * Calculates K_AUSF for 5G-AKA according to given parameters as specified in 3GPP TS 33.501 Annex A.2
      */
@@ -74,8 +74,8 @@ public class UeRegistration {
             if (suci != null) {
                 registrationRequest.mobileIdentity = suci;
 
-                if (!ctx.ueTimers.t3519.isRunning()) {
-                    ctx.ueTimers.t3519.start();
+                if (!ctx.ueTimers.t3519().isRunning()) {
+                    ctx.ueTimers.t3519().start();
                 }
 
             } else {
@@ -89,9 +89,9 @@ public class UeRegistration {
 
         ctx.registrationRequest = registrationRequest;
 
-        ctx.ueTimers.t3510.start();
-        ctx.ueTimers.t3502.stop();
-        ctx.ueTimers.t3511.stop();
+        ctx.ueTimers.t3510().start();
+        ctx.ueTimers.t3502().stop();
+        ctx.ueTimers.t3511().stop();
 
         Messaging.send(ctx, new SendingMessage(new NgapBuilder(NgapProcedure.InitialUEMessage, NgapCriticality.IGNORE)
                 .addProtocolIE(new RRCEstablishmentCause(config.rrcEstablishmentCause), NgapCriticality.IGNORE), registrationRequest));
@@ -103,12 +103,12 @@ public class UeRegistration {
         ctx.ueData.taiList = message.taiList;
 
         if (message.t3512Value != null && message.t3512Value.hasValue()) {
-            ctx.ueTimers.t3512.start(message.t3512Value);
+            ctx.ueTimers.t3512().start(message.t3512Value);
         }
 
         if (message.mobileIdentity instanceof IE5gGutiMobileIdentity) {
             ctx.ueData.storedGuti = (IE5gGutiMobileIdentity) message.mobileIdentity;
-            ctx.ueTimers.t3519.stop();
+            ctx.ueTimers.t3519().stop();
 
             sendCompleteMes = true;
         }
@@ -172,10 +172,10 @@ public class UeRegistration {
                 ctx.nonCurrentNsc = null;
             } else if (cause.equals(EMmCause.CONGESTION)) {
                 if (message.t3346value != null && message.t3346value.hasValue()) {
-                    ctx.ueTimers.t3346.stop();
+                    ctx.ueTimers.t3346().stop();
 
                     if (message.securityHeaderType.isIntegrityProtected()) {
-                        ctx.ueTimers.t3346.start(message.t3346value);
+                        ctx.ueTimers.t3346().start(message.t3346value);
                     } else {
                         // todo
                     }
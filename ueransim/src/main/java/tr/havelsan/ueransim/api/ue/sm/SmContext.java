@@ -26,13 +26,119 @@
 
 package tr.havelsan.ueransim.api.ue.sm;
 
+/**
+ * Session management state of a UE. PDU session identities and PTIs in use are kept in bitsets, so that the context
+ * of a UE costs a few words regardless of how many identities are defined.
+ */
 public class SmContext {
+    public static final int MIN_PDU_SESSION_ID = 1;
+    public static final int MAX_PDU_SESSION_ID = 15;
+
+    // Bit i is set if PDU session identity i is in use
+    private int pduSessionIds;
+
+    // Bit i of word w is set if PTI 64 * w + i is in use
+    private long ptis0;
+    private long ptis1;
+    private long ptis2;
+    private long ptis3;
+
+    /**
+     * Returns the smallest free PDU session identity, or -1 if all are in use.
+     */
+    public int allocatePduSessionId() {
+        int free = ~pduSessionIds & rangeMask(MIN_PDU_SESSION_ID, MAX_PDU_SESSION_ID);
+        if (free == 0) return -1;
+        int id = Integer.numberOfTrailingZeros(free);
+        pduSessionIds |= 1 << id;
+        return id;
+    }
+
+    public void releasePduSessionId(int id) {
+        if (id < MIN_PDU_SESSION_ID || id > MAX_PDU_SESSION_ID) return;
+        pduSessionIds &= ~(1 << id);
+    }
+
+    public boolean isPduSessionIdInUse(int id) {
+        if (id < MIN_PDU_SESSION_ID || id > MAX_PDU_SESSION_ID) return false;
+        return (pduSessionIds & (1 << id)) != 0;
+    }
+
+    /**
+     * Returns the smallest PDU session identity in use, or -1 if there is none.
+     */
+    public int findPduSessionId() {
+        if (pduSessionIds == 0) return -1;
+        return Integer.numberOfTrailingZeros(pduSessionIds);
+    }
+
+    public int getPduSessionCount() {
+        return Integer.bitCount(pduSessionIds);
+    }
+
+    /**
+     * Returns the smallest free PTI, or -1 if all are in use.
+     */
+    public int allocateProcedureTransactionId() {
+        for (int word = 0; word < 4; word++) {
+            long free = ~ptiWord(word);
+            if (word == 0) free &= ~1L;
+            if (word == 3) free &= ~(1L << 63);
+            if (free != 0) {
+                int id = word * 64 + Long.numberOfTrailingZeros(free);
+                setPtiWord(word, ptiWord(word) | (1L << (id & 63)));
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    public void releaseProcedureTransactionId(int id) {
+        if (id < ProcedureTransaction.MIN_ID || id > ProcedureTransaction.MAX_ID) return;
+        setPtiWord(id >>> 6, ptiWord(id >>> 6) & ~(1L << (id & 63)));
+    }
+
+    public boolean isProcedureTransactionIdInUse(int id) {
+        if (id < ProcedureTransaction.MIN_ID || id > ProcedureTransaction.MAX_ID) return false;
+        return (ptiWord(id >>> 6) & (1L << (id & 63))) != 0;
+    }
+
+    public void clear() {
+        pduSessionIds = 0;
+        ptis0 = ptis1 = ptis2 = ptis3 = 0;
+    }
 
-    public PduSession[] pduSessions;
-    public ProcedureTransaction[] procedureTransactions;
+    private static int rangeMask(int min, int max) {
+        return ((1 << (max + 1)) - 1) & ~((1 << min) - 1);
+    }
+
+    private long ptiWord(int word) {
+        switch (word) {
+            case 0:
+                return ptis0;
+            case 1:
+                return ptis1;
+            case 2:
+                return ptis2;
+            default:
+                return ptis3;
+        }
+    }
 
-    public SmContext() {
-        this.pduSessions = new PduSession[16];
-        this.procedureTransactions = new ProcedureTransaction[255];
+    private void setPtiWord(int word, long value) {
+        switch (word) {
+            case 0:
+                ptis0 = value;
+                break;
+            case 1:
+                ptis1 = value;
+                break;
+            case 2:
+                ptis2 = value;
+                break;
+            default:
+                ptis3 = value;
+                break;
+        }
     }
 }
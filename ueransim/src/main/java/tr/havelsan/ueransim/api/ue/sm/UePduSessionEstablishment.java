@@ -31,6 +31,7 @@ import tr.havelsan.ueransim.api.Messaging;
 import tr.havelsan.ueransim.configs.PduSessionEstablishmentConfig;
 import tr.havelsan.ueransim.core.SimulationContext;
 import tr.havelsan.ueransim.nas.NasEncoder;
+import tr.havelsan.ueransim.nas.impl.enums.EPduSessionIdentity;
 import tr.havelsan.ueransim.nas.impl.enums.EPduSessionType;
 import tr.havelsan.ueransim.nas.impl.ies.*;
 import tr.havelsan.ueransim.nas.impl.messages.PduSessionEstablishmentAccept;
@@ -46,16 +47,25 @@ import tr.havelsan.ueransim.utils.octets.OctetString;
 
 public class UePduSessionEstablishment {
 
-    public static void sendEstablishmentRequest(SimulationContext ctx, PduSessionEstablishmentConfig config) {
+    /**
+     * Returns the allocated PDU session ID, null if the request could not be sent.
+     */
+    public static EPduSessionIdentity sendEstablishmentRequest(SimulationContext ctx, PduSessionEstablishmentConfig config) {
         Logging.funcIn("Sending PDU Session Establishment Request");
 
         var pduSessionId = UePduSessionManagement.allocatePduSessionId(ctx);
+        if (pduSessionId == null) {
+            Logging.error(Tag.PROC, "PDU Session Establishment Request could not send");
+            Logging.funcOut();
+            return null;
+        }
 
         var procedureTransactionId = UePduSessionManagement.allocateProcedureTransactionId(ctx);
         if (procedureTransactionId == null) {
+            UePduSessionManagement.releasePduSessionId(ctx, pduSessionId);
             Logging.error(Tag.PROC, "PDU Session Establishment Request could not send");
             Logging.funcOut();
-            return;
+            return null;
         }
 
         var pduSessionEstablishmentRequest = new PduSessionEstablishmentRequest();
@@ -76,17 +86,18 @@ public class UePduSessionEstablishment {
         ulNasTransport.sNssa = config.sNssai;
         ulNasTransport.dnn = config.dnn;
 
-        ctx.ueTimers.t3580.start();
+        ctx.ueTimers.t3580().start();
 
         Messaging.send(ctx, new SendingMessage(new NgapBuilder(NgapProcedure.UplinkNASTransport, NgapCriticality.IGNORE), ulNasTransport));
 
         Logging.funcOut();
+        return pduSessionId;
     }
 
     public static void handleEstablishmentAccept(SimulationContext ctx, PduSessionEstablishmentAccept message) {
         Logging.funcIn("Handling: PDU Session Establishment Accept");
 
-        ctx.ueTimers.t3580.stop();
+        ctx.ueTimers.t3580().stop();
 
         UePduSessionManagement.releaseProcedureTransactionId(ctx, message.pti);
 
@@ -130,6 +141,13 @@ public class UePduSessionEstablishment {
     }
 
     public static void handleEstablishmentReject(SimulationContext ctx, PduSessionEstablishmentReject message) {
+        Logging.funcIn("Handling: PDU Session Establishment Reject");
+
+        ctx.ueTimers.t3580().stop();
 
+        UePduSessionManagement.releaseProcedureTransactionId(ctx, message.pti);
+        UePduSessionManagement.releasePduSessionId(ctx, message.pduSessionId);
+
+        Logging.funcOut();
     }
 }
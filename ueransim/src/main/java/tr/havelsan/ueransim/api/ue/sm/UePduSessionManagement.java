@@ -34,36 +34,62 @@ import tr.havelsan.ueransim.utils.Tag;
 
 public class UePduSessionManagement {
 
-    // todo
     public static EPduSessionIdentity allocatePduSessionId(SimulationContext ctx) {
-        return EPduSessionIdentity.VAL_8;
+        int id = smContext(ctx).allocatePduSessionId();
+        if (id == -1) {
+            Logging.error(Tag.PROC, "PDU Session ID allocation failed");
+            return null;
+        }
+
+        var val = EPduSessionIdentity.fromValue(id);
+        Logging.debug(Tag.PROC, "PDU Session ID allocated: %s", val);
+        return val;
     }
 
-    public static EProcedureTransactionIdentity allocateProcedureTransactionId(SimulationContext ctx) {
-        var arr = ctx.smCtx.procedureTransactions;
+    public static void releasePduSessionId(SimulationContext ctx, EPduSessionIdentity psi) {
+        smContext(ctx).releasePduSessionId(psi.intValue());
+        Logging.debug(Tag.PROC, "PDU Session ID released: %s", psi);
+    }
 
-        int id = -1;
-        for (int i = ProcedureTransaction.MIN_ID; i <= ProcedureTransaction.MAX_ID; i++) {
-            if (arr[i] == null) {
-                id = i;
-                break;
-            }
-        }
+    /**
+     * Returns a PDU session identity of the UE which is in use, null if there is none.
+     */
+    public static EPduSessionIdentity findPduSessionId(SimulationContext ctx) {
+        int id = ctx.smCtx != null ? ctx.smCtx.findPduSessionId() : -1;
+        return id != -1 ? EPduSessionIdentity.fromValue(id) : null;
+    }
 
+    public static EProcedureTransactionIdentity allocateProcedureTransactionId(SimulationContext ctx) {
+        int id = smContext(ctx).allocateProcedureTransactionId();
         if (id == -1) {
             Logging.error(Tag.PROC, "PTI allocation failed");
             return null;
         }
 
-        arr[id] = new ProcedureTransaction();
-
         var val = EProcedureTransactionIdentity.fromValue(id);
         Logging.debug(Tag.PROC, "PTI allocated: %s", val);
         return val;
     }
 
     public static void releaseProcedureTransactionId(SimulationContext ctx, EProcedureTransactionIdentity pti) {
-        ctx.smCtx.procedureTransactions[pti.intValue()] = null;
+        smContext(ctx).releaseProcedureTransactionId(pti.intValue());
         Logging.debug(Tag.PROC, "PTI released: %s", pti);
     }
+
+    /**
+     * Releases all PDU session identities and PTIs of the UE, e.g. when it is deregistered.
+     */
+    public static void releaseAll(SimulationContext ctx) {
+        if (ctx.smCtx != null) {
+            ctx.smCtx.clear();
+        }
+    }
+
+    // SM context is only created when the UE uses session management
+    private static SmContext smContext(SimulationContext ctx) {
+        if (ctx.smCtx == null) {
+            ctx.smCtx = new SmContext();
+        }
+        return ctx.smCtx;
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.cluster;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Control and metrics protocol of the coordinator and its workers, carried over TCP with
+ * {@link tr.havelsan.ueransim.sctp.TcpFraming}. The stream number of a frame is the ordinal of its
+ * {@link EClusterMessage}, and the payload is the message encoded as JSON.
+ */
+public final class ClusterProtocol {
+    public static final int PROTOCOL_ID = 0;
+    public static final int STREAM_COUNT = EClusterMessage.values().length;
+
+    private static final Gson gson = new Gson();
+
+    private ClusterProtocol() {
+    }
+
+    public static byte[] encode(Object message) {
+        return gson.toJson(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static <T> T decode(byte[] data, Class<T> type) {
+        return gson.fromJson(new String(data, StandardCharsets.UTF_8), type);
+    }
+
+    public static EClusterMessage typeOf(int streamNumber) {
+        var types = EClusterMessage.values();
+        if (streamNumber < 0 || streamNumber >= types.length)
+            throw new RuntimeException("unknown cluster message: " + streamNumber);
+        return types[streamNumber];
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.cluster;
+
+import tr.havelsan.ueransim.FlowTesting;
+import tr.havelsan.ueransim.core.RanUeNgapIdAllocator;
+import tr.havelsan.ueransim.sctp.TcpFramedServer;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distributes a load among worker processes, which connect to the coordinator over TCP, see {@link WorkerClient}.
+ * Once the expected number of workers is connected, each is given a {@link WorkerAssignment}. The load is started on
+ * all workers together once they are all ready, and their metrics are aggregated into one report.
+ * <p>
+ * Workers are either started by the coordinator on the local host, or started separately, on any host, and attach
+ * to it. The messages of the workers are handled on the thread of the server.
+ * <p>
+ * The run fails if the load cannot be started on all workers, e.g. if a worker lacks subscribers, or if a worker is
+ * lost or a launched process exits before the load is started.
+ */
+public class Coordinator {
+    public static final int DEFAULT_PORT = 38600;
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+
+    private final int workerCount;
+    private final int ueCount;
+    private final long seed;
+    private final TcpFramedServer server;
+    private final List<Worker> workers;
+    private final List<Process> processes;
+    private final CountDownLatch finished;
+
+    private int readyCount;
+    private volatile boolean started;
+    // Reason why the load cannot be started, null if there is none
+    private volatile String failure;
+
+    public Coordinator(String host, int port, int workerCount, int ueCount, long seed) {
+        if (workerCount < 1) throw new IllegalArgumentException("at least one worker is required");
+        if (ueCount < workerCount) throw new IllegalArgumentException("every worker needs at least one UE");
+
+        this.workerCount = workerCount;
+        this.ueCount = ueCount;
+        this.seed = seed;
+        this.server = new TcpFramedServer(host, port, new Handler());
+        this.workers = new ArrayList<>();
+        this.processes = new ArrayList<>();
+        this.finished = new CountDownLatch(workerCount);
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Starts the workers as processes of the same program on the local host. The output of a worker is written to
+     * worker-{index}.log in the working directory.
+     *
+     * @param workerArgs arguments of the workers, they are given the address of the coordinator in addition
+     */
+    public void launchWorkers(List<String> workerArgs) throws IOException {
+        var java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 0; i < workerCount; i++) {
+            var command = new ArrayList<String>();
+            command.add(java);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(FlowTesting.class.getName());
+            command.addAll(workerArgs);
+            command.add("-w");
+            command.add("127.0.0.1:" + getPort());
+
+            var log = new File("worker-" + i + ".log");
+            processes.add(new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(log)
+                    .start());
+        }
+    }
+
+    /**
+     * Waits until all workers are finished, printing the aggregated metrics periodically, then prints the report and
+     * returns the aggregated metrics. Workers which disconnect after the load is started count with their last
+     * metrics. Throws if the load cannot be started, the workers are then disconnected.
+     */
+    public LoadMetrics await() throws InterruptedException {
+        while (!finished.await(REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!started) {
+                checkStartable();
+            }
+            var total = aggregate();
+            if (total.arrivals > 0) {
+                Console.println(Color.BLUE, "Workers: %s", total);
+            }
+        }
+
+        for (var worker : snapshot()) {
+            Console.println(worker.failed ? Color.RED : Color.BLUE, "Worker %d (%s)%s: %s", worker.assignment.workerIndex,
+                    worker.hello.name, worker.failed ? " failed" : "", worker.metrics);
+        }
+        var total = aggregate();
+        Console.println(Color.BLUE, "Total: %s", total);
+
+        for (var process : processes) {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroy();
+            }
+        }
+        server.close();
+        return total;
+    }
+
+    private void checkStartable() {
+        var reason = failure;
+        for (int i = 0; i < processes.size() && reason == null; i++) {
+            // Workers only exit after the load, so a launched worker which is gone will never be ready
+            if (!processes.get(i).isAlive()) {
+                reason = String.format("worker process %d exited with code %d, see worker-%d.log", i,
+                        processes.get(i).exitValue(), i);
+            }
+        }
+        if (reason == null) return;
+
+        Console.println(Color.RED, "Load cannot be started: %s", reason);
+        for (var process : processes) {
+            process.destroy();
+        }
+        server.close();
+        throw new RuntimeException("load cannot be started: " + reason);
+    }
+
+    public LoadMetrics aggregate() {
+        var total = new LoadMetrics();
+        for (var worker : snapshot()) {
+            total.add(worker.metrics);
+        }
+        return total;
+    }
+
+    private List<Worker> snapshot() {
+        synchronized (workers) {
+            return new ArrayList<>(workers);
+        }
+    }
+
+    // The UEs are split evenly, and the gNB IDs of each worker follow the largest one of the worker before it.
+    private void assign() {
+        long idSpan = (RanUeNgapIdAllocator.MAX_RAN_UE_NGAP_ID + 1) / workerCount;
+        long firstSubscriber = 0;
+        int nextGnbId = workers.get(0).hello.minGnbId;
+
+        // Nothing is sent unless every worker can take its part
+        var assignments = new ArrayList<WorkerAssignment>();
+        for (int i = 0; i < workerCount; i++) {
+            var hello = workers.get(i).hello;
+
+            var assignment = new WorkerAssignment();
+            assignment.workerIndex = i;
+            assignment.workerCount = workerCount;
+            assignment.ueCount = ueCount / workerCount + (i < ueCount % workerCount ? 1 : 0);
+            assignment.firstSubscriber = firstSubscriber;
+            assignment.gnbIdOffset = nextGnbId - hello.minGnbId;
+            assignment.firstRanUeNgapId = i * idSpan;
+            assignment.ranUeNgapIdCount = idSpan;
+            assignment.rateShare = (double) assignment.ueCount / ueCount;
+            assignment.seed = seed + i;
+            assignments.add(assignment);
+
+            if (hello.subscriberCount < firstSubscriber + assignment.ueCount) {
+                failure = String.format("worker %s has %d subscribers, %d needed", hello.name,
+                        hello.subscriberCount, firstSubscriber + assignment.ueCount);
+                return;
+            }
+
+            firstSubscriber += assignment.ueCount;
+            nextGnbId += hello.maxGnbId - hello.minGnbId + 1;
+        }
+
+        for (int i = 0; i < workerCount; i++) {
+            var worker = workers.get(i);
+            worker.assignment = assignments.get(i);
+            worker.connection.send(EClusterMessage.ASSIGNMENT.ordinal(), ClusterProtocol.PROTOCOL_ID,
+                    ClusterProtocol.encode(worker.assignment));
+        }
+        Console.println(Color.BLUE, "%d workers connected, %d UEs assigned", workerCount, ueCount);
+    }
+
+    private static class Worker {
+        final TcpFramedServer.Connection connection;
+        final WorkerHello hello;
+        WorkerAssignment assignment;
+        volatile LoadMetrics metrics;
+        volatile boolean finished;
+        volatile boolean failed;
+
+        Worker(TcpFramedServer.Connection connection, WorkerHello hello) {
+            this.connection = connection;
+            this.hello = hello;
+            this.metrics = new LoadMetrics();
+        }
+    }
+
+    private class Handler implements TcpFramedServer.IServerHandler {
+
+        @Override
+        public void onMessage(TcpFramedServer.Connection connection, int streamNumber, int protocolId, byte[] data) {
+            var type = ClusterProtocol.typeOf(streamNumber);
+            if (type == EClusterMessage.HELLO) {
+                onHello(connection, ClusterProtocol.decode(data, WorkerHello.class));
+                return;
+            }
+
+            var worker = find(connection);
+            if (worker == null) return;
+
+            switch (type) {
+                case READY:
+                    if (++readyCount == workerCount) {
+                        started = true;
+                        for (var w : workers) {
+                            w.connection.send(EClusterMessage.START.ordinal(), ClusterProtocol.PROTOCOL_ID,
+                                    ClusterProtocol.encode(new Object()));
+                        }
+                        Console.println(Color.BLUE, "All workers are ready, load started");
+                    }
+                    break;
+                case METRICS:
+                    worker.metrics = ClusterProtocol.decode(data, LoadMetrics.class);
+                    break;
+                case FINISHED:
+                    worker.metrics = ClusterProtocol.decode(data, LoadMetrics.class);
+                    if (!worker.finished) {
+                        worker.finished = true;
+                        finished.countDown();
+                    }
+                    break;
+                default:
+                    Console.println(Color.RED, "Unexpected %s from worker %s", type, worker.hello.name);
+            }
+        }
+
+        @Override
+        public void onDisconnected(TcpFramedServer.Connection connection) {
+            var worker = find(connection);
+            if (worker == null) return;
+
+            if (worker.assignment == null) {
+                // Not assigned yet, another worker may take its place
+                synchronized (workers) {
+                    workers.remove(worker);
+                }
+                Console.println(Color.YELLOW, "Worker %s disconnected", worker.hello.name);
+            } else if (!started) {
+                // The others would wait for it forever
+                failure = String.format("worker %s disconnected before the load started", worker.hello.name);
+            } else if (!worker.finished) {
+                Console.println(Color.RED, "Worker %s disconnected before finishing", worker.hello.name);
+                worker.failed = true;
+                worker.finished = true;
+                finished.countDown();
+            }
+        }
+
+        private void onHello(TcpFramedServer.Connection connection, WorkerHello hello) {
+            synchronized (workers) {
+                if (workers.size() == workerCount) {
+                    Console.println(Color.YELLOW, "Worker %s rejected, %d workers are already connected", hello.name,
+                            workerCount);
+                    connection.close();
+                    return;
+                }
+                workers.add(new Worker(connection, hello));
+                Console.println(Color.BLUE, "Worker %s connected from %s", hello.name, connection.getRemoteAddress());
+                if (workers.size() == workerCount) {
+                    assign();
+                }
+            }
+        }
+
+        private Worker find(TcpFramedServer.Connection connection) {
+            synchronized (workers) {
+                for (var worker : workers) {
+                    if (worker.connection == connection) return worker;
+                }
+            }
+            return null;
+        }
+    }
+}
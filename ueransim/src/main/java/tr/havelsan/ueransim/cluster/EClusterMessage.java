@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.cluster;
+
+/**
+ * Messages between the coordinator and its workers. The type of a message is carried in the stream number of its
+ * frame, see {@link ClusterProtocol}.
+ */
+public enum EClusterMessage {
+    /**
+     * Worker to coordinator, with a {@link WorkerHello} once connected.
+     */
+    HELLO,
+    /**
+     * Coordinator to worker, with its {@link WorkerAssignment} once all workers are connected.
+     */
+    ASSIGNMENT,
+    /**
+     * Worker to coordinator, when NG Setup is completed and the UEs are created.
+     */
+    READY,
+    /**
+     * Coordinator to worker, when all workers are ready. The load starts at the same time on all workers.
+     */
+    START,
+    /**
+     * Worker to coordinator, with the {@link LoadMetrics} so far, periodically while the load is generated.
+     */
+    METRICS,
+    /**
+     * Worker to coordinator, with the final {@link LoadMetrics}.
+     */
+    FINISHED
+}
@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.cluster;
+
+import tr.havelsan.ueransim.load.LoadGenerator;
+
+/**
+ * Counters of a {@link LoadGenerator}, which can be summed over the workers.
+ */
+public class LoadMetrics {
+    public long arrivals;
+    public long started;
+    public long completed;
+    public long failed;
+    public long running;
+    public long failedToStart;
+    public long noIdleUe;
+    public long lateArrivals;
+    public long maxLagNanos;
+    public long totalLatencyNanos;
+    public long maxLatencyNanos;
+
+    public static LoadMetrics of(LoadGenerator generator) {
+        var metrics = new LoadMetrics();
+        metrics.arrivals = generator.getArrivalCount();
+        metrics.started = generator.getStartedCount();
+        metrics.completed = generator.getCompletedCount();
+        metrics.failed = generator.getFailedCount();
+        metrics.running = generator.getRunningCount();
+        metrics.failedToStart = generator.getFailedToStartCount();
+        metrics.noIdleUe = generator.getNoIdleUeCount();
+        metrics.lateArrivals = generator.getLateCount();
+        metrics.maxLagNanos = generator.getMaxLagNanos();
+        metrics.totalLatencyNanos = generator.getTotalLatencyNanos();
+        metrics.maxLatencyNanos = generator.getMaxLatencyNanos();
+        return metrics;
+    }
+
+    public void add(LoadMetrics other) {
+        arrivals += other.arrivals;
+        started += other.started;
+        completed += other.completed;
+        failed += other.failed;
+        running += other.running;
+        failedToStart += other.failedToStart;
+        noIdleUe += other.noIdleUe;
+        lateArrivals += other.lateArrivals;
+        maxLagNanos = Math.max(maxLagNanos, other.maxLagNanos);
+        totalLatencyNanos += other.totalLatencyNanos;
+        maxLatencyNanos = Math.max(maxLatencyNanos, other.maxLatencyNanos);
+    }
+
+    /**
+     * Returns the counters accumulated since the earlier metrics of the same generator. The number of running flows
+     * and the peaks are the current ones.
+     */
+    public LoadMetrics since(LoadMetrics earlier) {
+        var metrics = new LoadMetrics();
+        metrics.arrivals = arrivals - earlier.arrivals;
+        metrics.started = started - earlier.started;
+        metrics.completed = completed - earlier.completed;
+        metrics.failed = failed - earlier.failed;
+        metrics.running = running;
+        metrics.failedToStart = failedToStart - earlier.failedToStart;
+        metrics.noIdleUe = noIdleUe - earlier.noIdleUe;
+        metrics.lateArrivals = lateArrivals - earlier.lateArrivals;
+        metrics.maxLagNanos = maxLagNanos;
+        metrics.totalLatencyNanos = totalLatencyNanos - earlier.totalLatencyNanos;
+        metrics.maxLatencyNanos = maxLatencyNanos;
+        return metrics;
+    }
+
+    // Latencies are only measured for completed flows
+    public long getMeanLatencyNanos() {
+        return completed == 0 ? 0 : totalLatencyNanos / completed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("arrivals=%d started=%d completed=%d failed=%d running=%d failedToStart=%d " +
+                        "noIdleUe=%d late=%d maxLag=%dus latencyMean=%dus latencyMax=%dus", arrivals, started,
+                completed, failed, running, failedToStart, noIdleUe, lateArrivals, maxLagNanos / 1000, getMeanLatencyNanos() / 1000,
+                maxLatencyNanos / 1000);
+    }
+}
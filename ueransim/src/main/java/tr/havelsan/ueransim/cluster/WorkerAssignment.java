@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.cluster;
+
+/**
+ * The part of the load generated by a worker. The subscribers, gNB IDs and RAN-UE-NGAP-IDs of the workers are
+ * disjoint, and the arrival rate of the load is shared among them in proportion to their UEs.
+ */
+public class WorkerAssignment {
+    public int workerIndex;
+    public int workerCount;
+
+    // Subscribers with the indices [firstSubscriber, firstSubscriber + ueCount) of the subscriber pool
+    public long firstSubscriber;
+    public int ueCount;
+
+    // Added to the gNB IDs of the config, so that they follow the gNB IDs of the workers before
+    public int gnbIdOffset;
+
+    public long firstRanUeNgapId;
+    public long ranUeNgapIdCount;
+
+    // Rates of the arrival process are multiplied by it
+    public double rateShare;
+    public long seed;
+}
@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.cluster;
+
+import tr.havelsan.ueransim.sctp.TcpFramedClient;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The connection of a worker process to its {@link Coordinator}.
+ */
+public class WorkerClient {
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+    private static final long FINISH_TIMEOUT_MILLIS = 5000;
+
+    private final TcpFramedClient client;
+    private final BlockingQueue<Object> received;
+
+    private Thread reporterThread;
+
+    /**
+     * @param address host and port of the coordinator, e.g. 127.0.0.1:38600
+     */
+    public WorkerClient(String address) {
+        int colon = address.lastIndexOf(':');
+        var host = colon < 0 ? address : address.substring(0, colon);
+        int port = colon < 0 ? Coordinator.DEFAULT_PORT : Integer.parseInt(address.substring(colon + 1));
+
+        this.client = new TcpFramedClient(host, port, ClusterProtocol.PROTOCOL_ID, ClusterProtocol.STREAM_COUNT,
+                TcpFramedClient.DEFAULT_QUEUE_CAPACITY);
+        this.received = new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Connects to the coordinator and waits for the assignment of this worker.
+     */
+    public WorkerAssignment connect(WorkerHello hello) throws Exception {
+        client.start();
+
+        var receiver = new Thread(this::receiverLoop, "worker-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        send(EClusterMessage.HELLO, hello);
+        return (WorkerAssignment) take(EClusterMessage.ASSIGNMENT);
+    }
+
+    /**
+     * Tells the coordinator that this worker is ready, and waits until the load is started.
+     */
+    public void awaitStart() throws InterruptedException {
+        send(EClusterMessage.READY, new Object());
+        take(EClusterMessage.START);
+    }
+
+    /**
+     * Sends the metrics given by the supplier periodically until {@link #finish(LoadMetrics)} is called.
+     */
+    public void startReporting(Supplier<LoadMetrics> metrics) {
+        reporterThread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted() && client.isOpen()) {
+                try {
+                    Thread.sleep(REPORT_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                send(EClusterMessage.METRICS, metrics.get());
+            }
+        }, "worker-reporter");
+        reporterThread.setDaemon(true);
+        reporterThread.start();
+    }
+
+    /**
+     * Sends the final metrics and closes the connection once they are written.
+     */
+    public void finish(LoadMetrics metrics) throws Exception {
+        if (reporterThread != null) {
+            reporterThread.interrupt();
+            reporterThread.join();
+        }
+        try {
+            client.sendAsync(EClusterMessage.FINISHED.ordinal(), ByteBuffer.wrap(ClusterProtocol.encode(metrics)))
+                    .get(FINISH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } finally {
+            client.close();
+        }
+    }
+
+    private void send(EClusterMessage type, Object message) {
+        client.send(type.ordinal(), ClusterProtocol.encode(message));
+    }
+
+    private Object take(EClusterMessage type) throws InterruptedException {
+        var message = received.take();
+        if (message instanceof Exception)
+            throw new RuntimeException("connection to the coordinator is lost", (Exception) message);
+        if (message != type && !(type == EClusterMessage.ASSIGNMENT && message instanceof WorkerAssignment))
+            throw new RuntimeException("expected " + type + " from the coordinator, got " + message);
+        return message;
+    }
+
+    private void receiverLoop() {
+        try {
+            client.receiverLoop((receivedBytes, messageInfo, channel) -> {
+                var type = ClusterProtocol.typeOf(messageInfo.streamNumber());
+                if (type == EClusterMessage.ASSIGNMENT) {
+                    received.add(ClusterProtocol.decode(receivedBytes, WorkerAssignment.class));
+                } else {
+                    received.add(type);
+                }
+            });
+            received.add(new RuntimeException("closed by the coordinator"));
+        } catch (Exception e) {
+            received.add(e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single threaded loop running the event driven flows of many UEs. Tasks may be submitted from any thread, and are
+ * run in submission order. Timers are kept in a heap which is only touched by the loop thread.
+ * <p>
+ * A loop created with a {@link VirtualClock} has no thread of its own, its tasks and timers are events of the clock
+ * and run on the thread running the clock.
+ */
+public class EventLoop implements Executor {
+    private final String name;
+    private final Queue<Runnable> tasks;
+    private final PriorityQueue<Timer> timers;
+    private final AtomicLong timerSequence;
+    private final AtomicLong executedCount;
+    private final VirtualClock clock;
+
+    private Thread thread;
+    private volatile boolean running;
+    private volatile boolean parked;
+
+    public EventLoop(String name) {
+        this(name, null);
+    }
+
+    /**
+     * @param clock runs the tasks and timers of the loop, or null if the loop runs them on its own thread
+     */
+    public EventLoop(String name, VirtualClock clock) {
+        this.name = name;
+        this.clock = clock;
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.timers = new PriorityQueue<>();
+        this.timerSequence = new AtomicLong();
+        this.executedCount = new AtomicLong();
+    }
+
+    public void start() {
+        if (thread != null || running) throw new RuntimeException("event loop is already started");
+        running = true;
+        if (clock != null) return;
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop, the tasks and timers which are still pending are dropped.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public void join() throws InterruptedException {
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    public boolean inLoop() {
+        return clock != null ? clock.inClock() : Thread.currentThread() == thread;
+    }
+
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (clock != null) {
+            clock.execute(() -> {
+                if (running) run(task);
+            });
+            return;
+        }
+        tasks.add(task);
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Runs the task on the loop after the given delay. The returned timer may be cancelled from any thread.
+     */
+    public Timer schedule(long delayNanos, Runnable task) {
+        if (clock != null) {
+            var timer = new Timer(clock.nanoTime() + delayNanos, timerSequence.getAndIncrement(), task);
+            timer.event = clock.schedule(delayNanos, () -> {
+                if (running && !timer.cancelled) run(timer.task);
+            });
+            return timer;
+        }
+        var timer = new Timer(System.nanoTime() + delayNanos, timerSequence.getAndIncrement(), task);
+        execute(() -> timers.add(timer));
+        return timer;
+    }
+
+    private void loop() {
+        while (running) {
+            Runnable task;
+            while (running && (task = tasks.poll()) != null) {
+                run(task);
+            }
+
+            long now = System.nanoTime();
+            Timer timer;
+            while (running && (timer = timers.peek()) != null && timer.deadline - now <= 0) {
+                timers.poll();
+                if (!timer.cancelled) {
+                    run(timer.task);
+                }
+            }
+
+            parked = true;
+            if (running && tasks.isEmpty()) {
+                var next = timers.peek();
+                if (next == null) {
+                    LockSupport.park(this);
+                } else {
+                    long delay = next.deadline - System.nanoTime();
+                    if (delay > 0) {
+                        LockSupport.parkNanos(this, delay);
+                    }
+                }
+            }
+            parked = false;
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Logging.error(Tag.FLOWS, "Event loop task failed: %s", e);
+        }
+        executedCount.incrementAndGet();
+    }
+
+    public static class Timer implements Comparable<Timer> {
+        private final long deadline;
+        private final long sequence;
+        private final Runnable task;
+        private volatile boolean cancelled;
+        private volatile VirtualClock.Event event;
+
+        private Timer(long deadline, long sequence, Runnable task) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            var e = event;
+            if (e != null) {
+                e.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int res = Long.compare(deadline - other.deadline, 0);
+            return res != 0 ? res : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.Ngap;
+import tr.havelsan.ueransim.configs.NgSetupConfig;
+import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.ngap2.NgapProcedure;
+import tr.havelsan.ueransim.sctp.ISCTPClient;
+import tr.havelsan.ueransim.structs.SubscriberPool;
+import tr.havelsan.ueransim.structs.UeData;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A gNB whose UEs share one NGAP association. A single receiver thread decodes the incoming messages and routes
+ * them to the UEs through the {@link UeRegistry}. Non UE-associated messages are routed to the gNB's own context,
+ * on which e.g. NG Setup is performed.
+ * <p>
+ * Several gNBs can run in the same process, each with its own association, Global gNB ID and supported TAs.
+ */
+public class GnbContext {
+    private final SimulationContext template;
+    private final NgSetupConfig setupConfig;
+    private final ISCTPClient association;
+    private final UeRegistry ueRegistry;
+    private final SimulationContext nonUeContext;
+    private final AtomicLong unknownUeCount;
+
+    private Thread receiverThread;
+
+    /**
+     * @param template    context holding the association and the configuration which is common to all UEs
+     * @param setupConfig Global gNB ID and supported TAs of this gNB
+     */
+    public GnbContext(SimulationContext template, NgSetupConfig setupConfig) {
+        this(template, setupConfig, RanUeNgapIdAllocator.MAX_RAN_UE_NGAP_ID + 1);
+    }
+
+    /**
+     * @param ranUeNgapIdCount the RAN-UE-NGAP-IDs of the UEs are allocated from this number of IDs, starting with
+     *                         the one of the template
+     */
+    public GnbContext(SimulationContext template, NgSetupConfig setupConfig, long ranUeNgapIdCount) {
+        this.template = template;
+        this.setupConfig = setupConfig;
+        this.association = template.sctpClient;
+        this.ueRegistry = new UeRegistry(template.ranUeNgapId, ranUeNgapIdCount);
+        this.unknownUeCount = new AtomicLong();
+
+        this.nonUeContext = newContext(template.ueData);
+    }
+
+    public void startReceiver() {
+        if (receiverThread != null) throw new RuntimeException("receiver is already started");
+        receiverThread = new Thread(this::receiverLoop, "gnb-receiver-" + setupConfig.gnbId);
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    public NgSetupConfig getSetupConfig() {
+        return setupConfig;
+    }
+
+    public SimulationContext getNonUeContext() {
+        return nonUeContext;
+    }
+
+    public UeRegistry getUeRegistry() {
+        return ueRegistry;
+    }
+
+    public ISCTPClient getAssociation() {
+        return association;
+    }
+
+    public long getUnknownUeCount() {
+        return unknownUeCount.get();
+    }
+
+    /**
+     * Creates and registers a UE with a newly allocated RAN-UE-NGAP-ID.
+     */
+    public SimulationContext createUe(UeData ueData) {
+        var ctx = newContext(ueData);
+        ueRegistry.registerNew(ctx);
+        return ctx;
+    }
+
+    /**
+     * Creates and registers a UE for a subscriber of the pool. The UE data of the subscriber is only created when the
+     * UE first becomes active, see {@link SimulationContext#ensureUeData()}.
+     */
+    public SimulationContext createUe(SubscriberPool subscribers, long index) {
+        var ctx = createUe((UeData) null);
+        ctx.setSubscriber(subscribers, index);
+        return ctx;
+    }
+
+    /**
+     * Unregisters the UE and closes its transport. Its RAN-UE-NGAP-ID is reused by later UEs.
+     */
+    public void removeUe(SimulationContext ctx) {
+        ueRegistry.unregister(ctx);
+        ctx.sctpClient.close();
+    }
+
+    private SimulationContext newContext(UeData ueData) {
+        var ctx = new SimulationContext();
+        ctx.sctpClient = new UeTransport(association);
+        ctx.amfHost = template.amfHost;
+        ctx.amfPort = template.amfPort;
+        ctx.ueConfig = template.ueConfig;
+        ctx.ueData = ueData;
+        ctx.ranUeNgapId = template.ranUeNgapId;
+        return ctx;
+    }
+
+    private void receiverLoop() {
+        try {
+            association.receiverLoop((receivedBytes, messageInfo, channel) -> route(receivedBytes));
+        } catch (Exception e) {
+            Logging.error(Tag.MESSAGING, "gNB %d receiver failed: %s", setupConfig.gnbId, e);
+        } finally {
+            nonUeContext.sctpClient.close();
+            for (var ctx : ueRegistry.getAll()) {
+                ctx.sctpClient.close();
+            }
+        }
+    }
+
+    private void route(byte[] receivedBytes) {
+        var ngapPdu = Ngap.perDecode(NGAP_PDU.class, receivedBytes);
+        var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
+
+        var ctx = ueRegistry.findForDownlink(ngapMessage);
+        if (ctx == null) {
+            if (isUeAssociated(ngapMessage)) {
+                unknownUeCount.incrementAndGet();
+                Logging.warning(Tag.MESSAGING, "%s received for an unknown UE, ignoring",
+                        ngapMessage.getClass().getSimpleName());
+                return;
+            }
+            ctx = nonUeContext;
+        }
+        ((UeTransport) ctx.sctpClient).deliver(ngapPdu);
+    }
+
+    private static boolean isUeAssociated(Object ngapMessage) {
+        try {
+            return NgapProcedure.valueOf(ngapMessage.getClass().getSimpleName()).isUeAssociated();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
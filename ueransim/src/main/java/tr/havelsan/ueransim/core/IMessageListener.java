@@ -33,4 +33,25 @@ public interface IMessageListener {
     void onReceive(IncomingMessage incomingMessage);
 
     void onSent(OutgoingMessage outgoingMessage);
+
+    /**
+     * Called on the ticking thread of the timing wheel, see {@link NasTimer}.
+     */
+    default void onTimerExpiry(NasTimer timer) {
+    }
+
+    /**
+     * The PDU session of a session management procedure, zero for mobility management procedures. Read by the
+     * {@link UeDispatcher} on every message, so it may change while the procedure runs.
+     */
+    default int getPduSessionId() {
+        return 0;
+    }
+
+    /**
+     * The PTI of a session management procedure, zero if it is not known or not used.
+     */
+    default int getProcedureTransactionId() {
+        return 0;
+    }
 }
@@ -28,27 +28,163 @@ package tr.havelsan.ueransim.core;
 
 import tr.havelsan.ueransim.nas.impl.ies.IEGprsTimer2;
 import tr.havelsan.ueransim.nas.impl.ies.IEGprsTimer3;
+import tr.havelsan.ueransim.structs.UeTimers;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
 
-// todo
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A NAS timer of a UE, backed by the {@link TimingWheel} of the shard of the UE, or by the shared one if the UE has
+ * no shard. When it expires, the owning UE is notified through {@link SimulationContext#dispatchTimerExpiry(NasTimer)}.
+ * While running, the timer is kept by the {@link UeTimers} of the UE.
+ */
 public class NasTimer {
+    private static final AtomicReferenceFieldUpdater<NasTimer, TimingWheel.Timeout> TIMEOUT =
+            AtomicReferenceFieldUpdater.newUpdater(NasTimer.class, TimingWheel.Timeout.class, "timeout");
 
-    public void start() {
+    private final SimulationContext owner;
+    private final int code;
+    private final boolean isMmTimer;
+    private final int defaultSeconds;
+
+    private volatile TimingWheel.Timeout timeout;
+    private volatile long intervalMillis;
 
+    /**
+     * @param defaultSeconds the value used by {@link #start()}, zero if the value is always given by the network
+     */
+    public NasTimer(SimulationContext owner, int code, boolean isMmTimer, int defaultSeconds) {
+        this.owner = owner;
+        this.code = code;
+        this.isMmTimer = isMmTimer;
+        this.defaultSeconds = defaultSeconds;
     }
 
-    public void start(IEGprsTimer2 v) {
+    public void start() {
+        if (defaultSeconds == 0) {
+            Logging.warning(Tag.NOT_IMPL_YET, "T%d has no default value, it is not started", code);
+            return;
+        }
+        startMillis(defaultSeconds * 1000L);
+    }
 
+    public void start(IEGprsTimer2 v) {
+        long seconds = gprsTimer2Seconds(v);
+        if (seconds <= 0) {
+            stop();
+            return;
+        }
+        startMillis(seconds * 1000);
     }
 
     public void start(IEGprsTimer3 v) {
-
+        long seconds = gprsTimer3Seconds(v);
+        if (seconds <= 0) {
+            stop();
+            return;
+        }
+        startMillis(seconds * 1000);
     }
 
     public void stop() {
-
+        var old = TIMEOUT.getAndSet(this, null);
+        if (old != null) {
+            old.cancel();
+        }
+        owner.ueTimers.onStopped(this);
     }
 
     public boolean isRunning() {
-        return false;
+        return timeout != null;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public boolean isMmTimer() {
+        return isMmTimer;
+    }
+
+    /**
+     * Returns the interval of the last start, in milliseconds.
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    private void startMillis(long millis) {
+        intervalMillis = millis;
+
+        var wheel = owner.shard != null ? owner.shard.getTimingWheel() : TimingWheel.getDefault();
+        var old = TIMEOUT.getAndSet(this, wheel.schedule(millis, this::onExpiry));
+        if (old != null) {
+            old.cancel();
+        }
+        owner.ueTimers.onStarted(this);
+    }
+
+    // Runs on the ticking thread. Ignored if the timer has been stopped or restarted in the meantime, since then the
+    // current timeout is not the expired one.
+    private void onExpiry() {
+        var current = timeout;
+        if (current != null && current.isExpired() && TIMEOUT.compareAndSet(this, current, null)) {
+            Logging.debug(Tag.FLOWS, "%s expired", this);
+            owner.ueTimers.onStopped(this);
+            owner.dispatchTimerExpiry(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "T" + code;
+    }
+
+    //======================================================================================================
+    //                                            VALUES
+    //======================================================================================================
+
+    // 3GPP TS 24.008 10.5.7.4, the octet is coded as in GPRS Timer
+    private static long gprsTimer2Seconds(IEGprsTimer2 v) {
+        if (v == null || v.value == null) return 0;
+
+        int octet = v.value.intValue();
+        int value = octet & 0b11111;
+        switch ((octet >> 5) & 0b111) {
+            case 0b000:
+                return value * 2L;
+            case 0b010:
+                return value * 360L;
+            case 0b111:
+                return 0;
+            default:
+                return value * 60L;
+        }
+    }
+
+    // 3GPP TS 24.008 10.5.7.4a
+    private static long gprsTimer3Seconds(IEGprsTimer3 v) {
+        if (v == null || v.unit == null || v.timerValue == null) return 0;
+
+        long value = v.timerValue.intValue();
+        switch (v.unit.intValue()) {
+            case 0b000:
+                return value * 600;
+            case 0b001:
+                return value * 3600;
+            case 0b010:
+                return value * 36000;
+            case 0b011:
+                return value * 2;
+            case 0b100:
+                return value * 30;
+            case 0b101:
+                return value * 60;
+            case 0b110:
+                return value * 320 * 3600;
+            default:
+                return 0;
+        }
     }
 }
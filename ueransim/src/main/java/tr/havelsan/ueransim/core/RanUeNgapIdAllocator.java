@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free allocator of RAN-UE-NGAP-IDs. Released IDs are kept in a bounded ring and handed out again oldest
+ * first; IDs released while the ring is full are kept in an unbounded overflow queue. Fresh IDs are taken from a
+ * counter when no released ID is available, until every ID of the range has been handed out once. From then on only
+ * released IDs are handed out, so an ID is never given twice before it is released.
+ */
+public class RanUeNgapIdAllocator {
+    // RAN-UE-NGAP-ID is INTEGER (0..4294967295)
+    public static final long MAX_RAN_UE_NGAP_ID = 0xFFFFFFFFL;
+    public static final int DEFAULT_RELEASE_CAPACITY = 1 << 16;
+
+    private final long firstId;
+    private final long idCount;
+    private final AtomicLong nextFresh;
+    private final int mask;
+    private final AtomicLongArray released;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final Queue<Long> overflow;
+
+    public RanUeNgapIdAllocator(long firstId) {
+        this(firstId, DEFAULT_RELEASE_CAPACITY);
+    }
+
+    public RanUeNgapIdAllocator(long firstId, int releaseCapacity) {
+        this(firstId, MAX_RAN_UE_NGAP_ID + 1, releaseCapacity);
+    }
+
+    /**
+     * Allocates the IDs in [firstId, firstId + idCount), wrapping around the ID space, e.g. when a range of the IDs
+     * is given to each of several processes.
+     */
+    public RanUeNgapIdAllocator(long firstId, long idCount, int releaseCapacity) {
+        if (idCount < 1 || idCount > MAX_RAN_UE_NGAP_ID + 1) throw new IllegalArgumentException("invalid idCount");
+        if (releaseCapacity < 2) releaseCapacity = 2;
+        int size = Integer.highestOneBit(releaseCapacity - 1) << 1;
+        this.firstId = firstId;
+        this.idCount = idCount;
+        this.nextFresh = new AtomicLong();
+        this.mask = size - 1;
+        this.released = new AtomicLongArray(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.overflow = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Returns an ID which is not allocated, i.e. a released one or one which has never been handed out. Throws if
+     * all IDs of the range are allocated.
+     */
+    public long allocate() {
+        long id = pollReleased();
+        if (id >= 0) return id;
+
+        var overflowed = overflow.poll();
+        if (overflowed != null) return overflowed;
+
+        long fresh;
+        while ((fresh = nextFresh.get()) < idCount) {
+            if (nextFresh.compareAndSet(fresh, fresh + 1)) {
+                return (firstId + fresh) & MAX_RAN_UE_NGAP_ID;
+            }
+        }
+
+        // An ID may have been released meanwhile
+        id = pollReleased();
+        if (id >= 0) return id;
+        overflowed = overflow.poll();
+        if (overflowed != null) return overflowed;
+
+        throw new RuntimeException("RAN-UE-NGAP-ID space is exhausted");
+    }
+
+    /**
+     * Makes an allocated ID available again. IDs outside of the range are ignored.
+     */
+    public void release(long id) {
+        if (!contains(id)) return;
+
+        while (true) {
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    released.lazySet(index, id);
+                    sequences.set(index, pos + 1);
+                    return;
+                }
+            } else if (diff < 0) {
+                // Only reached while the ring is full, so the boxing is rare
+                overflow.add(id);
+                return;
+            }
+        }
+    }
+
+    // Returns -1 if the ring is empty
+    private long pollReleased() {
+        while (true) {
+            long pos = head.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    long id = released.get(index);
+                    sequences.set(index, pos + mask + 1);
+                    return id;
+                }
+            } else if (diff < 0) {
+                return -1;
+            }
+        }
+    }
+
+    public boolean contains(long id) {
+        return id >= 0 && id <= MAX_RAN_UE_NGAP_ID && ((id - firstId) & MAX_RAN_UE_NGAP_ID) < idCount;
+    }
+
+    public long getIdCount() {
+        return idCount;
+    }
+
+    public int getReleasedCount() {
+        long count = tail.get() - head.get();
+        if (count < 0) count = 0;
+        return (int) Math.min(count, mask + 1) + overflow.size();
+    }
+}
@@ -31,6 +31,9 @@ import tr.havelsan.ueransim.OutgoingMessage;
 import tr.havelsan.ueransim.api.ue.sm.SmContext;
 import tr.havelsan.ueransim.nas.impl.messages.RegistrationRequest;
 import tr.havelsan.ueransim.sctp.ISCTPClient;
+import tr.havelsan.ueransim.store.UeStateStore;
+import tr.havelsan.ueransim.structs.SubscriberPool;
+import tr.havelsan.ueransim.structs.Supi;
 import tr.havelsan.ueransim.structs.UeConfig;
 import tr.havelsan.ueransim.structs.UeData;
 import tr.havelsan.ueransim.structs.UeTimers;
@@ -38,7 +41,6 @@ import tr.havelsan.ueransim.structs.UeTimers;
 public class SimulationContext {
     // Connection related
     public ISCTPClient sctpClient;
-    public int streamNumber;
     public String amfHost;
     public int amfPort;
 
@@ -55,32 +57,114 @@ public class SimulationContext {
     public Long amfUeNgapId;
     public long ranUeNgapId;
 
-    // Message callback
-    private IMessageListener messageListener;
+    // Set if the UE belongs to a shard, see UeShards
+    public UeShard shard;
+
+    // Subscriber whose UE data is created on first use
+    private SubscriberPool subscribers;
+    private long subscriberIndex;
+
+    // Set while the state of the UE is kept in a store, see park()
+    private UeStateStore stateStore;
+    private int stateSlot;
+
+    // Procedures running on the UE
+    private final UeDispatcher dispatcher;
 
     public SimulationContext() {
-        this.messageListener = null;
-        this.ueTimers = new UeTimers();
-        this.smCtx = new SmContext();
+        this.dispatcher = new UeDispatcher();
+        this.ueTimers = new UeTimers(this);
+        this.smCtx = null; // created on first use, see UePduSessionManagement
+    }
+
+    public void setSubscriber(SubscriberPool subscribers, long index) {
+        this.subscribers = subscribers;
+        this.subscriberIndex = index;
+    }
+
+    /**
+     * Creates the UE data from the subscriber of the UE if it is not created yet, and returns it.
+     */
+    public UeData ensureUeData() {
+        if (ueData == null && subscribers != null) {
+            ueData = subscribers.materialize(subscriberIndex);
+        }
+        return ueData;
+    }
+
+    /**
+     * Returns the SUPI of the UE, without creating its UE data.
+     */
+    public Supi getSupi() {
+        if (ueData != null) return ueData.supi;
+        return subscribers != null ? subscribers.supiOf(subscriberIndex) : null;
+    }
+
+    /**
+     * Saves the state of the idle UE into a slot of the store and drops the largest parts of it from the heap: the
+     * NAS security contexts, the GUTI and the last registration request. The UE stays registered to its gNB. Its
+     * state is loaded back by {@link #unpark()}, when the next flow is created on it.
+     * <p>
+     * The NGAP IDs are also kept on the context, since the gNB finds the UE by them. The UE data, timers, SM context
+     * and dispatcher stay on the heap as well, so a parked UE still costs some heap, only less than an active one.
+     */
+    public void park(UeStateStore store) {
+        if (stateStore != null) throw new RuntimeException("UE is already parked");
+        if (hasListeners()) throw new RuntimeException("UE is running a procedure");
+
+        int slot = store.allocate();
+        store.view(slot).save(this);
+        this.stateStore = store;
+        this.stateSlot = slot;
+        this.currentNsc = null;
+        this.nonCurrentNsc = null;
+        // Only used while a registration is running
+        this.registrationRequest = null;
+        if (ueData != null) {
+            ueData.storedGuti = null;
+        }
+    }
+
+    /**
+     * Loads the state of a parked UE back from its store and frees its slot. Does nothing if the UE is not parked.
+     */
+    public void unpark() {
+        if (stateStore == null) return;
+
+        stateStore.view(stateSlot).load(this);
+        stateStore.free(stateSlot);
+        this.stateStore = null;
+    }
+
+    public boolean isParked() {
+        return stateStore != null;
     }
 
-    // todo: use read/write lock instead of synchronized
+    public UeDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public void registerListener(IMessageListener listener) {
+        dispatcher.register(listener);
+    }
+
+    public void unregisterListener(IMessageListener listener) {
+        dispatcher.unregister(listener);
+    }
 
-    public synchronized void registerListener(IMessageListener listener) {
-        messageListener = listener;
+    public boolean hasListeners() {
+        return !dispatcher.isEmpty();
     }
 
-    public synchronized void unregisterListener() {
-        messageListener = null;
+    public void dispatchMessageReceive(IncomingMessage incomingMessage) {
+        dispatcher.dispatchReceive(incomingMessage);
     }
 
-    public synchronized void dispatchMessageReceive(IncomingMessage incomingMessage) {
-        var listener = messageListener;
-        if (listener != null) listener.onReceive(incomingMessage);
+    public void dispatchMessageSent(OutgoingMessage outgoingMessage) {
+        dispatcher.dispatchSent(outgoingMessage);
     }
 
-    public synchronized void dispatchMessageSent(OutgoingMessage outgoingMessage) {
-        var listener = messageListener;
-        if (listener != null) listener.onSent(outgoingMessage);
+    public void dispatchTimerExpiry(NasTimer timer) {
+        dispatcher.dispatchTimerExpiry(timer);
     }
 }
@@ -0,0 +1,348 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical hashed timing wheel driven by a single thread. There are four levels of 256 slots, a timeout is
+ * kept in a doubly linked slot list of the lowest level which covers its deadline, and is moved one level down
+ * whenever the lower level wraps around. Scheduling and cancelling are O(1) and lock-free for the callers: both
+ * are queued and applied by the ticking thread at the next tick.
+ * <p>
+ * Expiry tasks run on the ticking thread, so they should only hand the expiry over, e.g. to an {@link EventLoop}.
+ * <p>
+ * A wheel created with a {@link VirtualClock} does not tick, every timeout is an event of the clock at the same tick
+ * boundary instead, and expires on the thread running the clock.
+ */
+public class TimingWheel {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    private static final int SLOT_BITS = 8;
+    private static final int SLOT_COUNT = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOT_COUNT - 1;
+    private static final int LEVEL_COUNT = 4;
+    // Package-private for tests
+    static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVEL_COUNT)) - 1;
+
+    private static volatile TimingWheel defaultWheel;
+
+    private final long tickNanos;
+    private final Timeout[][] slots;
+    private final Queue<Timeout> pendingAdds;
+    private final Queue<Timeout> pendingCancels;
+    private final AtomicLong scheduledCount;
+    private final AtomicLong expiredCount;
+
+    private final String name;
+    private final VirtualClock clock;
+    private Thread thread;
+    private volatile boolean running;
+    private final long startTime;
+    private long currentTick;
+
+    public TimingWheel(String name, long tickMillis) {
+        this(name, tickMillis, null);
+    }
+
+    /**
+     * @param clock expires the timeouts, or null if the wheel is driven by its own ticking thread
+     */
+    public TimingWheel(String name, long tickMillis, VirtualClock clock) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive");
+        this.name = name;
+        this.clock = clock;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.slots = new Timeout[LEVEL_COUNT][SLOT_COUNT];
+        this.pendingAdds = new ConcurrentLinkedQueue<>();
+        this.pendingCancels = new ConcurrentLinkedQueue<>();
+        this.scheduledCount = new AtomicLong();
+        this.expiredCount = new AtomicLong();
+        this.startTime = clock != null ? clock.nanoTime() : System.nanoTime();
+    }
+
+    /**
+     * Returns the wheel shared by all UEs of the process, which is started on first use.
+     */
+    public static TimingWheel getDefault() {
+        var wheel = defaultWheel;
+        if (wheel == null) {
+            synchronized (TimingWheel.class) {
+                wheel = defaultWheel;
+                if (wheel == null) {
+                    wheel = new TimingWheel("timing-wheel", DEFAULT_TICK_MILLIS);
+                    wheel.start();
+                    defaultWheel = wheel;
+                }
+            }
+        }
+        return wheel;
+    }
+
+    /**
+     * Replaces the wheel shared by all UEs of the process, e.g. by one driven by a {@link VirtualClock}. The timeouts
+     * of the replaced wheel are not moved.
+     */
+    public static synchronized void setDefault(TimingWheel wheel) {
+        defaultWheel = wheel;
+    }
+
+    public synchronized void start() {
+        if (thread != null || running) throw new RuntimeException("timing wheel is already started");
+        running = true;
+        if (clock != null) return;
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Runs the task on the ticking thread once the delay has elapsed, rounded up to the tick. Delays beyond the
+     * range of the wheel are shortened to it.
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        long elapsed = (clock != null ? clock.nanoTime() : System.nanoTime()) - startTime;
+        long delayNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0)), MAX_DELAY_TICKS * tickNanos);
+        var timeout = new Timeout(this, (elapsed + delayNanos + tickNanos - 1) / tickNanos, task);
+        scheduledCount.incrementAndGet();
+        if (clock != null) {
+            timeout.event = clock.schedule(timeout.deadlineTick * tickNanos - elapsed, () -> {
+                if (running && timeout.expire()) {
+                    expiredCount.incrementAndGet();
+                }
+            });
+        } else {
+            pendingAdds.add(timeout);
+        }
+        return timeout;
+    }
+
+    public long getScheduledCount() {
+        return scheduledCount.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    //======================================================================================================
+    //                                          TICKING THREAD
+    //======================================================================================================
+
+    private void loop() {
+        while (running) {
+            long next = startTime + (currentTick + 1) * tickNanos;
+            long delay;
+            while (running && (delay = next - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, delay);
+            }
+            if (!running) break;
+
+            tick();
+        }
+    }
+
+    // Package-private for tests, which drive a wheel that is not started
+    void tick() {
+        currentTick++;
+        cascade();
+        processCancels();
+        processAdds();
+        expire();
+    }
+
+    // When a level wraps around, the current slot of the level above is spread over the levels below.
+    private void cascade() {
+        for (int level = 1; level < LEVEL_COUNT; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) break;
+
+            int index = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            var timeout = slots[level][index];
+            slots[level][index] = null;
+            while (timeout != null) {
+                var next = timeout.next;
+                timeout.prev = timeout.next = null;
+                timeout.level = -1;
+                place(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private void processCancels() {
+        Timeout timeout;
+        while ((timeout = pendingCancels.poll()) != null) {
+            if (timeout.level >= 0) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    private void processAdds() {
+        Timeout timeout;
+        while ((timeout = pendingAdds.poll()) != null) {
+            if (timeout.state == Timeout.STATE_WAITING) {
+                place(timeout);
+            }
+        }
+    }
+
+    private void expire() {
+        int index = (int) currentTick & SLOT_MASK;
+        var timeout = slots[0][index];
+        slots[0][index] = null;
+        while (timeout != null) {
+            var next = timeout.next;
+            timeout.prev = timeout.next = null;
+            timeout.level = -1;
+            if (timeout.expire()) {
+                expiredCount.incrementAndGet();
+            }
+            timeout = next;
+        }
+    }
+
+    private void place(Timeout timeout) {
+        long deadline = Math.max(timeout.deadlineTick, currentTick);
+
+        int level = 0;
+        while (level < LEVEL_COUNT - 1
+                && (deadline >>> (SLOT_BITS * (level + 1))) != (currentTick >>> (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int index = (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+
+        var head = slots[level][index];
+        timeout.next = head;
+        if (head != null) head.prev = timeout;
+        slots[level][index] = timeout;
+        timeout.level = level;
+        timeout.index = index;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.index] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = timeout.next = null;
+        timeout.level = -1;
+    }
+
+    //======================================================================================================
+    //                                             TIMEOUT
+    //======================================================================================================
+
+    public static class Timeout {
+        private static final int STATE_WAITING = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final long deadlineTick;
+        private final Runnable task;
+        private volatile int state;
+
+        // Only set if the wheel is driven by a virtual clock
+        private volatile VirtualClock.Event event;
+
+        // Only accessed by the ticking thread
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int index;
+
+        private Timeout(TimingWheel wheel, long deadlineTick, Runnable task) {
+            this.wheel = wheel;
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /**
+         * Returns false if the timeout has already expired or has been cancelled.
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, STATE_WAITING, STATE_CANCELLED)) {
+                return false;
+            }
+            var e = event;
+            if (e != null) {
+                e.cancel();
+            } else if (wheel.clock == null) {
+                wheel.pendingCancels.add(this);
+            }
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == STATE_EXPIRED;
+        }
+
+        // Package-private for tests
+        long getDeadlineTick() {
+            return deadlineTick;
+        }
+
+        private boolean expire() {
+            if (!STATE.compareAndSet(this, STATE_WAITING, STATE_EXPIRED)) {
+                return false;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Logging.error(Tag.FLOWS, "Timer task failed: %s", e);
+            }
+            return true;
+        }
+    }
+}
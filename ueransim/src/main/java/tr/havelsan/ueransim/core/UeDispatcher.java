@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.IncomingMessage;
+import tr.havelsan.ueransim.OutgoingMessage;
+import tr.havelsan.ueransim.nas.core.messages.NasMessage;
+import tr.havelsan.ueransim.nas.core.messages.PlainSmMessage;
+import tr.havelsan.ueransim.nas.impl.ies.IEPayloadContainer;
+import tr.havelsan.ueransim.nas.impl.ies.IEPayloadContainerType;
+import tr.havelsan.ueransim.nas.impl.ies.IEPduSessionIdentity2;
+import tr.havelsan.ueransim.nas.impl.messages.DlNasTransport;
+import tr.havelsan.ueransim.nas.impl.messages.UlNasTransport;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Routes the messages and timer expiries of a UE to the procedures running on it, so that e.g. a PDU session
+ * procedure can overlap with a mobility management procedure. Each message is delivered to a single procedure,
+ * chosen as follows:
+ * <ul>
+ * <li>a session management message goes to the first procedure of its PDU session and PTI, see
+ * {@link IMessageListener#getPduSessionId()}; a zero on either side matches any value</li>
+ * <li>other messages, and session management messages of no such procedure, go to the first mobility management
+ * procedure, i.e. one without PDU session and PTI</li>
+ * <li>if there is none, they go to the first procedure</li>
+ * </ul>
+ * Expiries of session management timers go to the first session management procedure, the others are routed like
+ * mobility management messages.
+ * <p>
+ * Procedures are kept in a copy-on-write array, so dispatching never locks and may run concurrently with registering,
+ * e.g. on the thread of the timing wheel.
+ */
+public class UeDispatcher {
+    private static final IMessageListener[] EMPTY = new IMessageListener[0];
+    private static final AtomicReferenceFieldUpdater<UeDispatcher, IMessageListener[]> LISTENERS =
+            AtomicReferenceFieldUpdater.newUpdater(UeDispatcher.class, IMessageListener[].class, "listeners");
+
+    private volatile IMessageListener[] listeners = EMPTY;
+
+    /**
+     * Adds the procedure after the ones which are already registered, does nothing if it is registered.
+     */
+    public void register(IMessageListener listener) {
+        IMessageListener[] current;
+        IMessageListener[] updated;
+        do {
+            current = listeners;
+            for (var l : current) {
+                if (l == listener) return;
+            }
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+        } while (!LISTENERS.compareAndSet(this, current, updated));
+    }
+
+    /**
+     * Removes the procedure, returns false if it is not registered.
+     */
+    public boolean unregister(IMessageListener listener) {
+        IMessageListener[] current;
+        IMessageListener[] updated;
+        do {
+            current = listeners;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == listener) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) return false;
+
+            if (current.length == 1) {
+                updated = EMPTY;
+            } else {
+                updated = new IMessageListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            }
+        } while (!LISTENERS.compareAndSet(this, current, updated));
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    public int size() {
+        return listeners.length;
+    }
+
+    public void dispatchReceive(IncomingMessage message) {
+        var listener = route(listeners, message.nasMessage);
+        if (listener != null) listener.onReceive(message);
+    }
+
+    public void dispatchSent(OutgoingMessage message) {
+        var listener = route(listeners, message.plainNas);
+        if (listener != null) listener.onSent(message);
+    }
+
+    public void dispatchTimerExpiry(NasTimer timer) {
+        var current = listeners;
+        IMessageListener listener = null;
+        if (!timer.isMmTimer()) {
+            for (var l : current) {
+                if (isSessionManagement(l)) {
+                    listener = l;
+                    break;
+                }
+            }
+        }
+        if (listener == null) {
+            listener = route(current, 0, 0);
+        }
+        if (listener != null) listener.onTimerExpiry(timer);
+    }
+
+    private static IMessageListener route(IMessageListener[] current, NasMessage nasMessage) {
+        if (current.length == 0) return null;
+        if (current.length == 1) return current[0];
+
+        if (nasMessage instanceof PlainSmMessage) {
+            var smMessage = (PlainSmMessage) nasMessage;
+            return route(current, smMessage.pduSessionId.intValue(), smMessage.pti.intValue());
+        }
+        if (nasMessage instanceof DlNasTransport) {
+            var transport = (DlNasTransport) nasMessage;
+            return route(current, sessionOf(transport.pduSessionId),
+                    transactionOf(transport.payloadContainerType, transport.payloadContainer));
+        }
+        if (nasMessage instanceof UlNasTransport) {
+            var transport = (UlNasTransport) nasMessage;
+            return route(current, sessionOf(transport.pduSessionId),
+                    transactionOf(transport.payloadContainerType, transport.payloadContainer));
+        }
+        return route(current, 0, 0);
+    }
+
+    private static IMessageListener route(IMessageListener[] current, int pduSessionId, int pti) {
+        if (current.length == 0) return null;
+
+        if (pduSessionId != 0 || pti != 0) {
+            for (var l : current) {
+                if (isSessionManagement(l) && matches(pduSessionId, l.getPduSessionId())
+                        && matches(pti, l.getProcedureTransactionId())) {
+                    return l;
+                }
+            }
+        }
+        for (var l : current) {
+            if (!isSessionManagement(l)) return l;
+        }
+        return current[0];
+    }
+
+    private static boolean isSessionManagement(IMessageListener listener) {
+        return listener.getPduSessionId() != 0 || listener.getProcedureTransactionId() != 0;
+    }
+
+    private static boolean matches(int value, int procedureValue) {
+        return value == 0 || procedureValue == 0 || value == procedureValue;
+    }
+
+    private static int sessionOf(IEPduSessionIdentity2 pduSessionId) {
+        return pduSessionId != null && pduSessionId.value != null ? pduSessionId.value.intValue() : 0;
+    }
+
+    // The PTI is the third octet of a session management message, it is read without decoding the message.
+    private static int transactionOf(IEPayloadContainerType type, IEPayloadContainer container) {
+        if (type == null || container == null || container.payload == null) return 0;
+        if (!IEPayloadContainerType.EPayloadContainerType.N1_SM_INFORMATION.equals(type.payloadContainerType))
+            return 0;
+        if (container.payload.length < 3) return 0;
+        return container.payload.get(2).intValue();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import fr.marben.asnsdk.japi.spe.Value;
+import tr.havelsan.ueransim.ngap.ngap_ies.AMF_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.RAN_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.utils.LongObjectMap;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * UE contexts of a gNB, keyed by RAN-UE-NGAP-ID for uplink and by AMF-UE-NGAP-ID for downlink.
+ * <p>
+ * Lookups neither lock nor allocate, so that routing a downlink message takes constant time regardless of the number
+ * of UEs. Changes to the two tables are serialized, so that they are consistent with each other.
+ */
+public class UeRegistry {
+    private final RanUeNgapIdAllocator idAllocator;
+    private final LongObjectMap<SimulationContext> byRanUeNgapId;
+    private final LongObjectMap<SimulationContext> byAmfUeNgapId;
+    private final ReentrantLock writeLock;
+
+    public UeRegistry(long firstRanUeNgapId) {
+        this(firstRanUeNgapId, RanUeNgapIdAllocator.MAX_RAN_UE_NGAP_ID + 1);
+    }
+
+    /**
+     * @param ranUeNgapIdCount the RAN-UE-NGAP-IDs of the UEs are allocated from the given number of IDs
+     */
+    public UeRegistry(long firstRanUeNgapId, long ranUeNgapIdCount) {
+        this.idAllocator = new RanUeNgapIdAllocator(firstRanUeNgapId, ranUeNgapIdCount,
+                RanUeNgapIdAllocator.DEFAULT_RELEASE_CAPACITY);
+        this.byRanUeNgapId = new LongObjectMap<>();
+        this.byAmfUeNgapId = new LongObjectMap<>();
+        this.writeLock = new ReentrantLock();
+    }
+
+    /**
+     * Registers the UE with a newly allocated RAN-UE-NGAP-ID, which is also set to the UE. The ID is reserved with a
+     * single put-if-absent, so concurrent registrations never get the same ID. IDs of unregistered UEs are reused.
+     */
+    public long registerNew(SimulationContext ctx) {
+        while (true) {
+            // Throws when the range is used up
+            long id = idAllocator.allocate();
+
+            writeLock.lock();
+            try {
+                // The ID may be taken by a UE which was registered with an explicit ID, it is then skipped. It is
+                // released again when that UE is unregistered.
+                ctx.ranUeNgapId = id;
+                if (byRanUeNgapId.putIfAbsent(id, ctx) != null) continue;
+
+                if (ctx.amfUeNgapId != null) {
+                    byAmfUeNgapId.put(ctx.amfUeNgapId, ctx);
+                }
+                return id;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    public void register(SimulationContext ctx) {
+        writeLock.lock();
+        try {
+            if (byRanUeNgapId.putIfAbsent(ctx.ranUeNgapId, ctx) != null) {
+                throw new RuntimeException("RAN-UE-NGAP-ID is already in use: " + ctx.ranUeNgapId);
+            }
+            if (ctx.amfUeNgapId != null) {
+                byAmfUeNgapId.put(ctx.amfUeNgapId, ctx);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the UE and releases its RAN-UE-NGAP-ID for reuse.
+     */
+    public void unregister(SimulationContext ctx) {
+        writeLock.lock();
+        try {
+            if (!byRanUeNgapId.remove(ctx.ranUeNgapId, ctx)) return;
+            if (ctx.amfUeNgapId != null) {
+                byAmfUeNgapId.remove(ctx.amfUeNgapId, ctx);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        idAllocator.release(ctx.ranUeNgapId);
+    }
+
+    public SimulationContext findByRanUeNgapId(long ranUeNgapId) {
+        return byRanUeNgapId.get(ranUeNgapId);
+    }
+
+    public SimulationContext findByAmfUeNgapId(long amfUeNgapId) {
+        return byAmfUeNgapId.get(amfUeNgapId);
+    }
+
+    /**
+     * Finds the UE of a downlink NGAP message, by AMF-UE-NGAP-ID if it is already known, by RAN-UE-NGAP-ID otherwise.
+     * The AMF-UE-NGAP-ID of the message is bound to the UE if it is new. Returns null for non UE-associated messages
+     * and for unknown UEs.
+     */
+    public SimulationContext findForDownlink(Value ngapMessage) {
+        var amfUeNgapId = NgapInternal.findProtocolIe(ngapMessage, AMF_UE_NGAP_ID.class);
+        if (amfUeNgapId != null) {
+            var ctx = byAmfUeNgapId.get(amfUeNgapId.value);
+            if (ctx != null) return ctx;
+        }
+
+        var ranUeNgapId = NgapInternal.findProtocolIe(ngapMessage, RAN_UE_NGAP_ID.class);
+        if (ranUeNgapId == null) return null;
+
+        var ctx = byRanUeNgapId.get(ranUeNgapId.value);
+        if (ctx != null && amfUeNgapId != null) {
+            bindAmfUeNgapId(ctx, amfUeNgapId.value);
+        }
+        return ctx;
+    }
+
+    private void bindAmfUeNgapId(SimulationContext ctx, Long amfUeNgapId) {
+        writeLock.lock();
+        try {
+            // The UE may be unregistered meanwhile
+            if (byRanUeNgapId.get(ctx.ranUeNgapId) != ctx) return;
+
+            var old = ctx.amfUeNgapId;
+            if (old != null && !old.equals(amfUeNgapId)) {
+                byAmfUeNgapId.remove(old, ctx);
+            }
+            byAmfUeNgapId.put(amfUeNgapId, ctx);
+            // Also set here, so that unregister() removes the binding even before the message is handled by the UE
+            ctx.amfUeNgapId = amfUeNgapId;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int size() {
+        return byRanUeNgapId.size();
+    }
+
+    public List<SimulationContext> getAll() {
+        return byRanUeNgapId.values();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.Ngap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A partition of the UEs which is run by a single thread. The shard owns the event loop running the flows of its
+ * UEs, the timing wheel of their NAS timers and the NGAP codec context of its thread. The ciphers and MACs used by
+ * the NAS security of its UEs are also kept per thread, so the UEs of different shards share no mutable state, and
+ * only meet at the transport, see {@link UeTransport}.
+ */
+public class UeShard {
+    private final int index;
+    private final EventLoop eventLoop;
+    private final TimingWheel timingWheel;
+    private final AtomicLong ueCount;
+
+    public UeShard(int index, long tickMillis) {
+        this.index = index;
+        this.eventLoop = new EventLoop("ue-shard-" + index);
+        this.timingWheel = new TimingWheel("ue-shard-" + index + "-timers", tickMillis);
+        this.ueCount = new AtomicLong();
+    }
+
+    public void start() {
+        timingWheel.start();
+        eventLoop.start();
+        eventLoop.execute(Ngap::bindThreadContext);
+    }
+
+    /**
+     * Stops the shard, the flows and timers which are still pending are dropped.
+     */
+    public void stop() {
+        eventLoop.stop();
+        timingWheel.stop();
+    }
+
+    /**
+     * Makes the UE a member of this shard. Its flows must then be started on the event loop of the shard.
+     */
+    public void adopt(SimulationContext ctx) {
+        if (ctx.shard != null) throw new RuntimeException("UE already belongs to a shard");
+        ctx.shard = this;
+        ueCount.incrementAndGet();
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public EventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    public long getUeCount() {
+        return ueCount.get();
+    }
+}
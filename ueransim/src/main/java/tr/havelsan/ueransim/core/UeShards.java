@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.structs.Supi;
+
+/**
+ * Share-nothing runtime which partitions the UEs by the hash of their SUPI into a fixed number of {@link UeShard}s,
+ * so a UE is always run by the same shard, whichever gNB it belongs to. Usually there is one shard per core.
+ * <p>
+ * Java has no way to pin a thread to a core. Each shard runs on a single thread which the OS scheduler keeps on a
+ * core of its own as long as there are not more shards than cores; the process can be restricted to a set of cores
+ * with e.g. taskset.
+ */
+public class UeShards {
+    private final UeShard[] shards;
+
+    public UeShards(int shardCount, long tickMillis) {
+        if (shardCount < 1) throw new IllegalArgumentException("at least one shard is required");
+
+        this.shards = new UeShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new UeShard(i, tickMillis);
+        }
+    }
+
+    public UeShards(int shardCount) {
+        this(shardCount, TimingWheel.DEFAULT_TICK_MILLIS);
+    }
+
+    public void start() {
+        for (var shard : shards) {
+            shard.start();
+        }
+    }
+
+    public void stop() {
+        for (var shard : shards) {
+            shard.stop();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public UeShard getShard(int index) {
+        return shards[index];
+    }
+
+    public UeShard shardOf(Supi supi) {
+        return shards[indexOf(supi, shards.length)];
+    }
+
+    /**
+     * Makes the UE a member of the shard of its SUPI and returns the shard.
+     */
+    public UeShard assign(SimulationContext ctx) {
+        var supi = ctx.getSupi();
+        if (supi == null) throw new RuntimeException("UE has no SUPI");
+
+        var shard = shardOf(supi);
+        shard.adopt(ctx);
+        return shard;
+    }
+
+    /**
+     * Consecutive SUPIs are spread over the shards by mixing the digits of the SUPI, see MurmurHash3.
+     */
+    static int indexOf(Supi supi, int shardCount) {
+        long h;
+        try {
+            h = Long.parseLong(supi.value);
+        } catch (NumberFormatException e) {
+            h = supi.value.hashCode();
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) Long.remainderUnsigned(h, shardCount);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the threads on which the flows of the UEs run. Virtual threads are looked up reflectively, so that the
+ * project still builds for and runs on runtimes without them.
+ * <p>
+ * Code running on a virtual thread should not block while holding a monitor, since that pins the carrier thread.
+ * Blocking parts of the UE path use {@link java.util.concurrent.locks.Lock}s or lock-free queues instead.
+ */
+public class UeThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null, builderName = null, builderFactory = null;
+        try {
+            var builderType = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderType.getMethod("name", String.class, long.class);
+            builderFactory = builderType.getMethod("factory");
+        } catch (ReflectiveOperationException ignored) {
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+    }
+
+    public static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns a factory for threads named with the prefix followed by a sequence number.
+     */
+    public static ThreadFactory newFactory(EThreadMode mode, String namePrefix) {
+        if (mode == EThreadMode.VIRTUAL) {
+            if (isVirtualSupported()) {
+                try {
+                    var builder = OF_VIRTUAL.invoke(null);
+                    builder = BUILDER_NAME.invoke(builder, namePrefix, 0L);
+                    return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            Logging.warning(Tag.CONFIG, "Virtual threads are not supported by this runtime, using platform threads");
+        }
+
+        var sequence = new AtomicLong();
+        return runnable -> {
+            var thread = new Thread(runnable, namePrefix + sequence.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
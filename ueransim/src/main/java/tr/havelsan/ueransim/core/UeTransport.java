@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.Ngap;
+import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.sctp.ISCTPClient;
+import tr.havelsan.ueransim.sctp.ISCTPHandler;
+import tr.havelsan.ueransim.sctp.StreamCounters;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * The view of a single UE to the association shared by its gNB. Messages are sent over the association, and the
+ * received messages which the gNB routes to the UE are already decoded, see {@link #pduLoop(Consumer)}. Closing it
+ * does not close the association.
+ * <p>
+ * Instead of being taken by a blocked thread, the received messages can also be handed to an executor such as an
+ * {@link EventLoop}, see {@link #attach(Executor, Consumer)}.
+ */
+public class UeTransport implements ISCTPClient {
+    // Put into the inbox to wake up a blocked loop, never handed to the handler.
+    private static final Object WAKEUP = new Object();
+
+    private final ISCTPClient association;
+    private final BlockingQueue<Object> inbox;
+
+    private Executor executor;
+    private Consumer<NGAP_PDU> handler;
+
+    private volatile boolean receiving;
+    private volatile boolean isOpen;
+
+    public UeTransport(ISCTPClient association) {
+        this.association = association;
+        this.inbox = new LinkedBlockingQueue<>();
+        this.isOpen = true;
+    }
+
+    /**
+     * Called by the gNB for the messages routed to this UE.
+     */
+    public synchronized void deliver(NGAP_PDU ngapPdu) {
+        if (handler != null) {
+            var h = handler;
+            executor.execute(() -> dispatch(h, ngapPdu));
+        } else {
+            inbox.add(ngapPdu);
+        }
+    }
+
+    /**
+     * Hands the received messages to the handler on the executor until {@link #abortReceiver()} is called, instead
+     * of queueing them for {@link #pduLoop(Consumer)}. Messages which were queued before are handed first.
+     */
+    public synchronized void attach(Executor executor, Consumer<NGAP_PDU> handler) {
+        if (this.handler != null) throw new RuntimeException("a handler is already attached");
+        this.executor = executor;
+        this.handler = handler;
+
+        Object entry;
+        while ((entry = inbox.poll()) != null) {
+            if (entry == WAKEUP) continue;
+            var ngapPdu = (NGAP_PDU) entry;
+            executor.execute(() -> dispatch(handler, ngapPdu));
+        }
+    }
+
+    public synchronized boolean isAttached() {
+        return handler != null;
+    }
+
+    // The handler may be detached after the message is handed to the executor, then it is kept for the next one.
+    private void dispatch(Consumer<NGAP_PDU> h, NGAP_PDU ngapPdu) {
+        synchronized (this) {
+            if (handler != h) {
+                inbox.add(ngapPdu);
+                return;
+            }
+        }
+        h.accept(ngapPdu);
+    }
+
+    private synchronized void detach() {
+        this.executor = null;
+        this.handler = null;
+    }
+
+    /**
+     * Same as {@link #receiverLoop(ISCTPHandler)}, but without encoding the already decoded messages again.
+     */
+    public void pduLoop(Consumer<NGAP_PDU> handler) throws Exception {
+        receiving = true;
+
+        while (receiving && isOpen()) {
+            var entry = inbox.take();
+            if (entry == WAKEUP) continue;
+
+            handler.accept((NGAP_PDU) entry);
+        }
+    }
+
+    @Override
+    public void receiverLoop(ISCTPHandler handler) throws Exception {
+        pduLoop(ngapPdu -> {
+            try {
+                handler.handleSCTPMessage(Ngap.perEncode(ngapPdu), null, null);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void send(int streamNumber, byte[] data) {
+        association.send(streamNumber, data);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(int streamNumber, ByteBuffer data) {
+        return association.sendAsync(streamNumber, data);
+    }
+
+    @Override
+    public boolean isWritable() {
+        return association.isWritable();
+    }
+
+    @Override
+    public void close() {
+        isOpen = false;
+        detach();
+        inbox.offer(WAKEUP);
+    }
+
+    @Override
+    public void abortReceiver() {
+        receiving = false;
+        detach();
+        inbox.offer(WAKEUP);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen && association.isOpen();
+    }
+
+    @Override
+    public int getOutboundStreams() {
+        return association.getOutboundStreams();
+    }
+
+    @Override
+    public StreamCounters getStreamCounters() {
+        return association.getStreamCounters();
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.core;
+
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Clock of a discrete event simulation, used to run the UEs faster than real time. Events run on the thread calling
+ * {@link #runNext(long)}, in the order of their time and, for equal times, in the order they were scheduled. Once the
+ * due events are done, i.e. all UEs are waiting, the clock jumps to the time of the next event, so a NAS timer of an
+ * hour costs no more than one of a second. Since nothing depends on the wall clock or on the scheduling of threads, a
+ * run is determined by its inputs and seeds.
+ * <p>
+ * Events may be scheduled from any thread, but they should only be scheduled by the events themselves while the
+ * clock is running, otherwise the clock may jump over them.
+ */
+public class VirtualClock implements Executor {
+    // Cancelled events are removed in bulk, once there are this many and they make up half of the queue.
+    private static final int MIN_PURGE_COUNT = 1024;
+
+    private final PriorityQueue<Event> events;
+    private long sequence;
+    private int cancelledCount;
+
+    private volatile long now;
+    private volatile Thread runner;
+    private volatile long executedCount;
+
+    public VirtualClock() {
+        this.events = new PriorityQueue<>();
+    }
+
+    /**
+     * Returns the current time of the clock, it starts from zero.
+     */
+    public long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        schedule(0, task);
+    }
+
+    /**
+     * Runs the task after the given delay of virtual time. The returned event may be cancelled from any thread.
+     */
+    public synchronized Event schedule(long delayNanos, Runnable task) {
+        long delay = Math.max(delayNanos, 0);
+        long time = delay > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + delay;
+        var event = new Event(this, time, sequence++, task);
+        events.add(event);
+        return event;
+    }
+
+    /**
+     * Runs the earliest event if it is due at the given time at the latest, after advancing the clock to the time of
+     * the event. Returns false if there is no such event.
+     */
+    public boolean runNext(long limitNanos) {
+        Event event;
+        synchronized (this) {
+            while (true) {
+                event = events.peek();
+                if (event == null || event.time > limitNanos) return false;
+                events.poll();
+                event.queued = false;
+                if (!event.cancelled) break;
+                cancelledCount--;
+            }
+            if (event.time > now) {
+                now = event.time;
+            }
+        }
+
+        runner = Thread.currentThread();
+        try {
+            event.task.run();
+        } catch (RuntimeException e) {
+            Logging.error(Tag.FLOWS, "Virtual clock event failed: %s", e);
+        }
+        executedCount++;
+        return true;
+    }
+
+    /**
+     * Runs the events which are due until the given time, then advances the clock to it.
+     */
+    public void runUntil(long timeNanos) {
+        boolean ran;
+        do {
+            ran = runNext(timeNanos);
+        } while (ran);
+        advanceTo(timeNanos);
+    }
+
+    /**
+     * Advances the clock without running the events, the events which are due earlier run at the new time. The clock
+     * never goes back.
+     */
+    public synchronized void advanceTo(long timeNanos) {
+        if (timeNanos > now) {
+            now = timeNanos;
+        }
+    }
+
+    /**
+     * Returns true if the current thread is the one running the events.
+     */
+    public boolean inClock() {
+        return Thread.currentThread() == runner;
+    }
+
+    public synchronized boolean isIdle() {
+        return events.size() == cancelledCount;
+    }
+
+    public synchronized int getPendingCount() {
+        return events.size() - cancelledCount;
+    }
+
+    public long getExecutedCount() {
+        return executedCount;
+    }
+
+    private synchronized void cancel(Event event) {
+        if (event.cancelled || !event.queued) return;
+        event.cancelled = true;
+        cancelledCount++;
+
+        if (cancelledCount >= MIN_PURGE_COUNT && cancelledCount * 2 > events.size()) {
+            events.removeIf(e -> e.cancelled);
+            cancelledCount = 0;
+        }
+    }
+
+    public static class Event implements Comparable<Event> {
+        private final VirtualClock clock;
+        private final long time;
+        private final long sequence;
+        private final Runnable task;
+
+        // Guarded by the clock
+        private boolean queued;
+        private volatile boolean cancelled;
+
+        private Event(VirtualClock clock, long time, long sequence, Runnable task) {
+            this.clock = clock;
+            this.time = time;
+            this.sequence = sequence;
+            this.task = task;
+            this.queued = true;
+        }
+
+        /**
+         * Has no effect if the event has already run.
+         */
+        public void cancel() {
+            clock.cancel(this);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int res = Long.compare(time, other.time);
+            return res != 0 ? res : Long.compare(sequence, other.sequence);
+        }
+    }
+}
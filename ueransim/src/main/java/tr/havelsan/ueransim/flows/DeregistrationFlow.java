@@ -27,6 +27,7 @@
 package tr.havelsan.ueransim.flows;
 
 import tr.havelsan.ueransim.*;
+import tr.havelsan.ueransim.api.ue.sm.UePduSessionManagement;
 import tr.havelsan.ueransim.configs.DeregistrationConfig;
 import tr.havelsan.ueransim.core.SimulationContext;
 import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
@@ -65,6 +66,7 @@ public class DeregistrationFlow extends BaseFlow {
             FlowLogging.logUnhandledMessage(message, DeRegistrationRequestUeOriginating.class);
             return this::waitDeregistrationAccept;
         }
+        UePduSessionManagement.releaseAll(ctx);
         return this::waitUeContextReleaseCommand;
     }
 
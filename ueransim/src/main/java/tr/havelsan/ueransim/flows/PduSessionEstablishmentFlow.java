@@ -37,6 +37,7 @@ import tr.havelsan.ueransim.core.SimulationContext;
 public class PduSessionEstablishmentFlow extends BaseFlow {
 
     private final PduSessionEstablishmentConfig config;
+    private int pduSessionId;
 
     public PduSessionEstablishmentFlow(SimulationContext simContext, PduSessionEstablishmentConfig config) {
         super(simContext);
@@ -45,7 +46,10 @@ public class PduSessionEstablishmentFlow extends BaseFlow {
 
     @Override
     public State main(IncomingMessage message) {
-        UePduSessionEstablishment.sendEstablishmentRequest(ctx, config);
+        var allocatedId = UePduSessionEstablishment.sendEstablishmentRequest(ctx, config);
+        if (allocatedId != null) {
+            pduSessionId = allocatedId.intValue();
+        }
         return this::loop;
     }
 
@@ -54,6 +58,11 @@ public class PduSessionEstablishmentFlow extends BaseFlow {
         return this::loop;
     }
 
+    @Override
+    public int getPduSessionId() {
+        return pduSessionId;
+    }
+
     @Override
     public void onReceive(IncomingMessage incomingMessage) {
         // todo
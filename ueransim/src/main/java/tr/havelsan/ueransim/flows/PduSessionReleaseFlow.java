@@ -28,6 +28,7 @@ package tr.havelsan.ueransim.flows;
 
 import fr.marben.asnsdk.japi.spe.ContainingOctetStringValue;
 import tr.havelsan.ueransim.*;
+import tr.havelsan.ueransim.api.ue.sm.UePduSessionManagement;
 import tr.havelsan.ueransim.configs.PduSessionReleaseConfig;
 import tr.havelsan.ueransim.core.SimulationContext;
 import tr.havelsan.ueransim.nas.NasEncoder;
@@ -53,6 +54,8 @@ import java.util.ArrayList;
 
 public class PduSessionReleaseFlow extends BaseFlow {
     private PduSessionReleaseConfig config;
+    private EPduSessionIdentity pduSessionId;
+    private EProcedureTransactionIdentity pti;
 
     public PduSessionReleaseFlow(SimulationContext simContext, PduSessionReleaseConfig config) {
         super(simContext);
@@ -61,14 +64,27 @@ public class PduSessionReleaseFlow extends BaseFlow {
 
     @Override
     public State main(IncomingMessage message) {
+        // A session established by the UE is released unless the config names one
+        pduSessionId = config.pduSessionId != null
+                ? EPduSessionIdentity.fromValue(config.pduSessionId.intValue())
+                : UePduSessionManagement.findPduSessionId(ctx);
+        if (pduSessionId == null) {
+            return flowFailed("no PDU session to release");
+        }
+
+        pti = UePduSessionManagement.allocateProcedureTransactionId(ctx);
+        if (pti == null) {
+            return flowFailed("no free PTI");
+        }
+
         var pduRR = new PduSessionReleaseRequest();
-        pduRR.pduSessionId = EPduSessionIdentity.fromValue(config.pduSessionId.intValue());
-        pduRR.pti = EProcedureTransactionIdentity.fromValue(config.procedureTransactionId.intValue());
+        pduRR.pduSessionId = pduSessionId;
+        pduRR.pti = pti;
 
         var uplink = new UlNasTransport();
         uplink.payloadContainerType = new IEPayloadContainerType(IEPayloadContainerType.EPayloadContainerType.N1_SM_INFORMATION);
         uplink.payloadContainer = new IEPayloadContainer(new OctetString(NasEncoder.nasPdu(pduRR)));
-        uplink.pduSessionId = new IEPduSessionIdentity2(config.pduSessionId);
+        uplink.pduSessionId = new IEPduSessionIdentity2(pduSessionId.intValue());
         uplink.sNssa = config.sNssai;
         uplink.dnn = config.dnn;
 
@@ -85,6 +101,10 @@ public class PduSessionReleaseFlow extends BaseFlow {
 
         sendPDUSessionResourceReleased();
         sendUplinkNas();
+
+        // The identities may be used again once the release is complete
+        UePduSessionManagement.releaseProcedureTransactionId(ctx, pti);
+        UePduSessionManagement.releasePduSessionId(ctx, pduSessionId);
         return flowComplete();
     }
 
@@ -93,7 +113,7 @@ public class PduSessionReleaseFlow extends BaseFlow {
         list.valueList = new ArrayList<>();
 
         var item = new PDUSessionResourceReleasedItemRelRes();
-        item.pDUSessionID = new PDUSessionID(config.pduSessionId.intValue());
+        item.pDUSessionID = new PDUSessionID(pduSessionId.intValue());
         item.pDUSessionResourceReleaseResponseTransfer = new ContainingOctetStringValue(new PDUSessionResourceReleaseResponseTransfer());
 
         send(new SendingMessage(new NgapBuilder(NgapProcedure.PDUSessionResourceReleaseResponse, NgapCriticality.REJECT)
@@ -102,19 +122,29 @@ public class PduSessionReleaseFlow extends BaseFlow {
 
     private void sendUplinkNas() {
         var releaseComplete = new PduSessionReleaseComplete();
-        releaseComplete.pduSessionId = EPduSessionIdentity.fromValue(config.pduSessionId.intValue());
-        releaseComplete.pti = EProcedureTransactionIdentity.fromValue(config.procedureTransactionId.intValue());
+        releaseComplete.pduSessionId = pduSessionId;
+        releaseComplete.pti = pti;
 
         var uplink = new UlNasTransport();
         uplink.payloadContainerType = new IEPayloadContainerType(IEPayloadContainerType.EPayloadContainerType.N1_SM_INFORMATION);
         uplink.payloadContainer = new IEPayloadContainer(new OctetString(NasEncoder.nasPdu(releaseComplete)));
-        uplink.pduSessionId = new IEPduSessionIdentity2(config.pduSessionId);
+        uplink.pduSessionId = new IEPduSessionIdentity2(pduSessionId.intValue());
         uplink.sNssa = config.sNssai;
         uplink.dnn = config.dnn;
 
         send(new SendingMessage(new NgapBuilder(NgapProcedure.UplinkNASTransport, NgapCriticality.IGNORE), uplink));
     }
 
+    @Override
+    public int getPduSessionId() {
+        return pduSessionId != null ? pduSessionId.intValue() : 0;
+    }
+
+    @Override
+    public int getProcedureTransactionId() {
+        return pti != null ? pti.intValue() : 0;
+    }
+
     @Override
     public void onReceive(IncomingMessage incomingMessage) {
 
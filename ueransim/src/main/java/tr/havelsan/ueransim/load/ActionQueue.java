@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import java.util.Arrays;
+
+/**
+ * Min-heap of UE indexes keyed by the time of their next action. Keys and values are kept in primitive arrays, so
+ * that a million pending UEs cost a few tens of megabytes and no object per entry. Not thread safe.
+ */
+public class ActionQueue {
+    private long[] times;
+    private int[] ues;
+    private int size;
+
+    public ActionQueue(int initialCapacity) {
+        this.times = new long[Math.max(initialCapacity, 16)];
+        this.ues = new int[times.length];
+    }
+
+    public void add(long time, int ue) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            ues = Arrays.copyOf(ues, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (times[parent] - time <= 0) break;
+            times[i] = times[parent];
+            ues[i] = ues[parent];
+            i = parent;
+        }
+        times[i] = time;
+        ues[i] = ue;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the time of the earliest action, the queue must not be empty.
+     */
+    public long peekTime() {
+        return times[0];
+    }
+
+    /**
+     * Removes the earliest action and returns its UE, the queue must not be empty.
+     */
+    public int poll() {
+        int res = ues[0];
+        size--;
+        if (size > 0) {
+            long time = times[size];
+            int ue = ues[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && times[child + 1] - times[child] < 0) child++;
+                if (time - times[child] <= 0) break;
+                times[i] = times[child];
+                ues[i] = ues[child];
+                i = child;
+            }
+            times[i] = time;
+            ues[i] = ue;
+        }
+        return res;
+    }
+}
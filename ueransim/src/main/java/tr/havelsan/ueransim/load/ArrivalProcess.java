@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import java.util.Random;
+
+/**
+ * Computes the arrival times of an open-loop load. Times are in nanoseconds elapsed since the start of the load, and
+ * rates are in arrivals per second.
+ */
+public class ArrivalProcess {
+    // While the rate is zero, it is evaluated again after this amount of time.
+    private static final long IDLE_TICK_NANOS = 1_000_000;
+
+    private final EArrivalProcess type;
+    private final double rate;
+    private final double stepRate;
+    private final double stepSeconds;
+    private final double maxRate;
+    private final double amplitude;
+    private final double periodSeconds;
+    private final double targetRate;
+    private final double rampSeconds;
+    private final Random random;
+
+    private ArrivalProcess(EArrivalProcess type, double rate, double stepRate, double stepSeconds, double maxRate,
+                           double amplitude, double periodSeconds, double targetRate, double rampSeconds, long seed) {
+        if (rate < 0) throw new IllegalArgumentException("rate must not be negative");
+        this.type = type;
+        this.rate = rate;
+        this.stepRate = stepRate;
+        this.stepSeconds = stepSeconds;
+        this.maxRate = maxRate;
+        this.amplitude = amplitude;
+        this.periodSeconds = periodSeconds;
+        this.targetRate = targetRate;
+        this.rampSeconds = rampSeconds;
+        this.random = new Random(seed);
+    }
+
+    public static ArrivalProcess constant(double rate) {
+        return new ArrivalProcess(EArrivalProcess.CONSTANT, rate, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public static ArrivalProcess poisson(double rate, long seed) {
+        return new ArrivalProcess(EArrivalProcess.POISSON, rate, 0, 0, 0, 0, 0, 0, 0, seed);
+    }
+
+    /**
+     * @param maxRate the rate is not increased beyond this value, zero for no limit
+     */
+    public static ArrivalProcess step(double initialRate, double stepRate, double stepSeconds, double maxRate) {
+        if (stepSeconds <= 0) throw new IllegalArgumentException("stepSeconds must be positive");
+        return new ArrivalProcess(EArrivalProcess.STEP, initialRate, stepRate, stepSeconds, maxRate, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * The rate is 'meanRate + amplitude * sin(2 * pi * t / periodSeconds)', negative values are taken as zero.
+     */
+    public static ArrivalProcess sinusoidal(double meanRate, double amplitude, double periodSeconds) {
+        if (periodSeconds <= 0) throw new IllegalArgumentException("periodSeconds must be positive");
+        return new ArrivalProcess(EArrivalProcess.SINUSOIDAL, meanRate, 0, 0, 0, amplitude, periodSeconds, 0, 0, 0);
+    }
+
+    /**
+     * The rate changes linearly from the initial rate to the target rate within the ramp duration, and stays at the
+     * target rate afterwards.
+     */
+    public static ArrivalProcess ramp(double initialRate, double targetRate, double rampSeconds) {
+        if (targetRate < 0) throw new IllegalArgumentException("targetRate must not be negative");
+        if (rampSeconds <= 0) throw new IllegalArgumentException("rampSeconds must be positive");
+        return new ArrivalProcess(EArrivalProcess.RAMP, initialRate, 0, 0, 0, 0, 0, targetRate, rampSeconds, 0);
+    }
+
+    public EArrivalProcess getType() {
+        return type;
+    }
+
+    /**
+     * Returns the target rate at the given time.
+     */
+    public double rateAt(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        switch (type) {
+            case CONSTANT:
+            case POISSON:
+                return rate;
+            case STEP: {
+                double res = rate + stepRate * Math.floor(seconds / stepSeconds);
+                if (maxRate > 0) res = Math.min(res, maxRate);
+                return Math.max(res, 0);
+            }
+            case SINUSOIDAL:
+                return Math.max(rate + amplitude * Math.sin(2 * Math.PI * seconds / periodSeconds), 0);
+            case RAMP:
+                if (seconds >= rampSeconds) return targetRate;
+                return rate + (targetRate - rate) * seconds / rampSeconds;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Returns the time of the arrival following the one at the given time, or {@link Long#MAX_VALUE} if there is none.
+     * Times are computed from the previous arrival and not from the current clock, so that a late scheduler catches
+     * up instead of drifting.
+     */
+    public long nextArrival(long previousNanos) {
+        if (type == EArrivalProcess.RAMP) {
+            return nextRampArrival(previousNanos);
+        }
+
+        long time = previousNanos;
+        double currentRate;
+        while ((currentRate = rateAt(time)) <= 0) {
+            if (type == EArrivalProcess.CONSTANT || type == EArrivalProcess.POISSON) {
+                return Long.MAX_VALUE;
+            }
+            if (type == EArrivalProcess.STEP && stepRate <= 0) {
+                return Long.MAX_VALUE;
+            }
+            time += IDLE_TICK_NANOS;
+        }
+
+        double interval = 1e9 / currentRate;
+        if (type == EArrivalProcess.POISSON) {
+            interval = -Math.log(1 - random.nextDouble()) * interval;
+        }
+        return time + Math.max(1, Math.round(interval));
+    }
+
+    // The rate of a ramp changes too fast to be taken as constant between two arrivals, e.g. when it starts at zero.
+    // Instead, the next arrival is where the integral of the rate since the previous one reaches one.
+    private long nextRampArrival(long previousNanos) {
+        double previous = previousNanos / 1e9;
+
+        double next;
+        if (previous < rampSeconds) {
+            // The integral from the previous arrival is 'b * dt + a * dt^2'.
+            double b = rateAt(previousNanos);
+            double a = (targetRate - rate) / (2 * rampSeconds);
+            double d = b * b + 4 * a;
+            if (d < 0 || b + Math.sqrt(d) <= 0) return Long.MAX_VALUE;
+
+            next = previous + 2 / (b + Math.sqrt(d));
+            if (next > rampSeconds) {
+                double remaining = 1 - (b * (rampSeconds - previous) + a * Math.pow(rampSeconds - previous, 2));
+                if (targetRate <= 0) return Long.MAX_VALUE;
+                next = rampSeconds + remaining / targetRate;
+            }
+        } else {
+            if (targetRate <= 0) return Long.MAX_VALUE;
+            next = previous + 1 / targetRate;
+        }
+        return Math.max(previousNanos + 1, Math.round(next * 1e9));
+    }
+}
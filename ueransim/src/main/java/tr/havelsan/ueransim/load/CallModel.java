@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A stochastic call model followed by every UE. Each step runs a flow; when it finishes, the next step is picked
+ * among the transitions of the step by weight and started after the think time of the transition. At the end of
+ * its lifetime, the UE runs the final step (e.g. deregistration) instead, after which it does nothing more.
+ */
+public class CallModel {
+    private final List<Step> steps;
+    private final Map<String, Integer> stepIndexes;
+    private final Duration lifetime;
+
+    private int initialStep;
+    private int finalStep;
+
+    /**
+     * @param lifetime lifetime of the UEs, null if they live until the end of the load
+     */
+    public CallModel(Duration lifetime) {
+        this.steps = new ArrayList<>();
+        this.stepIndexes = new HashMap<>();
+        this.lifetime = lifetime;
+        this.initialStep = -1;
+        this.finalStep = -1;
+    }
+
+    public CallModel addStep(String name, FlowMix.IFlowFactory factory) {
+        if (stepIndexes.containsKey(name)) throw new RuntimeException("duplicate step: " + name);
+        stepIndexes.put(name, steps.size());
+        steps.add(new Step(name, factory));
+        return this;
+    }
+
+    public CallModel addTransition(String from, String to, double weight, Duration thinkTime) {
+        if (weight <= 0) throw new IllegalArgumentException("weight must be positive");
+        var step = steps.get(indexOf(from));
+        step.transitions.add(new Transition(indexOf(to), weight, thinkTime));
+        step.totalWeight += weight;
+        return this;
+    }
+
+    public CallModel setInitialStep(String name) {
+        this.initialStep = indexOf(name);
+        return this;
+    }
+
+    public CallModel setFinalStep(String name) {
+        this.finalStep = indexOf(name);
+        return this;
+    }
+
+    public int indexOf(String name) {
+        var index = stepIndexes.get(name);
+        if (index == null) throw new RuntimeException("unknown step: " + name);
+        return index;
+    }
+
+    public Step getStep(int index) {
+        return steps.get(index);
+    }
+
+    public int getStepCount() {
+        return steps.size();
+    }
+
+    public int getInitialStep() {
+        if (initialStep < 0) throw new RuntimeException("initial step is not set");
+        return initialStep;
+    }
+
+    /**
+     * Returns the index of the final step, or -1 if there is none.
+     */
+    public int getFinalStep() {
+        return finalStep;
+    }
+
+    public Duration getLifetime() {
+        return lifetime;
+    }
+
+    /**
+     * Returns null if the step has no transitions.
+     */
+    public Transition pickTransition(int step, Random random) {
+        var s = steps.get(step);
+        if (s.transitions.isEmpty()) return null;
+
+        double r = random.nextDouble() * s.totalWeight;
+        for (var transition : s.transitions) {
+            r -= transition.weight;
+            if (r < 0) return transition;
+        }
+        return s.transitions.get(s.transitions.size() - 1);
+    }
+
+    public static class Step {
+        public final String name;
+        public final FlowMix.IFlowFactory factory;
+        private final List<Transition> transitions;
+        private double totalWeight;
+
+        private Step(String name, FlowMix.IFlowFactory factory) {
+            this.name = name;
+            this.factory = factory;
+            this.transitions = new ArrayList<>();
+        }
+    }
+
+    public static class Transition {
+        public final int target;
+        public final double weight;
+        public final Duration thinkTime;
+
+        private Transition(int target, double weight, Duration thinkTime) {
+            this.target = target;
+            this.weight = weight;
+            this.thinkTime = thinkTime;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import tr.havelsan.ueransim.core.EventLoop;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.core.VirtualClock;
+import tr.havelsan.ueransim.store.UeStateStore;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs a {@link CallModel} for every UE of a population. The next action of each UE is kept in an
+ * {@link ActionQueue}; a single scheduler thread starts the due flows in event driven mode, and the UE is put back
+ * into the queue with its next step when the flow finishes. Per UE state is kept in primitive arrays.
+ * <p>
+ * With a {@link VirtualClock}, the thread calling {@link #run} runs the clock: the events of the clock are run until
+ * the next action is due, then the clock jumps to it. The event loops must then be driven by the same clock.
+ * <p>
+ * With a {@link UeStateStore}, UEs are parked in the store between their steps, see {@link SimulationContext#park}.
+ */
+public class CallModelScheduler {
+    private final List<SimulationContext> ues;
+    private final CallModel model;
+    private final EventLoop[] eventLoops;
+    private final Random[] randoms;
+    private final VirtualClock clock;
+
+    private final int[] nextSteps;
+    private final long[] deathTimes;
+
+    private final ReentrantLock lock;
+    private final Condition changed;
+    private final ActionQueue actionQueue;
+
+    private final AtomicLongArray startedCounts;
+    private final AtomicLongArray finishedCounts;
+    private final AtomicLong failedCount;
+    private final AtomicLong endedCount;
+
+    private UeStateStore stateStore;
+    private long startTime;
+    private volatile boolean stopped;
+
+    /**
+     * @param eventLoops the flows of a UE always run on the same event loop, chosen by the index of the UE unless
+     *                   the UE belongs to a shard, then they run on the event loop of the shard
+     */
+    public CallModelScheduler(List<SimulationContext> ues, CallModel model, EventLoop[] eventLoops, long seed) {
+        this(ues, model, eventLoops, seed, null);
+    }
+
+    /**
+     * @param clock the clock of the simulation, or null to run in real time
+     */
+    public CallModelScheduler(List<SimulationContext> ues, CallModel model, EventLoop[] eventLoops, long seed,
+                              VirtualClock clock) {
+        if (eventLoops.length == 0) throw new IllegalArgumentException("at least one event loop is required");
+
+        this.ues = ues;
+        this.model = model;
+        this.eventLoops = eventLoops;
+        this.clock = clock;
+
+        // One generator per event loop, used by the completions on that loop, and one for the scheduler thread.
+        this.randoms = new Random[eventLoops.length + 1];
+        for (int i = 0; i < randoms.length; i++) {
+            randoms[i] = new Random(seed + i);
+        }
+
+        this.nextSteps = new int[ues.size()];
+        this.deathTimes = new long[ues.size()];
+
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.actionQueue = new ActionQueue(ues.size());
+
+        this.startedCounts = new AtomicLongArray(model.getStepCount());
+        this.finishedCounts = new AtomicLongArray(model.getStepCount());
+        this.failedCount = new AtomicLong();
+        this.endedCount = new AtomicLong();
+    }
+
+    /**
+     * Must be called before {@link #run}.
+     */
+    public void setStateStore(UeStateStore stateStore) {
+        this.stateStore = stateStore;
+    }
+
+    /**
+     * Runs the model for the given duration, then waits at most the drain time for the running flows. UEs start
+     * their initial step at the given rate per second.
+     */
+    public void run(long durationMillis, double startRate, long drainMillis) throws InterruptedException {
+        var random = randoms[eventLoops.length];
+        var lifetime = model.getLifetime();
+        int initialStep = model.getInitialStep();
+
+        startTime = nanoTime();
+        lock.lock();
+        try {
+            for (int ue = 0; ue < ues.size(); ue++) {
+                long birth = startRate > 0 ? (long) (ue * 1e9 / startRate) : 0;
+                nextSteps[ue] = initialStep;
+                deathTimes[ue] = lifetime != null ? birth + lifetime.sampleNanos(random) : Long.MAX_VALUE;
+                actionQueue.add(birth, ue);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long duration = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        if (clock != null) {
+            runVirtual(duration, TimeUnit.MILLISECONDS.toNanos(drainMillis));
+            return;
+        }
+
+        while (!stopped) {
+            int ue;
+            lock.lock();
+            try {
+                long now = elapsed();
+                if (now >= duration) break;
+
+                long wait = actionQueue.isEmpty() ? duration - now : Math.min(actionQueue.peekTime() - now, duration - now);
+                if (wait > 0) {
+                    changed.awaitNanos(wait);
+                    continue;
+                }
+                ue = actionQueue.poll();
+            } finally {
+                lock.unlock();
+            }
+            startStep(ue);
+        }
+
+        long drainEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+        while (!stopped && getRunningCount() > 0 && System.nanoTime() - drainEnd < 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void runVirtual(long duration, long drain) {
+        while (!stopped) {
+            long next = actionQueue.isEmpty() ? duration : Math.min(actionQueue.peekTime(), duration);
+            if (clock.runNext(startTime + next)) continue;
+
+            clock.advanceTo(startTime + next);
+            if (next >= duration) break;
+            startStep(actionQueue.poll());
+        }
+
+        long drainEnd = clock.nanoTime() + drain;
+        while (!stopped && getRunningCount() > 0) {
+            if (!clock.runNext(drainEnd)) break;
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startStep(int ue) {
+        int stepIndex = nextSteps[ue];
+        var step = model.getStep(stepIndex);
+        var ctx = ues.get(ue);
+        try {
+            var flow = step.factory.create(ctx);
+            startedCounts.incrementAndGet(stepIndex);
+            flow.start(eventLoopOf(ctx, ue), () -> onFinished(ue, stepIndex));
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            endedCount.incrementAndGet();
+            Logging.error(Tag.FLOWS, "%s could not be started for UE %s: %s", step.name, ctx.getSupi(), e);
+        }
+    }
+
+    // Called on the event loop of the UE
+    private void onFinished(int ue, int stepIndex) {
+        finishedCounts.incrementAndGet(stepIndex);
+        park(ues.get(ue));
+
+        int finalStep = model.getFinalStep();
+        if (stepIndex == finalStep) {
+            endedCount.incrementAndGet();
+            return;
+        }
+
+        var transition = model.pickTransition(stepIndex, randoms[ue % eventLoops.length]);
+        long now = elapsed();
+
+        int next;
+        long time;
+        if (transition == null) {
+            if (finalStep < 0) {
+                endedCount.incrementAndGet();
+                return;
+            }
+            next = finalStep;
+            time = now;
+        } else {
+            next = transition.target;
+            time = now + transition.thinkTime.sampleNanos(randoms[ue % eventLoops.length]);
+        }
+
+        if (finalStep >= 0 && time - deathTimes[ue] >= 0) {
+            next = finalStep;
+            time = Math.max(now, deathTimes[ue]);
+        }
+
+        lock.lock();
+        try {
+            nextSteps[ue] = next;
+            boolean earliest = actionQueue.isEmpty() || time - actionQueue.peekTime() < 0;
+            actionQueue.add(time, ue);
+            if (earliest) {
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void park(SimulationContext ctx) {
+        // Flows started on the UE from outside of the model may still be running
+        if (stateStore != null && !ctx.hasListeners()) {
+            ctx.park(stateStore);
+        }
+    }
+
+    private long elapsed() {
+        return nanoTime() - startTime;
+    }
+
+    private long nanoTime() {
+        return clock != null ? clock.nanoTime() : System.nanoTime();
+    }
+
+    public long getStartedCount(int step) {
+        return startedCounts.get(step);
+    }
+
+    public long getFinishedCount(int step) {
+        return finishedCounts.get(step);
+    }
+
+    public long getRunningCount() {
+        long res = 0;
+        for (int i = 0; i < startedCounts.length(); i++) {
+            res += startedCounts.get(i) - finishedCounts.get(i);
+        }
+        return res;
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the number of UEs which finished their final step or could not continue.
+     */
+    public long getEndedCount() {
+        return endedCount.get();
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return actionQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private EventLoop eventLoopOf(SimulationContext ctx, int ue) {
+        return ctx.shard != null ? ctx.shard.getEventLoop() : eventLoops[ue % eventLoops.length];
+    }
+}
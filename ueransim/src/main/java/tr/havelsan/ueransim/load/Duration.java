@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import java.util.Random;
+
+/**
+ * A random duration, e.g. the think time of a UE between two procedures.
+ */
+public class Duration {
+    public final EDistribution distribution;
+    public final long meanMillis;
+
+    public Duration(EDistribution distribution, long meanMillis) {
+        if (meanMillis < 0) throw new IllegalArgumentException("meanMillis must not be negative");
+        this.distribution = distribution;
+        this.meanMillis = meanMillis;
+    }
+
+    public long sampleNanos(Random random) {
+        double mean = meanMillis * 1e6;
+        switch (distribution) {
+            case FIXED:
+                return (long) mean;
+            case UNIFORM:
+                return (long) (random.nextDouble() * 2 * mean);
+            case EXPONENTIAL:
+                return (long) (-Math.log(1 - random.nextDouble()) * mean);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import tr.havelsan.ueransim.BaseFlow;
+import tr.havelsan.ueransim.core.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Weighted set of the flows which are started by the load generator.
+ */
+public class FlowMix {
+    private final List<Entry> entries;
+    private double totalWeight;
+
+    public FlowMix() {
+        this.entries = new ArrayList<>();
+    }
+
+    public FlowMix add(String name, IFlowFactory factory, double weight) {
+        if (weight <= 0) throw new IllegalArgumentException("weight must be positive");
+        entries.add(new Entry(name, factory, weight));
+        totalWeight += weight;
+        return this;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public Entry pick(Random random) {
+        if (entries.isEmpty()) throw new RuntimeException("flow mix is empty");
+
+        double r = random.nextDouble() * totalWeight;
+        for (var entry : entries) {
+            r -= entry.weight;
+            if (r < 0) return entry;
+        }
+        return entries.get(entries.size() - 1);
+    }
+
+    @FunctionalInterface
+    public interface IFlowFactory {
+        BaseFlow create(SimulationContext ctx) throws Exception;
+    }
+
+    public static class Entry {
+        public final String name;
+        public final IFlowFactory factory;
+        public final double weight;
+
+        public Entry(String name, IFlowFactory factory, double weight) {
+            this.name = name;
+            this.factory = factory;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.load;
+
+import tr.havelsan.ueransim.core.EventLoop;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.core.VirtualClock;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts flows on a population of UEs at the times given by an {@link ArrivalProcess}, regardless of how fast the
+ * earlier flows complete. Flows are event driven, so starting one never blocks the scheduler. Each UE runs at most
+ * one flow at a time; an arrival which finds no idle UE is counted and dropped, it is not postponed.
+ * <p>
+ * A load can also be generated as consecutive phases, each with its own arrival process and flow mix, or with a fixed
+ * number of running flows, see {@link #runPhase} and {@link #runConcurrencyPhase}.
+ * <p>
+ * With a {@link VirtualClock}, the scheduling thread runs the clock: the events of the clock are run until the next
+ * arrival is due, then the clock jumps to it, so arrivals are never late. The event loops must then be driven by the
+ * same clock.
+ */
+public class LoadGenerator {
+    // Arrivals issued later than this are counted as late.
+    private static final long LATE_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // Flows which could not be started are tried again after this amount of time in a concurrency phase.
+    private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final List<SimulationContext> ues;
+    private final FlowMix flowMix;
+    private final ArrivalProcess arrivalProcess;
+    private final EventLoop[] eventLoops;
+    private final Random random;
+    private final Queue<Integer> idleUes;
+    private final VirtualClock clock;
+
+    private final AtomicLong arrivalCount;
+    private final AtomicLong startedCount;
+    private final AtomicLong completedCount;
+    private final AtomicLong failedCount;
+    private final AtomicLong failedToStartCount;
+    private final AtomicLong noIdleUeCount;
+    private final AtomicLong lateCount;
+    private final AtomicLong totalLatencyNanos;
+    private final AtomicLong maxLatencyNanos;
+
+    private volatile long maxLagNanos;
+    private volatile boolean stopped;
+    private volatile boolean wakeOnFinish;
+    private volatile Thread schedulerThread;
+
+    /**
+     * Creates a generator whose load is only given by phases.
+     */
+    public LoadGenerator(List<SimulationContext> ues, EventLoop[] eventLoops, long seed) {
+        this(ues, null, null, eventLoops, seed);
+    }
+
+    /**
+     * @param eventLoops the flows of a UE always run on the same event loop, chosen by the index of the UE unless
+     *                   the UE belongs to a shard, then they run on the event loop of the shard
+     */
+    public LoadGenerator(List<SimulationContext> ues, FlowMix flowMix, ArrivalProcess arrivalProcess,
+                         EventLoop[] eventLoops, long seed) {
+        this(ues, flowMix, arrivalProcess, eventLoops, seed, null);
+    }
+
+    /**
+     * @param clock the clock of the simulation, or null to generate the load in real time
+     */
+    public LoadGenerator(List<SimulationContext> ues, FlowMix flowMix, ArrivalProcess arrivalProcess,
+                         EventLoop[] eventLoops, long seed, VirtualClock clock) {
+        if (eventLoops.length == 0) throw new IllegalArgumentException("at least one event loop is required");
+
+        this.ues = ues;
+        this.flowMix = flowMix;
+        this.arrivalProcess = arrivalProcess;
+        this.eventLoops = eventLoops;
+        this.random = new Random(seed);
+        this.clock = clock;
+        this.idleUes = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < ues.size(); i++) {
+            idleUes.add(i);
+        }
+
+        this.arrivalCount = new AtomicLong();
+        this.startedCount = new AtomicLong();
+        this.completedCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.failedToStartCount = new AtomicLong();
+        this.noIdleUeCount = new AtomicLong();
+        this.lateCount = new AtomicLong();
+        this.totalLatencyNanos = new AtomicLong();
+        this.maxLatencyNanos = new AtomicLong();
+    }
+
+    /**
+     * Generates the load for the given duration, then waits at most the drain time for the running flows.
+     */
+    public void run(long durationMillis, long drainMillis) {
+        runPhase(arrivalProcess, flowMix, durationMillis);
+        drain(drainMillis);
+    }
+
+    /**
+     * Starts flows of the mix at the arrival times of the process for the given duration. The times of the process
+     * are relative to the start of the phase. Flows still running at the end of the phase are not waited for.
+     */
+    public void runPhase(ArrivalProcess arrivalProcess, FlowMix flowMix, long durationMillis) {
+        schedulerThread = Thread.currentThread();
+
+        long duration = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long startTime = nanoTime();
+        long next = arrivalProcess.nextArrival(0);
+
+        if (clock != null) {
+            while (!stopped && next < duration) {
+                if (clock.runNext(startTime + next)) continue;
+
+                clock.advanceTo(startTime + next);
+                arrive(flowMix);
+                next = arrivalProcess.nextArrival(next);
+            }
+            if (!stopped) {
+                clock.runUntil(startTime + duration);
+            }
+            return;
+        }
+
+        while (!stopped && next < duration) {
+            long now = System.nanoTime() - startTime;
+            if (next > now) {
+                LockSupport.parkNanos(this, next - now);
+                continue;
+            }
+
+            long lag = now - next;
+            if (lag > LATE_THRESHOLD_NANOS) {
+                lateCount.incrementAndGet();
+            }
+            if (lag > maxLagNanos) {
+                maxLagNanos = lag;
+            }
+
+            arrive(flowMix);
+            next = arrivalProcess.nextArrival(next);
+        }
+
+        // Sleeps until the end of the phase if the process has no more arrivals.
+        long remaining;
+        while (!stopped && (remaining = startTime + duration - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * Keeps the given number of flows of the mix running for the given duration, a flow is started as soon as
+     * another one finishes. The number of running flows is limited by the number of UEs. Every started flow counts
+     * as an arrival.
+     */
+    public void runConcurrencyPhase(FlowMix flowMix, int concurrency, long durationMillis) {
+        schedulerThread = Thread.currentThread();
+        if (clock != null) {
+            runVirtualConcurrencyPhase(flowMix, concurrency, durationMillis);
+            return;
+        }
+        wakeOnFinish = true;
+
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long remaining;
+        try {
+            while (!stopped && (remaining = end - System.nanoTime()) > 0) {
+                long failedBefore = failedToStartCount.get();
+                long missing = concurrency - getRunningCount();
+                for (long i = 0; i < missing && !idleUes.isEmpty(); i++) {
+                    arrive(flowMix);
+                }
+                LockSupport.parkNanos(this, failedToStartCount.get() > failedBefore ? Math.min(remaining, RETRY_NANOS)
+                        : remaining);
+            }
+        } finally {
+            wakeOnFinish = false;
+        }
+    }
+
+    // Flows finish while the clock runs, so the missing flows are started whenever an event has run.
+    private void runVirtualConcurrencyPhase(FlowMix flowMix, int concurrency, long durationMillis) {
+        long end = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        while (!stopped && clock.nanoTime() < end) {
+            long failedBefore = failedToStartCount.get();
+            long missing = concurrency - getRunningCount();
+            for (long i = 0; i < missing && !idleUes.isEmpty(); i++) {
+                arrive(flowMix);
+            }
+            long limit = failedToStartCount.get() > failedBefore ? Math.min(end, clock.nanoTime() + RETRY_NANOS) : end;
+            if (!clock.runNext(limit)) {
+                clock.advanceTo(limit);
+            }
+        }
+    }
+
+    /**
+     * Waits at most the drain time for the running flows.
+     */
+    public void drain(long drainMillis) {
+        schedulerThread = Thread.currentThread();
+        if (clock != null) {
+            long drainEnd = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+            while (!stopped && getRunningCount() > 0) {
+                if (!clock.runNext(drainEnd)) break;
+            }
+            return;
+        }
+
+        long drainEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+        long remaining;
+        while (!stopped && getRunningCount() > 0 && (remaining = drainEnd - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)));
+        }
+    }
+
+    /**
+     * Resets the maximum lag and latency, e.g. to measure them per phase.
+     */
+    public void resetPeaks() {
+        maxLagNanos = 0;
+        maxLatencyNanos.set(0);
+    }
+
+    public void stop() {
+        stopped = true;
+        var thread = schedulerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private void arrive(FlowMix flowMix) {
+        arrivalCount.incrementAndGet();
+
+        var ueIndex = idleUes.poll();
+        if (ueIndex == null) {
+            noIdleUeCount.incrementAndGet();
+            return;
+        }
+
+        var entry = flowMix.pick(random);
+        var ctx = ues.get(ueIndex);
+        // Counted before the flow is started, since it may finish on its event loop before start() returns, and it
+        // would be seen as completed but not started.
+        startedCount.incrementAndGet();
+        try {
+            var flow = entry.factory.create(ctx);
+            long startTime = nanoTime();
+            flow.start(eventLoopOf(ctx, ueIndex), completed -> onFinished(ueIndex, startTime, completed));
+        } catch (Exception e) {
+            startedCount.decrementAndGet();
+            failedToStartCount.incrementAndGet();
+            idleUes.add(ueIndex);
+            Logging.error(Tag.FLOWS, "%s could not be started for UE %s: %s", entry.name, ctx.getSupi(), e);
+        }
+    }
+
+    // The latency is only measured for completed flows, a failed flow may end early, e.g. with a reject.
+    private void onFinished(int ueIndex, long startTime, boolean completed) {
+        if (completed) {
+            long latency = nanoTime() - startTime;
+            totalLatencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            completedCount.incrementAndGet();
+        } else {
+            failedCount.incrementAndGet();
+        }
+        idleUes.add(ueIndex);
+
+        if (wakeOnFinish) {
+            var thread = schedulerThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Returns the time of the generator's clock, which is the wall clock unless the load is generated in virtual
+     * time.
+     */
+    public long nanoTime() {
+        return clock != null ? clock.nanoTime() : System.nanoTime();
+    }
+
+    public long getArrivalCount() {
+        return arrivalCount.get();
+    }
+
+    public long getStartedCount() {
+        return startedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getRunningCount() {
+        return startedCount.get() - completedCount.get() - failedCount.get();
+    }
+
+    /**
+     * Returns the number of flows which were started but failed.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getFailedToStartCount() {
+        return failedToStartCount.get();
+    }
+
+    public long getNoIdleUeCount() {
+        return noIdleUeCount.get();
+    }
+
+    public long getLateCount() {
+        return lateCount.get();
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    public long getMeanLatencyNanos() {
+        long completed = completedCount.get();
+        return completed == 0 ? 0 : totalLatencyNanos.get() / completed;
+    }
+
+    public long getTotalLatencyNanos() {
+        return totalLatencyNanos.get();
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    private EventLoop eventLoopOf(SimulationContext ctx, int ue) {
+        return ctx.shard != null ? ctx.shard.getEventLoop() : eventLoops[ue % eventLoops.length];
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import com.sun.nio.sctp.MessageInfo;
+import com.sun.nio.sctp.SctpChannel;
+import tr.havelsan.ueransim.Ngap;
+import tr.havelsan.ueransim.SendingMessage;
+import tr.havelsan.ueransim.api.Messaging;
+import tr.havelsan.ueransim.api.ue.mm.UeIdentity;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.core.UeRegistry;
+import tr.havelsan.ueransim.nas.NasDecoder;
+import tr.havelsan.ueransim.nas.impl.messages.DeRegistrationRequestUeOriginating;
+import tr.havelsan.ueransim.nas.impl.messages.RegistrationRequest;
+import tr.havelsan.ueransim.ngap.ngap_ies.RAN_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.ngap2.NgapBuilder;
+import tr.havelsan.ueransim.ngap2.NgapCriticality;
+import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.sctp.ISCTPClient;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Replays a {@link ReplayScript} as many concurrent synthetic UEs over one association.
+ * <p>
+ * Every copy has its own {@link SimulationContext} with a distinct RAN-UE-NGAP-ID and SUPI, the SUPI of the template
+ * incremented by the index of the copy. Steps are sent through {@link Messaging#send}, so the AMF-UE-NGAP-ID learnt
+ * by the copy is used and the NAS message is protected with the security context of the copy, i.e. with its own
+ * NAS COUNT and MAC. Downlink messages are routed to the copies through a {@link UeRegistry} and handled by the
+ * regular UE procedures, which also answer the authentication and security mode procedures.
+ * <p>
+ * Steps are sent by a single scheduler thread, and downlink messages are handled by the thread calling
+ * {@link #run()}.
+ */
+public class ReplayEngine {
+    public static final long DEFAULT_DRAIN_MILLIS = 2000;
+
+    private final ISCTPClient sctpClient;
+    private final ReplayScript script;
+    private final ReplayPacing pacing;
+    private final Copy[] copies;
+    private final UeRegistry ueRegistry;
+    private final long firstRanUeNgapId;
+
+    private final AtomicLong sentCount;
+    private final AtomicLong receivedCount;
+    private final AtomicLong unknownUeCount;
+    private final AtomicLong failedCount;
+
+    private volatile long drainMillis;
+    private volatile boolean stopped;
+    private volatile boolean allSent;
+
+    public ReplayEngine(SimulationContext template, ReplayScript script, ReplayPacing pacing, int copyCount) {
+        if (template.ueData == null || template.ueData.supi == null)
+            throw new IllegalArgumentException("template UE data with a SUPI is required");
+
+        this.sctpClient = template.sctpClient;
+        this.script = script;
+        this.pacing = pacing;
+        this.copies = new Copy[copyCount];
+        this.ueRegistry = new UeRegistry(template.ranUeNgapId);
+        this.firstRanUeNgapId = template.ranUeNgapId;
+        this.sentCount = new AtomicLong();
+        this.receivedCount = new AtomicLong();
+        this.unknownUeCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.drainMillis = DEFAULT_DRAIN_MILLIS;
+
+        for (int i = 0; i < copyCount; i++) {
+            var ctx = new SimulationContext();
+            ctx.sctpClient = template.sctpClient;
+            ctx.amfHost = template.amfHost;
+            ctx.amfPort = template.amfPort;
+            ctx.ueConfig = template.ueConfig;
+            ctx.ueData = template.ueData.copyForSupi(template.ueData.supi.offset(i));
+            ctx.ranUeNgapId = template.ranUeNgapId + i;
+
+            copies[i] = new Copy(i, ctx);
+            ueRegistry.register(ctx);
+        }
+    }
+
+    /**
+     * Sets how long downlink messages are still handled after the last step is sent.
+     */
+    public void setDrainMillis(long drainMillis) {
+        this.drainMillis = drainMillis;
+    }
+
+    /**
+     * Starts the scheduler and handles the downlink messages until the drain time after the last step has elapsed,
+     * {@link #stop()} is called, or the receiver of the client is aborted.
+     */
+    public void run() throws Exception {
+        var scheduler = new Thread(this::schedulerLoop, "replay-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+
+        sctpClient.receiverLoop(this::receive);
+
+        stopped = true;
+        LockSupport.unpark(scheduler);
+        scheduler.join();
+    }
+
+    public void stop() {
+        stopped = true;
+        sctpClient.abortReceiver();
+    }
+
+    public boolean isAllSent() {
+        return allSent;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    public long getUnknownUeCount() {
+        return unknownUeCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    //======================================================================================================
+    //                                            SENDING
+    //======================================================================================================
+
+    private void schedulerLoop() {
+        var steps = script.getSteps();
+        var queue = new PriorityQueue<Copy>((a, b) -> Long.compare(a.nextSendTime, b.nextSendTime));
+
+        long startTime = System.nanoTime();
+        if (!steps.isEmpty()) {
+            for (var copy : copies) {
+                copy.startTime = startTime + pacing.copyOffsetNanos(copy.index);
+                copy.nextSendTime = copy.startTime + pacing.stepOffsetNanos(steps.get(0), 0);
+                queue.add(copy);
+            }
+        }
+
+        while (!stopped && !queue.isEmpty()) {
+            var copy = queue.peek();
+            long delay = copy.nextSendTime - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(this, delay);
+                continue;
+            }
+            queue.poll();
+
+            sendStep(copy, steps.get(copy.nextStep));
+
+            copy.nextStep++;
+            if (copy.nextStep < steps.size()) {
+                copy.nextSendTime = copy.startTime + pacing.stepOffsetNanos(steps.get(copy.nextStep), copy.nextStep);
+                queue.add(copy);
+            }
+        }
+        allSent = queue.isEmpty();
+
+        long drainEnd = System.nanoTime() + drainMillis * 1_000_000;
+        long remaining;
+        while (!stopped && (remaining = drainEnd - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        sctpClient.abortReceiver();
+    }
+
+    private void sendStep(Copy copy, ReplayStep step) {
+        var ctx = copy.ctx;
+        try {
+            copy.lock.lock();
+            try {
+                var builder = new NgapBuilder(step.procedure, NgapCriticality.IGNORE);
+                for (var ie : step.protocolIes) {
+                    builder.addProtocolIE(ie);
+                }
+
+                var nasMessage = step.plainNas != null ? NasDecoder.nasPdu(step.plainNas) : null;
+                if (nasMessage instanceof RegistrationRequest) {
+                    var registrationRequest = (RegistrationRequest) nasMessage;
+                    if (ctx.ueData.storedGuti != null) {
+                        registrationRequest.mobileIdentity = ctx.ueData.storedGuti;
+                    } else {
+                        registrationRequest.mobileIdentity = UeIdentity.getOrGenerateSuci(ctx);
+                    }
+                    ctx.registrationRequest = registrationRequest;
+                } else if (nasMessage instanceof DeRegistrationRequestUeOriginating) {
+                    var deRegistrationRequest = (DeRegistrationRequestUeOriginating) nasMessage;
+                    if (ctx.ueData.storedGuti != null) {
+                        deRegistrationRequest.mobileIdentity = ctx.ueData.storedGuti;
+                    } else {
+                        deRegistrationRequest.mobileIdentity = UeIdentity.getOrGenerateSuci(ctx);
+                    }
+                }
+
+                Messaging.send(ctx, new SendingMessage(builder, nasMessage));
+            } finally {
+                copy.lock.unlock();
+            }
+            sentCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            failedCount.incrementAndGet();
+            Logging.error(Tag.FLOWS, "Replay of %s failed for UE %s: %s", step.procedure, ctx.getSupi(), e);
+        }
+    }
+
+    //======================================================================================================
+    //                                           RECEIVING
+    //======================================================================================================
+
+    private void receive(byte[] receivedBytes, MessageInfo messageInfo, SctpChannel channel) {
+        receivedCount.incrementAndGet();
+
+        try {
+            var ngapPdu = Ngap.perDecode(NGAP_PDU.class, receivedBytes);
+            var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
+            var ctx = ueRegistry.findForDownlink(ngapMessage);
+            if (ctx == null) {
+                if (NgapInternal.findProtocolIe(ngapMessage, RAN_UE_NGAP_ID.class) != null) {
+                    unknownUeCount.incrementAndGet();
+                }
+                return;
+            }
+
+            var copy = copies[(int) (ctx.ranUeNgapId - firstRanUeNgapId)];
+            copy.lock.lock();
+            try {
+                var incomingMessage = Messaging.handleIncomingMessage(ctx, ngapPdu);
+                Messaging.handleNgapMessage(ctx, incomingMessage);
+                ctx.dispatchMessageReceive(incomingMessage);
+            } finally {
+                copy.lock.unlock();
+            }
+        } catch (RuntimeException e) {
+            failedCount.incrementAndGet();
+            Logging.error(Tag.FLOWS, "Replay could not handle a downlink message: %s", e);
+        }
+    }
+
+    //======================================================================================================
+    //                                             OTHERS
+    //======================================================================================================
+
+    // The lock guards the context of the copy, which is used by both the scheduler and the receiving thread.
+    private static class Copy {
+        final int index;
+        final SimulationContext ctx;
+        final ReentrantLock lock;
+        long startTime;
+        long nextSendTime;
+        int nextStep;
+
+        Copy(int index, SimulationContext ctx) {
+            this.index = index;
+            this.ctx = ctx;
+            this.lock = new ReentrantLock();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import java.util.concurrent.TimeUnit;
+
+public class ReplayPacing {
+    public final EReplayTiming timing;
+    public final double compressionFactor;
+    public final double stepsPerSecond;
+    public final double copiesPerSecond;
+
+    /**
+     * @param compressionFactor used with {@link EReplayTiming#COMPRESSED}
+     * @param stepsPerSecond    used with {@link EReplayTiming#FIXED_RATE}
+     * @param copiesPerSecond   start rate of the copies, all copies are started at once if zero
+     */
+    public ReplayPacing(EReplayTiming timing, double compressionFactor, double stepsPerSecond, double copiesPerSecond) {
+        if (timing == EReplayTiming.COMPRESSED && !(compressionFactor > 0))
+            throw new IllegalArgumentException("compression factor must be positive");
+        if (timing == EReplayTiming.FIXED_RATE && !(stepsPerSecond > 0))
+            throw new IllegalArgumentException("steps per second must be positive");
+        if (copiesPerSecond < 0)
+            throw new IllegalArgumentException("copies per second must not be negative");
+
+        this.timing = timing;
+        this.compressionFactor = compressionFactor;
+        this.stepsPerSecond = stepsPerSecond;
+        this.copiesPerSecond = copiesPerSecond;
+    }
+
+    /**
+     * Returns the send time of the step relative to the start of its copy.
+     */
+    public long stepOffsetNanos(ReplayStep step, int stepIndex) {
+        switch (timing) {
+            case ORIGINAL:
+                return TimeUnit.MICROSECONDS.toNanos(step.offsetMicros);
+            case COMPRESSED:
+                return (long) (TimeUnit.MICROSECONDS.toNanos(step.offsetMicros) / compressionFactor);
+            case FIXED_RATE:
+                return (long) (stepIndex * 1e9 / stepsPerSecond);
+            default:
+                throw new RuntimeException("unknown replay timing: " + timing);
+        }
+    }
+
+    /**
+     * Returns the start time of the copy relative to the start of the replay.
+     */
+    public long copyOffsetNanos(int copyIndex) {
+        if (copiesPerSecond == 0) return 0;
+        return (long) (copyIndex * 1e9 / copiesPerSecond);
+    }
+}
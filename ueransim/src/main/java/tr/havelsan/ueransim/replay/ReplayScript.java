@@ -0,0 +1,170 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import fr.marben.asnsdk.japi.spe.Value;
+import tr.havelsan.ueransim.Ngap;
+import tr.havelsan.ueransim.core.Constants;
+import tr.havelsan.ueransim.nas.NasDecoder;
+import tr.havelsan.ueransim.nas.NasEncoder;
+import tr.havelsan.ueransim.nas.core.messages.NasMessage;
+import tr.havelsan.ueransim.nas.core.messages.SecuredMmMessage;
+import tr.havelsan.ueransim.nas.impl.messages.*;
+import tr.havelsan.ueransim.ngap.ngap_ies.AMF_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.NAS_PDU;
+import tr.havelsan.ueransim.ngap.ngap_ies.RAN_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.UserLocationInformation;
+import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.ngap2.NgapProcedure;
+import tr.havelsan.ueransim.sctp.PcapReader;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.Tag;
+import tr.havelsan.ueransim.utils.Utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uplink messages of a captured UE session, prepared to be replayed by many UEs.
+ * <p>
+ * Only the messages which are initiated by the UE or the gNB are kept. Non UE-associated messages such as NG Setup
+ * belong to the association and are skipped, so are the NAS responses which each copy produces itself while handling
+ * the downlink messages (authentication, security mode, identity and registration complete), since their content
+ * depends on the keys and identity of the copy.
+ * <p>
+ * Secured NAS messages are replayed by their plain content, which is only possible if the captured session used
+ * the null ciphering algorithm. Messages which cannot be unprotected are skipped with a warning.
+ */
+public class ReplayScript {
+    private static final List<Class<? extends NasMessage>> UE_RESPONSES = Arrays.asList(
+            AuthenticationResponse.class,
+            AuthenticationFailure.class,
+            SecurityModeComplete.class,
+            SecurityModeReject.class,
+            IdentityResponse.class,
+            RegistrationComplete.class
+    );
+
+    private final List<ReplayStep> steps;
+
+    public ReplayScript(List<ReplayStep> steps) {
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    public List<ReplayStep> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Loads the messages from a pcap capture, e.g. one written with capture.enabled. The source address of the first
+     * NGAP message is taken as the gNB, messages from other addresses are downlink and skipped.
+     */
+    public static ReplayScript fromPcap(String path) throws IOException {
+        var steps = new ArrayList<ReplayStep>();
+        var reader = new PcapReader(path);
+        var state = new Object() {
+            byte[] gnbAddress;
+            long firstTimestamp;
+        };
+        reader.read((timestampMicros, sourceAddress, streamNumber, protocolId, data) -> {
+            if (protocolId != Constants.NGAP_PROTOCOL_ID) return;
+            if (state.gnbAddress == null) {
+                state.gnbAddress = sourceAddress;
+                state.firstTimestamp = timestampMicros;
+            }
+            if (!Arrays.equals(state.gnbAddress, sourceAddress)) return;
+
+            var step = createStep(timestampMicros - state.firstTimestamp, data);
+            if (step != null) steps.add(step);
+        });
+        if (reader.getSkippedCount() > 0) {
+            Logging.warning(Tag.FLOWS, "%d fragmented messages are skipped in %s", reader.getSkippedCount(), path);
+        }
+        return new ReplayScript(steps);
+    }
+
+    /**
+     * Loads uplink messages given as hex strings, in the same form as "messages-in-order" of the mocked remote. All
+     * of them have the same offset, so they should be paced with {@link EReplayTiming#FIXED_RATE}.
+     */
+    public static ReplayScript fromHexMessages(Object[] hexMessages) {
+        var steps = new ArrayList<ReplayStep>();
+        for (var hex : hexMessages) {
+            if (hex == null || hex.toString().length() == 0) continue;
+            var step = createStep(0, Utils.hexStringToByteArray(hex.toString()));
+            if (step != null) steps.add(step);
+        }
+        return new ReplayScript(steps);
+    }
+
+    private static ReplayStep createStep(long offsetMicros, byte[] data) {
+        var ngapPdu = Ngap.perDecode(NGAP_PDU.class, data);
+        var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
+        if (ngapMessage == null) return null;
+
+        NgapProcedure procedure;
+        try {
+            procedure = NgapProcedure.valueOf(ngapMessage.getClass().getSimpleName());
+        } catch (IllegalArgumentException e) {
+            Logging.warning(Tag.FLOWS, "Unknown NGAP procedure %s is skipped", ngapMessage.getClass().getSimpleName());
+            return null;
+        }
+        if (!procedure.isUeAssociated()) return null;
+
+        byte[] plainNas = null;
+        var nasMessage = NgapInternal.extractNasMessage(ngapPdu);
+        if (nasMessage != null) {
+            if (nasMessage instanceof SecuredMmMessage) {
+                try {
+                    nasMessage = NasDecoder.nasPdu(((SecuredMmMessage) nasMessage).plainNasMessage);
+                } catch (Exception e) {
+                    Logging.warning(Tag.FLOWS, "Ciphered NAS message in %s is skipped", procedure);
+                    return null;
+                }
+            }
+            for (var type : UE_RESPONSES) {
+                if (type.isInstance(nasMessage)) return null;
+            }
+            plainNas = NasEncoder.nasPdu(nasMessage);
+        }
+
+        var protocolIes = new ArrayList<Value>();
+        for (var ie : NgapInternal.extractProtocolIes(ngapMessage)) {
+            if (ie instanceof NAS_PDU || ie instanceof RAN_UE_NGAP_ID || ie instanceof AMF_UE_NGAP_ID
+                    || ie instanceof UserLocationInformation) {
+                continue;
+            }
+            protocolIes.add(ie);
+        }
+
+        return new ReplayStep(offsetMicros, procedure, protocolIes, plainNas);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.replay;
+
+import fr.marben.asnsdk.japi.spe.Value;
+import tr.havelsan.ueransim.ngap2.NgapProcedure;
+
+import java.util.List;
+
+/**
+ * A single uplink message of a {@link ReplayScript}. The UE specific parts of the message, i.e. the NGAP UE IDs,
+ * the user location and the protection of the NAS message, are added again for every copy.
+ */
+public class ReplayStep {
+    public final long offsetMicros;
+    public final NgapProcedure procedure;
+    public final List<Value> protocolIes;
+    public final byte[] plainNas;
+
+    public ReplayStep(long offsetMicros, NgapProcedure procedure, List<Value> protocolIes, byte[] plainNas) {
+        this.offsetMicros = offsetMicros;
+        this.procedure = procedure;
+        this.protocolIes = protocolIes;
+        this.plainNas = plainNas;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.core.Constants;
+import tr.havelsan.ueransim.core.VirtualClock;
+import tr.havelsan.ueransim.sctp.CapturingSCTPClient;
+import tr.havelsan.ueransim.sctp.IEventScheduler;
+import tr.havelsan.ueransim.sctp.ISCTPClient;
+import tr.havelsan.ueransim.sctp.LoopbackTransport;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient;
+import tr.havelsan.ueransim.sctp.NioSCTPClient;
+import tr.havelsan.ueransim.sctp.PcapWriter;
+import tr.havelsan.ueransim.sctp.SCTPClient;
+import tr.havelsan.ueransim.sctp.SctpStreams;
+import tr.havelsan.ueransim.sctp.TcpFramedClient;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the associations towards the AMF described by the 'amf.*' and 'capture.*' parameters of the config.
+ */
+class Associations {
+
+    static ISCTPClient newAssociation(Map<String, Object> params, Object captureFile, VirtualClock virtualClock) {
+        String amfHost = params.get("amf.host").toString();
+        int amfPort = (int) params.get("amf.port");
+        boolean amfMocked = (boolean) params.get("amf.mocked");
+
+        // The transport is not created if the AMF is mocked, so that no connection or loopback peer is started.
+        ISCTPClient sctpClient;
+        if (amfMocked) {
+            Console.println(Color.YELLOW_BOLD, "Mocked Remote is enabled.");
+            sctpClient = newMockedClient((String) params.get("amf.mockedRemote"));
+        } else {
+            sctpClient = newTransport(params, amfHost, amfPort, virtualClock);
+        }
+
+        if (params.get("capture.enabled") != null && (boolean) params.get("capture.enabled")) {
+            sctpClient = newCapturingClient(params, sctpClient, captureFile.toString(), amfHost, amfPort);
+        }
+
+        return sctpClient;
+    }
+
+    static String captureFileOf(Map<String, Object> params, int gnbId) {
+        String file = String.valueOf(params.get("capture.file"));
+        int dot = file.lastIndexOf('.');
+        if (dot < 0) {
+            return file + "-gnb" + gnbId;
+        }
+        return file.substring(0, dot) + "-gnb" + gnbId + file.substring(dot);
+    }
+
+    private static ISCTPClient newTransport(Map<String, Object> params, String amfHost, int amfPort,
+                                            VirtualClock virtualClock) {
+        var transport = params.get("amf.transport");
+        if (transport == null) {
+            transport = "sctp";
+        }
+
+        int streams = SctpStreams.DEFAULT_STREAM_COUNT;
+        if (params.get("amf.streams") != null) {
+            streams = ((Number) params.get("amf.streams")).intValue();
+        }
+
+        switch (transport.toString()) {
+            case "sctp":
+                return new SCTPClient(amfHost, amfPort, Constants.NGAP_PROTOCOL_ID, streams, 0);
+            case "sctp-nio":
+                return new NioSCTPClient(amfHost, amfPort, Constants.NGAP_PROTOCOL_ID, streams, NioSCTPClient.DEFAULT_QUEUE_CAPACITY);
+            case "tcp":
+                return new TcpFramedClient(amfHost, amfPort, Constants.NGAP_PROTOCOL_ID, streams, TcpFramedClient.DEFAULT_QUEUE_CAPACITY);
+            case "loopback":
+                return newLoopbackClient(params, streams, virtualClock);
+            default:
+                throw new RuntimeException("unknown amf.transport: " + transport);
+        }
+    }
+
+    private static ISCTPClient newCapturingClient(Map<String, Object> params, ISCTPClient sctpClient, String file,
+                                                  String amfHost, int amfPort) {
+        long rotationSize = PcapWriter.DEFAULT_ROTATION_SIZE;
+        if (params.get("capture.rotationMegabytes") != null) {
+            rotationSize = ((Number) params.get("capture.rotationMegabytes")).longValue() * 1024 * 1024;
+        }
+
+        // Addresses are only used for the synthetic IP headers, the AMF host is used if it is an IPv4 address.
+        byte[] amfAddress = {127, 0, 0, 2};
+        try {
+            var address = InetAddress.getByName(amfHost);
+            if (address instanceof Inet4Address) {
+                amfAddress = address.getAddress();
+            }
+        } catch (UnknownHostException ignored) {
+        }
+
+        try {
+            var writer = new PcapWriter(file, rotationSize, PcapWriter.DEFAULT_QUEUE_CAPACITY,
+                    new PcapWriter.Endpoint(new byte[]{127, 0, 0, 1}, amfPort),
+                    new PcapWriter.Endpoint(amfAddress, amfPort),
+                    Constants.NGAP_PROTOCOL_ID);
+            Console.println(Color.YELLOW_BOLD, "NGAP capture is enabled: %s", file);
+            return new CapturingSCTPClient(sctpClient, writer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ISCTPClient newLoopbackClient(Map<String, Object> params, int streams, VirtualClock virtualClock) {
+        long delayMicros = 0;
+        if (params.get("amf.loopbackDelayMicros") != null) {
+            delayMicros = ((Number) params.get("amf.loopbackDelayMicros")).longValue();
+        }
+
+        Console.println(Color.YELLOW_BOLD, "Loopback transport is enabled.");
+
+        // In virtual time, the messages and the answers of the peer are delivered by the events of the clock.
+        IEventScheduler scheduler = virtualClock != null ? virtualClock::schedule : null;
+        var transport = new LoopbackTransport(Constants.NGAP_PROTOCOL_ID, streams,
+                LoopbackTransport.DEFAULT_QUEUE_CAPACITY, TimeUnit.MICROSECONDS.toNanos(delayMicros), scheduler);
+        var peer = transport.getServer();
+        var responses = MockedResponses.load((String) params.get("amf.mockedRemote"));
+
+        // The in-process peer answers on the stream the request came from, in the order of the mocked remote file.
+        peer.start();
+        var peerThread = new Thread(() -> {
+            try {
+                peer.receiverLoop((receivedBytes, messageInfo, channel) -> {
+                    var response = responses.answer(receivedBytes);
+                    if (response != null) {
+                        peer.send(messageInfo.streamNumber(), response);
+                    }
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, "loopback-peer");
+        peerThread.setDaemon(true);
+        peerThread.start();
+
+        return transport.getClient();
+    }
+
+    private static MockedSCTPClient newMockedClient(String mockedRemoteFile) {
+        var responses = MockedResponses.load(mockedRemoteFile);
+
+        return new MockedSCTPClient((data, queue) -> {
+            var response = responses.answer(data);
+            if (response != null) {
+                queue.add(response);
+            }
+        });
+    }
+}
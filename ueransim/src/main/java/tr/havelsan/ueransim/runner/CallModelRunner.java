@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.load.CallModel;
+import tr.havelsan.ueransim.load.CallModelScheduler;
+import tr.havelsan.ueransim.load.Duration;
+import tr.havelsan.ueransim.load.EDistribution;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+/**
+ * Runs the call model described in the file, see -c. If the state store is enabled, idle UEs are parked in it.
+ */
+public class CallModelRunner {
+    private final RunEnvironment env;
+    private final String modelFile;
+
+    public CallModelRunner(RunEnvironment env, String modelFile) {
+        this.env = env;
+        this.modelFile = modelFile;
+    }
+
+    public void run() throws Exception {
+        var params = ((ImplicitTypedObject) MtsDecoder.decode(modelFile)).getParameters();
+
+        var model = new CallModel(params.get("lifetime") != null
+                ? RunEnvironment.readDuration(params.get("lifetime")) : null);
+
+        var steps = (Object[]) params.get("steps");
+        for (var item : steps) {
+            var step = ((ImplicitTypedObject) item).getParameters();
+            var flowName = step.get("flow").toString();
+            model.addStep(step.get("name").toString(), env.newFlowFactory(flowName, step.get("input")));
+        }
+        for (var item : steps) {
+            var step = ((ImplicitTypedObject) item).getParameters();
+            if (step.get("next") == null) continue;
+
+            for (var transitionItem : (Object[]) step.get("next")) {
+                var transition = ((ImplicitTypedObject) transitionItem).getParameters();
+                model.addTransition(step.get("name").toString(), transition.get("step").toString(),
+                        transition.get("weight") != null ? ((Number) transition.get("weight")).doubleValue() : 1,
+                        transition.get("thinkTime") != null ? RunEnvironment.readDuration(transition.get("thinkTime"))
+                                : new Duration(EDistribution.FIXED, 0));
+            }
+        }
+        model.setInitialStep(params.get("initial").toString());
+        if (params.get("final") != null) {
+            model.setFinalStep(params.get("final").toString());
+        }
+
+        int ueCount = ((Number) params.get("ues")).intValue();
+        var pool = env.subscriberPoolFor(env.getSubscribers(), ueCount);
+
+        var gnbs = env.createGnbs(env.getConfigYaml(), null);
+        var readyGnbs = env.setupGnbs(gnbs);
+        var ues = RunEnvironment.createUes(readyGnbs, pool, 0, ueCount);
+        var eventLoops = env.startEventLoops(params);
+
+        long seed = params.get("seed") != null ? ((Number) params.get("seed")).longValue() : 0;
+        long durationMillis = (long) (((Number) params.get("duration")).doubleValue() * 1000);
+        long drainMillis = params.get("drainMillis") != null ? ((Number) params.get("drainMillis")).longValue() : 5000;
+        double startRate = params.get("startRate") != null ? ((Number) params.get("startRate")).doubleValue() : 0;
+
+        Console.println(Color.BLUE, "Running the call model for %d ms on %d UEs over %d gNBs", durationMillis,
+                ueCount, readyGnbs.size());
+
+        var shards = env.startShards(params, ues);
+        var stateStore = env.newStateStore(ueCount);
+        var scheduler = new CallModelScheduler(ues, model, eventLoops, seed, env.getVirtualClock());
+        scheduler.setStateStore(stateStore);
+        scheduler.run(durationMillis, startRate, drainMillis);
+
+        RunEnvironment.stop(eventLoops, shards);
+
+        for (int i = 0; i < model.getStepCount(); i++) {
+            Console.println(Color.BLUE, "%s: started=%d finished=%d", model.getStep(i).name,
+                    scheduler.getStartedCount(i), scheduler.getFinishedCount(i));
+        }
+        Console.println(Color.BLUE, "Call model finished: running=%d pending=%d ended=%d failedToStart=%d",
+                scheduler.getRunningCount(), scheduler.getPendingCount(), scheduler.getEndedCount(),
+                scheduler.getFailedCount());
+        RunEnvironment.printStateStore(stateStore);
+        env.printVirtualTime();
+        RunEnvironment.closeGnbs(gnbs);
+    }
+}
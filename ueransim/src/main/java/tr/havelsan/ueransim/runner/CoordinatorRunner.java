@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.cluster.Coordinator;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+import java.util.List;
+
+/**
+ * Distributes the load file among worker processes, which are either started on this host (see -d) or attach to the
+ * coordinator with -w (see -a), and prints the aggregated metrics.
+ */
+public class CoordinatorRunner {
+    private final String loadFile;
+    private final String port;
+    private final int workerCount;
+    private final boolean launch;
+
+    /**
+     * @param port the port to listen on, the default port if null
+     */
+    public CoordinatorRunner(String loadFile, String port, int workerCount, boolean launch) {
+        this.loadFile = loadFile;
+        this.port = port;
+        this.workerCount = workerCount;
+        this.launch = launch;
+    }
+
+    public void run() throws Exception {
+        if (loadFile == null)
+            throw new RuntimeException("a load file is required for the coordinator, see -l");
+
+        var params = ((ImplicitTypedObject) MtsDecoder.decode(loadFile)).getParameters();
+        int ueCount = ((Number) params.get("ues")).intValue();
+        long seed = params.get("seed") != null ? ((Number) params.get("seed")).longValue() : 0;
+
+        var coordinator = new Coordinator(launch ? "127.0.0.1" : "0.0.0.0",
+                port != null ? Integer.parseInt(port) : Coordinator.DEFAULT_PORT, workerCount, ueCount, seed);
+        coordinator.start();
+
+        if (launch) {
+            Console.println(Color.BLUE, "Starting %d workers", workerCount);
+            coordinator.launchWorkers(List.of("-l", loadFile));
+        } else {
+            Console.println(Color.BLUE, "Waiting for %d workers on port %d", workerCount, coordinator.getPort());
+        }
+        coordinator.await();
+    }
+}
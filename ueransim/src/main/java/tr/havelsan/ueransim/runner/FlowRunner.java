@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.FlowScanner;
+
+/**
+ * Runs a flow once on the simulation context, see -f and -y.
+ */
+public class FlowRunner {
+    private final RunEnvironment env;
+    private final String flowName;
+    private final String inputFile;
+
+    public FlowRunner(RunEnvironment env, String flowName, String inputFile) {
+        this.env = env;
+        this.flowName = flowName;
+        this.inputFile = inputFile;
+    }
+
+    public void run() throws Exception {
+        var type = FlowScanner.getFlowType(flowName);
+        if (type == null)
+            throw new RuntimeException("Flow not found: " + flowName);
+        var ctor = RunEnvironment.findConstructor(type);
+
+        var simContext = env.getSimContext();
+        if (ctor.getParameterCount() > 1) {
+            ctor.newInstance(simContext, RunEnvironment.readInputFile("", inputFile, ctor.getParameterTypes()[1]))
+                    .start();
+        } else {
+            ctor.newInstance(simContext)
+                    .start();
+        }
+        simContext.sctpClient.close();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.cluster.LoadMetrics;
+import tr.havelsan.ueransim.cluster.WorkerAssignment;
+import tr.havelsan.ueransim.cluster.WorkerClient;
+import tr.havelsan.ueransim.cluster.WorkerHello;
+import tr.havelsan.ueransim.load.LoadGenerator;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Generates the load described in the file, see -l. If a coordinator address is given, this process is a worker:
+ * only the part of the load assigned by the coordinator is generated, starting when the coordinator says so, and the
+ * metrics are reported to it.
+ */
+public class LoadRunner {
+    private final RunEnvironment env;
+    private final String loadFile;
+    private final String coordinatorAddress;
+
+    public LoadRunner(RunEnvironment env, String loadFile, String coordinatorAddress) {
+        this.env = env;
+        this.loadFile = loadFile;
+        this.coordinatorAddress = coordinatorAddress;
+    }
+
+    public void run() throws Exception {
+        var params = ((ImplicitTypedObject) MtsDecoder.decode(loadFile)).getParameters();
+        var simContext = env.getSimContext();
+        var virtualClock = env.getVirtualClock();
+
+        WorkerClient worker = null;
+        WorkerAssignment assignment = null;
+        if (coordinatorAddress != null) {
+            var subscribers = env.getSubscribers();
+            worker = new WorkerClient(coordinatorAddress);
+            var gnbIds = env.readSetupConfigs(env.getConfigYaml()).stream().mapToInt(config -> config.gnbId)
+                    .summaryStatistics();
+            assignment = worker.connect(new WorkerHello(ManagementFactory.getRuntimeMXBean().getName(),
+                    gnbIds.getMin(), gnbIds.getMax(), subscribers != null ? subscribers.size() : Long.MAX_VALUE));
+            simContext.ranUeNgapId = assignment.firstRanUeNgapId;
+        }
+
+        long seed = params.get("seed") != null ? ((Number) params.get("seed")).longValue() : 0;
+        double durationSeconds = ((Number) params.get("duration")).doubleValue();
+
+        // Rates are shared among the workers
+        double share = 1;
+        if (assignment != null) {
+            seed = assignment.seed;
+            share = assignment.rateShare;
+        }
+
+        var arrivalProcess = RunEnvironment.readArrivalProcess(
+                ((ImplicitTypedObject) params.get("arrival")).getParameters(), seed, share, durationSeconds);
+        var flowMix = env.readFlowMix((Object[]) params.get("flows"));
+
+        int ueCount = ((Number) params.get("ues")).intValue();
+        long firstSubscriber = 0;
+        if (assignment != null) {
+            ueCount = assignment.ueCount;
+            firstSubscriber = assignment.firstSubscriber;
+        }
+        var pool = env.subscriberPoolFor(env.getSubscribers(), (int) (firstSubscriber + ueCount));
+
+        var gnbs = env.createGnbs(env.getConfigYaml(), assignment);
+        var readyGnbs = env.setupGnbs(gnbs);
+        var ues = RunEnvironment.createUes(readyGnbs, pool, firstSubscriber, ueCount);
+        var eventLoops = env.startEventLoops(params);
+
+        long durationMillis = (long) (durationSeconds * 1000);
+        long drainMillis = params.get("drainMillis") != null ? ((Number) params.get("drainMillis")).longValue() : 5000;
+
+        var shards = env.startShards(params, ues);
+        var generator = new LoadGenerator(ues, flowMix, arrivalProcess, eventLoops, seed, virtualClock);
+
+        if (worker != null) {
+            worker.awaitStart();
+            worker.startReporting(() -> LoadMetrics.of(generator));
+        }
+
+        Console.println(Color.BLUE, "Generating %s load for %d ms on %d UEs over %d gNBs", arrivalProcess.getType(),
+                durationMillis, ueCount, readyGnbs.size());
+
+        generator.run(durationMillis, drainMillis);
+
+        if (worker != null) {
+            worker.finish(LoadMetrics.of(generator));
+        }
+
+        RunEnvironment.stop(eventLoops, shards);
+
+        Console.println(Color.BLUE, "Load finished: arrivals=%d started=%d completed=%d failed=%d running=%d failedToStart=%d noIdleUe=%d",
+                generator.getArrivalCount(), generator.getStartedCount(), generator.getCompletedCount(),
+                generator.getFailedCount(), generator.getRunningCount(), generator.getFailedToStartCount(),
+                generator.getNoIdleUeCount());
+        Console.println(Color.BLUE, "Achieved rate: %.1f/s, late arrivals: %d, max lag: %d us, latency mean: %d us, max: %d us",
+                generator.getArrivalCount() * 1000.0 / durationMillis, generator.getLateCount(),
+                generator.getMaxLagNanos() / 1000, generator.getMeanLatencyNanos() / 1000,
+                generator.getMaxLatencyNanos() / 1000);
+        env.printVirtualTime();
+        RunEnvironment.closeGnbs(gnbs);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.Ngap;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.ngap.ngap_ies.AMF_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_ies.RAN_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.ngap2.NgapInternal;
+import tr.havelsan.ueransim.utils.Utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The answers of the mocked remote file, which are given in the order of the messages of a gNB with a single UE.
+ * <p>
+ * The position in the file is kept for each UE, by the RAN-UE-NGAP-ID of its messages, so that the UEs sharing an
+ * association each get the whole conversation. Non UE-associated messages such as NG Setup have a position of their
+ * own, and a UE starts where that position is when its first message arrives. Once a UE has passed the end of the
+ * file, its RAN-UE-NGAP-ID starts a new conversation.
+ * <p>
+ * The NGAP IDs of the recorded UE are replaced in the answers, by the RAN-UE-NGAP-ID of the message which is answered
+ * and by an AMF-UE-NGAP-ID given to each conversation, so that the gNB routes every answer to its UE.
+ */
+class MockedResponses {
+    private final byte[][] responses;
+    private final AtomicInteger nonUePosition;
+    private final AtomicLong nextAmfUeNgapId;
+    private final ConcurrentHashMap<Long, Conversation> conversations;
+
+    private MockedResponses(byte[][] responses) {
+        this.responses = responses;
+        this.nonUePosition = new AtomicInteger();
+        this.nextAmfUeNgapId = new AtomicLong(1);
+        this.conversations = new ConcurrentHashMap<>();
+    }
+
+    // The file is only read once, the answers of UEs are decoded for each UE since their NGAP IDs are replaced.
+    static MockedResponses load(String mockedRemoteFile) {
+        var mockedRemote = ((ImplicitTypedObject) MtsDecoder.decode(mockedRemoteFile)).getParameters();
+
+        var mockedValues = (Object[]) mockedRemote.get("messages-in-order");
+        var responses = new byte[mockedValues.length][];
+        for (int i = 0; i < mockedValues.length; i++) {
+            var mockedValue = mockedValues[i];
+            if (mockedValue != null && mockedValue.toString().length() > 0) {
+                responses[i] = Utils.hexStringToByteArray(mockedValue.toString());
+            }
+        }
+        return new MockedResponses(responses);
+    }
+
+    /**
+     * Returns the answer to the given NGAP message, null if there is none. Called concurrently for the UEs of an
+     * association.
+     */
+    byte[] answer(byte[] ngapMessage) {
+        var ranUeNgapId = NgapInternal.findProtocolIe(
+                NgapInternal.extractNgapMessage(Ngap.perDecode(NGAP_PDU.class, ngapMessage)), RAN_UE_NGAP_ID.class);
+
+        if (ranUeNgapId == null) {
+            int index = nonUePosition.getAndIncrement();
+            return index < responses.length ? responses[index] : null;
+        }
+
+        long id = ranUeNgapId.value;
+        var conversation = conversations.computeIfAbsent(id,
+                k -> new Conversation(nonUePosition.get(), nextAmfUeNgapId.getAndIncrement()));
+        int index = conversation.position.getAndIncrement();
+        if (index >= responses.length - 1) {
+            conversations.remove(id, conversation);
+        }
+        if (index >= responses.length || responses[index] == null) {
+            return null;
+        }
+        return replaceUeIds(responses[index], id, conversation.amfUeNgapId);
+    }
+
+    private static byte[] replaceUeIds(byte[] response, long ranUeNgapId, long amfUeNgapId) {
+        var ngapPdu = Ngap.perDecode(NGAP_PDU.class, response);
+        var ngapMessage = NgapInternal.extractNgapMessage(ngapPdu);
+
+        var ieRanUeNgapId = NgapInternal.findProtocolIe(ngapMessage, RAN_UE_NGAP_ID.class);
+        if (ieRanUeNgapId == null) {
+            // Non UE-associated answer, e.g. an error indication
+            return response;
+        }
+        ieRanUeNgapId.value = ranUeNgapId;
+
+        var ieAmfUeNgapId = NgapInternal.findProtocolIe(ngapMessage, AMF_UE_NGAP_ID.class);
+        if (ieAmfUeNgapId != null) {
+            ieAmfUeNgapId.value = amfUeNgapId;
+        }
+        return Ngap.perEncode(ngapPdu);
+    }
+
+    private static class Conversation {
+        final AtomicInteger position;
+        final long amfUeNgapId;
+
+        Conversation(int position, long amfUeNgapId) {
+            this.position = new AtomicInteger(position);
+            this.amfUeNgapId = amfUeNgapId;
+        }
+    }
+}
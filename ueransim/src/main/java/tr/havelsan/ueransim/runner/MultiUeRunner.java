@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.FlowScanner;
+import tr.havelsan.ueransim.core.EThreadMode;
+import tr.havelsan.ueransim.core.UeShards;
+import tr.havelsan.ueransim.core.UeThreads;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs a flow for a number of UEs, see -n. If the number of shards is not zero, the UEs are partitioned among the
+ * shards by their SUPIs and the flows are event driven. Otherwise, if the number of event loops is zero, each flow
+ * runs on its own thread of the given mode, else the flows are event driven and distributed among the event loops. If
+ * the state store is enabled, the UEs are parked in it once their flow finishes.
+ */
+public class MultiUeRunner {
+    private final RunEnvironment env;
+    private final String flowName;
+    private final String inputFile;
+    private final int ueCount;
+    private final int eventLoopCount;
+    private final int shardCount;
+    private final EThreadMode threadMode;
+
+    public MultiUeRunner(RunEnvironment env, String flowName, String inputFile, int ueCount, int eventLoopCount,
+                         int shardCount, EThreadMode threadMode) {
+        this.env = env;
+        this.flowName = flowName;
+        this.inputFile = inputFile;
+        this.ueCount = ueCount;
+        this.eventLoopCount = eventLoopCount;
+        this.shardCount = shardCount;
+        this.threadMode = threadMode;
+    }
+
+    public void run() throws Exception {
+        var type = FlowScanner.getFlowType(flowName);
+        if (type == null)
+            throw new RuntimeException("Flow not found: " + flowName);
+        var ctor = RunEnvironment.findConstructor(type);
+        var input = ctor.getParameterCount() > 1
+                ? RunEnvironment.readInputFile("", inputFile, ctor.getParameterTypes()[1]) : null;
+
+        var pool = env.subscriberPoolFor(env.getSubscribers(), ueCount);
+        var gnbs = env.createGnbs(env.getConfigYaml(), null);
+        var readyGnbs = env.setupGnbs(gnbs);
+        var stateStore = env.newStateStore(ueCount);
+
+        Console.println(Color.BLUE, "Running %s for %d UEs over %d gNBs", type.getSimpleName(), ueCount,
+                readyGnbs.size());
+
+        var eventLoops = env.startEventLoops(eventLoopCount);
+        var shards = shardCount > 0 ? new UeShards(shardCount) : null;
+        if (shards != null) {
+            shards.start();
+        }
+        var finishedFlows = new CountDownLatch(ueCount);
+        var ueThreads = UeThreads.newFactory(threadMode, "ue-");
+
+        // UEs are distributed round robin among the gNBs.
+        for (int i = 0; i < ueCount; i++) {
+            var gnb = readyGnbs.get(i % readyGnbs.size());
+            var ueContext = gnb.createUe(pool, i);
+            var flow = input != null ? ctor.newInstance(ueContext, input) : ctor.newInstance(ueContext);
+            Runnable onFinished = () -> {
+                if (stateStore != null && !ueContext.hasListeners()) {
+                    ueContext.park(stateStore);
+                }
+                finishedFlows.countDown();
+            };
+
+            if (shards != null) {
+                flow.start(shards.assign(ueContext).getEventLoop(), onFinished);
+                continue;
+            }
+            if (eventLoopCount > 0) {
+                flow.start(eventLoops[i % eventLoopCount], onFinished);
+                continue;
+            }
+
+            ueThreads.newThread(() -> {
+                try {
+                    flow.start();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    onFinished.run();
+                }
+            }).start();
+        }
+        finishedFlows.await();
+        RunEnvironment.stop(eventLoops, shards);
+
+        int ues = 0;
+        long unknownUes = 0;
+        for (var gnb : readyGnbs) {
+            ues += gnb.getUeRegistry().size();
+            unknownUes += gnb.getUnknownUeCount();
+        }
+        Console.println(Color.BLUE, "All flows finished, gNBs: %d, UEs: %d, messages for unknown UEs: %d",
+                readyGnbs.size(), ues, unknownUes);
+        RunEnvironment.printStateStore(stateStore);
+        RunEnvironment.closeGnbs(gnbs);
+    }
+}
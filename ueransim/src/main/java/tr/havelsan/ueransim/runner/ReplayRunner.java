@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.configs.NgSetupConfig;
+import tr.havelsan.ueransim.flows.NgSetupFlow;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.replay.EReplayTiming;
+import tr.havelsan.ueransim.replay.ReplayEngine;
+import tr.havelsan.ueransim.replay.ReplayPacing;
+import tr.havelsan.ueransim.replay.ReplayScript;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+/**
+ * Replays the captured or listed messages described in the file on the association of the context, see -r.
+ */
+public class ReplayRunner {
+    private final RunEnvironment env;
+    private final String replayFile;
+
+    public ReplayRunner(RunEnvironment env, String replayFile) {
+        this.env = env;
+        this.replayFile = replayFile;
+    }
+
+    public void run() throws Exception {
+        var params = ((ImplicitTypedObject) MtsDecoder.decode(replayFile)).getParameters();
+        var simContext = env.getSimContext();
+
+        ReplayScript script;
+        if (params.get("capture") != null) {
+            script = ReplayScript.fromPcap(params.get("capture").toString());
+        } else {
+            script = ReplayScript.fromHexMessages((Object[]) params.get("messages-in-order"));
+        }
+
+        var timing = EReplayTiming.valueOf(params.get("timing").toString().toUpperCase().replace('-', '_'));
+        var pacing = new ReplayPacing(timing,
+                params.get("compressionFactor") != null ? ((Number) params.get("compressionFactor")).doubleValue() : 1,
+                params.get("stepsPerSecond") != null ? ((Number) params.get("stepsPerSecond")).doubleValue() : 1,
+                params.get("copiesPerSecond") != null ? ((Number) params.get("copiesPerSecond")).doubleValue() : 0);
+        int copies = ((Number) params.get("copies")).intValue();
+
+        // The association is set up once, the captured NG Setup is not replayed.
+        new NgSetupFlow(simContext, RunEnvironment.readInputFile("input.NgSetupFlow",
+                env.getConfig().get("input.NgSetupFlow"), NgSetupConfig.class))
+                .start();
+
+        Console.println(Color.BLUE, "Replaying %d steps as %d UEs", script.getSteps().size(), copies);
+
+        var engine = new ReplayEngine(simContext, script, pacing, copies);
+        if (params.get("drainMillis") != null) {
+            engine.setDrainMillis(((Number) params.get("drainMillis")).longValue());
+        }
+        engine.run();
+
+        Console.println(Color.BLUE, "Replay finished: sent=%d received=%d failed=%d unknownUe=%d",
+                engine.getSentCount(), engine.getReceivedCount(), engine.getFailedCount(), engine.getUnknownUeCount());
+        simContext.sctpClient.close();
+    }
+}
@@ -0,0 +1,541 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.BaseFlow;
+import tr.havelsan.ueransim.FlowScanner;
+import tr.havelsan.ueransim.cluster.WorkerAssignment;
+import tr.havelsan.ueransim.configs.NgSetupConfig;
+import tr.havelsan.ueransim.core.EventLoop;
+import tr.havelsan.ueransim.core.GnbContext;
+import tr.havelsan.ueransim.core.RanUeNgapIdAllocator;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.core.TimingWheel;
+import tr.havelsan.ueransim.core.UeShards;
+import tr.havelsan.ueransim.core.VirtualClock;
+import tr.havelsan.ueransim.enums.ESubscriberDerivation;
+import tr.havelsan.ueransim.flows.NgSetupFlow;
+import tr.havelsan.ueransim.load.ArrivalProcess;
+import tr.havelsan.ueransim.load.Duration;
+import tr.havelsan.ueransim.load.EArrivalProcess;
+import tr.havelsan.ueransim.load.EDistribution;
+import tr.havelsan.ueransim.load.FlowMix;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsConstruct;
+import tr.havelsan.ueransim.mts.MtsConvert;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.nas.impl.ies.IESNssai;
+import tr.havelsan.ueransim.nas.impl.values.VTrackingAreaIdentity;
+import tr.havelsan.ueransim.ngap2.UserLocationInformationNr;
+import tr.havelsan.ueransim.store.UeStateStore;
+import tr.havelsan.ueransim.structs.SubscriberPool;
+import tr.havelsan.ueransim.structs.SubscriberRange;
+import tr.havelsan.ueransim.structs.Supi;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.structs.UeData;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.lang.reflect.Constructor;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The config of a run and the simulation context created from it, shared by the runners. The association of the
+ * context is created but not started.
+ */
+public class RunEnvironment {
+    private final ImplicitTypedObject configYaml;
+    private final Map<String, String> config;
+    private final VirtualClock virtualClock;
+    private final SimulationContext simContext;
+    private final SubscriberPool subscribers;
+
+    private RunEnvironment(ImplicitTypedObject configYaml) {
+        this.configYaml = configYaml;
+        this.config = new LinkedHashMap<>();
+        for (var e : configYaml.getParameters().entrySet()) {
+            config.put(e.getKey(), String.valueOf(e.getValue()));
+        }
+
+        // The clock is created first, since the loopback transport of the context delivers its messages by it.
+        this.virtualClock = newVirtualClock(configYaml.getParameters());
+        this.simContext = createSimContext(configYaml.getParameters());
+        this.subscribers = readSubscribers(configYaml, simContext.ueData);
+    }
+
+    public static RunEnvironment load(String configFile) {
+        return new RunEnvironment((ImplicitTypedObject) MtsDecoder.decode(configFile));
+    }
+
+    public ImplicitTypedObject getConfigYaml() {
+        return configYaml;
+    }
+
+    public Map<String, String> getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the clock of the simulation if it runs in virtual time, see 'amf.virtualTime', null otherwise.
+     */
+    public VirtualClock getVirtualClock() {
+        return virtualClock;
+    }
+
+    public SimulationContext getSimContext() {
+        return simContext;
+    }
+
+    /**
+     * Returns the subscriber ranges of the config, null if there is none.
+     */
+    public SubscriberPool getSubscribers() {
+        return subscribers;
+    }
+
+    private SimulationContext createSimContext(Map<String, Object> params) {
+        var simContext = new SimulationContext();
+
+        // Parse UE Data
+        {
+            Map<String, Object> ud = ((ImplicitTypedObject) params.get("ueData")).getParameters();
+
+            var ueData = new UeData();
+            ueData.snn = (String) ud.get("snn");
+            ueData.key = new OctetString((String) ud.get("key"));
+            ueData.op = new OctetString((String) ud.get("op"));
+            ueData.sqn = new OctetString((String) ud.get("sqn"));
+            ueData.amf = new OctetString((String) ud.get("amf"));
+            ueData.imei = (String) ud.get("imei");
+            ueData.supi = Supi.parse((String) ud.get("supi"));
+            simContext.ueData = ueData;
+        }
+
+        // Parse UE Config
+        {
+            var ueConfig = new UeConfig();
+            ueConfig.smsOverNasSupported = (boolean) params.get("ue.smsOverNas");
+            ueConfig.requestedNssai = (IESNssai[]) MtsConvert.convert(params.get("ue.requestedNssai"), IESNssai[].class, true).get(0).value;
+            ueConfig.userLocationInformationNr = MtsConstruct.construct(UserLocationInformationNr.class,
+                    ((ImplicitTypedObject) params.get("ue.userLocationInformationNr")), true);
+
+            simContext.ueConfig = ueConfig;
+        }
+
+        // Parse RAN-UE-NGAP-ID
+        {
+            simContext.ranUeNgapId = ((Number) params.get("context.ranUeNgapId")).longValue();
+        }
+
+        // Create SCTP Client
+        {
+            simContext.amfHost = params.get("amf.host").toString();
+            simContext.amfPort = (int) params.get("amf.port");
+            simContext.sctpClient = Associations.newAssociation(params, params.get("capture.file"), virtualClock);
+        }
+
+        return simContext;
+    }
+
+    /**
+     * Returns the clock of the simulation if 'amf.virtualTime' is set, null otherwise. The NAS timers are then run by
+     * the clock as well. Virtual time needs the in-process AMF of the loopback transport, since a remote AMF runs in
+     * real time.
+     */
+    private static VirtualClock newVirtualClock(Map<String, Object> params) {
+        if (params.get("amf.virtualTime") == null || !(boolean) params.get("amf.virtualTime")) return null;
+        if (!"loopback".equals(String.valueOf(params.get("amf.transport"))) || (boolean) params.get("amf.mocked"))
+            throw new RuntimeException("amf.virtualTime requires the loopback transport");
+
+        var clock = new VirtualClock();
+        var wheel = new TimingWheel("virtual-timers", TimingWheel.DEFAULT_TICK_MILLIS, clock);
+        wheel.start();
+        TimingWheel.setDefault(wheel);
+
+        Console.println(Color.YELLOW_BOLD, "Virtual time is enabled.");
+        return clock;
+    }
+
+    /**
+     * Reads the subscriber ranges declared under 'subscribers' in the config, null if there is none. Values which are
+     * not given for a range are taken from the UE data.
+     */
+    static SubscriberPool readSubscribers(ImplicitTypedObject configYaml, UeData ueData) {
+        var params = configYaml.getParameters();
+        if (params.get("subscribers") == null) return null;
+
+        var ranges = new ArrayList<SubscriberRange>();
+        for (var item : (Object[]) params.get("subscribers")) {
+            var range = ((ImplicitTypedObject) item).getParameters();
+
+            var template = new UeData();
+            template.snn = range.get("snn") != null ? (String) range.get("snn") : ueData.snn;
+            template.key = range.get("key") != null ? new OctetString((String) range.get("key")) : ueData.key;
+            template.sqn = range.get("sqn") != null ? new OctetString((String) range.get("sqn")) : ueData.sqn;
+            template.amf = range.get("amf") != null ? new OctetString((String) range.get("amf")) : ueData.amf;
+            template.imei = range.get("imei") != null ? (String) range.get("imei") : ueData.imei;
+            if (range.get("opc") != null) {
+                template.opc = new OctetString((String) range.get("opc"));
+            } else {
+                template.op = range.get("op") != null ? new OctetString((String) range.get("op")) : ueData.op;
+            }
+
+            ranges.add(new SubscriberRange(Supi.parse((String) range.get("supi")),
+                    ((Number) range.get("count")).longValue(), template,
+                    readDerivation(range.get("keyDerivation")), readDerivation(range.get("opDerivation"))));
+        }
+        return new SubscriberPool(ranges);
+    }
+
+    private static ESubscriberDerivation readDerivation(Object value) {
+        return value != null ? ESubscriberDerivation.valueOf(value.toString().toUpperCase()) : ESubscriberDerivation.SHARED;
+    }
+
+    // Without subscriber ranges, UEs are the subscribers following the one in the UE data.
+    SubscriberPool subscriberPoolFor(SubscriberPool subscribers, int ueCount) {
+        var pool = subscribers != null ? subscribers : SubscriberPool.of(simContext.ueData, ueCount);
+        if (pool.size() < ueCount)
+            throw new RuntimeException("subscriber ranges have " + pool.size() + " subscribers, " + ueCount + " needed");
+        return pool;
+    }
+
+    /**
+     * Creates the gNBs declared under 'gnbs' in the given config, or a single gNB described by the NG Setup input if
+     * there is none. The first gNB uses the association of the context. The gNB IDs and the RAN-UE-NGAP-IDs are taken
+     * from the ranges of the worker if an assignment is given.
+     */
+    List<GnbContext> createGnbs(ImplicitTypedObject configYaml, WorkerAssignment assignment) {
+        var params = configYaml.getParameters();
+
+        var setupConfigs = readSetupConfigs(configYaml);
+        if (assignment != null && assignment.gnbIdOffset != 0) {
+            for (int i = 0; i < setupConfigs.size(); i++) {
+                var setupConfig = setupConfigs.get(i);
+                setupConfigs.set(i, new NgSetupConfig(setupConfig.gnbId + assignment.gnbIdOffset,
+                        setupConfig.gnbPlmn, setupConfig.supportedTAs));
+            }
+        }
+        long ranUeNgapIdCount = assignment != null ? assignment.ranUeNgapIdCount
+                : RanUeNgapIdAllocator.MAX_RAN_UE_NGAP_ID + 1;
+
+        var gnbs = new ArrayList<GnbContext>();
+        for (int i = 0; i < setupConfigs.size(); i++) {
+            var setupConfig = setupConfigs.get(i);
+
+            var template = new SimulationContext();
+            template.amfHost = simContext.amfHost;
+            template.amfPort = simContext.amfPort;
+            template.ueData = simContext.ueData;
+            template.ranUeNgapId = simContext.ranUeNgapId;
+            if (i == 0) {
+                template.sctpClient = simContext.sctpClient;
+            } else {
+                template.sctpClient = Associations.newAssociation(params,
+                        Associations.captureFileOf(params, setupConfig.gnbId), virtualClock);
+            }
+            if (params.get("gnbs") == null) {
+                template.ueConfig = simContext.ueConfig;
+            } else {
+                template.ueConfig = ueConfigForGnb(simContext.ueConfig, setupConfig);
+            }
+
+            gnbs.add(new GnbContext(template, setupConfig, ranUeNgapIdCount));
+        }
+        return gnbs;
+    }
+
+    List<NgSetupConfig> readSetupConfigs(ImplicitTypedObject configYaml) {
+        var params = configYaml.getParameters();
+
+        var setupConfigs = new ArrayList<NgSetupConfig>();
+        if (params.get("gnbs") == null) {
+            setupConfigs.add(readInputFile("input.NgSetupFlow", config.get("input.NgSetupFlow"), NgSetupConfig.class));
+        } else {
+            var gnbIds = new HashSet<Integer>();
+            for (var item : (Object[]) params.get("gnbs")) {
+                var group = ((ImplicitTypedObject) item).getParameters();
+                var setupConfig = readInputFile("gnbs.setup", String.valueOf(group.get("setup")), NgSetupConfig.class);
+                int count = group.get("count") != null ? ((Number) group.get("count")).intValue() : 1;
+
+                // A group is a range of gNBs with consecutive IDs, sharing the PLMN and the supported TAs.
+                for (int i = 0; i < count; i++) {
+                    int gnbId = setupConfig.gnbId + i;
+                    if (!gnbIds.add(gnbId))
+                        throw new RuntimeException("duplicate gnbId in gnbs: " + gnbId);
+                    setupConfigs.add(new NgSetupConfig(gnbId, setupConfig.gnbPlmn, setupConfig.supportedTAs));
+                }
+            }
+        }
+        return setupConfigs;
+    }
+
+    // UEs of a gNB are located in the first TA and in cell 1 of that gNB.
+    private static UeConfig ueConfigForGnb(UeConfig ueConfig, NgSetupConfig setupConfig) {
+        var supportedTa = setupConfig.supportedTAs[0];
+        var plmn = supportedTa.broadcastPlmns[0].plmn;
+        int gnbId = setupConfig.gnbId;
+
+        var nrCellIdentity = new OctetString(new byte[]{
+                (byte) (gnbId >>> 24), (byte) (gnbId >>> 16), (byte) (gnbId >>> 8), (byte) gnbId, 0x10});
+
+        var res = new UeConfig();
+        res.smsOverNasSupported = ueConfig.smsOverNasSupported;
+        res.requestedNssai = ueConfig.requestedNssai;
+        res.userLocationInformationNr = new UserLocationInformationNr(
+                new UserLocationInformationNr.NrCgi(plmn, nrCellIdentity),
+                new VTrackingAreaIdentity(plmn, supportedTa.tac),
+                ueConfig.userLocationInformationNr.timeStamp);
+        return res;
+    }
+
+    /**
+     * Starts the associations and performs NG Setup concurrently for all gNBs. Returns the gNBs which completed it.
+     */
+    List<GnbContext> setupGnbs(List<GnbContext> gnbs) throws Exception {
+        var ready = new boolean[gnbs.size()];
+        var setupThreads = new Thread[gnbs.size()];
+        for (int i = 0; i < gnbs.size(); i++) {
+            var gnb = gnbs.get(i);
+            int index = i;
+
+            setupThreads[i] = new Thread(() -> {
+                try {
+                    if (gnb.getAssociation() != simContext.sctpClient) {
+                        gnb.getAssociation().start();
+                    }
+                    gnb.startReceiver();
+                    new NgSetupFlow(gnb.getNonUeContext(), gnb.getSetupConfig())
+                            .start();
+                    ready[index] = true;
+                } catch (Exception e) {
+                    Console.println(Color.RED, "NG Setup failed for gNB %d: %s", gnb.getSetupConfig().gnbId, e);
+                }
+            }, "gnb-setup-" + gnb.getSetupConfig().gnbId);
+            setupThreads[i].start();
+        }
+        for (var thread : setupThreads) {
+            // In virtual time, the setup threads wait for the answers which are delivered by the clock.
+            while (virtualClock != null && thread.isAlive()) {
+                if (!virtualClock.runNext(Long.MAX_VALUE)) {
+                    thread.join(1);
+                }
+            }
+            thread.join();
+        }
+
+        var readyGnbs = new ArrayList<GnbContext>();
+        for (int i = 0; i < gnbs.size(); i++) {
+            if (ready[i]) {
+                readyGnbs.add(gnbs.get(i));
+            }
+        }
+        if (readyGnbs.isEmpty())
+            throw new RuntimeException("no gNB could complete NG Setup");
+        return readyGnbs;
+    }
+
+    static void closeGnbs(List<GnbContext> gnbs) {
+        for (var gnb : gnbs) {
+            gnb.getAssociation().close();
+        }
+    }
+
+    /**
+     * Creates the given number of UEs, which are the subscribers of the pool starting from the given index. UEs are
+     * distributed round robin among the gNBs.
+     */
+    static List<SimulationContext> createUes(List<GnbContext> gnbs, SubscriberPool pool, long firstSubscriber,
+                                             int ueCount) {
+        var ues = new ArrayList<SimulationContext>(ueCount);
+        for (int i = 0; i < ueCount; i++) {
+            ues.add(gnbs.get(i % gnbs.size()).createUe(pool, firstSubscriber + i));
+        }
+        return ues;
+    }
+
+    /**
+     * Starts the number of event loops given by the 'eventLoops' parameter, one if it is not given.
+     */
+    EventLoop[] startEventLoops(Map<String, Object> params) {
+        return startEventLoops(params.get("eventLoops") != null ? ((Number) params.get("eventLoops")).intValue() : 1);
+    }
+
+    EventLoop[] startEventLoops(int count) {
+        var eventLoops = new EventLoop[count];
+        for (int i = 0; i < count; i++) {
+            eventLoops[i] = new EventLoop("event-loop-" + i, virtualClock);
+            eventLoops[i].start();
+        }
+        return eventLoops;
+    }
+
+    /**
+     * Starts the shards given by the 'shards' parameter and assigns the UEs to them. Returns null if there are none,
+     * then the UEs run on the event loops. Shards are not used in virtual time, where all UEs run on the clock.
+     */
+    UeShards startShards(Map<String, Object> params, List<SimulationContext> ues) {
+        int shardCount = params.get("shards") != null ? ((Number) params.get("shards")).intValue() : 0;
+        if (shardCount <= 0) return null;
+        if (virtualClock != null) {
+            Console.println(Color.YELLOW, "Shards are ignored in virtual time");
+            return null;
+        }
+
+        var shards = new UeShards(shardCount);
+        shards.start();
+        for (var ue : ues) {
+            shards.assign(ue);
+        }
+        return shards;
+    }
+
+    static void stop(EventLoop[] eventLoops, UeShards shards) {
+        for (var eventLoop : eventLoops) {
+            eventLoop.stop();
+        }
+        if (shards != null) {
+            shards.stop();
+        }
+    }
+
+    /**
+     * Returns the store in which the state of idle UEs is kept if 'store.enabled' is set, null otherwise. The store
+     * is backed by the memory-mapped file given by 'store.file', or by direct buffers if there is none.
+     */
+    UeStateStore newStateStore(int capacity) {
+        if (!Boolean.parseBoolean(config.get("store.enabled"))) return null;
+
+        String file = config.get("store.file");
+        Console.println(Color.YELLOW_BOLD, "UE state store is enabled.");
+        if (file == null || file.isEmpty()) {
+            return UeStateStore.direct(capacity);
+        }
+        return UeStateStore.mapped(Path.of(file), capacity);
+    }
+
+    static void printStateStore(UeStateStore stateStore) {
+        if (stateStore == null) return;
+        Console.println(Color.BLUE, "UE state store: %d parked UEs in %d KiB", stateStore.getAllocatedCount(),
+                stateStore.getReservedBytes() / 1024);
+        stateStore.close();
+    }
+
+    void printVirtualTime() {
+        if (virtualClock == null) return;
+        Console.println(Color.BLUE, "Simulated %d ms of virtual time with %d events",
+                virtualClock.nanoTime() / 1_000_000, virtualClock.getExecutedCount());
+    }
+
+    /**
+     * Returns a factory for the named flow. Its input is read once, from the given path or from the path configured
+     * for the flow.
+     */
+    FlowMix.IFlowFactory newFlowFactory(String flowName, Object inputPath) {
+        var type = FlowScanner.getFlowType(flowName);
+        if (type == null)
+            throw new RuntimeException("Flow not found: " + flowName);
+
+        var ctor = findConstructor(type);
+        if (ctor.getParameterCount() == 1) {
+            return ctor::newInstance;
+        }
+
+        String key = "input." + flowName;
+        String path = inputPath != null ? inputPath.toString() : config.get(key);
+        Object input = readInputFile(key, path, ctor.getParameterTypes()[1]);
+        return ctx -> ctor.newInstance(ctx, input);
+    }
+
+    FlowMix readFlowMix(Object[] flows) {
+        var flowMix = new FlowMix();
+        for (var item : flows) {
+            var entry = ((ImplicitTypedObject) item).getParameters();
+            var flowName = entry.get("flow").toString();
+            double weight = entry.get("weight") != null ? ((Number) entry.get("weight")).doubleValue() : 1;
+
+            flowMix.add(flowName, newFlowFactory(flowName, entry.get("input")), weight);
+        }
+        return flowMix;
+    }
+
+    /**
+     * Reads an arrival process, its rates are multiplied by the share. A ramp lasts the given duration unless its
+     * 'rampSeconds' is given.
+     */
+    static ArrivalProcess readArrivalProcess(Map<String, Object> arrival, long seed, double share,
+                                             double durationSeconds) {
+        var process = EArrivalProcess.valueOf(arrival.get("process").toString().toUpperCase());
+        switch (process) {
+            case CONSTANT:
+                return ArrivalProcess.constant(share * ((Number) arrival.get("rate")).doubleValue());
+            case POISSON:
+                return ArrivalProcess.poisson(share * ((Number) arrival.get("rate")).doubleValue(), seed);
+            case STEP:
+                return ArrivalProcess.step(share * ((Number) arrival.get("rate")).doubleValue(),
+                        share * ((Number) arrival.get("stepRate")).doubleValue(),
+                        ((Number) arrival.get("stepSeconds")).doubleValue(),
+                        arrival.get("maxRate") != null ? share * ((Number) arrival.get("maxRate")).doubleValue() : 0);
+            case SINUSOIDAL:
+                return ArrivalProcess.sinusoidal(share * ((Number) arrival.get("rate")).doubleValue(),
+                        share * ((Number) arrival.get("amplitude")).doubleValue(),
+                        ((Number) arrival.get("periodSeconds")).doubleValue());
+            case RAMP:
+                return ArrivalProcess.ramp(share * ((Number) arrival.get("rate")).doubleValue(),
+                        share * ((Number) arrival.get("targetRate")).doubleValue(),
+                        arrival.get("rampSeconds") != null ? ((Number) arrival.get("rampSeconds")).doubleValue()
+                                : durationSeconds);
+            default:
+                throw new RuntimeException("unknown arrival process: " + process);
+        }
+    }
+
+    static Duration readDuration(Object value) {
+        var params = ((ImplicitTypedObject) value).getParameters();
+        var distribution = params.get("distribution") != null
+                ? EDistribution.valueOf(params.get("distribution").toString().toUpperCase()) : EDistribution.FIXED;
+        return new Duration(distribution, ((Number) params.get("meanMillis")).longValue());
+    }
+
+    static Constructor<BaseFlow> findConstructor(Class<? extends BaseFlow> selectedType) {
+        if (selectedType.getDeclaredConstructors().length != 1)
+            throw new RuntimeException("zero or multiple constructor found for selected flow");
+        return (Constructor<BaseFlow>) selectedType.getDeclaredConstructors()[0];
+    }
+
+    static <T> T readInputFile(String key, String path, Class<T> type) {
+        if (path == null || path.length() == 0)
+            throw new RuntimeException("please specify flow input file (" + key + ")");
+        var inp = MtsDecoder.decode(path);
+        return MtsConstruct.construct(type, (ImplicitTypedObject) inp, true);
+    }
+}
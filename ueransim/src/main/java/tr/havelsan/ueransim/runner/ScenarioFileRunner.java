@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.runner;
+
+import tr.havelsan.ueransim.load.LoadGenerator;
+import tr.havelsan.ueransim.mts.ImplicitTypedObject;
+import tr.havelsan.ueransim.mts.MtsDecoder;
+import tr.havelsan.ueransim.scenario.Scenario;
+import tr.havelsan.ueransim.scenario.ScenarioPhase;
+import tr.havelsan.ueransim.scenario.ScenarioRunner;
+import tr.havelsan.ueransim.scenario.ServiceLevelObjectives;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the scenario described in the file and runs it without interaction, see -x. The gNBs and subscribers
+ * declared in the scenario replace the ones of the config.
+ */
+public class ScenarioFileRunner {
+    private final RunEnvironment env;
+    private final String scenarioFile;
+
+    public ScenarioFileRunner(RunEnvironment env, String scenarioFile) {
+        this.env = env;
+        this.scenarioFile = scenarioFile;
+    }
+
+    /**
+     * Returns the exit code of the run, which is {@link ScenarioRunner#EXIT_SLO_VIOLATED} if a service level
+     * objective is violated, zero otherwise.
+     */
+    public int run() throws Exception {
+        var params = ((ImplicitTypedObject) MtsDecoder.decode(scenarioFile)).getParameters();
+
+        var scenarioConfig = new LinkedHashMap<>(env.getConfigYaml().getParameters());
+        for (var key : new String[]{"gnbs", "subscribers"}) {
+            if (params.get(key) != null) {
+                scenarioConfig.put(key, params.get(key));
+            }
+        }
+        var scenarioYaml = new ImplicitTypedObject(scenarioConfig);
+
+        long seed = params.get("seed") != null ? ((Number) params.get("seed")).longValue() : 0;
+
+        var scenario = new Scenario();
+        scenario.name = params.get("name") != null ? params.get("name").toString() : scenarioFile;
+        scenario.drainMillis = params.get("drainMillis") != null ? ((Number) params.get("drainMillis")).longValue() : 5000;
+        scenario.slos = readSlos(params.get("slos"));
+
+        var phases = (Object[]) params.get("phases");
+        for (int i = 0; i < phases.length; i++) {
+            var phaseParams = ((ImplicitTypedObject) phases[i]).getParameters();
+            double durationSeconds = ((Number) phaseParams.get("duration")).doubleValue();
+
+            var phase = new ScenarioPhase();
+            phase.name = phaseParams.get("name") != null ? phaseParams.get("name").toString() : "phase-" + i;
+            phase.durationMillis = (long) (durationSeconds * 1000);
+            phase.flowMix = env.readFlowMix((Object[]) phaseParams.get("flows"));
+            phase.slos = readSlos(phaseParams.get("slos"));
+            if (phaseParams.get("concurrency") != null) {
+                phase.concurrency = ((Number) phaseParams.get("concurrency")).intValue();
+            } else {
+                // Each phase has its own seed, so that inserting a phase does not change the arrivals of the others.
+                var arrival = ((ImplicitTypedObject) phaseParams.get("arrival")).getParameters();
+                phase.arrivalProcess = RunEnvironment.readArrivalProcess(arrival, seed + i, 1, durationSeconds);
+            }
+            scenario.phases.add(phase);
+        }
+
+        int ueCount = ((Number) params.get("ues")).intValue();
+        var pool = env.subscriberPoolFor(RunEnvironment.readSubscribers(scenarioYaml, env.getSimContext().ueData),
+                ueCount);
+
+        var gnbs = env.createGnbs(scenarioYaml, null);
+        var readyGnbs = env.setupGnbs(gnbs);
+        var ues = RunEnvironment.createUes(readyGnbs, pool, 0, ueCount);
+        var eventLoops = env.startEventLoops(params);
+        var shards = env.startShards(params, ues);
+
+        Console.println(Color.BLUE, "Running scenario %s with %d phases on %d UEs over %d gNBs", scenario.name,
+                scenario.phases.size(), ueCount, readyGnbs.size());
+
+        var generator = new LoadGenerator(ues, null, null, eventLoops, seed, env.getVirtualClock());
+        var result = new ScenarioRunner(scenario, generator).run();
+        env.printVirtualTime();
+
+        RunEnvironment.stop(eventLoops, shards);
+        RunEnvironment.closeGnbs(gnbs);
+
+        if (params.get("results") != null) {
+            result.writeTo(params.get("results").toString());
+            Console.println(Color.BLUE, "Results are written to %s", params.get("results"));
+        }
+        if (!result.passed) {
+            Console.println(Color.RED, "Scenario failed, service level objectives are violated");
+            return ScenarioRunner.EXIT_SLO_VIOLATED;
+        }
+        Console.println(Color.GREEN, "Scenario passed");
+        return 0;
+    }
+
+    private static ServiceLevelObjectives readSlos(Object value) {
+        if (value == null) return null;
+        var params = ((ImplicitTypedObject) value).getParameters();
+
+        var slos = new ServiceLevelObjectives();
+        slos.maxFailed = readOptionalLong(params, "maxFailed");
+        slos.maxFailedToStart = readOptionalLong(params, "maxFailedToStart");
+        slos.maxNoIdleUe = readOptionalLong(params, "maxNoIdleUe");
+        slos.maxLateArrivals = readOptionalLong(params, "maxLateArrivals");
+        slos.maxMeanLatencyMillis = readOptionalDouble(params, "maxMeanLatencyMillis");
+        slos.maxLatencyMillis = readOptionalDouble(params, "maxLatencyMillis");
+        slos.minCompletedRatio = readOptionalDouble(params, "minCompletedRatio");
+        slos.maxFailedRatio = readOptionalDouble(params, "maxFailedRatio");
+        slos.minRate = readOptionalDouble(params, "minRate");
+        return slos;
+    }
+
+    private static Long readOptionalLong(Map<String, Object> params, String key) {
+        return params.get(key) != null ? ((Number) params.get(key)).longValue() : null;
+    }
+
+    private static Double readOptionalDouble(Map<String, Object> params, String key) {
+        return params.get(key) != null ? ((Number) params.get(key)).doubleValue() : null;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.scenario;
+
+import tr.havelsan.ueransim.cluster.LoadMetrics;
+import tr.havelsan.ueransim.load.LoadGenerator;
+import tr.havelsan.ueransim.utils.Color;
+import tr.havelsan.ueransim.utils.Console;
+
+import java.util.List;
+
+/**
+ * Runs the phases of a {@link Scenario} one after the other on a {@link LoadGenerator}, and checks the service level
+ * objectives of each phase and of the whole run.
+ */
+public class ScenarioRunner {
+    // Exit code of a headless run whose service level objectives are violated
+    public static final int EXIT_SLO_VIOLATED = 2;
+
+    private final Scenario scenario;
+    private final LoadGenerator generator;
+
+    public ScenarioRunner(Scenario scenario, LoadGenerator generator) {
+        this.scenario = scenario;
+        this.generator = generator;
+    }
+
+    public ScenarioResult run() {
+        var result = new ScenarioResult();
+        result.scenario = scenario.name;
+        result.passed = true;
+
+        var start = LoadMetrics.of(generator);
+        long startTime = generator.nanoTime();
+        long maxLagNanos = 0;
+        long maxLatencyNanos = 0;
+
+        for (var phase : scenario.phases) {
+            if (generator.isStopped()) break;
+
+            if (phase.arrivalProcess != null) {
+                Console.println(Color.BLUE, "Phase %s: %s arrivals for %d ms", phase.name,
+                        phase.arrivalProcess.getType(), phase.durationMillis);
+            } else {
+                Console.println(Color.BLUE, "Phase %s: %d concurrent flows for %d ms", phase.name, phase.concurrency,
+                        phase.durationMillis);
+            }
+
+            generator.resetPeaks();
+            var before = LoadMetrics.of(generator);
+            long phaseStart = generator.nanoTime();
+
+            if (phase.arrivalProcess != null) {
+                generator.runPhase(phase.arrivalProcess, phase.flowMix, phase.durationMillis);
+            } else {
+                generator.runConcurrencyPhase(phase.flowMix, phase.concurrency, phase.durationMillis);
+            }
+
+            var metrics = LoadMetrics.of(generator).since(before);
+            maxLagNanos = Math.max(maxLagNanos, metrics.maxLagNanos);
+            maxLatencyNanos = Math.max(maxLatencyNanos, metrics.maxLatencyNanos);
+
+            var phaseResult = resultOf(phase.name, (generator.nanoTime() - phaseStart) / 1_000_000, metrics, phase.slos);
+            result.phases.add(phaseResult);
+            result.passed &= phaseResult.violations.isEmpty();
+
+            Console.println(Color.BLUE, "Phase %s finished: %s", phase.name, metrics);
+            printViolations(phase.name, phaseResult.violations);
+        }
+        long loadMillis = (generator.nanoTime() - startTime) / 1_000_000;
+
+        generator.resetPeaks();
+        generator.drain(scenario.drainMillis);
+
+        var total = LoadMetrics.of(generator).since(start);
+        total.maxLagNanos = Math.max(maxLagNanos, total.maxLagNanos);
+        total.maxLatencyNanos = Math.max(maxLatencyNanos, total.maxLatencyNanos);
+
+        // Rates are computed over the phases, the drain generates no arrivals.
+        result.total = resultOf("total", loadMillis, total, scenario.slos);
+        result.passed &= result.total.violations.isEmpty();
+
+        Console.println(Color.BLUE, "Scenario finished: %s", total);
+        printViolations("total", result.total.violations);
+        return result;
+    }
+
+    private static PhaseResult resultOf(String name, long durationMillis, LoadMetrics metrics,
+                                        ServiceLevelObjectives slos) {
+        var res = new PhaseResult();
+        res.name = name;
+        res.durationMillis = durationMillis;
+        res.achievedRate = durationMillis > 0 ? metrics.arrivals * 1000.0 / durationMillis : 0;
+        res.meanLatencyMillis = metrics.getMeanLatencyNanos() / 1e6;
+        res.failedRatio = metrics.started > 0 ? (double) metrics.failed / metrics.started : 0;
+        res.metrics = metrics;
+        res.violations = slos != null ? slos.check(metrics, durationMillis) : List.of();
+        return res;
+    }
+
+    private static void printViolations(String name, List<String> violations) {
+        for (var violation : violations) {
+            Console.println(Color.RED, "SLO violated in %s: %s", name, violation);
+        }
+    }
+}
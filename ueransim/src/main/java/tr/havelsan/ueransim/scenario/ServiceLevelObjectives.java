@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+
+package tr.havelsan.ueransim.scenario;
+
+import tr.havelsan.ueransim.cluster.LoadMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Limits on the metrics of a phase or of a whole scenario. Limits which are null are not checked.
+ */
+public class ServiceLevelObjectives {
+    public Long maxFailed;
+    public Long maxFailedToStart;
+    public Long maxNoIdleUe;
+    public Long maxLateArrivals;
+    public Double maxMeanLatencyMillis;
+    public Double maxLatencyMillis;
+
+    // Completed flows per started flow. Flows started near the end of a phase may complete in the next one.
+    public Double minCompletedRatio;
+
+    // Failed flows per started flow
+    public Double maxFailedRatio;
+
+    // Arrivals per second
+    public Double minRate;
+
+    /**
+     * Returns the violated limits as readable messages, empty if there is none.
+     */
+    public List<String> check(LoadMetrics metrics, long durationMillis) {
+        var violations = new ArrayList<String>();
+        checkMax(violations, "failed", metrics.failed, maxFailed);
+        checkMax(violations, "failedToStart", metrics.failedToStart, maxFailedToStart);
+        checkMax(violations, "noIdleUe", metrics.noIdleUe, maxNoIdleUe);
+        checkMax(violations, "lateArrivals", metrics.lateArrivals, maxLateArrivals);
+        checkMax(violations, "meanLatencyMillis", metrics.getMeanLatencyNanos() / 1e6, maxMeanLatencyMillis);
+        checkMax(violations, "maxLatencyMillis", metrics.maxLatencyNanos / 1e6, maxLatencyMillis);
+        if (metrics.started > 0) {
+            checkMin(violations, "completedRatio", (double) metrics.completed / metrics.started, minCompletedRatio);
+            checkMax(violations, "failedRatio", (double) metrics.failed / metrics.started, maxFailedRatio);
+        }
+        if (durationMillis > 0) {
+            checkMin(violations, "rate", metrics.arrivals * 1000.0 / durationMillis, minRate);
+        }
+        return violations;
+    }
+
+    private static void checkMax(List<String> violations, String name, double value, Number limit) {
+        if (limit != null && value > limit.doubleValue()) {
+            violations.add(String.format(Locale.ROOT, "%s is %s, at most %s is allowed", name, format(value),
+                    format(limit.doubleValue())));
+        }
+    }
+
+    private static void checkMin(List<String> violations, String name, double value, Number limit) {
+        if (limit != null && value < limit.doubleValue()) {
+            violations.add(String.format(Locale.ROOT, "%s is %s, at least %s is required", name, format(value),
+                    format(limit.doubleValue())));
+        }
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.store;
+
+/**
+ * Byte offsets of the fields in a slot of {@link UeStateStore}. The layout is fixed, so that a slot can be accessed
+ * without any object per UE.
+ */
+public final class UeStateLayout {
+    // Slot flags
+    public static final int FLAG_ALLOCATED = 1;
+    public static final int FLAG_AMF_UE_NGAP_ID = 1 << 1;
+    public static final int FLAG_GUTI = 1 << 2;
+    public static final int FLAG_CURRENT_NSC = 1 << 3;
+    public static final int FLAG_NON_CURRENT_NSC = 1 << 4;
+
+    // Slot fields
+    public static final int FLAGS = 0;              // int
+    public static final int NEXT_FREE = 4;          // int, only while the slot is free
+    public static final int RAN_UE_NGAP_ID = 8;     // long
+    public static final int AMF_UE_NGAP_ID = 16;    // long
+    public static final int MM_STATE = 24;          // byte
+    public static final int SM_STATE = 25;          // byte
+    public static final int GUTI_AMF_REGION_ID = 26;// byte
+    public static final int GUTI_AMF_POINTER = 27;  // byte
+    public static final int GUTI_MCC = 28;          // short
+    public static final int GUTI_MNC = 30;          // short
+    public static final int GUTI_AMF_SET_ID = 32;   // short
+    public static final int GUTI_TMSI = 36;         // int
+    public static final int CURRENT_NSC = 40;
+    public static final int NON_CURRENT_NSC = CURRENT_NSC + UeStateLayout.NSC_SIZE;
+
+    // NAS security context fields, relative to CURRENT_NSC or NON_CURRENT_NSC
+    public static final int NSC_KEY_FLAGS = 0;      // byte
+    public static final int NSC_TSC = 1;            // byte
+    public static final int NSC_NG_KSI = 2;         // byte
+    public static final int NSC_INTEGRITY = 3;      // byte
+    public static final int NSC_CIPHERING = 4;      // byte
+    public static final int NSC_UPLINK_COUNT = 8;   // int, overflow and sequence number
+    public static final int NSC_DOWNLINK_COUNT = 12;// int, overflow and sequence number
+    public static final int NSC_K_AMF = 16;         // 32 octets
+    public static final int NSC_K_NAS_INT = 48;     // 16 octets
+    public static final int NSC_K_NAS_ENC = 64;     // 16 octets
+    public static final int NSC_SIZE = 80;
+
+    // NSC key flags
+    public static final int KEY_K_AMF = 1;
+    public static final int KEY_K_NAS_INT = 1 << 1;
+    public static final int KEY_K_NAS_ENC = 1 << 2;
+
+    public static final int K_AMF_LENGTH = 32;
+    public static final int K_NAS_LENGTH = 16;
+
+    public static final int SLOT_SIZE = NON_CURRENT_NSC + NSC_SIZE;
+
+    private UeStateLayout() {
+    }
+}
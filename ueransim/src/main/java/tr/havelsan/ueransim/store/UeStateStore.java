@@ -0,0 +1,220 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static tr.havelsan.ueransim.store.UeStateLayout.*;
+
+/**
+ * Keeps the hot state of many UEs outside of the heap, in fixed-layout slots of {@link UeStateLayout#SLOT_SIZE}
+ * bytes. The slots are either in direct buffers or in a memory-mapped file, allocated in chunks as the store grows,
+ * so the stored state takes no heap. Only the state listed in the layout is stored, the rest of the state of a UE
+ * stays on the heap, see {@link tr.havelsan.ueransim.core.SimulationContext#park}.
+ * <p>
+ * A slot is accessed through a {@link UeStateView}. Like a {@link tr.havelsan.ueransim.core.SimulationContext}, a
+ * slot must only be accessed by one thread at a time.
+ */
+public class UeStateStore implements AutoCloseable {
+    private static final int CHUNK_SHIFT = 14;
+    // Package-private for tests
+    static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_BYTES = CHUNK_SLOTS * SLOT_SIZE;
+
+    private final int capacity;
+    private final FileChannel file;
+    private final AtomicReferenceArray<ByteBuffer> chunks;
+    private final ReentrantLock lock;
+
+    // Guarded by lock
+    private int firstFree;
+    private int nextUnused;
+    private int allocatedCount;
+
+    private UeStateStore(int capacity, FileChannel file) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.file = file;
+        this.chunks = new AtomicReferenceArray<>((capacity + CHUNK_SLOTS - 1) >>> CHUNK_SHIFT);
+        this.lock = new ReentrantLock();
+        this.firstFree = -1;
+    }
+
+    /**
+     * Creates a store backed by direct buffers.
+     */
+    public static UeStateStore direct(int capacity) {
+        return new UeStateStore(capacity, null);
+    }
+
+    /**
+     * Creates a store backed by a memory-mapped file. The file is truncated, its content is not meant to be reused.
+     */
+    public static UeStateStore mapped(Path path, int capacity) {
+        try {
+            var file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return new UeStateStore(capacity, file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Allocates a zeroed slot and returns its index.
+     */
+    public int allocate() {
+        lock.lock();
+        try {
+            int slot;
+            if (firstFree >= 0) {
+                slot = firstFree;
+                firstFree = chunk(slot).getInt(offset(slot) + NEXT_FREE);
+                clear(slot);
+            } else {
+                if (nextUnused == capacity) throw new RuntimeException("UE state store is full: " + capacity);
+                slot = nextUnused++;
+                if ((slot & (CHUNK_SLOTS - 1)) == 0) {
+                    chunks.set(slot >>> CHUNK_SHIFT, newChunk(slot >>> CHUNK_SHIFT));
+                }
+            }
+            chunk(slot).putInt(offset(slot) + FLAGS, FLAG_ALLOCATED);
+            allocatedCount++;
+            return slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void free(int slot) {
+        lock.lock();
+        try {
+            var chunk = chunk(slot);
+            int offset = offset(slot);
+            if ((chunk.getInt(offset + FLAGS) & FLAG_ALLOCATED) == 0) {
+                throw new IllegalStateException("slot is not allocated: " + slot);
+            }
+            chunk.putInt(offset + FLAGS, 0);
+            chunk.putInt(offset + NEXT_FREE, firstFree);
+            firstFree = slot;
+            allocatedCount--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a view of an allocated slot. The view can be moved to other slots with {@link UeStateView#moveTo}.
+     */
+    public UeStateView view(int slot) {
+        var view = new UeStateView(this);
+        view.moveTo(slot);
+        return view;
+    }
+
+    public boolean isAllocated(int slot) {
+        if (slot < 0 || slot >= capacity) return false;
+        var chunk = chunks.get(slot >>> CHUNK_SHIFT);
+        return chunk != null && (chunk.getInt(offset(slot) + FLAGS) & FLAG_ALLOCATED) != 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getAllocatedCount() {
+        lock.lock();
+        try {
+            return allocatedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes reserved for the slots so far.
+     */
+    public long getReservedBytes() {
+        lock.lock();
+        try {
+            long chunkCount = (nextUnused + CHUNK_SLOTS - 1) >>> CHUNK_SHIFT;
+            return chunkCount * CHUNK_BYTES;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    ByteBuffer chunk(int slot) {
+        var chunk = chunks.get(slot >>> CHUNK_SHIFT);
+        if (chunk == null) throw new IllegalArgumentException("slot is not allocated: " + slot);
+        return chunk;
+    }
+
+    static int offset(int slot) {
+        return (slot & (CHUNK_SLOTS - 1)) * SLOT_SIZE;
+    }
+
+    private ByteBuffer newChunk(int index) {
+        ByteBuffer chunk;
+        if (file == null) {
+            chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        } else {
+            try {
+                chunk = file.map(FileChannel.MapMode.READ_WRITE, (long) index * CHUNK_BYTES, CHUNK_BYTES);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return chunk.order(ByteOrder.nativeOrder());
+    }
+
+    private void clear(int slot) {
+        var chunk = chunk(slot);
+        int offset = offset(slot);
+        for (int i = 0; i < SLOT_SIZE; i += 8) {
+            chunk.putLong(offset + i, 0);
+        }
+    }
+}
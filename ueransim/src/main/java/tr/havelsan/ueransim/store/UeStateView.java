@@ -0,0 +1,311 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.store;
+
+import tr.havelsan.ueransim.core.NasSecurityContext;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.nas.impl.enums.EMccValue;
+import tr.havelsan.ueransim.nas.impl.enums.EMncValue;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfCipheringAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfIntegrityProtectionAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gGutiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.values.V5gTmsi;
+import tr.havelsan.ueransim.nas.impl.values.VAmfSetId;
+import tr.havelsan.ueransim.structs.NasCount;
+import tr.havelsan.ueransim.structs.SelectedAlgorithms;
+import tr.havelsan.ueransim.utils.bits.Bit3;
+import tr.havelsan.ueransim.utils.bits.Bit6;
+import tr.havelsan.ueransim.utils.octets.Octet;
+import tr.havelsan.ueransim.utils.octets.Octet2;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.nio.ByteBuffer;
+
+import static tr.havelsan.ueransim.store.UeStateLayout.*;
+
+/**
+ * Accessor of one slot of a {@link UeStateStore}. A view holds no UE state itself, and can be moved between slots,
+ * so that a flow handling many UEs needs only one.
+ * <p>
+ * The primitive accessors work on the slot directly. {@link #save} and {@link #load} copy the state between the slot
+ * and a {@link SimulationContext}, for running the regular procedures on a UE whose state is kept in the store.
+ */
+public class UeStateView {
+    private final UeStateStore store;
+    private ByteBuffer chunk;
+    private int base;
+    private int slot;
+
+    UeStateView(UeStateStore store) {
+        this.store = store;
+        this.slot = -1;
+    }
+
+    public UeStateView moveTo(int slot) {
+        this.chunk = store.chunk(slot);
+        this.base = UeStateStore.offset(slot);
+        this.slot = slot;
+        return this;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    //======================================================================================================
+    //                                          NGAP AND STATES
+    //======================================================================================================
+
+    public long getRanUeNgapId() {
+        return chunk.getLong(base + RAN_UE_NGAP_ID);
+    }
+
+    public void setRanUeNgapId(long ranUeNgapId) {
+        chunk.putLong(base + RAN_UE_NGAP_ID, ranUeNgapId);
+    }
+
+    public boolean hasAmfUeNgapId() {
+        return hasFlag(FLAG_AMF_UE_NGAP_ID);
+    }
+
+    public long getAmfUeNgapId() {
+        return chunk.getLong(base + AMF_UE_NGAP_ID);
+    }
+
+    public void setAmfUeNgapId(long amfUeNgapId) {
+        chunk.putLong(base + AMF_UE_NGAP_ID, amfUeNgapId);
+        setFlag(FLAG_AMF_UE_NGAP_ID, true);
+    }
+
+    public void clearAmfUeNgapId() {
+        setFlag(FLAG_AMF_UE_NGAP_ID, false);
+    }
+
+    /**
+     * MM and SM states are not interpreted by the store, their values are up to the flows.
+     */
+    public int getMmState() {
+        return chunk.get(base + MM_STATE) & 0xFF;
+    }
+
+    public void setMmState(int mmState) {
+        chunk.put(base + MM_STATE, (byte) mmState);
+    }
+
+    public int getSmState() {
+        return chunk.get(base + SM_STATE) & 0xFF;
+    }
+
+    public void setSmState(int smState) {
+        chunk.put(base + SM_STATE, (byte) smState);
+    }
+
+    //======================================================================================================
+    //                                              GUTI
+    //======================================================================================================
+
+    public boolean hasGuti() {
+        return hasFlag(FLAG_GUTI);
+    }
+
+    public long getTmsi() {
+        return chunk.getInt(base + GUTI_TMSI) & 0xFFFFFFFFL;
+    }
+
+    public void setGuti(IE5gGutiMobileIdentity guti) {
+        if (guti == null) {
+            setFlag(FLAG_GUTI, false);
+            return;
+        }
+        chunk.putShort(base + GUTI_MCC, (short) guti.mcc.intValue());
+        chunk.putShort(base + GUTI_MNC, (short) guti.mnc.intValue());
+        chunk.put(base + GUTI_AMF_REGION_ID, (byte) guti.amfRegionId.intValue());
+        chunk.putShort(base + GUTI_AMF_SET_ID, (short) guti.amfSetId.value.intValue());
+        chunk.put(base + GUTI_AMF_POINTER, (byte) guti.amfPointer.intValue());
+        chunk.putInt(base + GUTI_TMSI, (int) guti.tmsi.value.longValue());
+        setFlag(FLAG_GUTI, true);
+    }
+
+    public IE5gGutiMobileIdentity getGuti() {
+        if (!hasGuti()) return null;
+        return new IE5gGutiMobileIdentity(
+                EMccValue.fromValue(chunk.getShort(base + GUTI_MCC) & 0xFFFF),
+                EMncValue.fromValue(chunk.getShort(base + GUTI_MNC) & 0xFFFF),
+                new Octet(chunk.get(base + GUTI_AMF_REGION_ID) & 0xFF),
+                new VAmfSetId(chunk.getShort(base + GUTI_AMF_SET_ID) & 0xFFFF),
+                new Bit6(chunk.get(base + GUTI_AMF_POINTER) & 0xFF),
+                new V5gTmsi(getTmsi()));
+    }
+
+    //======================================================================================================
+    //                                     NAS SECURITY CONTEXTS
+    //======================================================================================================
+
+    public boolean hasNsc(boolean current) {
+        return hasFlag(current ? FLAG_CURRENT_NSC : FLAG_NON_CURRENT_NSC);
+    }
+
+    /**
+     * Returns the NAS COUNT as overflow and sequence number, i.e. as in {@link NasCount#toOctet4()}.
+     */
+    public int getUplinkCount(boolean current) {
+        return chunk.getInt(nsc(current) + NSC_UPLINK_COUNT);
+    }
+
+    public void setUplinkCount(boolean current, int count) {
+        chunk.putInt(nsc(current) + NSC_UPLINK_COUNT, count);
+    }
+
+    public int getDownlinkCount(boolean current) {
+        return chunk.getInt(nsc(current) + NSC_DOWNLINK_COUNT);
+    }
+
+    public void setDownlinkCount(boolean current, int count) {
+        chunk.putInt(nsc(current) + NSC_DOWNLINK_COUNT, count);
+    }
+
+    public void setNsc(boolean current, NasSecurityContext nsc) {
+        int flag = current ? FLAG_CURRENT_NSC : FLAG_NON_CURRENT_NSC;
+        if (nsc == null) {
+            setFlag(flag, false);
+            return;
+        }
+
+        int offset = nsc(current);
+        chunk.put(offset + NSC_TSC, (byte) nsc.ngKsi.tsc.intValue());
+        chunk.put(offset + NSC_NG_KSI, (byte) nsc.ngKsi.nasKeySetIdentifier.intValue());
+        chunk.put(offset + NSC_INTEGRITY, (byte) nsc.selectedAlgorithms.integrity.intValue());
+        chunk.put(offset + NSC_CIPHERING, (byte) nsc.selectedAlgorithms.ciphering.intValue());
+        chunk.putInt(offset + NSC_UPLINK_COUNT, (int) nsc.uplinkCount.toOctet4().longValue());
+        chunk.putInt(offset + NSC_DOWNLINK_COUNT, (int) nsc.downlinkCount.toOctet4().longValue());
+
+        int keyFlags = 0;
+        if (putKey(offset + NSC_K_AMF, K_AMF_LENGTH, nsc.keys.kAmf)) keyFlags |= KEY_K_AMF;
+        if (putKey(offset + NSC_K_NAS_INT, K_NAS_LENGTH, nsc.keys.kNasInt)) keyFlags |= KEY_K_NAS_INT;
+        if (putKey(offset + NSC_K_NAS_ENC, K_NAS_LENGTH, nsc.keys.kNasEnc)) keyFlags |= KEY_K_NAS_ENC;
+        chunk.put(offset + NSC_KEY_FLAGS, (byte) keyFlags);
+
+        setFlag(flag, true);
+    }
+
+    public NasSecurityContext getNsc(boolean current) {
+        if (!hasNsc(current)) return null;
+
+        int offset = nsc(current);
+        var nsc = new NasSecurityContext(ETypeOfSecurityContext.fromValue(chunk.get(offset + NSC_TSC)),
+                new Bit3(chunk.get(offset + NSC_NG_KSI)));
+        nsc.selectedAlgorithms = new SelectedAlgorithms(
+                ETypeOfIntegrityProtectionAlgorithm.fromValue(chunk.get(offset + NSC_INTEGRITY)),
+                ETypeOfCipheringAlgorithm.fromValue(chunk.get(offset + NSC_CIPHERING)));
+        setCount(nsc.uplinkCount, chunk.getInt(offset + NSC_UPLINK_COUNT));
+        setCount(nsc.downlinkCount, chunk.getInt(offset + NSC_DOWNLINK_COUNT));
+
+        int keyFlags = chunk.get(offset + NSC_KEY_FLAGS);
+        if ((keyFlags & KEY_K_AMF) != 0) nsc.keys.kAmf = getKey(offset + NSC_K_AMF, K_AMF_LENGTH);
+        if ((keyFlags & KEY_K_NAS_INT) != 0) nsc.keys.kNasInt = getKey(offset + NSC_K_NAS_INT, K_NAS_LENGTH);
+        if ((keyFlags & KEY_K_NAS_ENC) != 0) nsc.keys.kNasEnc = getKey(offset + NSC_K_NAS_ENC, K_NAS_LENGTH);
+        return nsc;
+    }
+
+    //======================================================================================================
+    //                                       SIMULATION CONTEXT
+    //======================================================================================================
+
+    /**
+     * Copies the hot state of the UE into the slot. Authentication keys other than K_AMF and the NAS keys are not
+     * kept, i.e. a UE which is loaded back can continue with its security context but cannot resume a running
+     * authentication procedure.
+     */
+    public void save(SimulationContext ctx) {
+        setRanUeNgapId(ctx.ranUeNgapId);
+        if (ctx.amfUeNgapId != null) {
+            setAmfUeNgapId(ctx.amfUeNgapId);
+        } else {
+            clearAmfUeNgapId();
+        }
+        setGuti(ctx.ueData != null ? ctx.ueData.storedGuti : null);
+        setNsc(true, ctx.currentNsc);
+        setNsc(false, ctx.nonCurrentNsc);
+    }
+
+    /**
+     * Copies the state in the slot into the context. UE data other than the GUTI, e.g. the subscription, is expected
+     * to be already in the context.
+     */
+    public void load(SimulationContext ctx) {
+        ctx.ranUeNgapId = getRanUeNgapId();
+        ctx.amfUeNgapId = hasAmfUeNgapId() ? getAmfUeNgapId() : null;
+        if (ctx.ueData != null) {
+            ctx.ueData.storedGuti = getGuti();
+        }
+        ctx.currentNsc = getNsc(true);
+        ctx.nonCurrentNsc = getNsc(false);
+    }
+
+    //======================================================================================================
+    //                                            INTERNAL
+    //======================================================================================================
+
+    private int nsc(boolean current) {
+        return base + (current ? CURRENT_NSC : NON_CURRENT_NSC);
+    }
+
+    private boolean hasFlag(int flag) {
+        return (chunk.getInt(base + FLAGS) & flag) != 0;
+    }
+
+    private void setFlag(int flag, boolean value) {
+        int flags = chunk.getInt(base + FLAGS);
+        chunk.putInt(base + FLAGS, value ? flags | flag : flags & ~flag);
+    }
+
+    private boolean putKey(int offset, int length, OctetString key) {
+        if (key == null) return false;
+        if (key.length != length) {
+            throw new IllegalArgumentException("unexpected key length: " + key.length + ", expected " + length);
+        }
+        var bytes = key.toByteArray();
+        for (int i = 0; i < length; i++) {
+            chunk.put(offset + i, bytes[i]);
+        }
+        return true;
+    }
+
+    private OctetString getKey(int offset, int length) {
+        var bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = chunk.get(offset + i);
+        }
+        return new OctetString(bytes);
+    }
+
+    private static void setCount(NasCount count, int value) {
+        count.overflow = new Octet2((value >>> 8) & 0xFFFF);
+        count.sqn = new Octet(value & 0xFF);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.structs;
+
+import tr.havelsan.ueransim.enums.ESubscriberDerivation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Subscriber ranges, indexed as one sequence of subscribers in the order of the ranges.
+ */
+public class SubscriberPool {
+    private final List<SubscriberRange> ranges;
+    private final long[] firstIndices;
+    private final long size;
+
+    public SubscriberPool(List<SubscriberRange> ranges) {
+        if (ranges.isEmpty()) throw new IllegalArgumentException("at least one subscriber range is required");
+
+        this.ranges = Collections.unmodifiableList(new ArrayList<>(ranges));
+        this.firstIndices = new long[ranges.size()];
+
+        long size = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            firstIndices[i] = size;
+            size += ranges.get(i).getCount();
+        }
+        this.size = size;
+    }
+
+    /**
+     * Returns a pool of the subscribers following the given one, which share its credentials.
+     */
+    public static SubscriberPool of(UeData ueData, long count) {
+        var template = ueData.copyForSupi(ueData.supi);
+        return new SubscriberPool(List.of(new SubscriberRange(ueData.supi, count, template,
+                ESubscriberDerivation.SHARED, ESubscriberDerivation.SHARED)));
+    }
+
+    public List<SubscriberRange> getRanges() {
+        return ranges;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Creates the UE data of the subscriber with the given index in the pool.
+     */
+    public UeData materialize(long index) {
+        int range = rangeOf(index);
+        return ranges.get(range).materialize(index - firstIndices[range]);
+    }
+
+    /**
+     * Returns the SUPI of the subscriber with the given index in the pool, without creating its UE data.
+     */
+    public Supi supiOf(long index) {
+        int range = rangeOf(index);
+        return ranges.get(range).getFirstSupi().offset(index - firstIndices[range]);
+    }
+
+    private int rangeOf(long index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("subscriber index: " + index);
+
+        int low = 0;
+        int high = firstIndices.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstIndices[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.structs;
+
+import tr.havelsan.ueransim.api.ue.mm.UeKeyManagement;
+import tr.havelsan.ueransim.enums.ESubscriberDerivation;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+/**
+ * Consecutive SUPIs whose credentials are either shared or derived from the index of the subscriber, see
+ * {@link ESubscriberDerivation}. The {@link UeData} of a subscriber is only created by {@link #materialize}.
+ * <p>
+ * If K and OP are both shared, OPc is calculated once for the range. If OPc is given instead of OP, it is used as is,
+ * or derived per subscriber like OP would be.
+ */
+public class SubscriberRange {
+    private final Supi firstSupi;
+    private final long count;
+    private final UeData template;
+    private final ESubscriberDerivation keyDerivation;
+    private final ESubscriberDerivation opDerivation;
+
+    private volatile OctetString sharedOpc;
+
+    /**
+     * @param template credentials and other subscription data of the subscribers, either 'op' or 'opc' must be set
+     */
+    public SubscriberRange(Supi firstSupi, long count, UeData template, ESubscriberDerivation keyDerivation,
+                           ESubscriberDerivation opDerivation) {
+        if (count <= 0) throw new IllegalArgumentException("count must be positive");
+        if (template.op == null && template.opc == null) throw new IllegalArgumentException("op or opc is required");
+        firstSupi.offset(count - 1); // Throws if the range overflows the SUPI digits
+
+        this.firstSupi = firstSupi;
+        this.count = count;
+        this.template = template;
+        this.keyDerivation = keyDerivation;
+        this.opDerivation = opDerivation;
+    }
+
+    public Supi getFirstSupi() {
+        return firstSupi;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Creates the UE data of the subscriber with the given index in the range.
+     */
+    public UeData materialize(long index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("subscriber index: " + index);
+
+        var ueData = new UeData();
+        ueData.snn = template.snn;
+        ueData.amf = template.amf;
+        ueData.sqn = template.sqn;
+        ueData.imei = template.imei;
+        ueData.supi = firstSupi.offset(index);
+        ueData.key = derive(template.key, keyDerivation, index);
+
+        if (template.opc != null) {
+            ueData.opc = derive(template.opc, opDerivation, index);
+        } else {
+            ueData.op = derive(template.op, opDerivation, index);
+            if (keyDerivation == ESubscriberDerivation.SHARED && opDerivation == ESubscriberDerivation.SHARED) {
+                ueData.opc = getSharedOpc();
+            }
+            // Otherwise OPc is calculated per UE at the first authentication
+        }
+        return ueData;
+    }
+
+    private OctetString getSharedOpc() {
+        var opc = sharedOpc;
+        if (opc == null) {
+            // Calculating it twice on a race is harmless
+            opc = UeKeyManagement.calculateOpc(template.key, template.op);
+            sharedOpc = opc;
+        }
+        return opc;
+    }
+
+    private static OctetString derive(OctetString value, ESubscriberDerivation derivation, long index) {
+        if (derivation == ESubscriberDerivation.SHARED || index == 0) {
+            return value;
+        }
+        var bytes = value.toByteArray();
+        if (bytes.length < 8) throw new IllegalArgumentException("value is too short to be derived: " + value);
+        for (int i = 0; i < 8; i++) {
+            bytes[bytes.length - 1 - i] ^= (byte) (index >>> (8 * i));
+        }
+        return new OctetString(bytes);
+    }
+}
@@ -49,6 +49,23 @@ public class Supi {
         }
     }
 
+    /**
+     * Returns the SUPI whose value is greater by the given offset, keeping the number of digits.
+     */
+    public Supi offset(long offset) {
+        long number = Long.parseLong(value) + offset;
+        String digits = Long.toString(number);
+        if (number < 0 || digits.length() > value.length()) {
+            throw new IllegalArgumentException("SUPI range overflows: " + this + " + " + offset);
+        }
+        var sb = new StringBuilder();
+        for (int i = digits.length(); i < value.length(); i++) {
+            sb.append('0');
+        }
+        sb.append(digits);
+        return new Supi(type, sb.toString());
+    }
+
     @Override
     public String toString() {
         return type + "-" + value;
@@ -36,6 +36,7 @@ public class UeData {
     public String snn;
     public OctetString key;
     public OctetString op;
+    public OctetString opc; // calculated from op if null
     public OctetString amf;
     public String imei;
     public Supi supi;
@@ -47,4 +48,21 @@ public class UeData {
 
     public IE5gsTrackingAreaIdentity lastVisitedRegisteredTai;
     public IE5gsTrackingAreaIdentityList taiList;
+
+    /**
+     * Returns the subscription data of another subscriber with the same credentials. Identities and the state stored
+     * by the UE are not copied.
+     */
+    public UeData copyForSupi(Supi supi) {
+        var res = new UeData();
+        res.snn = this.snn;
+        res.key = this.key;
+        res.op = this.op;
+        res.opc = this.opc;
+        res.amf = this.amf;
+        res.imei = this.imei;
+        res.sqn = this.sqn;
+        res.supi = supi;
+        return res;
+    }
 }
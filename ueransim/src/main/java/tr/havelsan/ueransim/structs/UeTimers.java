@@ -27,54 +27,184 @@
 package tr.havelsan.ueransim.structs;
 
 import tr.havelsan.ueransim.core.NasTimer;
+import tr.havelsan.ueransim.core.SimulationContext;
 
+/**
+ * NAS timers of a UE. A {@link NasTimer} is only kept while it is running. Otherwise the accessor returns a new,
+ * stopped timer, so that an idle UE holds no timer objects besides e.g. its periodic registration update timer.
+ */
 public class UeTimers {
-    public final NasTimer t3346; /* MM - ... */
-    public final NasTimer t3396; /* SM - ... */
-
-    public final NasTimer t3444; /* MM - ... */
-    public final NasTimer t3445; /* MM - ... */
-
-    public final NasTimer t3502; /* MM - ... */
-    public final NasTimer t3510; /* MM - Registration Request transmission timer */
-    public final NasTimer t3511; /* MM - ... */
-    public final NasTimer t3512; /* MM - Periodic registration update timer */
-    public final NasTimer t3516; /* MM - 5G AKA - RAND and RES* storing timer */
-    public final NasTimer t3517; /* MM - Service Request transmission timer */
-    public final NasTimer t3519; /* MM - Transmission with fresh SUCI timer */
-    public final NasTimer t3520; /* MM - ... */
-    public final NasTimer t3521; /* MM - De-registration transmission timer for not switch off */
-    public final NasTimer t3525; /* MM - ... */
-    public final NasTimer t3540; /* MM - ... */
-
-    public final NasTimer t3580; /* SM - ... */
-    public final NasTimer t3581; /* SM - ... */
-    public final NasTimer t3582; /* SM - ... */
-    public final NasTimer t3583; /* SM - ... */
-    public final NasTimer t3584; /* SM - ... */
-    public final NasTimer t3585; /* SM - ... */
-
-    public UeTimers() {
-        this.t3346 = new NasTimer();
-        this.t3396 = new NasTimer();
-        this.t3444 = new NasTimer();
-        this.t3445 = new NasTimer();
-        this.t3502 = new NasTimer();
-        this.t3510 = new NasTimer();
-        this.t3511 = new NasTimer();
-        this.t3512 = new NasTimer();
-        this.t3516 = new NasTimer();
-        this.t3517 = new NasTimer();
-        this.t3519 = new NasTimer();
-        this.t3520 = new NasTimer();
-        this.t3521 = new NasTimer();
-        this.t3525 = new NasTimer();
-        this.t3540 = new NasTimer();
-        this.t3580 = new NasTimer();
-        this.t3581 = new NasTimer();
-        this.t3582 = new NasTimer();
-        this.t3583 = new NasTimer();
-        this.t3584 = new NasTimer();
-        this.t3585 = new NasTimer();
+    private final SimulationContext owner;
+
+    // Running timers, allocated when the first timer is started
+    private NasTimer[] running;
+    private int runningCount;
+
+    public UeTimers(SimulationContext owner) {
+        this.owner = owner;
+    }
+
+    // Default values are taken from 3GPP TS 24.501 Table 10.2.1 and 10.3.1, zero if the value is given by the network
+
+    /* MM - ... */
+    public NasTimer t3346() {
+        return get(3346, true, 0);
+    }
+
+    /* SM - ... */
+    public NasTimer t3396() {
+        return get(3396, false, 0);
+    }
+
+    /* MM - ... */
+    public NasTimer t3444() {
+        return get(3444, true, 0);
+    }
+
+    /* MM - ... */
+    public NasTimer t3445() {
+        return get(3445, true, 0);
+    }
+
+    /* MM - ... */
+    public NasTimer t3502() {
+        return get(3502, true, 720);
+    }
+
+    /* MM - Registration Request transmission timer */
+    public NasTimer t3510() {
+        return get(3510, true, 15);
+    }
+
+    /* MM - ... */
+    public NasTimer t3511() {
+        return get(3511, true, 10);
+    }
+
+    /* MM - Periodic registration update timer */
+    public NasTimer t3512() {
+        return get(3512, true, 3240);
+    }
+
+    /* MM - 5G AKA - RAND and RES* storing timer */
+    public NasTimer t3516() {
+        return get(3516, true, 30);
+    }
+
+    /* MM - Service Request transmission timer */
+    public NasTimer t3517() {
+        return get(3517, true, 15);
+    }
+
+    /* MM - Transmission with fresh SUCI timer */
+    public NasTimer t3519() {
+        return get(3519, true, 60);
+    }
+
+    /* MM - ... */
+    public NasTimer t3520() {
+        return get(3520, true, 15);
+    }
+
+    /* MM - De-registration transmission timer for not switch off */
+    public NasTimer t3521() {
+        return get(3521, true, 15);
+    }
+
+    /* MM - ... */
+    public NasTimer t3525() {
+        return get(3525, true, 60);
+    }
+
+    /* MM - ... */
+    public NasTimer t3540() {
+        return get(3540, true, 10);
+    }
+
+    /* SM - ... */
+    public NasTimer t3580() {
+        return get(3580, false, 16);
+    }
+
+    /* SM - ... */
+    public NasTimer t3581() {
+        return get(3581, false, 16);
+    }
+
+    /* SM - ... */
+    public NasTimer t3582() {
+        return get(3582, false, 16);
+    }
+
+    /* SM - ... */
+    public NasTimer t3583() {
+        return get(3583, false, 0);
+    }
+
+    /* SM - ... */
+    public NasTimer t3584() {
+        return get(3584, false, 0);
+    }
+
+    /* SM - ... */
+    public NasTimer t3585() {
+        return get(3585, false, 0);
+    }
+
+    public synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    /**
+     * Called by {@link NasTimer} when it is started. A running timer with the same code is stopped.
+     */
+    public void onStarted(NasTimer timer) {
+        NasTimer replaced = null;
+        synchronized (this) {
+            int index = indexOf(timer.getCode());
+            if (index >= 0) {
+                replaced = running[index];
+                running[index] = timer;
+            } else {
+                if (running == null) {
+                    running = new NasTimer[2];
+                } else if (runningCount == running.length) {
+                    var grown = new NasTimer[runningCount * 2];
+                    System.arraycopy(running, 0, grown, 0, runningCount);
+                    running = grown;
+                }
+                running[runningCount++] = timer;
+            }
+        }
+        if (replaced != null && replaced != timer) {
+            replaced.stop();
+        }
+    }
+
+    /**
+     * Called by {@link NasTimer} when it is stopped or expired.
+     */
+    public synchronized void onStopped(NasTimer timer) {
+        int index = indexOf(timer.getCode());
+        if (index < 0 || running[index] != timer) return;
+
+        running[index] = running[--runningCount];
+        running[runningCount] = null;
+        if (runningCount == 0) {
+            running = null;
+        }
+    }
+
+    private synchronized NasTimer get(int code, boolean isMmTimer, int defaultSeconds) {
+        int index = indexOf(code);
+        if (index >= 0) return running[index];
+        return new NasTimer(owner, code, isMmTimer, defaultSeconds);
+    }
+
+    private int indexOf(int code) {
+        for (int i = 0; i < runningCount; i++) {
+            if (running[i].getCode() == code) return i;
+        }
+        return -1;
     }
 }
@@ -0,0 +1,201 @@
+package tr.havelsan.ueransim;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.core.EventLoop;
+import tr.havelsan.ueransim.core.GnbContext;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.core.UeTransport;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient;
+import tr.havelsan.ueransim.structs.UeData;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs flows in event driven mode on a UE of a gNB whose association is mocked. The flows only wait for the events
+ * posted to them, no message is exchanged.
+ */
+public class Test_BaseFlow {
+
+    private EventLoop eventLoop;
+    private GnbContext gnb;
+
+    // Completes when it receives the given event, the events are recorded on the event loop
+    private static class EventFlow extends BaseFlow {
+        final String lastEvent;
+        final List<Object> events = new CopyOnWriteArrayList<>();
+
+        EventFlow(SimulationContext simContext, String lastEvent) {
+            super(simContext);
+            this.lastEvent = lastEvent;
+        }
+
+        @Override
+        public State main(IncomingMessage message) {
+            postDelayed("delayed", 50);
+            postDelayed("cancelled", 10).cancel();
+            post("posted");
+            return this::waitEvents;
+        }
+
+        private State waitEvents(IncomingMessage message) {
+            var event = message.getEvent(String.class);
+            events.add(event);
+            if (lastEvent.equals(event)) {
+                return flowComplete();
+            }
+            return this::waitEvents;
+        }
+
+        @Override
+        public void onReceive(IncomingMessage incomingMessage) {
+        }
+
+        @Override
+        public void onSent(OutgoingMessage outgoingMessage) {
+        }
+    }
+
+    // Fails with an unexpected exception when it receives an event, like a state which cannot decode a message
+    private static class ThrowingFlow extends BaseFlow {
+        ThrowingFlow(SimulationContext simContext) {
+            super(simContext);
+        }
+
+        @Override
+        public State main(IncomingMessage message) {
+            post("posted");
+            return this::throwing;
+        }
+
+        private State throwing(IncomingMessage message) {
+            throw new IllegalStateException("unexpected " + message.getEvent(String.class));
+        }
+
+        @Override
+        public void onReceive(IncomingMessage incomingMessage) {
+        }
+
+        @Override
+        public void onSent(OutgoingMessage outgoingMessage) {
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        eventLoop = new EventLoop("test-loop");
+        eventLoop.start();
+
+        var template = new SimulationContext();
+        template.sctpClient = new MockedSCTPClient((data, queue) -> {
+        });
+        template.ranUeNgapId = 1;
+        gnb = new GnbContext(template, null);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        eventLoop.stop();
+    }
+
+    @Test
+    public void testPostAndPostDelayed() throws Exception {
+        var ue = gnb.createUe(new UeData());
+        var flow = new EventFlow(ue, "delayed");
+
+        var finished = new CountDownLatch(1);
+        var finishedInLoop = new boolean[1];
+        flow.start(eventLoop, () -> {
+            finishedInLoop[0] = eventLoop.inLoop();
+            finished.countDown();
+        });
+
+        Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(finishedInLoop[0]);
+        Assert.assertTrue(flow.isFinished());
+        Assert.assertEquals(List.of("posted", "delayed"), flow.events);
+
+        // The UE is released by its last flow
+        Assert.assertFalse(ue.hasListeners());
+        Assert.assertFalse(((UeTransport) ue.sctpClient).isAttached());
+
+        // Events posted after the flow finished are dropped
+        flow.post("late");
+        var drained = new CountDownLatch(1);
+        eventLoop.execute(drained::countDown);
+        Assert.assertTrue(drained.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(List.of("posted", "delayed"), flow.events);
+    }
+
+    @Test
+    public void testOverlappingFlows() throws Exception {
+        var ue = gnb.createUe(new UeData());
+        var first = new EventFlow(ue, "posted");
+        var second = new EventFlow(ue, "delayed");
+
+        var firstFinished = new CountDownLatch(1);
+        var secondFinished = new CountDownLatch(1);
+        var attachedAfterFirst = new boolean[1];
+        first.start(eventLoop, () -> {
+            attachedAfterFirst[0] = ((UeTransport) ue.sctpClient).isAttached();
+            firstFinished.countDown();
+        });
+        second.start(eventLoop, secondFinished::countDown);
+
+        Assert.assertTrue(firstFinished.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(secondFinished.await(5, TimeUnit.SECONDS));
+
+        // The transport stays attached until the last flow of the UE finishes
+        Assert.assertTrue(attachedAfterFirst[0]);
+        Assert.assertEquals(List.of("posted"), first.events);
+        Assert.assertEquals(List.of("posted", "delayed"), second.events);
+        Assert.assertFalse(ue.hasListeners());
+        Assert.assertFalse(((UeTransport) ue.sctpClient).isAttached());
+    }
+
+    @Test
+    public void testUnexpectedExceptionFailsFlow() throws Exception {
+        var ue = gnb.createUe(new UeData());
+        var flow = new ThrowingFlow(ue);
+
+        var finished = new CountDownLatch(1);
+        var completed = new boolean[]{true};
+        flow.start(eventLoop, success -> {
+            completed[0] = success;
+            finished.countDown();
+        });
+
+        Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(completed[0]);
+        Assert.assertTrue(flow.isFinished());
+        Assert.assertFalse(ue.hasListeners());
+    }
+
+    @Test
+    public void testStartedOnce() {
+        var flow = new EventFlow(gnb.createUe(new UeData()), "posted");
+        flow.start(eventLoop, () -> {
+        });
+        try {
+            flow.start(eventLoop, () -> {
+            });
+            Assert.fail("a flow can only be started once");
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    @Test
+    public void testEventsRequireEventLoop() {
+        var flow = new EventFlow(gnb.createUe(new UeData()), "posted");
+        try {
+            flow.post("posted");
+            Assert.fail("events are only supported in event driven mode");
+        } catch (RuntimeException ignored) {
+        }
+    }
+}
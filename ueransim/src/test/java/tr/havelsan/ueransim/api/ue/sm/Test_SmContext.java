@@ -0,0 +1,54 @@
+package tr.havelsan.ueransim.api.ue.sm;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class Test_SmContext {
+
+    @Test
+    public void testPduSessionIds() {
+        var ctx = new SmContext();
+        for (int i = SmContext.MIN_PDU_SESSION_ID; i <= SmContext.MAX_PDU_SESSION_ID; i++) {
+            Assert.assertEquals(i, ctx.allocatePduSessionId());
+        }
+        Assert.assertEquals(-1, ctx.allocatePduSessionId());
+        Assert.assertEquals(15, ctx.getPduSessionCount());
+
+        ctx.releasePduSessionId(7);
+        Assert.assertFalse(ctx.isPduSessionIdInUse(7));
+        Assert.assertEquals(7, ctx.allocatePduSessionId());
+    }
+
+    @Test
+    public void testFindPduSessionId() {
+        var ctx = new SmContext();
+        Assert.assertEquals(-1, ctx.findPduSessionId());
+
+        ctx.allocatePduSessionId();
+        ctx.allocatePduSessionId();
+        Assert.assertEquals(1, ctx.findPduSessionId());
+
+        ctx.releasePduSessionId(1);
+        Assert.assertEquals(2, ctx.findPduSessionId());
+        ctx.releasePduSessionId(2);
+        Assert.assertEquals(-1, ctx.findPduSessionId());
+    }
+
+    @Test
+    public void testProcedureTransactionIds() {
+        var ctx = new SmContext();
+        for (int i = ProcedureTransaction.MIN_ID; i <= ProcedureTransaction.MAX_ID; i++) {
+            Assert.assertEquals(i, ctx.allocateProcedureTransactionId());
+        }
+        Assert.assertEquals(-1, ctx.allocateProcedureTransactionId());
+
+        ctx.releaseProcedureTransactionId(64);
+        ctx.releaseProcedureTransactionId(200);
+        Assert.assertFalse(ctx.isProcedureTransactionIdInUse(64));
+        Assert.assertEquals(64, ctx.allocateProcedureTransactionId());
+        Assert.assertEquals(200, ctx.allocateProcedureTransactionId());
+
+        ctx.clear();
+        Assert.assertEquals(ProcedureTransaction.MIN_ID, ctx.allocateProcedureTransactionId());
+    }
+}
@@ -0,0 +1,103 @@
+package tr.havelsan.ueransim.cluster;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class Test_Coordinator {
+
+    @Test
+    public void testAssignmentAndAggregation() throws Exception {
+        int workerCount = 3;
+        var coordinator = new Coordinator("127.0.0.1", 0, workerCount, 1000, 7);
+        coordinator.start();
+
+        var assignments = new AtomicReferenceArray<WorkerAssignment>(workerCount);
+        var threads = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    var worker = new WorkerClient("127.0.0.1:" + coordinator.getPort());
+                    // The gNB IDs of each worker are 1, 2, 4 and 5
+                    var assignment = worker.connect(new WorkerHello("worker" + index, 1, 5, 1000));
+                    assignments.set(index, assignment);
+                    worker.awaitStart();
+
+                    var metrics = new LoadMetrics();
+                    metrics.arrivals = assignment.ueCount;
+                    metrics.completed = 10;
+                    metrics.totalLatencyNanos = 10_000_000;
+                    metrics.maxLatencyNanos = 1_000_000L * (assignment.workerIndex + 1);
+                    worker.finish(metrics);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[i].start();
+        }
+
+        var total = coordinator.await();
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(1000, total.arrivals);
+        Assert.assertEquals(30, total.completed);
+        Assert.assertEquals(1_000_000, total.getMeanLatencyNanos());
+        Assert.assertEquals(3_000_000, total.maxLatencyNanos);
+
+        long nextSubscriber = 0;
+        int nextGnbIdOffset = 0;
+        double rateShare = 0;
+        var byIndex = new WorkerAssignment[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            byIndex[assignments.get(i).workerIndex] = assignments.get(i);
+        }
+        for (int i = 0; i < workerCount; i++) {
+            var assignment = byIndex[i];
+            Assert.assertEquals(nextSubscriber, assignment.firstSubscriber);
+            Assert.assertEquals(nextGnbIdOffset, assignment.gnbIdOffset);
+            Assert.assertEquals(i * assignment.ranUeNgapIdCount, assignment.firstRanUeNgapId);
+            Assert.assertEquals(7 + i, assignment.seed);
+            nextSubscriber += assignment.ueCount;
+            nextGnbIdOffset += 5;
+            rateShare += assignment.rateShare;
+        }
+        Assert.assertEquals(1000, nextSubscriber);
+        Assert.assertEquals(1.0, rateShare, 1e-9);
+    }
+
+    @Test
+    public void testSubscriberShortfall() throws Exception {
+        int workerCount = 2;
+        var coordinator = new Coordinator("127.0.0.1", 0, workerCount, 1000, 7);
+        coordinator.start();
+
+        // The second worker needs the subscribers [500, 1000) but only has 600
+        var rejected = new CountDownLatch(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            int index = i;
+            new Thread(() -> {
+                try {
+                    new WorkerClient("127.0.0.1:" + coordinator.getPort())
+                            .connect(new WorkerHello("worker" + index, 1, 1, 600));
+                } catch (Exception ignored) {
+                    // The connection is closed by the coordinator
+                } finally {
+                    rejected.countDown();
+                }
+            }).start();
+        }
+
+        try {
+            coordinator.await();
+            Assert.fail("the load cannot be started without enough subscribers");
+        } catch (RuntimeException ignored) {
+        }
+        Assert.assertTrue(rejected.await(5, TimeUnit.SECONDS));
+    }
+}
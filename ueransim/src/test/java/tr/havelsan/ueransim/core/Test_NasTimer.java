@@ -0,0 +1,131 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.IncomingMessage;
+import tr.havelsan.ueransim.OutgoingMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The timers run on a wheel which is not started, the tests tick it.
+ */
+public class Test_NasTimer {
+
+    private static final long TICK_MILLIS = 1000;
+
+    private TimingWheel wheel;
+    private SimulationContext ctx;
+    private List<NasTimer> expired;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new TimingWheel("test", TICK_MILLIS);
+        TimingWheel.setDefault(wheel);
+
+        ctx = new SimulationContext();
+        expired = new ArrayList<>();
+        ctx.registerListener(new IMessageListener() {
+            @Override
+            public void onReceive(IncomingMessage incomingMessage) {
+            }
+
+            @Override
+            public void onSent(OutgoingMessage outgoingMessage) {
+            }
+
+            @Override
+            public void onTimerExpiry(NasTimer timer) {
+                expired.add(timer);
+            }
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TimingWheel.setDefault(null);
+    }
+
+    @Test
+    public void testExpiry() {
+        // T3510 runs for 15 seconds, the deadline may be one tick later depending on the time elapsed since the
+        // wheel is created
+        var timer = ctx.ueTimers.t3510();
+        timer.start();
+        Assert.assertTrue(timer.isRunning());
+        Assert.assertEquals(15000, timer.getIntervalMillis());
+        Assert.assertSame(timer, ctx.ueTimers.t3510());
+        Assert.assertEquals(1, ctx.ueTimers.getRunningCount());
+
+        tick(14);
+        Assert.assertTrue(timer.isRunning());
+        Assert.assertTrue(expired.isEmpty());
+
+        tick(2);
+        Assert.assertFalse(timer.isRunning());
+        Assert.assertEquals(List.of(timer), expired);
+        Assert.assertEquals(0, ctx.ueTimers.getRunningCount());
+    }
+
+    @Test
+    public void testStop() {
+        var timer = ctx.ueTimers.t3510();
+        timer.start();
+        timer.stop();
+        Assert.assertFalse(timer.isRunning());
+        Assert.assertEquals(0, ctx.ueTimers.getRunningCount());
+
+        tick(20);
+        Assert.assertTrue(expired.isEmpty());
+        Assert.assertEquals(0, wheel.getExpiredCount());
+    }
+
+    @Test
+    public void testRestart() {
+        // Deadlines are taken from the time elapsed since the wheel is created, not from the ticks, so both timeouts
+        // fall on the same tick. Only the second one expires, the first one is cancelled by the restart.
+        var timer = ctx.ueTimers.t3510();
+        timer.start();
+        tick(5);
+        timer.start();
+        Assert.assertTrue(timer.isRunning());
+        Assert.assertEquals(1, ctx.ueTimers.getRunningCount());
+
+        tick(20);
+        Assert.assertEquals(List.of(timer), expired);
+        Assert.assertEquals(2, wheel.getScheduledCount());
+        Assert.assertEquals(1, wheel.getExpiredCount());
+    }
+
+    @Test
+    public void testStartingAnotherInstanceReplacesRunningTimer() {
+        var first = new NasTimer(ctx, 3510, true, 15);
+        var second = new NasTimer(ctx, 3510, true, 15);
+        first.start();
+        second.start();
+        Assert.assertFalse(first.isRunning());
+        Assert.assertSame(second, ctx.ueTimers.t3510());
+        Assert.assertEquals(1, ctx.ueTimers.getRunningCount());
+
+        tick(16);
+        Assert.assertEquals(List.of(second), expired);
+    }
+
+    @Test
+    public void testNoDefaultValue() {
+        // T3346 is only started with a value given by the network
+        var timer = ctx.ueTimers.t3346();
+        timer.start();
+        Assert.assertFalse(timer.isRunning());
+        Assert.assertEquals(0, ctx.ueTimers.getRunningCount());
+    }
+
+    private void tick(int count) {
+        for (int i = 0; i < count; i++) {
+            wheel.tick();
+        }
+    }
+}
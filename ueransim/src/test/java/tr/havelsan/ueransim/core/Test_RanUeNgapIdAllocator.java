@@ -0,0 +1,105 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Test_RanUeNgapIdAllocator {
+
+    @Test
+    public void testFreshIdsWrapAroundIdSpace() {
+        long max = RanUeNgapIdAllocator.MAX_RAN_UE_NGAP_ID;
+        var allocator = new RanUeNgapIdAllocator(max - 1, 4, 16);
+        Assert.assertEquals(max - 1, allocator.allocate());
+        Assert.assertEquals(max, allocator.allocate());
+        Assert.assertEquals(0, allocator.allocate());
+        Assert.assertEquals(1, allocator.allocate());
+        Assert.assertTrue(allocator.contains(0));
+        Assert.assertFalse(allocator.contains(2));
+    }
+
+    @Test
+    public void testExhaustion() {
+        var allocator = new RanUeNgapIdAllocator(100, 3, 16);
+        for (int i = 0; i < 3; i++) {
+            allocator.allocate();
+        }
+        assertExhausted(allocator);
+
+        // Only a released ID is handed out once the range is used up
+        allocator.release(101);
+        Assert.assertEquals(101, allocator.allocate());
+        assertExhausted(allocator);
+    }
+
+    @Test
+    public void testReuseBeyondReleaseCapacity() {
+        // The ring keeps 2 IDs, the others are kept in the overflow queue and must not be lost
+        var allocator = new RanUeNgapIdAllocator(0, 10, 2);
+        var ids = new ArrayList<Long>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(allocator.allocate());
+        }
+        for (var id : ids) {
+            allocator.release(id);
+        }
+        Assert.assertEquals(10, allocator.getReleasedCount());
+
+        Set<Long> reused = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(reused.add(allocator.allocate()));
+        }
+        Assert.assertEquals(new HashSet<>(ids), reused);
+        assertExhausted(allocator);
+
+        // IDs outside of the range are not taken
+        allocator.release(10);
+        Assert.assertEquals(0, allocator.getReleasedCount());
+    }
+
+    @Test
+    public void testNoIdIsHeldTwice() throws Exception {
+        var allocator = new RanUeNgapIdAllocator(0, 64, 8);
+        var held = ConcurrentHashMap.<Long>newKeySet();
+        var failure = new AtomicReference<String>();
+
+        var threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                var mine = new ArrayList<Long>();
+                for (int i = 0; i < 100_000 && failure.get() == null; i++) {
+                    if (mine.size() < 16) {
+                        long id = allocator.allocate();
+                        if (!held.add(id)) {
+                            failure.set("ID is allocated twice: " + id);
+                        }
+                        mine.add(id);
+                    } else {
+                        long id = mine.remove(0);
+                        held.remove(id);
+                        allocator.release(id);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(failure.get());
+    }
+
+    private static void assertExhausted(RanUeNgapIdAllocator allocator) {
+        try {
+            allocator.allocate();
+            Assert.fail("IDs which are still in use were handed out");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("exhausted"));
+        }
+    }
+}
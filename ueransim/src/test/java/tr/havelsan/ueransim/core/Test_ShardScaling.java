@@ -0,0 +1,264 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.*;
+import tr.havelsan.ueransim.configs.NgSetupConfig;
+import tr.havelsan.ueransim.crypto.NEA2_128;
+import tr.havelsan.ueransim.crypto.NIA2_128;
+import tr.havelsan.ueransim.enums.EConnectionIdentifier;
+import tr.havelsan.ueransim.nas.NasEncoder;
+import tr.havelsan.ueransim.nas.core.messages.SecuredMmMessage;
+import tr.havelsan.ueransim.nas.impl.enums.ESecurityHeaderType;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfCipheringAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfIntegrityProtectionAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
+import tr.havelsan.ueransim.nas.impl.messages.ConfigurationUpdateCommand;
+import tr.havelsan.ueransim.nas.impl.messages.ConfigurationUpdateComplete;
+import tr.havelsan.ueransim.nas.impl.values.VPlmn;
+import tr.havelsan.ueransim.nas.impl.values.VTrackingAreaIdentity;
+import tr.havelsan.ueransim.ngap.ngap_ies.RAN_UE_NGAP_ID;
+import tr.havelsan.ueransim.ngap.ngap_pdu_descriptions.NGAP_PDU;
+import tr.havelsan.ueransim.ngap2.*;
+import tr.havelsan.ueransim.sctp.LoopbackTransport;
+import tr.havelsan.ueransim.structs.NasCount;
+import tr.havelsan.ueransim.structs.SelectedAlgorithms;
+import tr.havelsan.ueransim.structs.Supi;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.structs.UeData;
+import tr.havelsan.ueransim.structs.UeKeys;
+import tr.havelsan.ueransim.utils.Logging;
+import tr.havelsan.ueransim.utils.bits.Bit;
+import tr.havelsan.ueransim.utils.bits.Bit3;
+import tr.havelsan.ueransim.utils.bits.Bit5;
+import tr.havelsan.ueransim.utils.bits.BitString;
+import tr.havelsan.ueransim.utils.octets.Octet;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark for {@link UeShards}. Every UE of a gNB runs a flow on its shard which sends protected uplink NAS
+ * transports over the loopback transport, and waits for the protected downlink which an in-process AMF sends back.
+ * So each round trip goes through the NGAP codec, the routing of the gNB, the {@link UeTransport} of the UE and the
+ * NAS security of both directions. Prints the messages per second for each number of shards.
+ */
+public class Test_ShardScaling {
+
+    private static final int[] SHARD_COUNTS = {1, 2, 4};
+    private static final int UE_COUNT = 2000;
+    private static final int ROUND_TRIPS = 10;
+    private static final int STREAM_COUNT = 16;
+    private static final Supi FIRST_SUPI = Supi.parse("imsi-001010000000001");
+
+    @Test
+    public void testScaling() throws Exception {
+        // Otherwise every message is logged, and the shards are serialized on the console.
+        Logging.setDebugEnabled(false);
+
+        System.out.printf("Available processors: %d%n", Runtime.getRuntime().availableProcessors());
+
+        double baseRate = 0;
+        for (int shardCount : SHARD_COUNTS) {
+            double rate = run(shardCount);
+            if (baseRate == 0) {
+                baseRate = rate;
+            }
+            System.out.printf("%d shards: %.0f msg/s, speedup: %.2f%n", shardCount, rate, rate / baseRate);
+        }
+    }
+
+    private static double run(int shardCount) throws Exception {
+        var transport = new LoopbackTransport(Constants.NGAP_PROTOCOL_ID, STREAM_COUNT);
+        var client = transport.getClient();
+        var peer = transport.getServer();
+        var shards = new UeShards(shardCount);
+
+        try {
+            client.start();
+            peer.start();
+            shards.start();
+
+            var template = new SimulationContext();
+            template.sctpClient = client;
+            template.ranUeNgapId = 1;
+            template.ueConfig = newUeConfig();
+            var gnb = new GnbContext(template, new NgSetupConfig(1, new VPlmn(1, 1), new SupportedTA[0]));
+
+            // The AMF learns the keys of the UEs beforehand, as if each of them had completed a security mode control
+            var amfUes = new HashMap<Long, AmfUe>();
+            var flows = new RoundTripFlow[UE_COUNT];
+            for (int i = 0; i < UE_COUNT; i++) {
+                var ueData = new UeData();
+                ueData.supi = FIRST_SUPI.offset(i);
+
+                var ue = gnb.createUe(ueData);
+                ue.currentNsc = newSecurityContext(i);
+                amfUes.put(ue.ranUeNgapId, new AmfUe(i + 1, ue.currentNsc.keys.deepCopy()));
+                flows[i] = new RoundTripFlow(ue, ROUND_TRIPS);
+            }
+
+            startDaemon("amf", () -> peer.receiverLoop((receivedBytes, messageInfo, channel) ->
+                    peer.send(messageInfo.streamNumber(), respond(amfUes, receivedBytes))));
+            gnb.startReceiver();
+
+            var finished = new CountDownLatch(UE_COUNT);
+            var failed = new AtomicLong();
+
+            long startTime = System.nanoTime();
+            for (var flow : flows) {
+                flow.start(shards.assign(flow.getContext()).getEventLoop(), completed -> {
+                    if (!completed) failed.incrementAndGet();
+                    finished.countDown();
+                });
+            }
+            Assert.assertTrue(finished.await(2, TimeUnit.MINUTES));
+            long elapsed = System.nanoTime() - startTime;
+
+            Assert.assertEquals(0, failed.get());
+            Assert.assertEquals(0, gnb.getUnknownUeCount());
+
+            long messages = 2L * UE_COUNT * ROUND_TRIPS;
+            return messages * 1e9 / elapsed;
+        } finally {
+            shards.stop();
+            client.close();
+            peer.close();
+        }
+    }
+
+    private static UeConfig newUeConfig() {
+        var plmn = new VPlmn(1, 1);
+        var ueConfig = new UeConfig();
+        ueConfig.userLocationInformationNr = new UserLocationInformationNr(
+                new UserLocationInformationNr.NrCgi(plmn, new OctetString("0000000010")),
+                new VTrackingAreaIdentity(plmn, 1), new OctetString("00000000"));
+        return ueConfig;
+    }
+
+    private static NasSecurityContext newSecurityContext(int index) {
+        var key = new byte[16];
+        key[0] = (byte) (index >>> 24);
+        key[1] = (byte) (index >>> 16);
+        key[2] = (byte) (index >>> 8);
+        key[3] = (byte) index;
+
+        var nsc = new NasSecurityContext(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT, new Bit3(0));
+        nsc.keys.kNasInt = new OctetString(key);
+        nsc.keys.kNasEnc = new OctetString(key);
+        nsc.selectedAlgorithms = new SelectedAlgorithms(
+                ETypeOfIntegrityProtectionAlgorithm.IA2_128, ETypeOfCipheringAlgorithm.EA2_128);
+        return nsc;
+    }
+
+    // Answers an uplink NAS transport with a downlink NAS transport, protected with NIA2 and NEA2 for the UE.
+    private static byte[] respond(Map<Long, AmfUe> amfUes, byte[] uplink) {
+        var ngapMessage = NgapInternal.extractNgapMessage(Ngap.perDecode(NGAP_PDU.class, uplink));
+        long ranUeNgapId = NgapInternal.findProtocolIe(ngapMessage, RAN_UE_NGAP_ID.class).value;
+        var amfUe = amfUes.get(ranUeNgapId);
+
+        var downlink = new NgapBuilder(NgapProcedure.DownlinkNASTransport, NgapCriticality.IGNORE)
+                .addAmfUeNgapId(amfUe.amfUeNgapId, NgapCriticality.REJECT)
+                .addRanUeNgapId(ranUeNgapId, NgapCriticality.REJECT)
+                .addNasPdu(NasEncoder.nasPdu(amfUe.protect(new ConfigurationUpdateCommand())), NgapCriticality.REJECT)
+                .build();
+        return Ngap.perEncode(downlink);
+    }
+
+    private static void startDaemon(String name, IBenchmarkTask task) {
+        var thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private interface IBenchmarkTask {
+        void run() throws Exception;
+    }
+
+    // Only touched by the thread of the AMF.
+    private static class AmfUe {
+        final long amfUeNgapId;
+        final UeKeys keys;
+        final NasCount downlinkCount;
+
+        AmfUe(long amfUeNgapId, UeKeys keys) {
+            this.amfUeNgapId = amfUeNgapId;
+            this.keys = keys;
+            this.downlinkCount = new NasCount();
+        }
+
+        // The UE computes the MAC with the count it has seen last, and deciphers with the count of the message, see
+        // NasEncryption.decrypt().
+        SecuredMmMessage protect(ConfigurationUpdateCommand message) {
+            var bearer = new Bit5(EConnectionIdentifier.THREE_3GPP_ACCESS.intValue());
+            var macCount = downlinkCount.deepCopy();
+            downlinkCount.sqn = new Octet((downlinkCount.sqn.longValue() + 1) & 0xFF);
+
+            var ciphered = NEA2_128.encrypt(downlinkCount.toOctet4(), bearer, Bit.ONE,
+                    BitString.from(NasEncoder.nasPdu(message)), keys.kNasEnc).toByteArray();
+            var macInput = OctetString.concat(new OctetString(macCount.sqn), new OctetString(ciphered));
+
+            var secured = new SecuredMmMessage();
+            secured.securityHeaderType = ESecurityHeaderType.INTEGRITY_PROTECTED_AND_CIPHERED;
+            secured.messageAuthenticationCode = NIA2_128.computeMac(macCount.toOctet4(), bearer, Bit.ONE,
+                    BitString.from(macInput), keys.kNasInt);
+            secured.sequenceNumber = downlinkCount.sqn;
+            secured.plainNasMessage = new OctetString(ciphered);
+            return secured;
+        }
+    }
+
+    // Sends the given number of uplinks, and completes once the UE has accepted the downlink for each of them.
+    private static class RoundTripFlow extends BaseFlow {
+        private int remaining;
+
+        RoundTripFlow(SimulationContext simContext, int roundTrips) {
+            super(simContext);
+            this.remaining = roundTrips;
+        }
+
+        SimulationContext getContext() {
+            return ctx;
+        }
+
+        @Override
+        public State main(IncomingMessage message) {
+            return sendUplink();
+        }
+
+        private State sendUplink() {
+            send(new SendingMessage(new NgapBuilder(NgapProcedure.UplinkNASTransport, NgapCriticality.IGNORE),
+                    new ConfigurationUpdateComplete()));
+            return this::waitDownlink;
+        }
+
+        private State waitDownlink(IncomingMessage message) {
+            // No NAS message is left if its integrity check fails
+            if (message.getNasMessage(ConfigurationUpdateCommand.class) == null) {
+                return flowFailed("downlink is not accepted");
+            }
+            if (--remaining > 0) {
+                return sendUplink();
+            }
+            return flowComplete();
+        }
+
+        @Override
+        public void onReceive(IncomingMessage incomingMessage) {
+        }
+
+        @Override
+        public void onSent(OutgoingMessage outgoingMessage) {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The wheels are not started, the tests tick them. The tick is long, and delays are given half a tick before the
+ * deadline, so that the time elapsed while the test runs does not move the deadlines.
+ */
+public class Test_TimingWheel {
+
+    private static final long TICK_MILLIS = 1000;
+
+    @Test
+    public void testExpiryOrderAcrossLevels() {
+        var wheel = new TimingWheel("test", TICK_MILLIS);
+        long[] deadlines = {70000, 1, 65537, 256, 255, 257, 65536, 300, 65535, 511, 512, (1 << 24) + 1};
+
+        var tick = new long[1];
+        var expiredAt = new HashMap<Long, Long>();
+        var order = new ArrayList<Long>();
+        for (long deadline : deadlines) {
+            var timeout = schedule(wheel, deadline, () -> {
+                expiredAt.put(deadline, tick[0]);
+                order.add(deadline);
+            });
+            Assert.assertEquals(deadline, timeout.getDeadlineTick());
+        }
+
+        while (tick[0] < (1 << 24) + 1) {
+            tick[0]++;
+            wheel.tick();
+        }
+
+        for (long deadline : deadlines) {
+            Assert.assertEquals(deadline, (long) expiredAt.get(deadline));
+        }
+        for (int i = 1; i < order.size(); i++) {
+            Assert.assertTrue(order.get(i - 1) < order.get(i));
+        }
+        Assert.assertEquals(deadlines.length, wheel.getExpiredCount());
+    }
+
+    @Test
+    public void testCancel() {
+        var wheel = new TimingWheel("test", TICK_MILLIS);
+        var expired = new ArrayList<String>();
+
+        // Cancelled before the wheel places it
+        var beforePlacement = schedule(wheel, 10, () -> expired.add("beforePlacement"));
+        Assert.assertTrue(beforePlacement.cancel());
+
+        // Three timeouts in the same slot list of the second level, the middle one is cancelled after placement
+        schedule(wheel, 300, () -> expired.add("first"));
+        var afterPlacement = schedule(wheel, 300, () -> expired.add("afterPlacement"));
+        schedule(wheel, 300, () -> expired.add("last"));
+        wheel.tick();
+        Assert.assertTrue(afterPlacement.cancel());
+        Assert.assertFalse(afterPlacement.cancel());
+
+        // Cancelled once it has moved down to the first level
+        var afterCascade = schedule(wheel, 600, () -> expired.add("afterCascade"));
+        for (int tick = 2; tick <= 512; tick++) {
+            wheel.tick();
+        }
+        Assert.assertTrue(afterCascade.cancel());
+
+        for (int tick = 513; tick <= 700; tick++) {
+            wheel.tick();
+        }
+
+        Assert.assertEquals(List.of("first", "last"), expired);
+        Assert.assertTrue(beforePlacement.isCancelled());
+        Assert.assertTrue(afterPlacement.isCancelled());
+        Assert.assertTrue(afterCascade.isCancelled());
+        Assert.assertFalse(afterCascade.isExpired());
+        Assert.assertEquals(2, wheel.getExpiredCount());
+    }
+
+    @Test
+    public void testExpiredCannotBeCancelled() {
+        var wheel = new TimingWheel("test", TICK_MILLIS);
+        var timeout = schedule(wheel, 1, () -> {
+        });
+        wheel.tick();
+        Assert.assertTrue(timeout.isExpired());
+        Assert.assertFalse(timeout.cancel());
+        Assert.assertFalse(timeout.isCancelled());
+    }
+
+    @Test
+    public void testMaxDelayClamp() {
+        var wheel = new TimingWheel("test", TICK_MILLIS);
+        var expired = new boolean[1];
+
+        var clamped = wheel.schedule(Long.MAX_VALUE, () -> expired[0] = true);
+        long deadline = clamped.getDeadlineTick();
+        Assert.assertTrue(deadline >= TimingWheel.MAX_DELAY_TICKS);
+        Assert.assertTrue(deadline <= TimingWheel.MAX_DELAY_TICKS + 1);
+
+        // Kept on the top level, it does not expire early
+        for (int tick = 0; tick < 70000; tick++) {
+            wheel.tick();
+        }
+        Assert.assertFalse(expired[0]);
+
+        // Negative delays expire at the next tick
+        var negative = wheel.schedule(-1, () -> {
+        });
+        wheel.tick();
+        Assert.assertTrue(negative.isExpired());
+    }
+
+    private static TimingWheel.Timeout schedule(TimingWheel wheel, long deadlineTick, Runnable task) {
+        return wheel.schedule(deadlineTick * TICK_MILLIS - TICK_MILLIS / 2, task);
+    }
+}
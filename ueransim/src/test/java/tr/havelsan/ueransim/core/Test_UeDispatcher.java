@@ -0,0 +1,159 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.IncomingMessage;
+import tr.havelsan.ueransim.OutgoingMessage;
+import tr.havelsan.ueransim.nas.core.messages.NasMessage;
+import tr.havelsan.ueransim.nas.impl.enums.EPduSessionIdentity;
+import tr.havelsan.ueransim.nas.impl.enums.EProcedureTransactionIdentity;
+import tr.havelsan.ueransim.nas.impl.ies.IEPayloadContainer;
+import tr.havelsan.ueransim.nas.impl.ies.IEPayloadContainerType;
+import tr.havelsan.ueransim.nas.impl.ies.IEPduSessionIdentity2;
+import tr.havelsan.ueransim.nas.impl.messages.DlNasTransport;
+import tr.havelsan.ueransim.nas.impl.messages.PduSessionReleaseCommand;
+import tr.havelsan.ueransim.nas.impl.messages.RegistrationAccept;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Test_UeDispatcher {
+
+    private static class Procedure implements IMessageListener {
+        final int pduSessionId;
+        final int pti;
+        final List<Object> received = new ArrayList<>();
+
+        Procedure(int pduSessionId, int pti) {
+            this.pduSessionId = pduSessionId;
+            this.pti = pti;
+        }
+
+        @Override
+        public void onReceive(IncomingMessage incomingMessage) {
+            received.add(incomingMessage.nasMessage);
+        }
+
+        @Override
+        public void onSent(OutgoingMessage outgoingMessage) {
+        }
+
+        @Override
+        public void onTimerExpiry(NasTimer timer) {
+            received.add(timer);
+        }
+
+        @Override
+        public int getPduSessionId() {
+            return pduSessionId;
+        }
+
+        @Override
+        public int getProcedureTransactionId() {
+            return pti;
+        }
+    }
+
+    private static IncomingMessage incoming(NasMessage nasMessage) {
+        return new IncomingMessage(null, null, nasMessage);
+    }
+
+    private static DlNasTransport dlNasTransport(int pduSessionId, int pti) {
+        var transport = new DlNasTransport();
+        transport.payloadContainerType = new IEPayloadContainerType(
+                IEPayloadContainerType.EPayloadContainerType.N1_SM_INFORMATION);
+        transport.payloadContainer = new IEPayloadContainer(new OctetString(new int[]{0x2e, pduSessionId, pti, 0xd3}));
+        transport.pduSessionId = new IEPduSessionIdentity2(pduSessionId);
+        return transport;
+    }
+
+    @Test
+    public void testRouting() {
+        var dispatcher = new UeDispatcher();
+        var mm = new Procedure(0, 0);
+        var session5 = new Procedure(5, 0);
+        var session6 = new Procedure(6, 2);
+        dispatcher.register(session5);
+        dispatcher.register(mm);
+        dispatcher.register(session6);
+        Assert.assertEquals(3, dispatcher.size());
+
+        var registrationAccept = new RegistrationAccept();
+        var transport5 = dlNasTransport(5, 1);
+        var transport6 = dlNasTransport(6, 2);
+        var otherTransaction = dlNasTransport(6, 3);
+
+        var releaseCommand = new PduSessionReleaseCommand();
+        releaseCommand.pduSessionId = EPduSessionIdentity.fromValue(6);
+        releaseCommand.pti = EProcedureTransactionIdentity.fromValue(2);
+
+        dispatcher.dispatchReceive(incoming(registrationAccept));
+        dispatcher.dispatchReceive(incoming(transport5));
+        dispatcher.dispatchReceive(incoming(transport6));
+        dispatcher.dispatchReceive(incoming(otherTransaction));
+        dispatcher.dispatchReceive(incoming(releaseCommand));
+        dispatcher.dispatchReceive(incoming(null));
+
+        Assert.assertEquals(Arrays.asList(registrationAccept, otherTransaction, null), mm.received);
+        Assert.assertEquals(List.of(transport5), session5.received);
+        Assert.assertEquals(List.of(transport6, releaseCommand), session6.received);
+    }
+
+    @Test
+    public void testTimerExpiry() {
+        var ctx = new SimulationContext();
+        var t3580 = new NasTimer(ctx, 3580, false, 16);
+        var t3510 = new NasTimer(ctx, 3510, true, 15);
+
+        var dispatcher = new UeDispatcher();
+        var mm = new Procedure(0, 0);
+        var session = new Procedure(1, 0);
+        dispatcher.register(mm);
+        dispatcher.register(session);
+
+        dispatcher.dispatchTimerExpiry(t3580);
+        dispatcher.dispatchTimerExpiry(t3510);
+        Assert.assertEquals(List.of(t3510), mm.received);
+        Assert.assertEquals(List.of(t3580), session.received);
+
+        // Without a mobility management procedure, everything goes to the first one.
+        Assert.assertTrue(dispatcher.unregister(mm));
+        Assert.assertFalse(dispatcher.unregister(mm));
+        dispatcher.dispatchTimerExpiry(t3510);
+        dispatcher.dispatchReceive(incoming(new RegistrationAccept()));
+        Assert.assertEquals(3, session.received.size());
+
+        Assert.assertTrue(dispatcher.unregister(session));
+        Assert.assertTrue(dispatcher.isEmpty());
+        dispatcher.dispatchTimerExpiry(t3510);
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws Exception {
+        var dispatcher = new UeDispatcher();
+        var mm = new Procedure(0, 0);
+        dispatcher.register(mm);
+
+        var threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            int pduSessionId = i + 1;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    var procedure = new Procedure(pduSessionId, 0);
+                    dispatcher.register(procedure);
+                    dispatcher.dispatchReceive(incoming(new RegistrationAccept()));
+                    Assert.assertTrue(dispatcher.unregister(procedure));
+                }
+            });
+            threads[i].start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(1, dispatcher.size());
+        Assert.assertEquals(40000, mm.received.size());
+    }
+}
@@ -0,0 +1,156 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.api.ue.sm.UePduSessionManagement;
+import tr.havelsan.ueransim.sctp.ISCTPClient;
+import tr.havelsan.ueransim.structs.UeConfig;
+import tr.havelsan.ueransim.structs.UeData;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Checks the size of the context of an idle registered UE, i.e. of a {@link SimulationContext} which has NGAP IDs,
+ * whose timers are stopped and whose session management state has been used and released. The transport of the UE,
+ * its configuration, its UE data and its NAS security contexts are not included, the latter can be kept off heap,
+ * see {@link SimulationContext#park}.
+ * <p>
+ * The size is computed from the object graph of the context as a 64-bit JVM with compressed references lays it out,
+ * so it does not depend on the GC. Objects which are also reachable from another UE, e.g. shared constants, are not
+ * counted.
+ */
+public class Test_UeFootprint {
+
+    private static final int MAX_BYTES_PER_UE = 256;
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int ALIGNMENT = 8;
+
+    private static final Class<?>[] EXCLUDED_TYPES = {
+            ISCTPClient.class, UeConfig.class, UeData.class, NasSecurityContext.class, UeShard.class};
+
+    @Test
+    public void testIdleRegisteredUe() throws Exception {
+        var ue = newIdleRegisteredUe(1);
+        var other = newIdleRegisteredUe(2);
+
+        long size = retainedSize(ue, reachable(other));
+        System.out.printf("Idle registered UE context: %d bytes%n", size);
+
+        Assert.assertTrue(size < MAX_BYTES_PER_UE);
+    }
+
+    private static SimulationContext newIdleRegisteredUe(long index) {
+        var ctx = new SimulationContext();
+        ctx.ranUeNgapId = index;
+        ctx.amfUeNgapId = (1L << 32) + index;
+
+        var pduSessionId = UePduSessionManagement.allocatePduSessionId(ctx);
+        var pti = UePduSessionManagement.allocateProcedureTransactionId(ctx);
+        UePduSessionManagement.releaseProcedureTransactionId(ctx, pti);
+        UePduSessionManagement.releasePduSessionId(ctx, pduSessionId);
+        ctx.ueTimers.t3510().start();
+        ctx.ueTimers.t3510().stop();
+
+        Assert.assertEquals(0, ctx.ueTimers.getRunningCount());
+        return ctx;
+    }
+
+    private static Set<Object> reachable(Object root) throws Exception {
+        var visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        walk(root, Collections.emptySet(), visited);
+        return visited;
+    }
+
+    private static long retainedSize(Object root, Set<Object> shared) throws Exception {
+        var visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        walk(root, shared, visited);
+
+        long size = 0;
+        for (var object : visited) {
+            size += shallowSize(object);
+        }
+        return size;
+    }
+
+    // Fields of JDK classes cannot be read, they are only counted with their shallow size
+    private static void walk(Object root, Set<Object> shared, Set<Object> visited) throws Exception {
+        var pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            var object = pending.poll();
+            if (shared.contains(object) || isExcluded(object) || !visited.add(object)) continue;
+
+            var type = object.getClass();
+            if (type.isArray()) {
+                if (!type.getComponentType().isPrimitive()) {
+                    for (int i = 0; i < Array.getLength(object); i++) {
+                        var element = Array.get(object, i);
+                        if (element != null) pending.add(element);
+                    }
+                }
+                continue;
+            }
+            if (type.getName().startsWith("java.")) continue;
+
+            for (var field : instanceFields(type)) {
+                if (field.getType().isPrimitive()) continue;
+                field.setAccessible(true);
+                var value = field.get(object);
+                if (value != null) pending.add(value);
+            }
+        }
+    }
+
+    private static boolean isExcluded(Object object) {
+        if (object instanceof Class || object instanceof Enum) return true;
+        for (var type : EXCLUDED_TYPES) {
+            if (type.isInstance(object)) return true;
+        }
+        return false;
+    }
+
+    private static long shallowSize(Object object) {
+        var type = object.getClass();
+        if (type.isArray()) {
+            var componentType = type.getComponentType();
+            return align(ARRAY_HEADER + (long) Array.getLength(object) * sizeOf(componentType));
+        }
+
+        long size = OBJECT_HEADER;
+        for (var field : instanceFields(type)) {
+            size += sizeOf(field.getType());
+        }
+        return align(size);
+    }
+
+    private static Iterable<Field> instanceFields(Class<?> type) {
+        var fields = new ArrayDeque<Field>();
+        for (var t = type; t != null; t = t.getSuperclass()) {
+            for (var field : t.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        if (type == byte.class || type == boolean.class) return 1;
+        return REFERENCE_SIZE;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
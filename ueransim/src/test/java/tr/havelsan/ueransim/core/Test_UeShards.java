@@ -0,0 +1,51 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.structs.SubscriberPool;
+import tr.havelsan.ueransim.structs.Supi;
+import tr.havelsan.ueransim.structs.UeData;
+
+public class Test_UeShards {
+
+    @Test
+    public void testConsecutiveSupisAreSpread() {
+        int shardCount = 16;
+        int supiCount = 160000;
+        var first = Supi.parse("imsi-001010000000001");
+
+        var counts = new int[shardCount];
+        for (int i = 0; i < supiCount; i++) {
+            counts[UeShards.indexOf(first.offset(i), shardCount)]++;
+        }
+
+        int mean = supiCount / shardCount;
+        for (int count : counts) {
+            Assert.assertTrue("shard has " + count + " UEs", Math.abs(count - mean) < mean / 20);
+        }
+    }
+
+    @Test
+    public void testAssignBySupi() {
+        var ueData = new UeData();
+        ueData.supi = Supi.parse("imsi-001010000000001");
+        var pool = SubscriberPool.of(ueData, 1000);
+
+        var shards = new UeShards(4);
+        for (int i = 0; i < 1000; i++) {
+            var ctx = new SimulationContext();
+            ctx.setSubscriber(pool, i);
+
+            var shard = shards.assign(ctx);
+            Assert.assertSame(shard, ctx.shard);
+            Assert.assertSame(shard, shards.shardOf(pool.supiOf(i)));
+            Assert.assertNull(ctx.ueData);
+        }
+
+        long total = 0;
+        for (int i = 0; i < shards.getShardCount(); i++) {
+            total += shards.getShard(i).getUeCount();
+        }
+        Assert.assertEquals(1000, total);
+    }
+}
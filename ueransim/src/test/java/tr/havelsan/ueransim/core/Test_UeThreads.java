@@ -0,0 +1,130 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.sctp.LoopbackTransport;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark which compares running each UE on a platform thread with running it on a virtual thread. Every UE blocks
+ * on its own mailbox like a flow does in {@link tr.havelsan.ueransim.BaseFlow#start()}, while a single receiver
+ * demultiplexes the responses of an in-process peer. ASN.1 coding is left out, so that only the cost of the threads
+ * is measured. Prints the messages per second and the peak number of threads for each mode.
+ */
+public class Test_UeThreads {
+
+    private static final int UE_COUNT = 5000;
+    private static final int ROUND_TRIPS = 10;
+    private static final int STREAM_COUNT = 16;
+    private static final int MESSAGE_SIZE = 64;
+
+    @Test
+    public void testPlatformThreads() throws Exception {
+        run(EThreadMode.PLATFORM);
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        // Falls back to platform threads if the runtime has no virtual threads
+        run(EThreadMode.VIRTUAL);
+    }
+
+    private static void run(EThreadMode threadMode) throws Exception {
+        var transport = new LoopbackTransport(Constants.NGAP_PROTOCOL_ID, STREAM_COUNT);
+        var client = transport.getClient();
+        var peer = transport.getServer();
+
+        try {
+            client.start();
+            peer.start();
+
+            List<BlockingQueue<byte[]>> mailboxes = new ArrayList<>(UE_COUNT);
+            for (int i = 0; i < UE_COUNT; i++) {
+                mailboxes.add(new LinkedBlockingQueue<>());
+            }
+
+            // The peer echoes the requests, the receiver routes them to the mailbox of the UE written in the message.
+            startDaemon("bench-peer", () -> peer.receiverLoop((receivedBytes, messageInfo, channel) ->
+                    peer.send(messageInfo.streamNumber(), receivedBytes)));
+            startDaemon("bench-receiver", () -> client.receiverLoop((receivedBytes, messageInfo, channel) ->
+                    mailboxes.get(readIndex(receivedBytes)).add(receivedBytes)));
+
+            var threadBean = ManagementFactory.getThreadMXBean();
+            threadBean.resetPeakThreadCount();
+
+            var finished = new CountDownLatch(UE_COUNT);
+            var failed = new AtomicLong();
+            var factory = UeThreads.newFactory(threadMode, "bench-ue-");
+
+            long startTime = System.nanoTime();
+            for (int i = 0; i < UE_COUNT; i++) {
+                int index = i;
+                factory.newThread(() -> {
+                    try {
+                        runUe(client, mailboxes.get(index), index);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        finished.countDown();
+                    }
+                }).start();
+            }
+            Assert.assertTrue(finished.await(2, TimeUnit.MINUTES));
+            long elapsed = System.nanoTime() - startTime;
+
+            long messages = 2L * UE_COUNT * ROUND_TRIPS;
+            System.out.printf("%s threads, %d UEs x %d round trips: %d ms, %.0f msg/s, peak threads: %d%n",
+                    threadMode, UE_COUNT, ROUND_TRIPS, elapsed / 1_000_000, messages * 1e9 / elapsed,
+                    threadBean.getPeakThreadCount());
+            Assert.assertEquals(0, failed.get());
+        } finally {
+            client.close();
+            peer.close();
+        }
+    }
+
+    private static void runUe(LoopbackTransport.Endpoint client, BlockingQueue<byte[]> mailbox, int index)
+            throws InterruptedException {
+        var request = new byte[MESSAGE_SIZE];
+        request[0] = (byte) (index >>> 24);
+        request[1] = (byte) (index >>> 16);
+        request[2] = (byte) (index >>> 8);
+        request[3] = (byte) index;
+
+        // The loopback transport does not copy, the response is the request itself, so it is sent again only
+        // after it is received back.
+        int stream = 1 + index % (STREAM_COUNT - 1);
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            client.send(stream, request);
+            mailbox.take();
+        }
+    }
+
+    private static int readIndex(byte[] data) {
+        return (data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | (data[3] & 0xFF);
+    }
+
+    private static void startDaemon(String name, IBenchmarkTask task) {
+        var thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private interface IBenchmarkTask {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,103 @@
+package tr.havelsan.ueransim.core;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class Test_VirtualClock {
+
+    @Test
+    public void testOrderAndJumps() {
+        var clock = new VirtualClock();
+        var order = new ArrayList<String>();
+
+        clock.schedule(200, () -> order.add("c@" + clock.nanoTime()));
+        clock.schedule(100, () -> order.add("a@" + clock.nanoTime()));
+        clock.schedule(100, () -> {
+            order.add("b@" + clock.nanoTime());
+            clock.execute(() -> order.add("b2@" + clock.nanoTime()));
+        });
+        clock.schedule(300, () -> order.add("cancelled")).cancel();
+
+        clock.runUntil(1000);
+        Assert.assertEquals(List.of("a@100", "b@100", "b2@100", "c@200"), order);
+        Assert.assertEquals(1000, clock.nanoTime());
+        Assert.assertTrue(clock.isIdle());
+        Assert.assertEquals(4, clock.getExecutedCount());
+    }
+
+    @Test
+    public void testRunNextLimit() {
+        var clock = new VirtualClock();
+        var ran = new boolean[1];
+        clock.schedule(500, () -> ran[0] = true);
+
+        Assert.assertFalse(clock.runNext(499));
+        Assert.assertEquals(0, clock.nanoTime());
+        Assert.assertTrue(clock.runNext(500));
+        Assert.assertTrue(ran[0]);
+        Assert.assertEquals(500, clock.nanoTime());
+
+        // The clock never goes back
+        clock.advanceTo(100);
+        Assert.assertEquals(500, clock.nanoTime());
+    }
+
+    @Test
+    public void testLongTimersExpireWithoutWaiting() {
+        var clock = new VirtualClock();
+        var wheel = new TimingWheel("virtual-timers", TimingWheel.DEFAULT_TICK_MILLIS, clock);
+        var loop = new EventLoop("virtual-loop", clock);
+        wheel.start();
+        loop.start();
+
+        var expiredAt = new long[2];
+        // T3512 with its default of 54 minutes
+        wheel.schedule(TimeUnit.MINUTES.toMillis(54), () -> loop.execute(() -> expiredAt[0] = clock.nanoTime()));
+        var cancelled = wheel.schedule(TimeUnit.MINUTES.toMillis(10), () -> expiredAt[1] = clock.nanoTime());
+        loop.schedule(TimeUnit.MINUTES.toNanos(5), () -> Assert.assertTrue(cancelled.cancel()));
+
+        long wallStart = System.nanoTime();
+        clock.runUntil(TimeUnit.HOURS.toNanos(1));
+        Assert.assertTrue(System.nanoTime() - wallStart < TimeUnit.SECONDS.toNanos(10));
+
+        Assert.assertEquals(TimeUnit.MINUTES.toNanos(54), expiredAt[0]);
+        Assert.assertEquals(0, expiredAt[1]);
+        Assert.assertEquals(1, wheel.getExpiredCount());
+        Assert.assertTrue(cancelled.isCancelled());
+        Assert.assertTrue(clock.isIdle());
+    }
+
+    @Test
+    public void testDeterministic() {
+        Assert.assertEquals(simulate(7), simulate(7));
+    }
+
+    // Random timers which restart each other, the trace depends only on the seed.
+    private static List<Long> simulate(long seed) {
+        var clock = new VirtualClock();
+        var loop = new EventLoop("virtual-loop", clock);
+        loop.start();
+
+        var random = new Random(seed);
+        var trace = new ArrayList<Long>();
+        for (int i = 0; i < 100; i++) {
+            int ue = i;
+            loop.schedule(random.nextInt(1_000_000), new Runnable() {
+                @Override
+                public void run() {
+                    trace.add(clock.nanoTime() * 1000 + ue);
+                    if (trace.size() < 10_000) {
+                        loop.schedule(random.nextInt(1_000_000), this);
+                    }
+                }
+            });
+        }
+        clock.runUntil(Long.MAX_VALUE);
+        return trace;
+    }
+}
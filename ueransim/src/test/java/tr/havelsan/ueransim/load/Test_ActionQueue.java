@@ -0,0 +1,80 @@
+package tr.havelsan.ueransim.load;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class Test_ActionQueue {
+
+    @Test
+    public void testOrderAndGrowth() {
+        int count = 10_000;
+        var queue = new ActionQueue(4);
+        var random = new Random(42);
+        var times = new long[count];
+        for (int ue = 0; ue < count; ue++) {
+            // Times are unique, so that the UE of each time is known
+            times[ue] = random.nextInt(1_000_000) * (long) count + ue;
+            queue.add(times[ue], ue);
+        }
+        Assert.assertEquals(count, queue.size());
+
+        var sorted = times.clone();
+        Arrays.sort(sorted);
+        for (long time : sorted) {
+            Assert.assertEquals(time, queue.peekTime());
+            Assert.assertEquals(time % count, queue.poll());
+        }
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testInterleaved() {
+        // Actions added while others are polled, as the scheduler does when a flow finishes
+        var queue = new ActionQueue(16);
+        queue.add(300, 3);
+        queue.add(100, 1);
+        queue.add(200, 2);
+
+        Assert.assertEquals(1, queue.poll());
+        queue.add(150, 4);
+        queue.add(400, 1);
+        Assert.assertEquals(4, queue.poll());
+        Assert.assertEquals(2, queue.poll());
+        Assert.assertEquals(3, queue.poll());
+        Assert.assertEquals(1, queue.poll());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testEqualTimes() {
+        var queue = new ActionQueue(16);
+        for (int ue = 0; ue < 100; ue++) {
+            queue.add(ue % 2 == 0 ? 10 : 20, ue);
+        }
+
+        var first = new ArrayList<Integer>();
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(10, queue.peekTime());
+            first.add(queue.poll());
+        }
+        for (int ue : first) {
+            Assert.assertEquals(0, ue % 2);
+        }
+        Assert.assertEquals(50, queue.size());
+        Assert.assertEquals(20, queue.peekTime());
+    }
+
+    @Test
+    public void testTimesAcrossOverflow() {
+        // Times are compared by their difference like System.nanoTime, so the order holds when they overflow
+        var queue = new ActionQueue(16);
+        queue.add(Long.MIN_VALUE + 10, 2);
+        queue.add(Long.MAX_VALUE - 10, 1);
+        Assert.assertEquals(1, queue.poll());
+        Assert.assertEquals(2, queue.poll());
+    }
+}
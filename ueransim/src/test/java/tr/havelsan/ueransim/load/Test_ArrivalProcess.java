@@ -0,0 +1,117 @@
+package tr.havelsan.ueransim.load;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Test_ArrivalProcess {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    // Arrival times from zero until the given time, the first arrival is the one following zero
+    private static List<Long> arrivals(ArrivalProcess process, long untilNanos) {
+        var res = new ArrayList<Long>();
+        long time = 0;
+        while ((time = process.nextArrival(time)) < untilNanos) {
+            res.add(time);
+        }
+        return res;
+    }
+
+    @Test
+    public void testConstant() {
+        var arrivals = arrivals(ArrivalProcess.constant(100), SECOND + 1);
+        Assert.assertEquals(100, arrivals.size());
+        for (int i = 0; i < arrivals.size(); i++) {
+            Assert.assertEquals((i + 1) * 10_000_000L, (long) arrivals.get(i));
+        }
+
+        Assert.assertEquals(Long.MAX_VALUE, ArrivalProcess.constant(0).nextArrival(0));
+    }
+
+    @Test
+    public void testPoissonMean() {
+        int count = 100_000;
+        double rate = 1000;
+
+        var process = ArrivalProcess.poisson(rate, 42);
+        long time = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < count; i++) {
+            long next = process.nextArrival(time);
+            double interval = (next - time) / 1e9;
+            sumSquares += interval * interval;
+            time = next;
+        }
+
+        // The intervals are exponential, their mean and standard deviation are both 1 / rate
+        double mean = time / 1e9 / count;
+        Assert.assertEquals(1 / rate, mean, 0.02 / rate);
+        Assert.assertEquals(1 / rate, Math.sqrt(sumSquares / count - mean * mean), 0.02 / rate);
+    }
+
+    @Test
+    public void testPoissonSeed() {
+        Assert.assertEquals(arrivals(ArrivalProcess.poisson(500, 7), SECOND),
+                arrivals(ArrivalProcess.poisson(500, 7), SECOND));
+        Assert.assertNotEquals(arrivals(ArrivalProcess.poisson(500, 7), SECOND),
+                arrivals(ArrivalProcess.poisson(500, 8), SECOND));
+    }
+
+    @Test
+    public void testStep() {
+        var process = ArrivalProcess.step(10, 10, 1, 25);
+        Assert.assertEquals(10, process.rateAt(0), 0);
+        Assert.assertEquals(10, process.rateAt(SECOND - 1), 0);
+        Assert.assertEquals(20, process.rateAt(SECOND), 0);
+        Assert.assertEquals(25, process.rateAt(5 * SECOND), 0);
+
+        // 10 arrivals in the first second, 20 in the second, the third second is capped at 25
+        var arrivals = arrivals(process, 3 * SECOND + 1);
+        Assert.assertEquals(10 + 20 + 25, arrivals.size(), 1);
+
+        // A step down to zero ends the load
+        Assert.assertEquals(Long.MAX_VALUE, ArrivalProcess.step(0, -1, 1, 0).nextArrival(0));
+    }
+
+    @Test
+    public void testSinusoidal() {
+        var process = ArrivalProcess.sinusoidal(100, 50, 10);
+        Assert.assertEquals(100, process.rateAt(0), 1e-9);
+        Assert.assertEquals(150, process.rateAt(SECOND * 10 / 4), 1e-9);
+        Assert.assertEquals(50, process.rateAt(SECOND * 30 / 4), 1e-9);
+
+        // Over whole periods, the arrivals average to the mean rate
+        Assert.assertEquals(2 * 10 * 100, arrivals(process, 20 * SECOND).size(), 20);
+
+        // Negative rates are taken as zero, no arrival happens while the rate is below zero
+        var clipped = ArrivalProcess.sinusoidal(0, 100, 2);
+        for (long arrival : arrivals(clipped, 2 * SECOND)) {
+            Assert.assertTrue(arrival <= SECOND + 10_000_000L);
+        }
+    }
+
+    @Test
+    public void testRampFromZero() {
+        // The rate grows from 0 to 100 in 10 seconds, so 500 arrivals happen within the ramp and 100 per second after
+        var process = ArrivalProcess.ramp(0, 100, 10);
+        Assert.assertEquals(500, arrivals(process, 10 * SECOND).size(), 1);
+        Assert.assertEquals(600, arrivals(process, 11 * SECOND).size(), 1);
+
+        var arrivals = arrivals(process, 12 * SECOND);
+        for (int i = 1; i < arrivals.size(); i++) {
+            Assert.assertTrue(arrivals.get(i) > arrivals.get(i - 1));
+        }
+    }
+
+    @Test
+    public void testRampDownToZero() {
+        // 250 arrivals while the rate falls from 50 to 0, then none
+        var process = ArrivalProcess.ramp(50, 0, 10);
+        var arrivals = arrivals(process, 100 * SECOND);
+        Assert.assertEquals(250, arrivals.size(), 1);
+        Assert.assertTrue(arrivals.get(arrivals.size() - 1) <= 10 * SECOND);
+    }
+}
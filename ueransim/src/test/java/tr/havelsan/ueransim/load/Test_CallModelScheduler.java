@@ -0,0 +1,144 @@
+package tr.havelsan.ueransim.load;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.BaseFlow;
+import tr.havelsan.ueransim.IncomingMessage;
+import tr.havelsan.ueransim.OutgoingMessage;
+import tr.havelsan.ueransim.core.EventLoop;
+import tr.havelsan.ueransim.core.GnbContext;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.core.VirtualClock;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient;
+import tr.havelsan.ueransim.structs.UeData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs call models in virtual time on UEs of a gNB whose association is mocked. The flows complete as soon as they
+ * start, so the actions only depend on the model and the seed.
+ */
+public class Test_CallModelScheduler {
+
+    private static class CompletingFlow extends BaseFlow {
+        CompletingFlow(SimulationContext simContext) {
+            super(simContext);
+        }
+
+        @Override
+        public State main(IncomingMessage message) {
+            return flowComplete();
+        }
+
+        @Override
+        public void onReceive(IncomingMessage incomingMessage) {
+        }
+
+        @Override
+        public void onSent(OutgoingMessage outgoingMessage) {
+        }
+    }
+
+    private static List<SimulationContext> createUes(int count) {
+        var template = new SimulationContext();
+        template.sctpClient = new MockedSCTPClient((data, queue) -> {
+        });
+        template.ranUeNgapId = 1;
+        var gnb = new GnbContext(template, null);
+
+        var ues = new ArrayList<SimulationContext>();
+        for (int i = 0; i < count; i++) {
+            ues.add(gnb.createUe(new UeData()));
+        }
+        return ues;
+    }
+
+    // Records the started steps as 'ue:step@millis'
+    private static class Recorder {
+        final VirtualClock clock = new VirtualClock();
+        final List<SimulationContext> ues;
+        final List<String> started = new ArrayList<>();
+
+        Recorder(int ueCount) {
+            this.ues = createUes(ueCount);
+        }
+
+        FlowMix.IFlowFactory step(String name) {
+            return ctx -> {
+                started.add(ues.indexOf(ctx) + ":" + name + "@" + clock.nanoTime() / 1_000_000);
+                return new CompletingFlow(ctx);
+            };
+        }
+
+        CallModelScheduler run(CallModel model, double startRate, long seed) throws Exception {
+            var eventLoop = new EventLoop("virtual-loop", clock);
+            eventLoop.start();
+
+            var scheduler = new CallModelScheduler(ues, model, new EventLoop[]{eventLoop}, seed, clock);
+            scheduler.run(10_000, startRate, 1000);
+            eventLoop.stop();
+            return scheduler;
+        }
+    }
+
+    @Test
+    public void testActionOrder() throws Exception {
+        // Each UE registers, requests service every 2 seconds and deregisters when its lifetime of 4 seconds ends
+        var recorder = new Recorder(2);
+        var model = new CallModel(new Duration(EDistribution.FIXED, 4000))
+                .addStep("register", recorder.step("register"))
+                .addStep("serviceRequest", recorder.step("serviceRequest"))
+                .addStep("deregister", recorder.step("deregister"))
+                .addTransition("register", "serviceRequest", 1, new Duration(EDistribution.FIXED, 1000))
+                .addTransition("serviceRequest", "serviceRequest", 1, new Duration(EDistribution.FIXED, 2000))
+                .setInitialStep("register")
+                .setFinalStep("deregister");
+
+        var scheduler = recorder.run(model, 10, 42);
+
+        Assert.assertEquals(List.of(
+                "0:register@0",
+                "1:register@100",
+                "0:serviceRequest@1000",
+                "1:serviceRequest@1100",
+                "0:serviceRequest@3000",
+                "1:serviceRequest@3100",
+                "0:deregister@4000",
+                "1:deregister@4100"), recorder.started);
+
+        Assert.assertEquals(2, scheduler.getStartedCount(0));
+        Assert.assertEquals(4, scheduler.getStartedCount(1));
+        Assert.assertEquals(2, scheduler.getFinishedCount(2));
+        Assert.assertEquals(2, scheduler.getEndedCount());
+        Assert.assertEquals(0, scheduler.getRunningCount());
+        Assert.assertEquals(0, scheduler.getPendingCount());
+        Assert.assertEquals(0, scheduler.getFailedCount());
+    }
+
+    @Test
+    public void testSameSeedSameActions() throws Exception {
+        var first = runRandomModel(7);
+        Assert.assertTrue(first.size() > 40);
+        Assert.assertEquals(first, runRandomModel(7));
+        Assert.assertNotEquals(first, runRandomModel(8));
+    }
+
+    private static List<String> runRandomModel(long seed) throws Exception {
+        var recorder = new Recorder(20);
+        var model = new CallModel(new Duration(EDistribution.EXPONENTIAL, 3000))
+                .addStep("register", recorder.step("register"))
+                .addStep("serviceRequest", recorder.step("serviceRequest"))
+                .addStep("release", recorder.step("release"))
+                .addStep("deregister", recorder.step("deregister"))
+                .addTransition("register", "serviceRequest", 2, new Duration(EDistribution.EXPONENTIAL, 500))
+                .addTransition("register", "release", 1, new Duration(EDistribution.UNIFORM, 500))
+                .addTransition("serviceRequest", "release", 1, new Duration(EDistribution.EXPONENTIAL, 200))
+                .addTransition("release", "serviceRequest", 1, new Duration(EDistribution.EXPONENTIAL, 800))
+                .setInitialStep("register")
+                .setFinalStep("deregister");
+
+        recorder.run(model, 100, seed);
+        return recorder.started;
+    }
+}
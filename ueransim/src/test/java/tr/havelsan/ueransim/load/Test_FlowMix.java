@@ -0,0 +1,57 @@
+package tr.havelsan.ueransim.load;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+public class Test_FlowMix {
+
+    @Test
+    public void testProportions() {
+        var mix = new FlowMix()
+                .add("registration", ctx -> null, 1)
+                .add("serviceRequest", ctx -> null, 3)
+                .add("deregistration", ctx -> null, 6);
+
+        int count = 100_000;
+        var picks = new HashMap<String, Integer>();
+        var random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            picks.merge(mix.pick(random).name, 1, Integer::sum);
+        }
+
+        Assert.assertEquals(0.1, picks.get("registration") / (double) count, 0.005);
+        Assert.assertEquals(0.3, picks.get("serviceRequest") / (double) count, 0.005);
+        Assert.assertEquals(0.6, picks.get("deregistration") / (double) count, 0.005);
+    }
+
+    @Test
+    public void testSameSeedSamePicks() {
+        var mix = new FlowMix()
+                .add("a", ctx -> null, 1)
+                .add("b", ctx -> null, 1);
+
+        var first = new Random(7);
+        var second = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertSame(mix.pick(first), mix.pick(second));
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        try {
+            new FlowMix().pick(new Random());
+            Assert.fail("an empty mix has nothing to pick");
+        } catch (RuntimeException ignored) {
+        }
+
+        try {
+            new FlowMix().add("a", ctx -> null, 0);
+            Assert.fail("weights must be positive");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
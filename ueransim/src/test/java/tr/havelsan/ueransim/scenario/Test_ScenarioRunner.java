@@ -0,0 +1,120 @@
+package tr.havelsan.ueransim.scenario;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.BaseFlow;
+import tr.havelsan.ueransim.IncomingMessage;
+import tr.havelsan.ueransim.OutgoingMessage;
+import tr.havelsan.ueransim.core.EventLoop;
+import tr.havelsan.ueransim.core.GnbContext;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.core.VirtualClock;
+import tr.havelsan.ueransim.load.ArrivalProcess;
+import tr.havelsan.ueransim.load.FlowMix;
+import tr.havelsan.ueransim.load.LoadGenerator;
+import tr.havelsan.ueransim.sctp.MockedSCTPClient;
+import tr.havelsan.ueransim.structs.UeData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs scenarios in virtual time on UEs of a gNB whose association is mocked. The flows end as soon as they start,
+ * either completed or failed like a procedure which is rejected by the AMF.
+ */
+public class Test_ScenarioRunner {
+
+    private static class EndingFlow extends BaseFlow {
+        private final boolean completes;
+
+        EndingFlow(SimulationContext simContext, boolean completes) {
+            super(simContext);
+            this.completes = completes;
+        }
+
+        @Override
+        public State main(IncomingMessage message) {
+            return completes ? flowComplete() : flowFailed("rejected");
+        }
+
+        @Override
+        public void onReceive(IncomingMessage incomingMessage) {
+        }
+
+        @Override
+        public void onSent(OutgoingMessage outgoingMessage) {
+        }
+    }
+
+    private static List<SimulationContext> createUes(int count) {
+        var template = new SimulationContext();
+        template.sctpClient = new MockedSCTPClient((data, queue) -> {
+        });
+        template.ranUeNgapId = 1;
+        var gnb = new GnbContext(template, null);
+
+        var ues = new ArrayList<SimulationContext>();
+        for (int i = 0; i < count; i++) {
+            ues.add(gnb.createUe(new UeData()));
+        }
+        return ues;
+    }
+
+    private static ScenarioResult run(boolean completes) {
+        var slos = new ServiceLevelObjectives();
+        slos.minCompletedRatio = 0.99;
+        slos.maxFailed = 0L;
+
+        var phase = new ScenarioPhase();
+        phase.name = "hold";
+        phase.durationMillis = 1000;
+        // The first arrival is one interval after the start, so 99 flows are started
+        phase.arrivalProcess = ArrivalProcess.constant(100);
+        phase.flowMix = new FlowMix().add("procedure", ctx -> new EndingFlow(ctx, completes), 1);
+
+        var scenario = new Scenario();
+        scenario.name = "test";
+        scenario.phases.add(phase);
+        scenario.drainMillis = 1000;
+        scenario.slos = slos;
+
+        var clock = new VirtualClock();
+        var eventLoop = new EventLoop("virtual-loop", clock);
+        eventLoop.start();
+        try {
+            var generator = new LoadGenerator(createUes(10), null, null, new EventLoop[]{eventLoop}, 1, clock);
+            return new ScenarioRunner(scenario, generator).run();
+        } finally {
+            eventLoop.stop();
+        }
+    }
+
+    @Test
+    public void testCompletedFlows() {
+        var result = run(true);
+        var total = result.total.metrics;
+
+        Assert.assertTrue(result.passed);
+        Assert.assertEquals(99, total.started);
+        Assert.assertEquals(99, total.completed);
+        Assert.assertEquals(0, total.failed);
+        Assert.assertEquals(0, total.running);
+    }
+
+    @Test
+    public void testFailedFlowsViolateSlos() {
+        var result = run(false);
+        var total = result.total.metrics;
+
+        Assert.assertFalse(result.passed);
+        Assert.assertEquals(99, total.started);
+        Assert.assertEquals(0, total.completed);
+        Assert.assertEquals(99, total.failed);
+        Assert.assertEquals(0, total.running);
+        Assert.assertEquals(0, total.getMeanLatencyNanos());
+        Assert.assertEquals(1.0, result.total.failedRatio, 0);
+        Assert.assertEquals(List.of(
+                "failed is 99, at most 0 is allowed",
+                "completedRatio is 0, at least 0.990 is required"), result.total.violations);
+    }
+}
@@ -0,0 +1,84 @@
+package tr.havelsan.ueransim.scenario;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.cluster.LoadMetrics;
+
+public class Test_ServiceLevelObjectives {
+
+    private static LoadMetrics metrics() {
+        var metrics = new LoadMetrics();
+        metrics.arrivals = 1000;
+        metrics.started = 990;
+        metrics.completed = 980;
+        metrics.failed = 5;
+        metrics.failedToStart = 2;
+        metrics.noIdleUe = 8;
+        metrics.lateArrivals = 5;
+        metrics.totalLatencyNanos = 980 * 40_000_000L;
+        metrics.maxLatencyNanos = 250_000_000L;
+        return metrics;
+    }
+
+    @Test
+    public void testPassed() {
+        var slos = new ServiceLevelObjectives();
+        slos.maxFailed = 5L;
+        slos.maxFailedToStart = 2L;
+        slos.maxFailedRatio = 0.01;
+        slos.maxNoIdleUe = 10L;
+        slos.maxMeanLatencyMillis = 40.0;
+        slos.maxLatencyMillis = 250.0;
+        slos.minCompletedRatio = 0.98;
+        slos.minRate = 100.0;
+
+        Assert.assertTrue(slos.check(metrics(), 10_000).isEmpty());
+        Assert.assertTrue(new ServiceLevelObjectives().check(metrics(), 10_000).isEmpty());
+    }
+
+    @Test
+    public void testViolated() {
+        var slos = new ServiceLevelObjectives();
+        slos.maxFailed = 4L;
+        slos.maxFailedToStart = 0L;
+        slos.maxLateArrivals = 5L;
+        slos.maxMeanLatencyMillis = 39.5;
+        slos.minCompletedRatio = 0.999;
+        slos.maxFailedRatio = 0.004;
+        slos.minRate = 101.0;
+
+        var violations = slos.check(metrics(), 10_000);
+        Assert.assertEquals(6, violations.size());
+        Assert.assertEquals("failed is 5, at most 4 is allowed", violations.get(0));
+        Assert.assertEquals("failedToStart is 2, at most 0 is allowed", violations.get(1));
+        Assert.assertEquals("meanLatencyMillis is 40, at most 39.500 is allowed", violations.get(2));
+        Assert.assertEquals("completedRatio is 0.990, at least 0.999 is required", violations.get(3));
+        Assert.assertEquals("failedRatio is 0.005, at most 0.004 is allowed", violations.get(4));
+        Assert.assertEquals("rate is 100, at least 101 is required", violations.get(5));
+    }
+
+    @Test
+    public void testPhaseMetrics() {
+        var before = metrics();
+        var after = metrics();
+        after.arrivals += 500;
+        after.started += 500;
+        after.completed += 400;
+        after.failed += 10;
+        after.running = 110;
+        after.totalLatencyNanos += 400 * 10_000_000L;
+        after.maxLatencyNanos = 20_000_000L;
+
+        var phase = after.since(before);
+        Assert.assertEquals(500, phase.arrivals);
+        Assert.assertEquals(400, phase.completed);
+        Assert.assertEquals(10, phase.failed);
+        Assert.assertEquals(0, phase.failedToStart);
+        Assert.assertEquals(110, phase.running);
+        Assert.assertEquals(10_000_000L, phase.getMeanLatencyNanos());
+
+        var slos = new ServiceLevelObjectives();
+        slos.minCompletedRatio = 0.9;
+        Assert.assertEquals(1, slos.check(phase, 5_000).size());
+    }
+}
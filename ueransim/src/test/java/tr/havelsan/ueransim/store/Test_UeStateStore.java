@@ -0,0 +1,222 @@
+package tr.havelsan.ueransim.store;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.core.NasSecurityContext;
+import tr.havelsan.ueransim.core.SimulationContext;
+import tr.havelsan.ueransim.nas.impl.enums.EMccValue;
+import tr.havelsan.ueransim.nas.impl.enums.EMncValue;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfCipheringAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfIntegrityProtectionAlgorithm;
+import tr.havelsan.ueransim.nas.impl.enums.ETypeOfSecurityContext;
+import tr.havelsan.ueransim.nas.impl.ies.IE5gGutiMobileIdentity;
+import tr.havelsan.ueransim.nas.impl.values.V5gTmsi;
+import tr.havelsan.ueransim.nas.impl.values.VAmfSetId;
+import tr.havelsan.ueransim.structs.SelectedAlgorithms;
+import tr.havelsan.ueransim.structs.UeData;
+import tr.havelsan.ueransim.utils.bits.Bit3;
+import tr.havelsan.ueransim.utils.bits.Bit6;
+import tr.havelsan.ueransim.utils.octets.Octet;
+import tr.havelsan.ueransim.utils.octets.Octet2;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+public class Test_UeStateStore {
+
+    @Test
+    public void testAllocateFreeReuse() {
+        var store = UeStateStore.direct(4);
+        int a = store.allocate();
+        int b = store.allocate();
+        int c = store.allocate();
+        Assert.assertEquals(0, a);
+        Assert.assertEquals(1, b);
+        Assert.assertEquals(2, c);
+        Assert.assertEquals(3, store.getAllocatedCount());
+
+        // Freed slots are reused, the last freed one first, before any unused slot
+        store.free(b);
+        store.free(a);
+        Assert.assertFalse(store.isAllocated(a));
+        Assert.assertEquals(1, store.getAllocatedCount());
+        Assert.assertEquals(a, store.allocate());
+        Assert.assertEquals(b, store.allocate());
+        Assert.assertEquals(3, store.allocate());
+        Assert.assertTrue(store.isAllocated(3));
+        Assert.assertEquals(4, store.getAllocatedCount());
+
+        try {
+            store.allocate();
+            Assert.fail("store is full");
+        } catch (RuntimeException ignored) {
+        }
+
+        store.free(c);
+        try {
+            store.free(c);
+            Assert.fail("slot is freed twice");
+        } catch (IllegalStateException ignored) {
+        }
+        Assert.assertEquals(c, store.allocate());
+    }
+
+    @Test
+    public void testSlotIsZeroedOnReuse() {
+        var store = UeStateStore.direct(2);
+        int slot = store.allocate();
+        var view = store.view(slot);
+        view.setRanUeNgapId(1234);
+        view.setAmfUeNgapId(5678);
+        view.setMmState(3);
+        view.setSmState(4);
+        view.setNsc(true, newNsc(1, true));
+        view.setNsc(false, newNsc(2, false));
+        store.free(slot);
+
+        Assert.assertEquals(slot, store.allocate());
+        view.moveTo(slot);
+        Assert.assertEquals(0, view.getRanUeNgapId());
+        Assert.assertFalse(view.hasAmfUeNgapId());
+        Assert.assertEquals(0, view.getAmfUeNgapId());
+        Assert.assertEquals(0, view.getMmState());
+        Assert.assertEquals(0, view.getSmState());
+        Assert.assertFalse(view.hasGuti());
+        Assert.assertFalse(view.hasNsc(true));
+        Assert.assertFalse(view.hasNsc(false));
+        Assert.assertEquals(0, view.getUplinkCount(true));
+        Assert.assertEquals(0, view.getDownlinkCount(false));
+    }
+
+    @Test
+    public void testChunkGrowth() {
+        int chunkSlots = UeStateStore.CHUNK_SLOTS;
+        var store = UeStateStore.direct(2 * chunkSlots);
+        for (int i = 0; i < chunkSlots; i++) {
+            store.view(store.allocate()).setRanUeNgapId(i);
+        }
+        Assert.assertEquals((long) chunkSlots * UeStateLayout.SLOT_SIZE, store.getReservedBytes());
+
+        int slot = store.allocate();
+        Assert.assertEquals(chunkSlots, slot);
+        Assert.assertEquals(2L * chunkSlots * UeStateLayout.SLOT_SIZE, store.getReservedBytes());
+        store.view(slot).setRanUeNgapId(slot);
+
+        // The last slot of the first chunk and the first slot of the second one do not overlap
+        var view = store.view(chunkSlots - 1);
+        Assert.assertEquals(chunkSlots - 1, view.getRanUeNgapId());
+        Assert.assertEquals(chunkSlots, view.moveTo(chunkSlots).getRanUeNgapId());
+        Assert.assertEquals(0, view.moveTo(0).getRanUeNgapId());
+        Assert.assertFalse(store.isAllocated(chunkSlots + 1));
+    }
+
+    @Test
+    public void testSaveLoad() {
+        var store = UeStateStore.direct(1);
+        var ctx = new SimulationContext();
+        ctx.ranUeNgapId = 1000;
+        ctx.amfUeNgapId = 0xFFFFFFFFFFL;
+        ctx.ueData = new UeData();
+        ctx.ueData.storedGuti = new IE5gGutiMobileIdentity(EMccValue.fromValue(286), EMncValue.fromValue(93),
+                new Octet(0xCA), new VAmfSetId(0x3FF), new Bit6(0x3F), new V5gTmsi(0xFEDCBA98L));
+        ctx.currentNsc = newNsc(1, true);
+        ctx.nonCurrentNsc = newNsc(2, false);
+
+        var view = store.view(store.allocate());
+        view.save(ctx);
+
+        var loaded = new SimulationContext();
+        loaded.ueData = new UeData();
+        view.load(loaded);
+
+        Assert.assertEquals(1000, loaded.ranUeNgapId);
+        Assert.assertEquals(0xFFFFFFFFFFL, (long) loaded.amfUeNgapId);
+
+        var guti = loaded.ueData.storedGuti;
+        Assert.assertEquals(286, guti.mcc.intValue());
+        Assert.assertEquals(93, guti.mnc.intValue());
+        Assert.assertEquals(0xCA, guti.amfRegionId.intValue());
+        Assert.assertEquals(0x3FF, guti.amfSetId.value.intValue());
+        Assert.assertEquals(0x3F, guti.amfPointer.intValue());
+        Assert.assertEquals(0xFEDCBA98L, guti.tmsi.value.longValue());
+
+        assertNscEquals(ctx.currentNsc, loaded.currentNsc);
+        assertNscEquals(ctx.nonCurrentNsc, loaded.nonCurrentNsc);
+        Assert.assertNull(loaded.nonCurrentNsc.keys.kAmf);
+
+        // Unset fields are cleared when saved again
+        ctx.amfUeNgapId = null;
+        ctx.ueData.storedGuti = null;
+        ctx.nonCurrentNsc = null;
+        view.save(ctx);
+        view.load(loaded);
+        Assert.assertNull(loaded.amfUeNgapId);
+        Assert.assertNull(loaded.ueData.storedGuti);
+        Assert.assertNull(loaded.nonCurrentNsc);
+        assertNscEquals(ctx.currentNsc, loaded.currentNsc);
+    }
+
+    @Test
+    public void testParkAndUnpark() {
+        var store = UeStateStore.direct(1);
+        var ctx = new SimulationContext();
+        ctx.ranUeNgapId = 7;
+        ctx.ueData = new UeData();
+        ctx.ueData.storedGuti = new IE5gGutiMobileIdentity(EMccValue.fromValue(286), EMncValue.fromValue(93),
+                new Octet(0xCA), new VAmfSetId(0x3FF), new Bit6(0x3F), new V5gTmsi(0xFEDCBA98L));
+        ctx.currentNsc = newNsc(3, true);
+        var nsc = ctx.currentNsc;
+
+        ctx.park(store);
+        Assert.assertTrue(ctx.isParked());
+        Assert.assertNull(ctx.currentNsc);
+        Assert.assertNull(ctx.ueData.storedGuti);
+        Assert.assertEquals(1, store.getAllocatedCount());
+
+        ctx.unpark();
+        Assert.assertFalse(ctx.isParked());
+        Assert.assertEquals(7, ctx.ranUeNgapId);
+        Assert.assertEquals(0xFEDCBA98L, ctx.ueData.storedGuti.tmsi.value.longValue());
+        assertNscEquals(nsc, ctx.currentNsc);
+        Assert.assertEquals(0, store.getAllocatedCount());
+
+        // The slot is free for the next UE
+        ctx.park(store);
+        Assert.assertTrue(ctx.isParked());
+    }
+
+    private static NasSecurityContext newNsc(int ngKsi, boolean withKeys) {
+        var nsc = new NasSecurityContext(ETypeOfSecurityContext.NATIVE_SECURITY_CONTEXT, new Bit3(ngKsi));
+        nsc.selectedAlgorithms = new SelectedAlgorithms(ETypeOfIntegrityProtectionAlgorithm.IA2_128,
+                ETypeOfCipheringAlgorithm.EA1_128);
+        nsc.uplinkCount.overflow = new Octet2(0xABCD);
+        nsc.uplinkCount.sqn = new Octet(0xEF);
+        nsc.downlinkCount.overflow = new Octet2(ngKsi);
+        nsc.downlinkCount.sqn = new Octet(0xFF);
+        if (withKeys) {
+            nsc.keys.kAmf = new OctetString(filled(32, ngKsi));
+            nsc.keys.kNasInt = new OctetString(filled(16, ngKsi + 1));
+            nsc.keys.kNasEnc = new OctetString(filled(16, ngKsi + 2));
+        }
+        return nsc;
+    }
+
+    private static byte[] filled(int length, int seed) {
+        var bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+        return bytes;
+    }
+
+    private static void assertNscEquals(NasSecurityContext expected, NasSecurityContext actual) {
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.ngKsi.tsc.intValue(), actual.ngKsi.tsc.intValue());
+        Assert.assertEquals(expected.ngKsi.nasKeySetIdentifier.intValue(), actual.ngKsi.nasKeySetIdentifier.intValue());
+        Assert.assertEquals(expected.selectedAlgorithms.integrity.intValue(), actual.selectedAlgorithms.integrity.intValue());
+        Assert.assertEquals(expected.selectedAlgorithms.ciphering.intValue(), actual.selectedAlgorithms.ciphering.intValue());
+        Assert.assertEquals(expected.uplinkCount.toOctet4().longValue(), actual.uplinkCount.toOctet4().longValue());
+        Assert.assertEquals(expected.downlinkCount.toOctet4().longValue(), actual.downlinkCount.toOctet4().longValue());
+        Assert.assertEquals(expected.keys.kAmf, actual.keys.kAmf);
+        Assert.assertEquals(expected.keys.kNasInt, actual.keys.kNasInt);
+        Assert.assertEquals(expected.keys.kNasEnc, actual.keys.kNasEnc);
+    }
+}
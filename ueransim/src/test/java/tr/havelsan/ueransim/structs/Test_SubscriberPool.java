@@ -0,0 +1,56 @@
+package tr.havelsan.ueransim.structs;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import tr.havelsan.ueransim.enums.ESubscriberDerivation;
+import tr.havelsan.ueransim.utils.octets.OctetString;
+
+import java.util.List;
+
+public class Test_SubscriberPool {
+
+    private static UeData template() {
+        var ueData = new UeData();
+        ueData.key = new OctetString("465b5ce8b199b49faa5f0a2ee238a001");
+        ueData.opc = new OctetString("e8ed289deba952e4283b54e88e6183ca");
+        return ueData;
+    }
+
+    @Test
+    public void testRanges() {
+        var pool = new SubscriberPool(List.of(
+                new SubscriberRange(Supi.parse("imsi-001010000000001"), 10, template(),
+                        ESubscriberDerivation.SHARED, ESubscriberDerivation.SHARED),
+                new SubscriberRange(Supi.parse("imsi-001010000100000"), 5, template(),
+                        ESubscriberDerivation.SHARED, ESubscriberDerivation.SHARED)));
+
+        Assert.assertEquals(15, pool.size());
+        Assert.assertEquals("imsi-001010000000001", pool.materialize(0).supi.toString());
+        Assert.assertEquals("imsi-001010000000010", pool.materialize(9).supi.toString());
+        Assert.assertEquals("imsi-001010000100000", pool.materialize(10).supi.toString());
+        Assert.assertEquals("imsi-001010000100004", pool.materialize(14).supi.toString());
+    }
+
+    @Test
+    public void testDerivation() {
+        var range = new SubscriberRange(Supi.parse("imsi-001010000000001"), 1000, template(),
+                ESubscriberDerivation.INDEXED, ESubscriberDerivation.SHARED);
+
+        var first = range.materialize(0);
+        var other = range.materialize(0x1234);
+        Assert.assertEquals(template().key, first.key);
+        Assert.assertEquals(new OctetString("465b5ce8b199b49faa5f0a2ee238b235"), other.key);
+        Assert.assertEquals(template().opc, other.opc);
+        Assert.assertEquals(other.key, range.materialize(0x1234).key);
+    }
+
+    @Test
+    public void testOverflow() {
+        try {
+            new SubscriberRange(Supi.parse("imsi-999"), 2, template(),
+                    ESubscriberDerivation.SHARED, ESubscriberDerivation.SHARED);
+            Assert.fail("range overflowing the SUPI digits is accepted");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
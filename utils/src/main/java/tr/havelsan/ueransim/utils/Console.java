@@ -29,68 +29,99 @@ package tr.havelsan.ueransim.utils;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 public class Console {
 
+    // A lock instead of a monitor, so that virtual threads blocked in printing do not pin their carrier threads.
+    private static final ReentrantLock lock = new ReentrantLock();
+
     private static List<Consumer<String>> printHandlers = new ArrayList<>();
     private static Color lastColor;
 
-    public static synchronized void print(Color color, String format, Object... args) {
+    public static void print(Color color, String format, Object... args) {
         if (color == null) color = Color.RESET;
 
+        // Formatting is the costly part, so it is done before taking the lock.
         String string = String.format(format, args);
 
-        String s;
+        lock.lock();
+        try {
+            String s;
 
-        if (!Objects.equals(lastColor, color)) {
-            lastColor = color;
-            s = color + string + Color.RESET;
-        } else {
-            s = string;
-        }
+            if (!Objects.equals(lastColor, color)) {
+                lastColor = color;
+                s = color + string + Color.RESET;
+            } else {
+                s = string;
+            }
 
-        output(s);
+            output(s);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public static synchronized void println(Color color, String format, Object... args) {
+    public static void println(Color color, String format, Object... args) {
         if (color == null) color = Color.RESET;
 
         String string = String.format(format, args);
 
-        String s;
+        lock.lock();
+        try {
+            String s;
 
-        if (!Objects.equals(lastColor, color)) {
-            lastColor = color;
-            s = color + string + Color.RESET;
-        } else {
-            s = string;
-        }
+            if (!Objects.equals(lastColor, color)) {
+                lastColor = color;
+                s = color + string + Color.RESET;
+            } else {
+                s = string;
+            }
 
-        outputLine(s);
+            outputLine(s);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public static synchronized void printDiv() {
-        println(lastColor, "-----------------------------------------------------------------------------");
+    public static void printDiv() {
+        lock.lock();
+        try {
+            println(lastColor, "-----------------------------------------------------------------------------");
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized static void addPrintHandler(Consumer<String> handler) {
-        printHandlers.add(handler);
+    public static void addPrintHandler(Consumer<String> handler) {
+        lock.lock();
+        try {
+            printHandlers.add(handler);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public static synchronized void println() {
-        outputLine();
+    public static void println() {
+        lock.lock();
+        try {
+            outputLine();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private synchronized static void outputLine() {
+    // Called with the lock held
+    private static void outputLine() {
         outputLine("");
     }
 
-    private synchronized static void outputLine(String string) {
+    private static void outputLine(String string) {
         output(String.format("%s%n", string));
     }
 
-    private synchronized static void output(String string) {
+    private static void output(String string) {
         System.out.print(string);
 
         for (var handler : printHandlers)
@@ -26,42 +26,59 @@
 
 package tr.havelsan.ueransim.utils;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class Logging {
 
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-    private static final AtomicInteger functionDepth = new AtomicInteger(0);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    // Function calls nest per thread, so the depth is kept per thread instead of in a variable shared by all UEs.
+    private static final ThreadLocal<int[]> functionDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+    // Debug and function logs are written for every message of every UE, which serializes the UEs on the console.
+    private static volatile boolean debugEnabled = true;
+
+    public static void setDebugEnabled(boolean enabled) {
+        debugEnabled = enabled;
+    }
+
+    public static boolean isDebugEnabled() {
+        return debugEnabled;
+    }
 
     public static void debug(Tag tag, String message, Object... args) {
-        log(Severity.DEBUG, Color.WHITE_BRIGHT, functionDepth.get(), tag, message, args);
+        if (!debugEnabled) return;
+        log(Severity.DEBUG, Color.WHITE_BRIGHT, functionDepth.get()[0], tag, message, args);
     }
 
     public static void info(Tag tag, String message, Object... args) {
-        log(Severity.INFO, Color.WHITE_BRIGHT, functionDepth.get(), tag, message, args);
+        log(Severity.INFO, Color.WHITE_BRIGHT, functionDepth.get()[0], tag, message, args);
     }
 
     public static void success(Tag tag, String message, Object... args) {
-        log(Severity.SUCCESS, Color.GREEN_BRIGHT, functionDepth.get(), tag, message, args);
+        log(Severity.SUCCESS, Color.GREEN_BRIGHT, functionDepth.get()[0], tag, message, args);
     }
 
     public static void warning(Tag tag, String message, Object... args) {
-        log(Severity.WARNING, Color.YELLOW_BRIGHT, functionDepth.get(), tag, message, args);
+        log(Severity.WARNING, Color.YELLOW_BRIGHT, functionDepth.get()[0], tag, message, args);
     }
 
     public static void error(Tag tag, String message, Object... args) {
-        log(Severity.ERROR, Color.RED_BRIGHT, functionDepth.get(), tag, message, args);
+        log(Severity.ERROR, Color.RED_BRIGHT, functionDepth.get()[0], tag, message, args);
     }
 
     public static void funcIn(String name, Object... args) {
-        log(Severity.FUNC_IN, Color.WHITE_BRIGHT, functionDepth.getAndIncrement(), null, name, args);
+        int depth = functionDepth.get()[0]++;
+        if (!debugEnabled) return;
+        log(Severity.FUNC_IN, Color.WHITE_BRIGHT, depth, null, name, args);
     }
 
     public static void funcOut() {
-        log(Severity.FUNC_OUT, Color.WHITE_BRIGHT, functionDepth.decrementAndGet(), null, "");
+        int depth = --functionDepth.get()[0];
+        if (!debugEnabled) return;
+        log(Severity.FUNC_OUT, Color.WHITE_BRIGHT, depth, null, "");
     }
 
     public static void log(Severity severity, Color color, int depth, Tag tag, String message, Object... args) {
@@ -78,7 +95,6 @@ public class Logging {
     }
 
     private static String getTime() {
-        Calendar cal = Calendar.getInstance();
-        return String.format("[%s] ", DATE_FORMAT.format(cal.getTime()));
+        return "[" + DATE_FORMAT.format(LocalDateTime.now()) + "] ";
     }
 }
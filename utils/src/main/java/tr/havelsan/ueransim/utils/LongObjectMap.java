@@ -0,0 +1,297 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 ALİ GÜNGÖR
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * @author Ali Güngör (aligng1620@gmail.com)
+ */
+
+package tr.havelsan.ueransim.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Hash map from primitive long keys to non-null values. Open addressing with linear probing is used, so neither the
+ * keys are boxed nor an entry object is allocated per mapping.
+ * <p>
+ * Writes are serialized by a lock. Reads are optimistic: they neither block nor allocate, and are only repeated
+ * under the read lock if a write happened meanwhile.
+ */
+public class LongObjectMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock;
+    private Table table;
+    private int size;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        this.lock = new StampedLock();
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    public V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            var value = find(table, key);
+            if (lock.validate(stamp)) return cast(value);
+        }
+        stamp = lock.readLock();
+        try {
+            return cast(find(table, key));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = this.size;
+        if (lock.validate(stamp)) return size;
+        stamp = lock.readLock();
+        try {
+            return this.size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the previous value of the key, or null.
+     */
+    public V put(long key, V value) {
+        if (value == null) throw new NullPointerException();
+        long stamp = lock.writeLock();
+        try {
+            return cast(insert(key, value, true));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the current value of the key without replacing it, or null if the value is put.
+     */
+    public V putIfAbsent(long key, V value) {
+        if (value == null) throw new NullPointerException();
+        long stamp = lock.writeLock();
+        try {
+            return cast(insert(key, value, false));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the removed value, or null.
+     */
+    public V remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            int index = indexOf(table, key);
+            if (index < 0) return null;
+            var old = table.values[index];
+            removeAt(table, index);
+            return cast(old);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the key only if it is mapped to the given value.
+     */
+    public boolean remove(long key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            int index = indexOf(table, key);
+            if (index < 0 || !table.values[index].equals(value)) return false;
+            removeAt(table, index);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(MIN_CAPACITY);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void forEach(Consumer<? super V> action) {
+        for (var value : values()) {
+            action.accept(value);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the values.
+     */
+    public List<V> values() {
+        long stamp = lock.readLock();
+        try {
+            var list = new ArrayList<V>(size);
+            for (var value : table.values) {
+                if (value != null) list.add(cast(value));
+            }
+            return list;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //======================================================================================================
+    //                                            INTERNAL
+    //======================================================================================================
+
+    // The values of a table are only ever put by the typed methods, so they are all of type V
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        // Load factor is kept at most 0.5
+        long capacity = MIN_CAPACITY;
+        while (capacity < 2L * expectedSize) capacity <<= 1;
+        if (capacity > (1 << 30)) throw new IllegalArgumentException("expected size is too large: " + expectedSize);
+        return (int) capacity;
+    }
+
+    // Package-private for tests
+    static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Also called without the lock, so it must terminate and must not throw on a table which is being modified.
+     */
+    private static Object find(Table table, long key) {
+        int mask = table.mask;
+        int index = slot(key, mask);
+        for (int probes = 0; probes <= mask; probes++) {
+            var value = table.values[index];
+            if (value == null) return null;
+            if (table.keys[index] == key) return value;
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private static int indexOf(Table table, long key) {
+        int mask = table.mask;
+        int index = slot(key, mask);
+        while (table.values[index] != null) {
+            if (table.keys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private Object insert(long key, Object value, boolean replace) {
+        int index = indexOf(table, key);
+        if (index >= 0) {
+            var old = table.values[index];
+            if (replace) table.values[index] = value;
+            return old;
+        }
+
+        if (2 * (size + 1) > table.keys.length) {
+            table = rehash(table, table.keys.length << 1);
+        }
+        place(table, key, value);
+        size++;
+        return null;
+    }
+
+    private static void place(Table table, long key, Object value) {
+        int mask = table.mask;
+        int index = slot(key, mask);
+        while (table.values[index] != null) {
+            index = (index + 1) & mask;
+        }
+        // Key is written first, so that a reader never sees the value with a stale key of an empty slot
+        table.keys[index] = key;
+        table.values[index] = value;
+    }
+
+    private static Table rehash(Table old, int capacity) {
+        var table = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.values[i] != null) {
+                place(table, old.keys[i], old.values[i]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Backward shift deletion, which keeps the probe sequences intact without tombstones.
+     */
+    private void removeAt(Table table, int index) {
+        int mask = table.mask;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (table.values[next] != null) {
+            int home = slot(table.keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table.keys[hole] = table.keys[next];
+                table.values[hole] = table.values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table.values[hole] = null;
+        size--;
+    }
+
+    private static class Table {
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+        }
+    }
+}
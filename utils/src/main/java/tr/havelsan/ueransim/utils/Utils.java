@@ -402,8 +402,7 @@ public final class Utils {
      */
     public static String convertYamlToJson(String yaml) {
         Yaml y = new Yaml();
-        Map<String, Object> map = (Map<String, Object>) y.load(yaml);
-        return Json.toJson(map);
+        return Json.toJson(y.load(yaml));
     }
 
     public static String getCommandLineOption(String[] args, String flag) {
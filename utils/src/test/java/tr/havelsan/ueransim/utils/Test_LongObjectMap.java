@@ -0,0 +1,165 @@
+package tr.havelsan.ueransim.utils;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Test_LongObjectMap {
+    // Capacity of the table of a map created with the default constructor
+    private static final int MASK = 15;
+
+    @Test
+    public void testPutGetRemove() {
+        var map = new LongObjectMap<String>();
+        Assert.assertNull(map.put(1, "a"));
+        Assert.assertEquals("a", map.put(1, "b"));
+        Assert.assertEquals("b", map.putIfAbsent(1, "c"));
+        Assert.assertNull(map.putIfAbsent(-7, "d"));
+        Assert.assertEquals(2, map.size());
+
+        Assert.assertFalse(map.remove(1, "a"));
+        Assert.assertTrue(map.remove(1, "b"));
+        Assert.assertNull(map.get(1));
+        Assert.assertEquals("d", map.remove(-7));
+        Assert.assertNull(map.remove(-7));
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testProbeChainAcrossDelete() {
+        var keys = keysWithHome(3, 5);
+        var map = new LongObjectMap<Long>();
+        for (var key : keys) {
+            map.put(key, key);
+        }
+
+        // Removing the head of the chain shifts the others back, so they are still found
+        Assert.assertEquals(keys.get(0), map.remove(keys.get(0)));
+        Assert.assertEquals(keys.get(1), map.get(keys.get(1)));
+        Assert.assertEquals(keys.get(2), map.get(keys.get(2)));
+
+        Assert.assertEquals(keys.get(2), map.remove(keys.get(2)));
+        Assert.assertEquals(keys.get(1), map.get(keys.get(1)));
+        Assert.assertNull(map.get(keys.get(0)));
+        Assert.assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testProbeChainWrapsAround() {
+        // Three keys homed at the last slot occupy the slots 15, 0 and 1, and push a key homed at 0 to slot 2.
+        var last = keysWithHome(3, MASK);
+        var first = keysWithHome(1, 0).get(0);
+
+        var map = new LongObjectMap<Long>();
+        for (var key : last) {
+            map.put(key, key);
+        }
+        map.put(first, first);
+
+        Assert.assertEquals(last.get(0), map.remove(last.get(0)));
+        for (int i = 1; i < last.size(); i++) {
+            Assert.assertEquals(last.get(i), map.get(last.get(i)));
+        }
+        Assert.assertEquals(first, map.get(first));
+
+        // The key homed at 0 must not be shifted in front of its home slot
+        Assert.assertEquals(last.get(1), map.remove(last.get(1)));
+        Assert.assertEquals(last.get(2), map.get(last.get(2)));
+        Assert.assertEquals(first, map.get(first));
+        Assert.assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testResize() {
+        var map = new LongObjectMap<Long>();
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key * 31, key);
+        }
+        Assert.assertEquals(10_000, map.size());
+        for (long key = 0; key < 10_000; key += 2) {
+            Assert.assertEquals(Long.valueOf(key), map.remove(key * 31));
+        }
+        for (long key = 0; key < 10_000; key++) {
+            Assert.assertEquals(key % 2 == 0 ? null : Long.valueOf(key), map.get(key * 31));
+        }
+        Assert.assertEquals(5_000, map.values().size());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        var random = new Random(42);
+        var map = new LongObjectMap<Long>();
+        var expected = new HashMap<Long, Long>();
+
+        for (int i = 0; i < 200_000; i++) {
+            // Few distinct keys, so that chains, deletes and resizes interleave
+            long key = random.nextInt(2048) - 1024;
+            long value = random.nextLong();
+            switch (random.nextInt(3)) {
+                case 0:
+                    Assert.assertEquals(expected.put(key, value), map.put(key, value));
+                    break;
+                case 1:
+                    Assert.assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    Assert.assertEquals(expected.get(key), map.get(key));
+                    break;
+            }
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        for (var e : expected.entrySet()) {
+            Assert.assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+    }
+
+    @Test
+    public void testReadsDuringWrites() throws Exception {
+        var map = new LongObjectMap<Long>();
+        map.put(-1, -1L);
+
+        var done = new AtomicBoolean();
+        var failure = new AtomicReference<String>();
+        var reader = new Thread(() -> {
+            while (!done.get()) {
+                var value = map.get(-1);
+                if (value == null || value != -1L) {
+                    failure.set("stable key was not found: " + value);
+                    return;
+                }
+            }
+        });
+        reader.start();
+
+        // Grows and shrinks the map around the stable key, with many resizes and backward shifts
+        for (int round = 0; round < 20; round++) {
+            for (long key = 0; key < 5_000; key++) {
+                map.put(key, key);
+            }
+            for (long key = 0; key < 5_000; key++) {
+                map.remove(key);
+            }
+        }
+        done.set(true);
+        reader.join();
+
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(1, map.size());
+    }
+
+    private static List<Long> keysWithHome(int count, int home) {
+        var keys = new ArrayList<Long>();
+        for (long key = 0; keys.size() < count; key++) {
+            if (LongObjectMap.slot(key, MASK) == home) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}